@@ -20,6 +20,7 @@ package org.envirocar.algorithm;
 
 import org.envirocar.core.entity.Measurement;
 import org.envirocar.obd.commands.PID;
+import org.envirocar.obd.events.PropertyKeyEvent;
 
 import java.util.ArrayList;
 import java.util.Collections;
@@ -28,11 +29,17 @@ import java.util.List;
 import java.util.Map;
 
 public abstract class AbstractMeasurementProvider implements MeasurementProvider {
+    private static final int MAX_BUFFERED_POSITIONS = SampleBuffer.DEFAULT_CAPACITY;
 
     private List<Position> positionBuffer = new ArrayList<>();
+    private final IngestionLatency ingestionLatency = new IngestionLatency();
 
     @Override
     public synchronized void newPosition(Position pos) {
+        // keep the memory bounded if the positions are not taken
+        if (this.positionBuffer.size() >= MAX_BUFFERED_POSITIONS) {
+            this.positionBuffer.remove(0);
+        }
         this.positionBuffer.add(pos);
     }
 
@@ -42,4 +49,22 @@ public abstract class AbstractMeasurementProvider implements MeasurementProvider
         return result;
     }
 
+    /**
+     * Records the latency of the event if it was read from the adapter.
+     *
+     * @param pke the event that was taken in
+     */
+    protected void recordIngestion(PropertyKeyEvent pke) {
+        if (pke.getReceivedTime() != 0) {
+            ingestionLatency.record(System.nanoTime() - pke.getReceivedTime());
+        }
+    }
+
+    /**
+     * @return the latency from reading values from the adapter until they were taken in
+     */
+    public IngestionLatency getIngestionLatency() {
+        return ingestionLatency;
+    }
+
 }
@@ -0,0 +1,95 @@
+/**
+ * Copyright (C) 2013 - 2019 the enviroCar community
+ *
+ * This file is part of the enviroCar app.
+ *
+ * The enviroCar app is free software: you can redistribute it and/or
+ * modify it under the terms of the GNU General Public License as published
+ * by the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * The enviroCar app is distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU General
+ * Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License along
+ * with the enviroCar app. If not, see http://www.gnu.org/licenses/.
+ */
+package org.envirocar.algorithm;
+
+import java.util.Locale;
+
+/**
+ * Collects the latency from reading a value from the adapter until a measurement provider
+ * took it in. The latencies are counted in buckets of powers of two microseconds, so
+ * recording does not allocate and percentiles are reported as upper bounds.
+ */
+public class IngestionLatency {
+    private static final int BUCKETS = 40;
+
+    private final long[] buckets = new long[BUCKETS];
+    private long count;
+    private long sum;
+    private long max;
+
+    /**
+     * @param nanos the latency in ns
+     */
+    public synchronized void record(long nanos) {
+        long micros = Math.max(0, nanos / 1000);
+        int bucket = Math.min(BUCKETS - 1, 64 - Long.numberOfLeadingZeros(micros));
+        buckets[bucket]++;
+        count++;
+        sum += micros;
+        max = Math.max(max, micros);
+    }
+
+    public synchronized long getCount() {
+        return count;
+    }
+
+    /**
+     * @return the mean latency in µs
+     */
+    public synchronized double getMean() {
+        return count == 0 ? Double.NaN : (double) sum / count;
+    }
+
+    /**
+     * @return the maximum latency in µs
+     */
+    public synchronized long getMax() {
+        return max;
+    }
+
+    /**
+     * @param percentile the percentile between 0 and 1
+     * @return the upper bound of the percentile in µs
+     */
+    public synchronized long getPercentile(double percentile) {
+        long threshold = (long) Math.ceil(count * percentile);
+        long seen = 0;
+        for (int i = 0; i < BUCKETS; i++) {
+            seen += buckets[i];
+            if (seen >= threshold && seen > 0) {
+                return Math.min(max, (1L << i) - 1);
+            }
+        }
+        return max;
+    }
+
+    public synchronized void reset() {
+        for (int i = 0; i < BUCKETS; i++) {
+            buckets[i] = 0;
+        }
+        count = 0;
+        sum = 0;
+        max = 0;
+    }
+
+    public synchronized String describe() {
+        return String.format(Locale.US, "%d values, mean %.0f µs, p50 <= %d µs, p99 <= %d µs, " +
+                "max %d µs", count, getMean(), getPercentile(0.5), getPercentile(0.99), max);
+    }
+}
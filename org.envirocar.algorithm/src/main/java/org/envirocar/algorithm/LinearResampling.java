@@ -0,0 +1,32 @@
+/**
+ * Copyright (C) 2013 - 2019 the enviroCar community
+ *
+ * This file is part of the enviroCar app.
+ *
+ * The enviroCar app is free software: you can redistribute it and/or
+ * modify it under the terms of the GNU General Public License as published
+ * by the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * The enviroCar app is distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU General
+ * Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License along
+ * with the enviroCar app. If not, see http://www.gnu.org/licenses/.
+ */
+package org.envirocar.algorithm;
+
+/**
+ * Interpolates linearly between the two samples enclosing the target timestamp. Outside of
+ * the samples the value of the closest one is used.
+ */
+public class LinearResampling implements ResamplingStrategy {
+
+    @Override
+    public double resample(long[] timestamps, double[] values, int size, long start, long end,
+                           long targetTimestamp) {
+        return SampleBuffer.interpolate(timestamps, values, size, targetTimestamp);
+    }
+}
@@ -23,6 +23,7 @@ import org.envirocar.obd.events.PropertyKeyEvent;
 import org.envirocar.obd.events.Timestamped;
 
 import io.reactivex.Observable;
+import io.reactivex.Scheduler;
 
 /**
  * TODO JavaDoc
@@ -31,6 +32,13 @@ public interface MeasurementProvider {
 
     Observable<Measurement> measurements(long samplingRate);
 
+    /**
+     * @param samplingRate the length of the sampling windows in ms
+     * @param scheduler    the scheduler driving the {@link SamplingClock}
+     * @return the measurements of consecutive windows aligned to multiples of the sampling rate
+     */
+    Observable<Measurement> measurements(long samplingRate, Scheduler scheduler);
+
     void consider(PropertyKeyEvent pke);
 
     void newPosition(Position pos);
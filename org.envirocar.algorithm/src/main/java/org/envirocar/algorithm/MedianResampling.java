@@ -0,0 +1,62 @@
+/**
+ * Copyright (C) 2013 - 2019 the enviroCar community
+ *
+ * This file is part of the enviroCar app.
+ *
+ * The enviroCar app is free software: you can redistribute it and/or
+ * modify it under the terms of the GNU General Public License as published
+ * by the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * The enviroCar app is distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU General
+ * Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License along
+ * with the enviroCar app. If not, see http://www.gnu.org/licenses/.
+ */
+package org.envirocar.algorithm;
+
+import java.util.Arrays;
+
+/**
+ * Uses the median of the samples of the window, which is robust against single outliers.
+ */
+public class MedianResampling implements ResamplingStrategy {
+    // configurations are shared, hence the scratch buffer is kept per thread.
+    private final ThreadLocal<double[]> scratchBuffer = new ThreadLocal<double[]>() {
+        @Override
+        protected double[] initialValue() {
+            return new double[SampleBuffer.DEFAULT_CAPACITY];
+        }
+    };
+
+    @Override
+    public double resample(long[] timestamps, double[] values, int size, long start, long end,
+                           long targetTimestamp) {
+        if (size == 0) {
+            return Double.NaN;
+        }
+        double[] scratch = scratchBuffer.get();
+        if (scratch.length < size) {
+            scratch = new double[size];
+            scratchBuffer.set(scratch);
+        }
+        System.arraycopy(values, 0, scratch, 0, size);
+        return median(scratch, size);
+    }
+
+    /**
+     * Sorts the first values of the array and returns their median.
+     *
+     * @param values the values, sorted in place
+     * @param size   the number of values
+     * @return the median
+     */
+    static double median(double[] values, int size) {
+        Arrays.sort(values, 0, size);
+        int middle = size / 2;
+        return size % 2 == 1 ? values[middle] : (values[middle - 1] + values[middle]) / 2;
+    }
+}
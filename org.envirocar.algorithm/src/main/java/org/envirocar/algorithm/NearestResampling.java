@@ -0,0 +1,45 @@
+/**
+ * Copyright (C) 2013 - 2019 the enviroCar community
+ *
+ * This file is part of the enviroCar app.
+ *
+ * The enviroCar app is free software: you can redistribute it and/or
+ * modify it under the terms of the GNU General Public License as published
+ * by the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * The enviroCar app is distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU General
+ * Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License along
+ * with the enviroCar app. If not, see http://www.gnu.org/licenses/.
+ */
+package org.envirocar.algorithm;
+
+/**
+ * Uses the sample closest to the target timestamp, the earlier one on a tie.
+ */
+public class NearestResampling implements ResamplingStrategy {
+
+    @Override
+    public double resample(long[] timestamps, double[] values, int size, long start, long end,
+                           long targetTimestamp) {
+        if (size == 0) {
+            return Double.NaN;
+        }
+
+        int before = SampleBuffer.findStartIndex(timestamps, size, targetTimestamp);
+        if (before < 0) {
+            return values[0];
+        }
+        if (before + 1 >= size) {
+            return values[before];
+        }
+
+        long toBefore = targetTimestamp - timestamps[before];
+        long toAfter = timestamps[before + 1] - targetTimestamp;
+        return toBefore <= toAfter ? values[before] : values[before + 1];
+    }
+}
@@ -0,0 +1,188 @@
+/**
+ * Copyright (C) 2013 - 2019 the enviroCar community
+ *
+ * This file is part of the enviroCar app.
+ *
+ * The enviroCar app is free software: you can redistribute it and/or
+ * modify it under the terms of the GNU General Public License as published
+ * by the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * The enviroCar app is distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU General
+ * Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License along
+ * with the enviroCar app. If not, see http://www.gnu.org/licenses/.
+ */
+package org.envirocar.algorithm;
+
+import org.envirocar.core.entity.CompactMeasurement;
+import org.envirocar.core.entity.Measurement;
+import org.envirocar.obd.events.PropertyKeyEvent;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Resamples a stored stream of raw values, e.g. the values read while replaying a recorded
+ * OBD session, into measurements of windows aligned like the ones of the
+ * {@link SamplingClock}. This allows to compare the resampling strategies and rates on the
+ * same input.
+ */
+public class OfflineResampler {
+    private static final Measurement.PropertyKey[] PROPERTY_KEYS = Measurement.PropertyKey.values();
+
+    private final ResamplingConfiguration configuration;
+    private final ResamplingStrategy positionStrategy = new LinearResampling();
+
+    public OfflineResampler() {
+        this(ResamplingConfiguration.createDefault());
+    }
+
+    /**
+     * @param configuration the strategies per property
+     */
+    public OfflineResampler(ResamplingConfiguration configuration) {
+        this.configuration = configuration;
+    }
+
+    /**
+     * @param events       the raw values
+     * @param positions    the raw positions
+     * @param samplingRate the length of the windows in ms
+     * @return a measurement for every window containing values or positions
+     */
+    public List<Measurement> resample(List<PropertyKeyEvent> events,
+                                      List<MeasurementProvider.Position> positions,
+                                      long samplingRate) {
+        List<PropertyKeyEvent> sortedEvents = new ArrayList<>(events);
+        Collections.sort(sortedEvents,
+                (a, b) -> Long.compare(a.getTimestamp(), b.getTimestamp()));
+        List<MeasurementProvider.Position> sortedPositions = new ArrayList<>(positions);
+        Collections.sort(sortedPositions,
+                (a, b) -> Long.compare(a.getTimestamp(), b.getTimestamp()));
+
+        List<Measurement> result = new ArrayList<>();
+        if (sortedEvents.isEmpty() && sortedPositions.isEmpty()) {
+            return result;
+        }
+
+        long first = Long.MAX_VALUE;
+        long last = Long.MIN_VALUE;
+        if (!sortedEvents.isEmpty()) {
+            first = sortedEvents.get(0).getTimestamp();
+            last = sortedEvents.get(sortedEvents.size() - 1).getTimestamp();
+        }
+        if (!sortedPositions.isEmpty()) {
+            first = Math.min(first, sortedPositions.get(0).getTimestamp());
+            last = Math.max(last, sortedPositions.get(sortedPositions.size() - 1).getTimestamp());
+        }
+
+        Samples[] samples = new Samples[PROPERTY_KEYS.length];
+        Samples latitudes = new Samples();
+        Samples longitudes = new Samples();
+        int eventIndex = 0;
+        int positionIndex = 0;
+
+        for (long start = SamplingClock.floorBoundary(first, samplingRate); start <= last;
+             start += samplingRate) {
+            long end = start + samplingRate;
+            boolean empty = true;
+
+            for (Samples s : samples) {
+                if (s != null) {
+                    s.clear();
+                }
+            }
+            for (; eventIndex < sortedEvents.size(); eventIndex++) {
+                PropertyKeyEvent event = sortedEvents.get(eventIndex);
+                if (event.getTimestamp() >= end) {
+                    break;
+                }
+                if (event.getPropertyKey() == null) {
+                    continue;
+                }
+
+                int key = event.getPropertyKey().ordinal();
+                if (samples[key] == null) {
+                    samples[key] = new Samples();
+                }
+                samples[key].add(event.getTimestamp(), event.getValue().doubleValue());
+                empty = false;
+            }
+
+            latitudes.clear();
+            longitudes.clear();
+            for (; positionIndex < sortedPositions.size(); positionIndex++) {
+                MeasurementProvider.Position pos = sortedPositions.get(positionIndex);
+                if (pos.getTimestamp() >= end) {
+                    break;
+                }
+                latitudes.add(pos.getTimestamp(), pos.getLatitude());
+                longitudes.add(pos.getTimestamp(), pos.getLongitude());
+                empty = false;
+            }
+
+            if (!empty) {
+                result.add(createMeasurement(samples, latitudes, longitudes, start, end));
+            }
+        }
+
+        return result;
+    }
+
+    private Measurement createMeasurement(Samples[] samples, Samples latitudes,
+                                          Samples longitudes, long start, long end) {
+        long target = start + (end - start) / 2;
+        Measurement m = new CompactMeasurement();
+        m.setTime(target);
+
+        for (int i = 0; i < PROPERTY_KEYS.length; i++) {
+            if (samples[i] != null && samples[i].size > 0) {
+                double value = samples[i].resample(configuration.getStrategy(PROPERTY_KEYS[i]),
+                        start, end, target);
+                if (!Double.isNaN(value)) {
+                    m.setProperty(PROPERTY_KEYS[i], value);
+                }
+            }
+        }
+
+        if (latitudes.size > 0) {
+            m.setLatitude(latitudes.resample(positionStrategy, start, end, target));
+            m.setLongitude(longitudes.resample(positionStrategy, start, end, target));
+        }
+
+        return m;
+    }
+
+    /**
+     * growing buffer of the samples of a window
+     */
+    private static class Samples {
+        private long[] timestamps = new long[16];
+        private double[] values = new double[16];
+        private int size;
+
+        void add(long timestamp, double value) {
+            if (size == timestamps.length) {
+                timestamps = Arrays.copyOf(timestamps, size * 2);
+                values = Arrays.copyOf(values, size * 2);
+            }
+            timestamps[size] = timestamp;
+            values[size] = value;
+            size++;
+        }
+
+        void clear() {
+            size = 0;
+        }
+
+        double resample(ResamplingStrategy strategy, long start, long end, long target) {
+            return strategy.resample(timestamps, values, size, start, end, target);
+        }
+    }
+}
@@ -0,0 +1,111 @@
+/**
+ * Copyright (C) 2013 - 2019 the enviroCar community
+ *
+ * This file is part of the enviroCar app.
+ *
+ * The enviroCar app is free software: you can redistribute it and/or
+ * modify it under the terms of the GNU General Public License as published
+ * by the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * The enviroCar app is distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU General
+ * Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License along
+ * with the enviroCar app. If not, see http://www.gnu.org/licenses/.
+ */
+package org.envirocar.algorithm;
+
+/**
+ * Removes the samples that deviate from the median of the window by more than a multiple of
+ * the median absolute deviation and resamples the remaining ones with another strategy.
+ */
+public class OutlierRejectingResampling implements ResamplingStrategy {
+    public static final double DEFAULT_THRESHOLD = 3.0;
+
+    /**
+     * scales the median absolute deviation to the standard deviation of normal distributed
+     * values
+     */
+    private static final double MAD_SCALE = 1.4826;
+
+    private final ResamplingStrategy delegate;
+    private final double threshold;
+
+    // configurations are shared, hence the scratch buffers are kept per thread.
+    private final ThreadLocal<Scratch> scratchBuffers = new ThreadLocal<Scratch>() {
+        @Override
+        protected Scratch initialValue() {
+            return new Scratch(SampleBuffer.DEFAULT_CAPACITY);
+        }
+    };
+
+    public OutlierRejectingResampling(ResamplingStrategy delegate) {
+        this(delegate, DEFAULT_THRESHOLD);
+    }
+
+    /**
+     * @param delegate  the strategy resampling the remaining samples
+     * @param threshold the maximum deviation from the median in standard deviations
+     */
+    public OutlierRejectingResampling(ResamplingStrategy delegate, double threshold) {
+        this.delegate = delegate;
+        this.threshold = threshold;
+    }
+
+    @Override
+    public double resample(long[] timestamps, double[] values, int size, long start, long end,
+                           long targetTimestamp) {
+        if (size < 3) {
+            // too few samples to tell an outlier
+            return delegate.resample(timestamps, values, size, start, end, targetTimestamp);
+        }
+        Scratch buffers = scratchBuffers.get();
+        if (buffers.values.length < size) {
+            buffers = new Scratch(size);
+            scratchBuffers.set(buffers);
+        }
+        double[] scratch = buffers.values;
+        long[] keptTimestamps = buffers.keptTimestamps;
+        double[] keptValues = buffers.keptValues;
+
+        System.arraycopy(values, 0, scratch, 0, size);
+        double median = MedianResampling.median(scratch, size);
+        for (int i = 0; i < size; i++) {
+            scratch[i] = Math.abs(values[i] - median);
+        }
+        double deviation = MedianResampling.median(scratch, size) * MAD_SCALE;
+        if (deviation == 0) {
+            return delegate.resample(timestamps, values, size, start, end, targetTimestamp);
+        }
+
+        int kept = 0;
+        for (int i = 0; i < size; i++) {
+            if (Math.abs(values[i] - median) <= threshold * deviation) {
+                keptTimestamps[kept] = timestamps[i];
+                keptValues[kept] = values[i];
+                kept++;
+            }
+        }
+
+        if (kept == 0) {
+            // e.g. for a negative threshold: the delegate requires at least one sample
+            return delegate.resample(timestamps, values, size, start, end, targetTimestamp);
+        }
+        return delegate.resample(keptTimestamps, keptValues, kept, start, end, targetTimestamp);
+    }
+
+    private static final class Scratch {
+        private final double[] values;
+        private final long[] keptTimestamps;
+        private final double[] keptValues;
+
+        private Scratch(int capacity) {
+            this.values = new double[capacity];
+            this.keptTimestamps = new long[capacity];
+            this.keptValues = new double[capacity];
+        }
+    }
+}
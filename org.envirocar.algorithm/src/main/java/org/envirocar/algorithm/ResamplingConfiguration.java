@@ -0,0 +1,59 @@
+/**
+ * Copyright (C) 2013 - 2019 the enviroCar community
+ *
+ * This file is part of the enviroCar app.
+ *
+ * The enviroCar app is free software: you can redistribute it and/or
+ * modify it under the terms of the GNU General Public License as published
+ * by the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * The enviroCar app is distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU General
+ * Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License along
+ * with the enviroCar app. If not, see http://www.gnu.org/licenses/.
+ */
+package org.envirocar.algorithm;
+
+import org.envirocar.core.entity.Measurement;
+
+/**
+ * Selects the {@link ResamplingStrategy} per property. The configuration is read by the
+ * thread creating the measurements and should be completed before the collection starts.
+ */
+public class ResamplingConfiguration {
+    private static final Measurement.PropertyKey[] PROPERTY_KEYS = Measurement.PropertyKey.values();
+
+    private final ResamplingStrategy[] strategies = new ResamplingStrategy[PROPERTY_KEYS.length];
+    private final ResamplingStrategy defaultStrategy;
+
+    /**
+     * @param defaultStrategy the strategy of the properties without a specific one
+     */
+    public ResamplingConfiguration(ResamplingStrategy defaultStrategy) {
+        this.defaultStrategy = defaultStrategy;
+    }
+
+    /**
+     * @return the configuration interpolating all properties linearly, except for the fuel
+     * system status that uses the first value of a window
+     */
+    public static ResamplingConfiguration createDefault() {
+        ResamplingConfiguration result = new ResamplingConfiguration(new LinearResampling());
+        result.setStrategy(Measurement.PropertyKey.FUEL_SYSTEM_STATUS_CODE,
+                new FirstValueResampling());
+        return result;
+    }
+
+    public void setStrategy(Measurement.PropertyKey key, ResamplingStrategy strategy) {
+        strategies[key.ordinal()] = strategy;
+    }
+
+    public ResamplingStrategy getStrategy(Measurement.PropertyKey key) {
+        ResamplingStrategy result = strategies[key.ordinal()];
+        return result != null ? result : defaultStrategy;
+    }
+}
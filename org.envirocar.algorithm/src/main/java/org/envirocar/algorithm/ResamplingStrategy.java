@@ -0,0 +1,41 @@
+/**
+ * Copyright (C) 2013 - 2019 the enviroCar community
+ *
+ * This file is part of the enviroCar app.
+ *
+ * The enviroCar app is free software: you can redistribute it and/or
+ * modify it under the terms of the GNU General Public License as published
+ * by the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * The enviroCar app is distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU General
+ * Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License along
+ * with the enviroCar app. If not, see http://www.gnu.org/licenses/.
+ */
+package org.envirocar.algorithm;
+
+/**
+ * Derives the value of a property at a target timestamp from the samples of a window.
+ * <p>
+ * A {@link ResamplingConfiguration} and its strategies may be shared, e.g. by the live
+ * measurement provider and an {@link OfflineResampler}, so implementations have to be thread
+ * safe. Scratch buffers that avoid allocations are kept per thread.
+ */
+public interface ResamplingStrategy {
+
+    /**
+     * @param timestamps      the timestamps of the samples in ascending order
+     * @param values          the values of the samples
+     * @param size            the number of samples, at least one
+     * @param start           the inclusive start of the window
+     * @param end             the exclusive end of the window
+     * @param targetTimestamp the timestamp to resample the value for
+     * @return the resampled value, NaN if no value can be derived
+     */
+    double resample(long[] timestamps, double[] values, int size, long start, long end,
+                    long targetTimestamp);
+}
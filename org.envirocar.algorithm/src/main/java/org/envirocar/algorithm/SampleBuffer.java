@@ -0,0 +1,276 @@
+/**
+ * Copyright (C) 2013 - 2019 the enviroCar community
+ *
+ * This file is part of the enviroCar app.
+ *
+ * The enviroCar app is free software: you can redistribute it and/or
+ * modify it under the terms of the GNU General Public License as published
+ * by the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * The enviroCar app is distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU General
+ * Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License along
+ * with the enviroCar app. If not, see http://www.gnu.org/licenses/.
+ */
+package org.envirocar.algorithm;
+
+/**
+ * Ring buffer of timestamped samples of a single property, stored in primitive arrays.
+ * Adding a sample does not allocate nor lock. If the reader stalls, the oldest samples are
+ * overwritten, so the memory is bounded by the capacity.
+ * <p>
+ * The buffer supports one writer thread calling {@link #add(long, double)} and one reader
+ * thread taking the samples with {@link #drain()} and accessing the drained window.
+ */
+public class SampleBuffer {
+    public static final int DEFAULT_CAPACITY = 256;
+
+    private final long[] timestamps;
+    private final double[] values;
+    private final int mask;
+
+    /**
+     * the number of samples ever written, published by the writer
+     */
+    private volatile long written;
+
+    // owned by the reader
+    private long drained;
+    private final long[] windowTimestamps;
+    private final double[] windowValues;
+    private int windowSize;
+    private int pendingSize;
+
+    public SampleBuffer() {
+        this(DEFAULT_CAPACITY);
+    }
+
+    /**
+     * @param capacity the maximum number of samples kept, rounded up to a power of two
+     */
+    public SampleBuffer(int capacity) {
+        int size = Integer.highestOneBit(Math.max(2, capacity - 1)) << 1;
+        this.timestamps = new long[size];
+        this.values = new double[size];
+        this.mask = size - 1;
+        // the window holds the drained samples followed by the ones pending for the next drain
+        this.windowTimestamps = new long[size * 2];
+        this.windowValues = new double[size * 2];
+    }
+
+    /**
+     * Adds a sample. Must only be called by the writer thread.
+     *
+     * @param timestamp the timestamp of the sample
+     * @param value     the value of the sample
+     */
+    public void add(long timestamp, double value) {
+        long n = written;
+        int slot = (int) (n & mask);
+        timestamps[slot] = timestamp;
+        values[slot] = value;
+        written = n + 1;
+    }
+
+    /**
+     * Takes all samples added since the last drain into the window, ordered by their
+     * timestamps. Must only be called by the reader thread.
+     *
+     * @return the number of samples in the window
+     */
+    public int drain() {
+        return drain(Long.MAX_VALUE);
+    }
+
+    /**
+     * Takes the samples added since the last drain that are older than the given timestamp
+     * into the window, ordered by their timestamps. Later samples are kept for the next drain.
+     * Must only be called by the reader thread.
+     *
+     * @param until the exclusive upper bound of the timestamps to take
+     * @return the number of samples in the window
+     */
+    public int drain(long until) {
+        // the samples kept by the last drain come first
+        System.arraycopy(windowTimestamps, windowSize, windowTimestamps, 0, pendingSize);
+        System.arraycopy(windowValues, windowSize, windowValues, 0, pendingSize);
+        int kept = pendingSize;
+
+        long end = written;
+        long start = Math.max(drained, end - timestamps.length);
+
+        int n = kept;
+        for (long i = start; i < end; i++) {
+            int slot = (int) (i & mask);
+            windowTimestamps[n] = timestamps[slot];
+            windowValues[n] = values[slot];
+            n++;
+        }
+
+        // drop the samples the writer may have overwritten while copying, including the slot
+        // it may be writing right now
+        long overwritten = written - timestamps.length - start + 1;
+        if (overwritten > 0) {
+            int skip = (int) Math.min(n - kept, overwritten);
+            int remaining = n - kept - skip;
+            System.arraycopy(windowTimestamps, kept + skip, windowTimestamps, kept, remaining);
+            System.arraycopy(windowValues, kept + skip, windowValues, kept, remaining);
+            n -= skip;
+        }
+
+        drained = end;
+        sortWindow(n);
+
+        windowSize = until == Long.MAX_VALUE ? n :
+                findStartIndex(windowTimestamps, n, until - 1) + 1;
+        pendingSize = n - windowSize;
+        if (pendingSize > timestamps.length) {
+            // keep the memory bounded if the drained window does not advance
+            int skip = pendingSize - timestamps.length;
+            System.arraycopy(windowTimestamps, windowSize + skip, windowTimestamps, windowSize,
+                    timestamps.length);
+            System.arraycopy(windowValues, windowSize + skip, windowValues, windowSize,
+                    timestamps.length);
+            pendingSize = timestamps.length;
+        }
+        return windowSize;
+    }
+
+    /**
+     * samples of a property arrive in order, except for the rare late sample
+     */
+    private void sortWindow(int size) {
+        for (int i = 1; i < size; i++) {
+            long ts = windowTimestamps[i];
+            if (ts >= windowTimestamps[i - 1]) {
+                continue;
+            }
+
+            double value = windowValues[i];
+            int j = i - 1;
+            while (j >= 0 && windowTimestamps[j] > ts) {
+                windowTimestamps[j + 1] = windowTimestamps[j];
+                windowValues[j + 1] = windowValues[j];
+                j--;
+            }
+            windowTimestamps[j + 1] = ts;
+            windowValues[j + 1] = value;
+        }
+    }
+
+    /**
+     * @return the number of samples in the drained window
+     */
+    public int getWindowSize() {
+        return windowSize;
+    }
+
+    public long getTimestamp(int index) {
+        return windowTimestamps[index];
+    }
+
+    public double getValue(int index) {
+        return windowValues[index];
+    }
+
+    /**
+     * @return the first value of the drained window, NaN if it is empty
+     */
+    public double first() {
+        return windowSize == 0 ? Double.NaN : windowValues[0];
+    }
+
+    /**
+     * @param targetTimestamp the timestamp to interpolate the value for
+     * @return the index of the last sample of the drained window at or before the timestamp,
+     * -1 if all samples are later
+     */
+    public int findStartIndex(long targetTimestamp) {
+        return findStartIndex(windowTimestamps, windowSize, targetTimestamp);
+    }
+
+    static int findStartIndex(long[] timestamps, int size, long targetTimestamp) {
+        int low = 0;
+        int high = size - 1;
+        while (low <= high) {
+            int mid = (low + high) >>> 1;
+            if (timestamps[mid] <= targetTimestamp) {
+                low = mid + 1;
+            } else {
+                high = mid - 1;
+            }
+        }
+        return high;
+    }
+
+    /**
+     * Interpolates the value linearly between the samples of the drained window enclosing
+     * the timestamp. Outside of the window the value of the closest sample is used.
+     *
+     * @param targetTimestamp the timestamp to interpolate the value for
+     * @return the interpolated value, NaN if the window is empty
+     */
+    public double interpolate(long targetTimestamp) {
+        return interpolate(windowTimestamps, windowValues, windowSize, targetTimestamp);
+    }
+
+    static double interpolate(long[] timestamps, double[] values, int size, long targetTimestamp) {
+        if (size == 0) {
+            return Double.NaN;
+        }
+
+        int start = findStartIndex(timestamps, size, targetTimestamp);
+        if (start < 0) {
+            return values[0];
+        }
+        if (start + 1 >= size) {
+            return values[size - 1];
+        }
+
+        return interpolate(values[start], values[start + 1], targetTimestamp,
+                timestamps[start], timestamps[start + 1]);
+    }
+
+    /**
+     * Resamples the drained window.
+     *
+     * @param strategy        the strategy to apply
+     * @param start           the inclusive start of the window
+     * @param end             the exclusive end of the window
+     * @param targetTimestamp the timestamp to resample the value for
+     * @return the resampled value, NaN if the window is empty
+     */
+    public double resample(ResamplingStrategy strategy, long start, long end,
+                           long targetTimestamp) {
+        if (windowSize == 0) {
+            return Double.NaN;
+        }
+        return strategy.resample(windowTimestamps, windowValues, windowSize, start, end,
+                targetTimestamp);
+    }
+
+    /**
+     * @param start           the start value
+     * @param end             the end value
+     * @param targetTimestamp the target timestamp used for interpolation
+     * @param startTimestamp  the timestamp of the start
+     * @param endTimestamp    the timestamp of the end
+     * @return the interpolated value
+     */
+    public static double interpolate(double start, double end, long targetTimestamp,
+                                     long startTimestamp, long endTimestamp) {
+        if (endTimestamp == startTimestamp) {
+            return end;
+        }
+
+        double duration = endTimestamp - startTimestamp;
+        double endWeight = (targetTimestamp - startTimestamp) / duration;
+        double startWeight = (endTimestamp - targetTimestamp) / duration;
+
+        return start * startWeight + end * endWeight;
+    }
+}
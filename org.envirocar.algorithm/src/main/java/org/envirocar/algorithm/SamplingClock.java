@@ -0,0 +1,188 @@
+/**
+ * Copyright (C) 2013 - 2019 the enviroCar community
+ *
+ * This file is part of the enviroCar app.
+ *
+ * The enviroCar app is free software: you can redistribute it and/or
+ * modify it under the terms of the GNU General Public License as published
+ * by the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * The enviroCar app is distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU General
+ * Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License along
+ * with the enviroCar app. If not, see http://www.gnu.org/licenses/.
+ */
+package org.envirocar.algorithm;
+
+import java.util.concurrent.TimeUnit;
+
+import io.reactivex.Observable;
+import io.reactivex.Scheduler;
+
+/**
+ * Emits consecutive sampling windows aligned to multiples of the interval on the clock of a
+ * scheduler, e.g. [12:00:01.000, 12:00:02.000) for an interval of one second. Every tick is
+ * scheduled relative to its boundary, so the windows do not drift by the processing time.
+ * <p>
+ * A tick that is late by a full interval or more emits the missed windows first, so every
+ * interval is covered exactly once.
+ */
+public class SamplingClock {
+
+    /**
+     * A sampling window.
+     */
+    public static class Window {
+        private final long start;
+        private final long end;
+        private final long lateness;
+
+        public Window(long start, long end, long lateness) {
+            this.start = start;
+            this.end = end;
+            this.lateness = lateness;
+        }
+
+        /**
+         * @return the inclusive start of the window in ms
+         */
+        public long getStart() {
+            return start;
+        }
+
+        /**
+         * @return the exclusive end of the window in ms
+         */
+        public long getEnd() {
+            return end;
+        }
+
+        /**
+         * @return the center of the window in ms
+         */
+        public long getCenter() {
+            return start + (end - start) / 2;
+        }
+
+        /**
+         * @return the time between the end of the window and its emission in ms
+         */
+        public long getLateness() {
+            return lateness;
+        }
+
+        @Override
+        public String toString() {
+            return "[" + start + ", " + end + ") +" + lateness + " ms";
+        }
+    }
+
+    private final long interval;
+    private final long lateTolerance;
+    private final Scheduler scheduler;
+
+    private volatile long ticks;
+    private volatile long lateTicks;
+    private volatile long missedTicks;
+
+    /**
+     * @param interval  the length of the windows in ms
+     * @param scheduler the scheduler providing the clock and the emitting thread
+     */
+    public SamplingClock(long interval, Scheduler scheduler) {
+        if (interval <= 0) {
+            throw new IllegalArgumentException("The interval must be positive: " + interval);
+        }
+        this.interval = interval;
+        this.lateTolerance = Math.max(1, interval / 10);
+        this.scheduler = scheduler;
+    }
+
+    /**
+     * @param time     the time in ms
+     * @param interval the interval in ms
+     * @return the last boundary of the interval at or before the time
+     */
+    public static long floorBoundary(long time, long interval) {
+        return time - (((time % interval) + interval) % interval);
+    }
+
+    /**
+     * @return the windows, starting with the window that ends at the next boundary
+     */
+    public Observable<Window> windows() {
+        return Observable.create(emitter -> {
+            Scheduler.Worker worker = scheduler.createWorker();
+            emitter.setDisposable(worker);
+
+            long now = scheduler.now(TimeUnit.MILLISECONDS);
+            long first = floorBoundary(now, interval);
+
+            worker.schedule(new Runnable() {
+                private long previousEnd = first;
+
+                @Override
+                public void run() {
+                    long now = scheduler.now(TimeUnit.MILLISECONDS);
+                    long end = floorBoundary(now, interval);
+
+                    // emit every window up to the last boundary, the missed ones first
+                    while (previousEnd + interval <= end && !emitter.isDisposed()) {
+                        long windowEnd = previousEnd + interval;
+                        Window window = new Window(previousEnd, windowEnd, now - windowEnd);
+                        onTick(window);
+                        emitter.onNext(window);
+                        previousEnd = windowEnd;
+                    }
+
+                    if (!emitter.isDisposed()) {
+                        worker.schedule(this, previousEnd + interval - now, TimeUnit.MILLISECONDS);
+                    }
+                }
+            }, first + interval - now, TimeUnit.MILLISECONDS);
+        });
+    }
+
+    private void onTick(Window window) {
+        ticks++;
+        if (window.getLateness() >= interval) {
+            missedTicks++;
+        } else if (window.getLateness() > lateTolerance) {
+            lateTicks++;
+        }
+    }
+
+    public long getInterval() {
+        return interval;
+    }
+
+    /**
+     * @return the number of emitted windows
+     */
+    public long getTicks() {
+        return ticks;
+    }
+
+    /**
+     * @return the number of windows emitted later than a tenth of the interval
+     */
+    public long getLateTicks() {
+        return lateTicks;
+    }
+
+    /**
+     * @return the number of windows emitted a full interval or more after their end
+     */
+    public long getMissedTicks() {
+        return missedTicks;
+    }
+
+    public String describe() {
+        return String.format("%s windows of %s ms, %s late, %s missed", ticks, interval,
+                lateTicks, missedTicks);
+    }
+}
@@ -0,0 +1,54 @@
+/**
+ * Copyright (C) 2013 - 2019 the enviroCar community
+ *
+ * This file is part of the enviroCar app.
+ *
+ * The enviroCar app is free software: you can redistribute it and/or
+ * modify it under the terms of the GNU General Public License as published
+ * by the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * The enviroCar app is distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU General
+ * Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License along
+ * with the enviroCar app. If not, see http://www.gnu.org/licenses/.
+ */
+package org.envirocar.algorithm;
+
+/**
+ * Averages the samples over the window, weighting every sample by the time it was valid until
+ * the next sample. The first sample is taken as valid since the start of the window.
+ */
+public class TimeWeightedMeanResampling implements ResamplingStrategy {
+
+    @Override
+    public double resample(long[] timestamps, double[] values, int size, long start, long end,
+                           long targetTimestamp) {
+        if (size == 0) {
+            return Double.NaN;
+        }
+        if (size == 1 || end <= start) {
+            return values[size - 1];
+        }
+
+        double sum = 0;
+        long duration = 0;
+        for (int i = 0; i < size; i++) {
+            long from = i == 0 ? start : clamp(timestamps[i], start, end);
+            long to = i + 1 < size ? clamp(timestamps[i + 1], start, end) : end;
+            if (to > from) {
+                sum += values[i] * (to - from);
+                duration += to - from;
+            }
+        }
+
+        return duration > 0 ? sum / duration : values[size - 1];
+    }
+
+    private static long clamp(long value, long min, long max) {
+        return Math.max(min, Math.min(max, value));
+    }
+}
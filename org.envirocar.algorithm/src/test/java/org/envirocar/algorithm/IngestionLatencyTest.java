@@ -0,0 +1,50 @@
+/**
+ * Copyright (C) 2013 - 2019 the enviroCar community
+ *
+ * This file is part of the enviroCar app.
+ *
+ * The enviroCar app is free software: you can redistribute it and/or
+ * modify it under the terms of the GNU General Public License as published
+ * by the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * The enviroCar app is distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU General
+ * Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License along
+ * with the enviroCar app. If not, see http://www.gnu.org/licenses/.
+ */
+package org.envirocar.algorithm;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+public class IngestionLatencyTest {
+
+    @Test
+    public void testPercentiles() {
+        IngestionLatency latency = new IngestionLatency();
+        Assert.assertEquals(0, latency.getCount());
+        Assert.assertTrue(Double.isNaN(latency.getMean()));
+
+        for (int i = 0; i < 99; i++) {
+            latency.record(50000);
+        }
+        latency.record(20000000);
+
+        Assert.assertEquals(100, latency.getCount());
+        Assert.assertEquals(20000, latency.getMax());
+        Assert.assertEquals(249.5, latency.getMean(), 0.01);
+
+        // 50 µs fall into the bucket up to 63 µs
+        Assert.assertEquals(63, latency.getPercentile(0.5));
+        Assert.assertEquals(63, latency.getPercentile(0.99));
+        Assert.assertEquals(20000, latency.getPercentile(1));
+
+        latency.reset();
+        Assert.assertEquals(0, latency.getCount());
+        Assert.assertEquals(0, latency.getMax());
+    }
+}
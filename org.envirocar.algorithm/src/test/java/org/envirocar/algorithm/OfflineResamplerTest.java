@@ -0,0 +1,78 @@
+/**
+ * Copyright (C) 2013 - 2019 the enviroCar community
+ *
+ * This file is part of the enviroCar app.
+ *
+ * The enviroCar app is free software: you can redistribute it and/or
+ * modify it under the terms of the GNU General Public License as published
+ * by the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * The enviroCar app is distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU General
+ * Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License along
+ * with the enviroCar app. If not, see http://www.gnu.org/licenses/.
+ */
+package org.envirocar.algorithm;
+
+import org.envirocar.core.entity.Measurement;
+import org.envirocar.obd.events.PropertyKeyEvent;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+public class OfflineResamplerTest {
+
+    @Test
+    public void testResampleAtDifferentRates() {
+        List<PropertyKeyEvent> events = new ArrayList<>();
+        List<MeasurementProvider.Position> positions = new ArrayList<>();
+        // speed rising by 1 km/h every 100 ms over 4 s, positions once per second
+        for (int i = 0; i < 40; i++) {
+            events.add(new PropertyKeyEvent(Measurement.PropertyKey.SPEED, i, 10000 + i * 100));
+        }
+        for (int i = 0; i < 4; i++) {
+            positions.add(new MeasurementProvider.Position(10000 + i * 1000, 52 + i, 7));
+        }
+
+        OfflineResampler resampler = new OfflineResampler();
+
+        List<Measurement> measurements = resampler.resample(events, positions, 1000);
+        Assert.assertEquals(4, measurements.size());
+        for (int i = 0; i < 4; i++) {
+            Measurement m = measurements.get(i);
+            Assert.assertEquals(10500 + i * 1000, m.getTime());
+            Assert.assertEquals(5.0 + i * 10, m.getProperty(Measurement.PropertyKey.SPEED), 1e-9);
+            Assert.assertEquals(52.0 + i, m.getLatitude(), 0);
+        }
+
+        measurements = resampler.resample(events, positions, 2000);
+        Assert.assertEquals(2, measurements.size());
+        Assert.assertEquals(11000, measurements.get(0).getTime());
+        Assert.assertEquals(10.0, measurements.get(0).getProperty(Measurement.PropertyKey.SPEED),
+                1e-9);
+        Assert.assertEquals(53.0, measurements.get(0).getLatitude(), 1e-9);
+    }
+
+    @Test
+    public void testStrategyPerProperty() {
+        List<PropertyKeyEvent> events = new ArrayList<>();
+        events.add(new PropertyKeyEvent(Measurement.PropertyKey.RPM, 1000, 2000));
+        events.add(new PropertyKeyEvent(Measurement.PropertyKey.RPM, 9000, 2400));
+        events.add(new PropertyKeyEvent(Measurement.PropertyKey.RPM, 1200, 2600));
+
+        ResamplingConfiguration configuration = ResamplingConfiguration.createDefault();
+        configuration.setStrategy(Measurement.PropertyKey.RPM, new MedianResampling());
+
+        List<Measurement> measurements = new OfflineResampler(configuration)
+                .resample(events, new ArrayList<>(), 1000);
+        Assert.assertEquals(1, measurements.size());
+        Assert.assertEquals(1200, measurements.get(0).getProperty(Measurement.PropertyKey.RPM), 0);
+        Assert.assertNull(measurements.get(0).getLatitude());
+    }
+}
@@ -0,0 +1,71 @@
+/**
+ * Copyright (C) 2013 - 2019 the enviroCar community
+ *
+ * This file is part of the enviroCar app.
+ *
+ * The enviroCar app is free software: you can redistribute it and/or
+ * modify it under the terms of the GNU General Public License as published
+ * by the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * The enviroCar app is distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU General
+ * Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License along
+ * with the enviroCar app. If not, see http://www.gnu.org/licenses/.
+ */
+package org.envirocar.algorithm;
+
+import java.util.Random;
+
+/**
+ * Measures the throughput of the resampling strategies on windows of raw values as they are
+ * read from an OBD adapter. Run its main method with the test classpath, the build does not
+ * ship a benchmark harness.
+ */
+public class ResamplingBenchmark {
+    private static final int WINDOW_SIZE = 20;
+    private static final long WINDOW_LENGTH = 1000;
+    private static final int WARMUP_ITERATIONS = 200000;
+    private static final int ITERATIONS = 1000000;
+
+    public static void main(String[] args) {
+        long[] timestamps = new long[WINDOW_SIZE];
+        double[] values = new double[WINDOW_SIZE];
+        Random random = new Random(42);
+        for (int i = 0; i < WINDOW_SIZE; i++) {
+            timestamps[i] = i * WINDOW_LENGTH / WINDOW_SIZE + random.nextInt(10);
+            values[i] = 50 + random.nextGaussian() * 5;
+        }
+
+        ResamplingStrategy[] strategies = {
+                new FirstValueResampling(),
+                new NearestResampling(),
+                new LinearResampling(),
+                new TimeWeightedMeanResampling(),
+                new MedianResampling(),
+                new OutlierRejectingResampling(new LinearResampling())
+        };
+
+        for (ResamplingStrategy strategy : strategies) {
+            run(strategy, timestamps, values, WARMUP_ITERATIONS);
+            long start = System.nanoTime();
+            double sink = run(strategy, timestamps, values, ITERATIONS);
+            long duration = System.nanoTime() - start;
+            System.out.println(String.format("%-28s %8.1f ns/op (%s)",
+                    strategy.getClass().getSimpleName(), (double) duration / ITERATIONS, sink));
+        }
+    }
+
+    private static double run(ResamplingStrategy strategy, long[] timestamps, double[] values,
+                              int iterations) {
+        double sink = 0;
+        for (int i = 0; i < iterations; i++) {
+            long target = i % WINDOW_LENGTH;
+            sink += strategy.resample(timestamps, values, WINDOW_SIZE, 0, WINDOW_LENGTH, target);
+        }
+        return sink;
+    }
+}
@@ -0,0 +1,149 @@
+/**
+ * Copyright (C) 2013 - 2019 the enviroCar community
+ *
+ * This file is part of the enviroCar app.
+ *
+ * The enviroCar app is free software: you can redistribute it and/or
+ * modify it under the terms of the GNU General Public License as published
+ * by the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * The enviroCar app is distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU General
+ * Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License along
+ * with the enviroCar app. If not, see http://www.gnu.org/licenses/.
+ */
+package org.envirocar.algorithm;
+
+import org.envirocar.core.entity.Measurement;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.concurrent.atomic.AtomicInteger;
+
+public class ResamplingStrategyTest {
+    private static final long[] TIMESTAMPS = {1000, 1200, 1400, 1800, 1900};
+    private static final double[] VALUES = {10, 20, 90, 30, 40};
+
+    private static double resample(ResamplingStrategy strategy, long target) {
+        return strategy.resample(TIMESTAMPS, VALUES, TIMESTAMPS.length, 1000, 2000, target);
+    }
+
+    @Test
+    public void testFirstAndNearest() {
+        Assert.assertEquals(10, resample(new FirstValueResampling(), 1500), 0);
+
+        NearestResampling nearest = new NearestResampling();
+        Assert.assertEquals(90, resample(nearest, 1500), 0);
+        Assert.assertEquals(30, resample(nearest, 1700), 0);
+        Assert.assertEquals(10, resample(nearest, 500), 0);
+        Assert.assertEquals(40, resample(nearest, 2500), 0);
+        // the earlier sample on a tie
+        Assert.assertEquals(10, resample(nearest, 1100), 0);
+    }
+
+    @Test
+    public void testLinear() {
+        LinearResampling linear = new LinearResampling();
+        Assert.assertEquals(75, resample(linear, 1500), 1e-9);
+        Assert.assertEquals(35, resample(linear, 1850), 1e-9);
+        Assert.assertEquals(10, resample(linear, 900), 0);
+        Assert.assertEquals(40, resample(linear, 1999), 0);
+    }
+
+    @Test
+    public void testTimeWeightedMean() {
+        TimeWeightedMeanResampling mean = new TimeWeightedMeanResampling();
+        // 10 * 200 + 20 * 200 + 90 * 400 + 30 * 100 + 40 * 100 over 1000 ms
+        Assert.assertEquals(49, resample(mean, 1500), 1e-9);
+
+        // a sample before the window is valid from the start of the window on
+        double value = mean.resample(new long[]{500, 1500}, new double[]{10, 30}, 2, 1000,
+                2000, 1500);
+        Assert.assertEquals(20, value, 1e-9);
+    }
+
+    @Test
+    public void testMedianAndOutliers() {
+        Assert.assertEquals(30, resample(new MedianResampling(), 1500), 0);
+
+        double[] values = {10, 20, 90, 30, 40, 20};
+        long[] timestamps = {1000, 1200, 1400, 1800, 1900, 1950};
+        Assert.assertEquals(25, new MedianResampling().resample(timestamps, values, 6, 1000,
+                2000, 1500), 0);
+
+        // the spike of 90 is rejected, 20 and 30 enclose the target
+        OutlierRejectingResampling rejecting =
+                new OutlierRejectingResampling(new LinearResampling());
+        Assert.assertEquals(25, resample(rejecting, 1500), 1e-9);
+
+        // without deviation there is nothing to reject
+        double value = rejecting.resample(new long[]{1000, 1200, 1400},
+                new double[]{50, 50, 50}, 3, 1000, 2000, 1500);
+        Assert.assertEquals(50, value, 0);
+
+        // if no sample is within the threshold, all of them are passed to the delegate
+        OutlierRejectingResampling rejectingAll = new OutlierRejectingResampling(
+                (timestamps1, values1, size, start, end, target) -> {
+                    Assert.assertTrue(size > 0);
+                    return size;
+                }, -1);
+        Assert.assertEquals(5, resample(rejectingAll, 1500), 0);
+    }
+
+    @Test
+    public void testSharedStrategies() throws Exception {
+        MedianResampling median = new MedianResampling();
+        OutlierRejectingResampling rejecting =
+                new OutlierRejectingResampling(new LinearResampling());
+        AtomicInteger failures = new AtomicInteger();
+
+        Thread[] threads = new Thread[4];
+        for (int t = 0; t < threads.length; t++) {
+            // every thread resamples windows of a different size and offset
+            int size = 5 + t * 40;
+            double offset = t * 1000;
+            threads[t] = new Thread(() -> {
+                long[] timestamps = new long[size];
+                double[] values = new double[size];
+                for (int i = 0; i < size; i++) {
+                    timestamps[i] = 1000 + i;
+                    values[i] = offset + i;
+                }
+                double expected = offset + (size - 1) / 2.0;
+                try {
+                    for (int i = 0; i < 2000; i++) {
+                        if (median.resample(timestamps, values, size, 1000, 2000, 1500) != expected
+                                || rejecting.resample(timestamps, values, size, 1000, 2000,
+                                1000) != offset) {
+                            failures.incrementAndGet();
+                        }
+                    }
+                } catch (RuntimeException e) {
+                    failures.incrementAndGet();
+                }
+            });
+            threads[t].start();
+        }
+        for (Thread thread : threads) {
+            thread.join();
+        }
+        Assert.assertEquals(0, failures.get());
+    }
+
+    @Test
+    public void testConfiguration() {
+        ResamplingConfiguration configuration = ResamplingConfiguration.createDefault();
+        Assert.assertTrue(configuration.getStrategy(Measurement.PropertyKey.SPEED)
+                instanceof LinearResampling);
+        Assert.assertTrue(configuration.getStrategy(Measurement.PropertyKey.FUEL_SYSTEM_STATUS_CODE)
+                instanceof FirstValueResampling);
+
+        configuration.setStrategy(Measurement.PropertyKey.SPEED, new MedianResampling());
+        Assert.assertTrue(configuration.getStrategy(Measurement.PropertyKey.SPEED)
+                instanceof MedianResampling);
+    }
+}
@@ -0,0 +1,208 @@
+/**
+ * Copyright (C) 2013 - 2019 the enviroCar community
+ *
+ * This file is part of the enviroCar app.
+ *
+ * The enviroCar app is free software: you can redistribute it and/or
+ * modify it under the terms of the GNU General Public License as published
+ * by the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * The enviroCar app is distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU General
+ * Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License along
+ * with the enviroCar app. If not, see http://www.gnu.org/licenses/.
+ */
+package org.envirocar.algorithm;
+
+import org.envirocar.core.entity.Measurement;
+import org.envirocar.obd.events.PropertyKeyEvent;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Compares the cost per sample of the {@link SampleBuffer} with the synchronized map of
+ * event lists the measurement provider used before. Every window adds the samples of several
+ * properties and then interpolates each property in the middle of the window, once on a
+ * single thread and once with a writer thread racing the reader. Run its main method with
+ * the test classpath, the build does not ship a benchmark harness.
+ */
+public class SampleBufferBenchmark {
+    private static final Measurement.PropertyKey[] PROPERTIES = {
+            Measurement.PropertyKey.SPEED,
+            Measurement.PropertyKey.RPM,
+            Measurement.PropertyKey.MAF,
+            Measurement.PropertyKey.INTAKE_TEMPERATURE,
+            Measurement.PropertyKey.INTAKE_PRESSURE,
+            Measurement.PropertyKey.ENGINE_LOAD,
+            Measurement.PropertyKey.THROTTLE_POSITON,
+            Measurement.PropertyKey.GPS_SPEED
+    };
+    private static final int SAMPLES_PER_WINDOW = 25;
+    private static final long WINDOW_LENGTH = 5000;
+    private static final int WARMUP_WINDOWS = 20000;
+    private static final int WINDOWS = 100000;
+
+    public static void main(String[] args) throws InterruptedException {
+        for (int round = 0; round < 2; round++) {
+            String label = round == 0 ? "warmup" : "result";
+            report(label, "SampleBuffer, single thread",
+                    singleThreaded(new BufferSamples(), round == 0 ? WARMUP_WINDOWS : WINDOWS));
+            report(label, "Lists, single thread",
+                    singleThreaded(new ListSamples(), round == 0 ? WARMUP_WINDOWS : WINDOWS));
+            report(label, "SampleBuffer, two threads",
+                    concurrent(new BufferSamples(), round == 0 ? WARMUP_WINDOWS : WINDOWS));
+            report(label, "Lists, two threads",
+                    concurrent(new ListSamples(), round == 0 ? WARMUP_WINDOWS : WINDOWS));
+        }
+    }
+
+    private static void report(String label, String name, double nanosPerSample) {
+        System.out.println(String.format("%s %-28s %8.1f ns/sample", label, name,
+                nanosPerSample));
+    }
+
+    private static double singleThreaded(Samples samples, int windows) {
+        double sink = 0;
+        long start = System.nanoTime();
+        for (int w = 0; w < windows; w++) {
+            addWindow(samples, w);
+            sink += samples.interpolate(w * WINDOW_LENGTH + WINDOW_LENGTH / 2);
+        }
+        long duration = System.nanoTime() - start;
+        consume(sink);
+        return (double) duration / ((long) windows * SAMPLES_PER_WINDOW * PROPERTIES.length);
+    }
+
+    /**
+     * The writer adds the samples as fast as it can while the reader keeps interpolating, the
+     * result is the time of the writer per sample.
+     */
+    private static double concurrent(Samples samples, int windows) throws InterruptedException {
+        AtomicBoolean done = new AtomicBoolean();
+        final double[] sink = {0};
+        Thread reader = new Thread(() -> {
+            long target = 0;
+            while (!done.get()) {
+                sink[0] += samples.interpolate(target);
+                target += WINDOW_LENGTH / 2;
+            }
+        });
+        reader.start();
+
+        long start = System.nanoTime();
+        for (int w = 0; w < windows; w++) {
+            addWindow(samples, w);
+        }
+        long duration = System.nanoTime() - start;
+
+        done.set(true);
+        reader.join();
+        consume(sink[0]);
+        return (double) duration / ((long) windows * SAMPLES_PER_WINDOW * PROPERTIES.length);
+    }
+
+    private static void addWindow(Samples samples, int window) {
+        long windowStart = window * WINDOW_LENGTH;
+        for (int i = 0; i < SAMPLES_PER_WINDOW; i++) {
+            long timestamp = windowStart + i * WINDOW_LENGTH / SAMPLES_PER_WINDOW;
+            for (int p = 0; p < PROPERTIES.length; p++) {
+                samples.add(p, timestamp, 50 + (i * 7 + p) % 13);
+            }
+        }
+    }
+
+    private static void consume(double sink) {
+        if (sink == 42) {
+            System.out.println(sink);
+        }
+    }
+
+    private interface Samples {
+        void add(int property, long timestamp, double value);
+
+        double interpolate(long targetTimestamp);
+    }
+
+    private static class BufferSamples implements Samples {
+        private final SampleBuffer[] buffers = new SampleBuffer[PROPERTIES.length];
+
+        private BufferSamples() {
+            for (int i = 0; i < buffers.length; i++) {
+                buffers[i] = new SampleBuffer();
+            }
+        }
+
+        @Override
+        public void add(int property, long timestamp, double value) {
+            buffers[property].add(timestamp, value);
+        }
+
+        @Override
+        public double interpolate(long targetTimestamp) {
+            double sum = 0;
+            for (SampleBuffer buffer : buffers) {
+                if (buffer.drain() > 0) {
+                    sum += buffer.interpolate(targetTimestamp);
+                }
+            }
+            return sum;
+        }
+    }
+
+    /**
+     * The former buffering: a synchronized map of lists of events, interpolated by a linear
+     * search for the enclosing pair and cleared after every window.
+     */
+    private static class ListSamples implements Samples {
+        private final Map<Measurement.PropertyKey, List<PropertyKeyEvent>> buffered =
+                new HashMap<>();
+
+        @Override
+        public synchronized void add(int property, long timestamp, double value) {
+            Measurement.PropertyKey pk = PROPERTIES[property];
+            PropertyKeyEvent event = new PropertyKeyEvent(pk, value, timestamp);
+            List<PropertyKeyEvent> list = buffered.get(pk);
+            if (list == null) {
+                list = new ArrayList<>();
+                buffered.put(pk, list);
+            }
+            list.add(event);
+        }
+
+        @Override
+        public synchronized double interpolate(long targetTimestamp) {
+            double sum = 0;
+            for (List<PropertyKeyEvent> events : buffered.values()) {
+                if (events.isEmpty()) {
+                    continue;
+                }
+
+                int start = 0;
+                while (start + 1 < events.size() && !(events.get(start).getTimestamp()
+                        <= targetTimestamp && events.get(start + 1).getTimestamp()
+                        >= targetTimestamp)) {
+                    start++;
+                }
+                if (start + 1 >= events.size()) {
+                    start = 0;
+                }
+
+                PropertyKeyEvent first = events.get(start);
+                PropertyKeyEvent second = start + 1 < events.size() ? events.get(start + 1) : first;
+                sum += SampleBuffer.interpolate(first.getValue().doubleValue(),
+                        second.getValue().doubleValue(), targetTimestamp, first.getTimestamp(),
+                        second.getTimestamp());
+                events.clear();
+            }
+            return sum;
+        }
+    }
+}
@@ -0,0 +1,132 @@
+/**
+ * Copyright (C) 2013 - 2019 the enviroCar community
+ *
+ * This file is part of the enviroCar app.
+ *
+ * The enviroCar app is free software: you can redistribute it and/or
+ * modify it under the terms of the GNU General Public License as published
+ * by the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * The enviroCar app is distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU General
+ * Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License along
+ * with the enviroCar app. If not, see http://www.gnu.org/licenses/.
+ */
+package org.envirocar.algorithm;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+public class SampleBufferTest {
+
+    @Test
+    public void testInterpolation() {
+        SampleBuffer buffer = new SampleBuffer();
+        Assert.assertEquals(0, buffer.drain());
+        Assert.assertTrue(Double.isNaN(buffer.interpolate(1000)));
+
+        buffer.add(1000, 16.0);
+        buffer.add(3500, 48.0);
+        buffer.add(5000, 32.0);
+        Assert.assertEquals(3, buffer.drain());
+
+        Assert.assertEquals(16.0, buffer.first(), 0);
+        Assert.assertEquals(48.0, buffer.interpolate(3500), 0);
+        Assert.assertEquals(40.0, buffer.interpolate(4250), 1e-9);
+        Assert.assertEquals(32.0, buffer.interpolate(2000 + 4000), 0);
+        Assert.assertEquals(16.0, buffer.interpolate(500), 0);
+
+        // the drained samples are not taken again
+        buffer.add(6000, 8.0);
+        Assert.assertEquals(1, buffer.drain());
+        Assert.assertEquals(8.0, buffer.interpolate(5000), 0);
+    }
+
+    @Test
+    public void testLateSample() {
+        SampleBuffer buffer = new SampleBuffer();
+        buffer.add(1000, 1.0);
+        buffer.add(3000, 3.0);
+        buffer.add(2000, 2.0);
+        buffer.add(4000, 4.0);
+        Assert.assertEquals(4, buffer.drain());
+
+        for (int i = 0; i < 4; i++) {
+            Assert.assertEquals((i + 1) * 1000, buffer.getTimestamp(i));
+            Assert.assertEquals(i + 1, buffer.getValue(i), 0);
+        }
+        Assert.assertEquals(1, buffer.findStartIndex(2500));
+        Assert.assertEquals(-1, buffer.findStartIndex(999));
+        Assert.assertEquals(3, buffer.findStartIndex(4000));
+    }
+
+    @Test
+    public void testDrainUntil() {
+        SampleBuffer buffer = new SampleBuffer();
+        buffer.add(900, 9.0);
+        buffer.add(1500, 15.0);
+        buffer.add(2100, 21.0);
+
+        // the sample after the end of the window is kept for the next one
+        Assert.assertEquals(2, buffer.drain(2000));
+        Assert.assertEquals(1500, buffer.getTimestamp(1));
+
+        buffer.add(2400, 24.0);
+        buffer.add(3000, 30.0);
+        Assert.assertEquals(2, buffer.drain(3000));
+        Assert.assertEquals(2100, buffer.getTimestamp(0));
+        Assert.assertEquals(22.5, buffer.interpolate(2250), 1e-9);
+
+        Assert.assertEquals(1, buffer.drain());
+        Assert.assertEquals(3000, buffer.getTimestamp(0));
+        Assert.assertEquals(0, buffer.drain(4000));
+    }
+
+    @Test
+    public void testBoundedCapacity() {
+        SampleBuffer buffer = new SampleBuffer(100);
+        for (int i = 0; i < 1000; i++) {
+            buffer.add(i, i);
+        }
+
+        // the oldest samples have been overwritten, the slot that could be written is skipped
+        int size = buffer.drain();
+        Assert.assertEquals(127, size);
+        Assert.assertEquals(873, buffer.getTimestamp(0));
+        Assert.assertEquals(999, buffer.getTimestamp(size - 1));
+    }
+
+    @Test
+    public void testConcurrentWriter() throws InterruptedException {
+        final SampleBuffer buffer = new SampleBuffer(64);
+        final int samples = 2000000;
+
+        Thread writer = new Thread(() -> {
+            for (int i = 1; i <= samples; i++) {
+                buffer.add(i, i * 2.0);
+            }
+        });
+        writer.start();
+
+        long last = 0;
+        boolean finished = false;
+        while (!finished) {
+            // drain once more after the writer finished
+            finished = !writer.isAlive();
+            int size = buffer.drain();
+            for (int i = 0; i < size; i++) {
+                long ts = buffer.getTimestamp(i);
+                Assert.assertTrue(ts > last);
+                Assert.assertEquals(ts * 2.0, buffer.getValue(i), 0);
+                last = ts;
+            }
+        }
+        writer.join();
+
+        Assert.assertEquals(samples, last);
+    }
+}
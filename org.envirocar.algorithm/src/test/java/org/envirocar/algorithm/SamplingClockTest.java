@@ -0,0 +1,127 @@
+/**
+ * Copyright (C) 2013 - 2019 the enviroCar community
+ *
+ * This file is part of the enviroCar app.
+ *
+ * The enviroCar app is free software: you can redistribute it and/or
+ * modify it under the terms of the GNU General Public License as published
+ * by the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * The enviroCar app is distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU General
+ * Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License along
+ * with the enviroCar app. If not, see http://www.gnu.org/licenses/.
+ */
+package org.envirocar.algorithm;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import io.reactivex.Scheduler;
+import io.reactivex.observers.TestObserver;
+import io.reactivex.schedulers.TestScheduler;
+
+public class SamplingClockTest {
+
+    @Test
+    public void testFloorBoundary() {
+        Assert.assertEquals(1000, SamplingClock.floorBoundary(1999, 1000));
+        Assert.assertEquals(2000, SamplingClock.floorBoundary(2000, 1000));
+        Assert.assertEquals(-1000, SamplingClock.floorBoundary(-1, 1000));
+    }
+
+    @Test
+    public void testAlignedWindows() {
+        TestScheduler scheduler = new TestScheduler();
+        scheduler.advanceTimeTo(1250, TimeUnit.MILLISECONDS);
+
+        SamplingClock clock = new SamplingClock(1000, scheduler);
+        TestObserver<SamplingClock.Window> observer = clock.windows().test();
+
+        scheduler.advanceTimeTo(1999, TimeUnit.MILLISECONDS);
+        observer.assertNoValues();
+
+        scheduler.advanceTimeTo(4500, TimeUnit.MILLISECONDS);
+        List<SamplingClock.Window> windows = observer.values();
+        Assert.assertEquals(3, windows.size());
+
+        for (int i = 0; i < windows.size(); i++) {
+            SamplingClock.Window window = windows.get(i);
+            Assert.assertEquals(1000 * (i + 1), window.getStart());
+            Assert.assertEquals(1000 * (i + 2), window.getEnd());
+            Assert.assertEquals(0, window.getLateness());
+        }
+        Assert.assertEquals(1500, windows.get(0).getCenter());
+
+        Assert.assertEquals(3, clock.getTicks());
+        Assert.assertEquals(0, clock.getLateTicks());
+        Assert.assertEquals(0, clock.getMissedTicks());
+
+        observer.dispose();
+        scheduler.advanceTimeTo(10000, TimeUnit.MILLISECONDS);
+        Assert.assertEquals(3, observer.values().size());
+    }
+
+    @Test
+    public void testLateAndMissedTicks() {
+        LaggingScheduler scheduler = new LaggingScheduler();
+        SamplingClock clock = new SamplingClock(1000, scheduler);
+        TestObserver<SamplingClock.Window> observer = clock.windows().test();
+
+        scheduler.clock.advanceTimeTo(2000, TimeUnit.MILLISECONDS);
+        Assert.assertEquals(2, observer.values().size());
+
+        // the tick due at 3000 ms only runs at 5500 ms
+        scheduler.lag = 2500;
+        scheduler.clock.advanceTimeTo(3000, TimeUnit.MILLISECONDS);
+
+        List<SamplingClock.Window> windows = observer.values();
+        Assert.assertEquals(5, windows.size());
+        for (int i = 0; i < windows.size(); i++) {
+            Assert.assertEquals(1000 * i, windows.get(i).getStart());
+            Assert.assertEquals(1000 * (i + 1), windows.get(i).getEnd());
+        }
+        Assert.assertEquals(2500, windows.get(2).getLateness());
+        Assert.assertEquals(1500, windows.get(3).getLateness());
+        Assert.assertEquals(500, windows.get(4).getLateness());
+
+        Assert.assertEquals(5, clock.getTicks());
+        Assert.assertEquals(2, clock.getMissedTicks());
+        Assert.assertEquals(1, clock.getLateTicks());
+        Assert.assertEquals("5 windows of 1000 ms, 1 late, 2 missed", clock.describe());
+
+        // the following tick is scheduled relative to the boundary again
+        scheduler.clock.advanceTimeBy(500, TimeUnit.MILLISECONDS);
+        Assert.assertEquals(6, observer.values().size());
+        Assert.assertEquals(0, observer.values().get(5).getLateness());
+        Assert.assertEquals(1, clock.getLateTicks());
+
+        observer.dispose();
+    }
+
+    /**
+     * Runs the tasks on a {@link TestScheduler}, but reports a clock that is ahead by a lag,
+     * as if every task was executed that much later than scheduled.
+     */
+    private static class LaggingScheduler extends Scheduler {
+        private final TestScheduler clock = new TestScheduler();
+        private long lag;
+
+        @Override
+        public Worker createWorker() {
+            return clock.createWorker();
+        }
+
+        @Override
+        public long now(TimeUnit unit) {
+            return clock.now(unit) + unit.convert(lag, TimeUnit.MILLISECONDS);
+        }
+    }
+}
@@ -50,6 +50,7 @@ import org.envirocar.remote.service.FuelingService;
 import org.envirocar.remote.service.TermsOfUseService;
 import org.envirocar.remote.service.TrackService;
 import org.envirocar.remote.service.UserService;
+import org.envirocar.storage.DatabaseMetrics;
 
 import javax.inject.Inject;
 
@@ -87,6 +88,8 @@ public class BaseApplication extends Application {
     protected LocationHandler locationHandler;
     @Inject
     protected AutomaticUploadNotificationHandler automaticUploadHandler;
+    @Inject
+    protected DatabaseMetrics databaseMetrics;
 
 
     private CompositeDisposable disposables = new CompositeDisposable();
@@ -179,6 +182,7 @@ public class BaseApplication extends Application {
     private void setDebugLogging(Boolean isDebugLoggingEnabled) {
         LOG.info("Received change in debug log level. Is enabled=", isDebugLoggingEnabled.toString());
         Logger.initialize(Util.getVersionString(BaseApplication.this), isDebugLoggingEnabled);
+        databaseMetrics.setStatementLoggingEnabled(isDebugLoggingEnabled);
     }
 
     public BaseApplicationComponent getBaseApplicationComponent() {
@@ -50,6 +50,7 @@ public class ApplicationSettings {
     public static final int DEFAULT_BLUETOOTH_DISCOVERY_INTERVAL = 60;
     public static final int DEFAULT_TRACK_TRIM_DURATION = 110;
     public static final boolean DEFAULT_DEBUG_LOGGING = false;
+    public static final boolean DEFAULT_OBD_SESSION_RECORDING = false;
     public static final int DEFAULT_SAMPLING_RATE = 5;
 
 //    // General Settings
@@ -161,6 +162,10 @@ public class ApplicationSettings {
                 .asObservable();
     }
 
+    public static boolean isOBDSessionRecordingEnabled(Context context) {
+        return getSharedPreferences(context).getBoolean(s(context, R.string.prefkey_record_obd_session), DEFAULT_OBD_SESSION_RECORDING);
+    }
+
     public static boolean isDieselConsumptionEnabled(Context context) {
         return getSharedPreferences(context).getBoolean(s(context, R.string.prefkey_enable_diesel_consumption), false);
     }
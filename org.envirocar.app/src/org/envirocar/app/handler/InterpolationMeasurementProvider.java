@@ -23,33 +23,46 @@ import android.location.Location;
 import com.squareup.otto.Subscribe;
 
 import org.envirocar.algorithm.AbstractMeasurementProvider;
+import org.envirocar.algorithm.ResamplingConfiguration;
+import org.envirocar.algorithm.SampleBuffer;
+import org.envirocar.algorithm.SamplingClock;
+import org.envirocar.core.entity.CompactMeasurement;
 import org.envirocar.core.entity.Measurement;
-import org.envirocar.core.entity.MeasurementImpl;
 import org.envirocar.core.events.gps.GpsDOP;
 import org.envirocar.core.events.gps.GpsDOPEvent;
 import org.envirocar.core.events.gps.GpsLocationChangedEvent;
 import org.envirocar.core.logging.Logger;
 import org.envirocar.obd.events.PropertyKeyEvent;
-import org.envirocar.obd.events.Timestamped;
 
 import java.util.ArrayList;
-import java.util.HashMap;
+import java.util.Iterator;
 import java.util.List;
-import java.util.Map;
+import java.util.concurrent.atomic.AtomicReferenceArray;
 
 import io.reactivex.Observable;
+import io.reactivex.Scheduler;
 
 
 /**
- * TODO JavaDoc
+ * Interpolates the values of all properties at the middle of a time window: either the window
+ * covered by the samples received since the last measurement or the window of a
+ * {@link SamplingClock}.
+ * <p>
+ * The samples are kept per property in a {@link SampleBuffer}. Every property must be written
+ * by a single thread, which holds for the OBD values and the GPS values that arrive on their
+ * own threads.
  */
 public class InterpolationMeasurementProvider extends AbstractMeasurementProvider {
     private static final Logger LOG = Logger.getLogger(InterpolationMeasurementProvider.class);
+    private static final long LATENCY_LOG_INTERVAL = 60000;
+    private static final Measurement.PropertyKey[] PROPERTY_KEYS = Measurement.PropertyKey.values();
 
-    private Map<Measurement.PropertyKey, List<PropertyKeyEvent>> bufferedResponses = new
-            HashMap<>();
-    private long firstTimestampToBeConsidered;
+    private final AtomicReferenceArray<SampleBuffer> bufferedSamples =
+            new AtomicReferenceArray<>(PROPERTY_KEYS.length);
+    private final List<Position> pendingPositions = new ArrayList<>();
     private long lastTimestampToBeConsidered;
+    private long lastLatencyLog;
+    private volatile ResamplingConfiguration resampling = ResamplingConfiguration.createDefault();
 
     /*
      * TODO implement listing for GPS DOP Events
@@ -69,15 +82,14 @@ public class InterpolationMeasurementProvider extends AbstractMeasurementProvide
                         if (!emitter.isDisposed())
                             emitter.onError(e);
                     }
+                }
 
-                    Measurement m = createMeasurement();
+                Measurement m = createMeasurement();
+                logStatistics(null);
 
-                    if (m != null && m.getLatitude() != null && m.getLongitude() != null &&
-                            (m.hasProperty(Measurement.PropertyKey.SPEED) ||
-                                    m.hasProperty(Measurement.PropertyKey.GPS_SPEED))) {
-                        LOG.info("Emitting next measuremnet");
-                        emitter.onNext(m);
-                    }
+                if (isComplete(m)) {
+                    LOG.info("Emitting next measuremnet");
+                    emitter.onNext(m);
                 }
             }
             LOG.info("measurements(): finished the collection of data.");
@@ -85,26 +97,132 @@ public class InterpolationMeasurementProvider extends AbstractMeasurementProvide
         });
     }
 
-    private synchronized Measurement createMeasurement() {
+    @Override
+    public Observable<Measurement> measurements(long samplingRate, Scheduler scheduler) {
+        SamplingClock clock = new SamplingClock(samplingRate, scheduler);
+        return clock.windows()
+                .doOnSubscribe(d -> LOG.info("measurements(): start collecting data in windows of "
+                        + samplingRate + " ms"))
+                .map(window -> {
+                    if (window.getLateness() >= samplingRate) {
+                        LOG.warn("Sampling window emitted late: " + window);
+                    }
+                    Measurement m = createMeasurement(window);
+                    logStatistics(clock);
+                    return m;
+                })
+                .filter(this::isComplete)
+                .doOnNext(m -> LOG.info("Emitting next measuremnet"))
+                .doOnDispose(() -> LOG.info("measurements(): finished the collection of data."));
+    }
+
+    /**
+     * @param resampling the strategies used to derive the values of the properties, applies
+     *                   from the next measurement on
+     */
+    public void setResampling(ResamplingConfiguration resampling) {
+        this.resampling = resampling;
+    }
+
+    private boolean isComplete(Measurement m) {
+        return m != null && m.getLatitude() != null && m.getLongitude() != null &&
+                (m.hasProperty(Measurement.PropertyKey.SPEED) ||
+                        m.hasProperty(Measurement.PropertyKey.GPS_SPEED));
+    }
+
+    private void logStatistics(SamplingClock clock) {
+        long now = System.currentTimeMillis();
+        if (now - lastLatencyLog >= LATENCY_LOG_INTERVAL) {
+            lastLatencyLog = now;
+            LOG.info("Ingestion latency: " + getIngestionLatency().describe());
+            if (clock != null) {
+                LOG.info("Sampling clock: " + clock.describe());
+            }
+        }
+    }
+
+    /**
+     * Creates the measurement of a window of the sampling clock. Samples received after the
+     * end of the window are kept for the next one.
+     */
+    private Measurement createMeasurement(SamplingClock.Window window) {
+        Measurement m = new CompactMeasurement();
+        m.setTime(window.getCenter());
+
+        for (int i = 0; i < PROPERTY_KEYS.length; i++) {
+            SampleBuffer samples = bufferedSamples.get(i);
+            if (samples != null && samples.drain(window.getEnd()) > 0) {
+                appendToMeasurement(PROPERTY_KEYS[i], samples, m, window.getStart(),
+                        window.getEnd());
+            }
+        }
+
+        setPosition(m, takePositions(window.getEnd()));
+
+        return m;
+    }
+
+    private List<Position> takePositions(long until) {
+        pendingPositions.addAll(getAndClearPositionBuffer());
+
+        List<Position> result = new ArrayList<>(pendingPositions.size());
+        Iterator<Position> it = pendingPositions.iterator();
+        while (it.hasNext()) {
+            Position pos = it.next();
+            if (pos.getTimestamp() < until) {
+                result.add(pos);
+                it.remove();
+            }
+        }
+        return result;
+    }
+
+    private Measurement createMeasurement() {
+        /**
+         * take the samples received since the last measurement and determine their time window
+         */
+        long firstTimestampToBeConsidered = Long.MAX_VALUE;
+        for (int i = 0; i < PROPERTY_KEYS.length; i++) {
+            SampleBuffer samples = bufferedSamples.get(i);
+            int size = samples != null ? samples.drain() : 0;
+            if (size > 0) {
+                firstTimestampToBeConsidered = Math.min(firstTimestampToBeConsidered,
+                        samples.getTimestamp(0));
+                lastTimestampToBeConsidered = Math.max(lastTimestampToBeConsidered,
+                        samples.getTimestamp(size - 1));
+            }
+        }
+
+        List<Position> positionBuffer = getAndClearPositionBuffer();
+        for (Position pos : positionBuffer) {
+            firstTimestampToBeConsidered = Math.min(firstTimestampToBeConsidered,
+                    pos.getTimestamp());
+            lastTimestampToBeConsidered = Math.max(lastTimestampToBeConsidered,
+                    pos.getTimestamp());
+        }
+
+        if (firstTimestampToBeConsidered == Long.MAX_VALUE) {
+            firstTimestampToBeConsidered = 0;
+        }
+
         /**
          * use the middle of the time window
          */
         long targetTimestamp = firstTimestampToBeConsidered + ((lastTimestampToBeConsidered -
                 firstTimestampToBeConsidered) / 2);
 
-        Measurement m = new MeasurementImpl();
+        Measurement m = new CompactMeasurement();
         m.setTime(targetTimestamp);
 
-        for (Measurement.PropertyKey pk : this.bufferedResponses.keySet()) {
-            appendToMeasurement(pk, this.bufferedResponses.get(pk), m);
-            LOG.info("append key " + pk.toString());
+        for (int i = 0; i < PROPERTY_KEYS.length; i++) {
+            SampleBuffer samples = bufferedSamples.get(i);
+            if (samples != null && samples.getWindowSize() > 0) {
+                appendToMeasurement(PROPERTY_KEYS[i], samples, m, firstTimestampToBeConsidered,
+                        lastTimestampToBeConsidered + 1);
+            }
         }
 
-        /**
-         * clear the buffer of DataResponses to be considered
-         */
-        clearBuffer();
-        setPosition(m, getAndClearPositionBuffer());
+        setPosition(m, positionBuffer);
 
         return m;
     }
@@ -125,9 +243,9 @@ public class InterpolationMeasurementProvider extends AbstractMeasurementProvide
              * find the closest two measurements
              */
             int startIndex = findStartIndex(positionBuffer, targetTimestamp);
-            Position start = positionBuffer.get(startIndex);
-            Position end = startIndex + 1 < positionBuffer.size() ? positionBuffer.get(startIndex
-                    + 1) : null;
+            Position start = positionBuffer.get(Math.max(0, startIndex));
+            Position end = startIndex >= 0 && startIndex + 1 < positionBuffer.size() ?
+                    positionBuffer.get(startIndex + 1) : null;
 
             double lat = interpolateTwo(start.getLatitude(), end != null ? end.getLatitude() :
                             null, targetTimestamp, start.getTimestamp(),
@@ -142,57 +260,30 @@ public class InterpolationMeasurementProvider extends AbstractMeasurementProvide
 
     }
 
-    private void appendToMeasurement(Measurement.PropertyKey pk, List<PropertyKeyEvent>
-            dataResponses, Measurement m) {
-        if (pk == null) {
-            return;
-        }
-
-        switch (pk) {
-            case FUEL_SYSTEM_STATUS_CODE:
-                m.setProperty(pk, first(dataResponses));
-                break;
-            default:
-                m.setProperty(pk, interpolate(dataResponses, m.getTime()));
-                break;
-        }
-
-    }
-
-    private Double first(List<PropertyKeyEvent> dataResponses) {
-        return dataResponses.isEmpty() ? null : dataResponses.get(0).getValue().doubleValue();
-    }
-
-    protected Double interpolate(List<PropertyKeyEvent> dataResponses, long targetTimestamp) {
-        if (dataResponses.size() <= 1) {
-            return first(dataResponses);
+    private void appendToMeasurement(Measurement.PropertyKey pk, SampleBuffer samples,
+                                     Measurement m, long start, long end) {
+        double value = samples.resample(resampling.getStrategy(pk), start, end, m.getTime());
+        if (!Double.isNaN(value)) {
+            m.setProperty(pk, value);
         }
-
-        /**
-         * find the closest two measurements
-         */
-        int startIndex = findStartIndex(dataResponses, targetTimestamp);
-        PropertyKeyEvent start = dataResponses.get(startIndex);
-        PropertyKeyEvent end = startIndex + 1 < dataResponses.size() ? dataResponses.get
-                (startIndex + 1) : null;
-
-        return interpolateTwo(start.getValue(), end != null ? end.getValue() : null,
-                targetTimestamp, start.getTimestamp(),
-                end != null ? end.getTimestamp() : 0L);
     }
 
-    private int findStartIndex(List<? extends Timestamped> dataResponses, long targetTimestamp) {
-        int i = 0;
-        while (i + 1 < dataResponses.size()) {
-            if (dataResponses.get(i).getTimestamp() <= targetTimestamp
-                    && dataResponses.get(i + 1).getTimestamp() >= targetTimestamp) {
-                return i;
+    /**
+     * @return the index of the last position at or before the timestamp, -1 if all positions
+     * are later
+     */
+    private int findStartIndex(List<Position> positions, long targetTimestamp) {
+        int low = 0;
+        int high = positions.size() - 1;
+        while (low <= high) {
+            int mid = (low + high) >>> 1;
+            if (positions.get(mid).getTimestamp() <= targetTimestamp) {
+                low = mid + 1;
+            } else {
+                high = mid - 1;
             }
-
-            i++;
         }
-
-        return 0;
+        return high;
     }
 
     /**
@@ -214,29 +305,13 @@ public class InterpolationMeasurementProvider extends AbstractMeasurementProvide
             return start.doubleValue();
         }
 
-        float duration = (float) (endTimestamp - startTimestamp);
-
-        float endWeight = (targetTimestamp - startTimestamp) / duration;
-        float startWeight = (endTimestamp - targetTimestamp) / duration;
-
-        return start.doubleValue() * startWeight + end.doubleValue() * endWeight;
-    }
-
-    private void clearBuffer() {
-        for (List<PropertyKeyEvent> drl : this.bufferedResponses.values()) {
-            drl.clear();
-        }
-
-        /**
-         * reset the first timestamp
-         */
-        this.firstTimestampToBeConsidered = 0;
+        return SampleBuffer.interpolate(start.doubleValue(), end.doubleValue(),
+                targetTimestamp, startTimestamp, endTimestamp);
     }
 
     @Override
-    @Subscribe
-    public synchronized void consider(PropertyKeyEvent pke) {
-        updateTimestamps(pke);
+    public void consider(PropertyKeyEvent pke) {
+        recordIngestion(pke);
 
         Measurement.PropertyKey pk = pke.getPropertyKey();
 
@@ -244,19 +319,17 @@ public class InterpolationMeasurementProvider extends AbstractMeasurementProvide
             return;
         }
 
-        if (bufferedResponses.containsKey(pk)) {
-            bufferedResponses.get(pk).add(pke);
-        } else {
-            List<PropertyKeyEvent> list = new ArrayList<>();
-            list.add(pke);
-            bufferedResponses.put(pk, list);
-        }
+        consider(pk, pke.getTimestamp(), pke.getValue().doubleValue());
     }
 
-    @Override
-    public synchronized void newPosition(Position pos) {
-        super.newPosition(pos);
-        updateTimestamps(pos);
+    private void consider(Measurement.PropertyKey pk, long timestamp, double value) {
+        SampleBuffer samples = bufferedSamples.get(pk.ordinal());
+        if (samples == null) {
+            // only the writing thread of the property creates its buffer
+            samples = new SampleBuffer();
+            bufferedSamples.set(pk.ordinal(), samples);
+        }
+        samples.add(timestamp, value);
     }
 
     @Subscribe
@@ -267,35 +340,19 @@ public class InterpolationMeasurementProvider extends AbstractMeasurementProvide
         newPosition(new Position(now, location.getLatitude(), location.getLongitude()));
 
         if (location.hasAccuracy()) {
-            consider(new PropertyKeyEvent(Measurement.PropertyKey.GPS_ACCURACY, location
-                    .getAccuracy(), now));
+            consider(Measurement.PropertyKey.GPS_ACCURACY, now, location.getAccuracy());
         }
 
         if (location.hasAltitude()) {
-            consider(new PropertyKeyEvent(Measurement.PropertyKey.GPS_ALTITUDE, location
-                    .getAltitude(), now));
+            consider(Measurement.PropertyKey.GPS_ALTITUDE, now, location.getAltitude());
         }
 
         if (location.hasBearing()) {
-            consider(new PropertyKeyEvent(Measurement.PropertyKey.GPS_BEARING, location
-                    .getBearing(), now));
+            consider(Measurement.PropertyKey.GPS_BEARING, now, location.getBearing());
         }
 
         if (location.hasSpeed()) {
-            consider(new PropertyKeyEvent(
-                    Measurement.PropertyKey.GPS_SPEED, location.getSpeed() * 3.6f, now));
-        }
-    }
-
-    private void updateTimestamps(Timestamped dr) {
-        this.lastTimestampToBeConsidered = Math.max(this.lastTimestampToBeConsidered, dr
-                .getTimestamp());
-
-        if (this.firstTimestampToBeConsidered == 0) {
-            this.firstTimestampToBeConsidered = dr.getTimestamp();
-        } else {
-            this.firstTimestampToBeConsidered = Math.min(this.firstTimestampToBeConsidered, dr
-                    .getTimestamp());
+            consider(Measurement.PropertyKey.GPS_SPEED, now, location.getSpeed() * 3.6f);
         }
     }
 
@@ -305,15 +362,15 @@ public class InterpolationMeasurementProvider extends AbstractMeasurementProvide
         long now = System.currentTimeMillis();
 
         if (dop.hasHdop()) {
-            consider(new PropertyKeyEvent(Measurement.PropertyKey.GPS_HDOP, dop.getHdop(), now));
+            consider(Measurement.PropertyKey.GPS_HDOP, now, dop.getHdop());
         }
 
         if (dop.hasVdop()) {
-            consider(new PropertyKeyEvent(Measurement.PropertyKey.GPS_VDOP, dop.getVdop(), now));
+            consider(Measurement.PropertyKey.GPS_VDOP, now, dop.getVdop());
         }
 
         if (dop.hasPdop()) {
-            consider(new PropertyKeyEvent(Measurement.PropertyKey.GPS_PDOP, dop.getPdop(), now));
+            consider(Measurement.PropertyKey.GPS_PDOP, now, dop.getPdop());
         }
     }
 
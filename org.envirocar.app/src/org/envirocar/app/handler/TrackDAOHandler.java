@@ -21,6 +21,7 @@ package org.envirocar.app.handler;
 import android.content.Context;
 
 import org.envirocar.core.entity.Track;
+import org.envirocar.core.entity.TrackColumns;
 import org.envirocar.core.exception.DataRetrievalFailureException;
 import org.envirocar.core.exception.DataUpdateFailureException;
 import org.envirocar.core.exception.NotConnectedException;
@@ -32,7 +33,6 @@ import org.envirocar.core.util.TrackMetadata;
 import org.envirocar.core.util.Util;
 import org.envirocar.core.EnviroCarDB;
 
-import java.util.ArrayList;
 
 import javax.inject.Inject;
 import javax.inject.Singleton;
@@ -175,23 +175,15 @@ public class TrackDAOHandler {
 
     public Track fetchRemoteTrack(Track remoteTrack) throws NotConnectedException,
             UnauthorizedException, DataRetrievalFailureException {
-        Track downloadedTrack = daoProvider.getTrackDAO().getTrackById(remoteTrack
-                .getRemoteID());
-
-        // Deep copy... TODO improve this.
-        remoteTrack.setName(downloadedTrack.getName());
-        remoteTrack.setDescription(downloadedTrack.getDescription());
-        remoteTrack.setMeasurements(new ArrayList<>(downloadedTrack.getMeasurements()));
-        remoteTrack.setCar(downloadedTrack.getCar());
-        remoteTrack.setTrackStatus(downloadedTrack.getTrackStatus());
-        remoteTrack.setMetadata(downloadedTrack.getMetadata());
-
-        remoteTrack.setStartTime(downloadedTrack.getStartTime());
-        remoteTrack.setEndTime(downloadedTrack.getEndTime());
+        // The properties of the downloaded track are applied to the remote track, and its
+        // measurements are read as columns while they are streamed.
+        TrackColumns columns = daoProvider.getTrackDAO().getTrackColumnsById(remoteTrack
+                .getRemoteID(), remoteTrack);
         remoteTrack.setDownloadState(Track.DownloadState.DOWNLOADED);
+        remoteTrack.setLazyMeasurements(true);
 
         try {
-            enviroCarDB.insertTrack(remoteTrack);
+            enviroCarDB.insertTrack(remoteTrack, columns);
         } catch (TrackSerializationException e) {
             LOGGER.error(e.getMessage(), e);
         }
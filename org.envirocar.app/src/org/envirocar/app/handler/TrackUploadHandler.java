@@ -172,7 +172,7 @@ public class TrackUploadHandler {
     }
 
     private Observable<Track> uploadTrack(Track track) {
-        return Observable.just(track)
+        return fetchMeasurementsForUpload(track)
                 // general validation of the track
                 .map(validateRequirementsForUpload())
                 // assets the car of the track and, in case it is not uploaded, it uploads the
@@ -189,6 +189,28 @@ public class TrackUploadHandler {
                 .lift(new UploadExceptionMappingOperator());
     }
 
+    /**
+     * Lazily loaded tracks get their measurements streamed from the database right before they
+     * are uploaded. Hence, only the measurements of the track that is currently uploaded are
+     * held in memory, even when uploading all local tracks.
+     *
+     * @param track the track to upload.
+     * @return an observable emitting the track with its measurements.
+     */
+    private Observable<Track> fetchMeasurementsForUpload(Track track) {
+        if (!track.isLazyLoadingMeasurements()) {
+            return Observable.just(track);
+        }
+        return mEnviroCarDB.getMeasurementsFlowable(track.getTrackID())
+                .toList()
+                .map(measurements -> {
+                    track.setMeasurements(measurements);
+                    track.setLazyMeasurements(false);
+                    return track;
+                })
+                .toObservable();
+    }
+
     private Function<Track, Track> validateRequirementsForUpload() {
         return track -> {
             if (!track.isLocalTrack()) {
@@ -71,7 +71,8 @@ public class UploadAllTracks extends Interactor<UploadAllTracks.Result, Activity
     protected Observable<Result> buildObservable(Activity activity) {
         return Observable.create(emitter -> {
             AtomicInteger numberOfTracks = new AtomicInteger();
-            Observable.defer(() -> enviroCarDB.getAllLocalTracks())
+            // the measurements of a track are only loaded when the track gets uploaded.
+            Observable.defer(() -> enviroCarDB.getAllLocalTracks(true))
                     .concatMap(tracks -> {
                         numberOfTracks.set(tracks.size());
                         return uploadHandler.uploadTracksObservable(tracks);
@@ -37,11 +37,17 @@ import org.envirocar.core.EnviroCarDB;
 
 import java.text.DateFormat;
 import java.text.SimpleDateFormat;
+import java.util.ArrayList;
 import java.util.Date;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
 
 import io.reactivex.Observable;
 import io.reactivex.ObservableOnSubscribe;
 import io.reactivex.ObservableTransformer;
+import io.reactivex.Scheduler;
+import io.reactivex.disposables.Disposable;
+import io.reactivex.schedulers.Schedulers;
 
 /**
  * @author dewall
@@ -50,10 +56,20 @@ public class TrackDatabaseSink {
     private static final Logger LOG = Logger.getLogger(TrackDatabaseSink.class);
     private static final DateFormat format = SimpleDateFormat.getDateTimeInstance();
 
+    // group commit configuration, i.e. pending measurements get flushed after either of both.
+    private static final int DEFAULT_FLUSH_COUNT = 10;
+    private static final long DEFAULT_FLUSH_INTERVAL = 5000;
+
     private final Context context;
     private final CarPreferenceHandler carHandler;
     private final EnviroCarDB enviroCarDB;
     private final Bus eventBus;
+    private final int flushCount;
+    private final long flushInterval;
+    private final Scheduler flushScheduler;
+
+    private final List<Measurement> pendingMeasurements = new ArrayList<>();
+    private Disposable scheduledFlush;
     private Track track;
 
     /**
@@ -64,10 +80,32 @@ public class TrackDatabaseSink {
      * @param enviroCarDB
      */
     public TrackDatabaseSink(Context context, CarPreferenceHandler carHandler, EnviroCarDB enviroCarDB, Bus eventBus) {
+        this(context, carHandler, enviroCarDB, eventBus, DEFAULT_FLUSH_COUNT, DEFAULT_FLUSH_INTERVAL,
+                Schedulers.io());
+    }
+
+    /**
+     * Constructor.
+     *
+     * @param context
+     * @param carHandler
+     * @param enviroCarDB
+     * @param eventBus
+     * @param flushCount    the number of buffered measurements that triggers a database commit.
+     * @param flushInterval the maximum time in ms measurements are buffered before being committed.
+     * @param flushScheduler the scheduler that commits the buffered measurements once the flush
+     *                       interval has elapsed, even if no further measurement arrives.
+     */
+    public TrackDatabaseSink(Context context, CarPreferenceHandler carHandler, EnviroCarDB enviroCarDB,
+                             Bus eventBus, int flushCount, long flushInterval,
+                             Scheduler flushScheduler) {
         this.context = context;
         this.carHandler = carHandler;
         this.enviroCarDB = enviroCarDB;
         this.eventBus = eventBus;
+        this.flushCount = flushCount;
+        this.flushInterval = flushInterval;
+        this.flushScheduler = flushScheduler;
     }
 
     /**
@@ -89,9 +127,7 @@ public class TrackDatabaseSink {
             }
 
             try {
-                // inserting measurement
                 measurement.setTrackId(track.getTrackID());
-                enviroCarDB.insertMeasurement(measurement);
 
                 // updating track information
                 track.setEndTime(measurement.getTime());
@@ -104,11 +140,10 @@ public class TrackDatabaseSink {
                     track.setLength(track.getLength() + distanceToLast);
                 }
 
-                // update track in databse
+                // buffer the measurement for the next group commit
                 track.getMeasurements().add(measurement);
-                enviroCarDB.updateTrack(track);
+                bufferMeasurement(measurement);
                 eventBus.post(new RecordingNewMeasurementEvent(measurement));
-                LOG.info("Measurement stored");
             } catch (MeasurementSerializationException e) {
                 LOG.error(e.getMessage(), e);
                 emitter.onError(e);
@@ -133,11 +168,64 @@ public class TrackDatabaseSink {
         return track;
     }
 
+    private void bufferMeasurement(Measurement measurement)
+            throws MeasurementSerializationException {
+        synchronized (pendingMeasurements) {
+            pendingMeasurements.add(measurement);
+            if (pendingMeasurements.size() >= flushCount) {
+                flushPendingMeasurements();
+            } else if (scheduledFlush == null) {
+                // the interval is measured on the wall clock, so that the buffered measurements
+                // also get committed when the measurements stop arriving.
+                scheduledFlush = flushScheduler.scheduleDirect(this::flushScheduled,
+                        flushInterval, TimeUnit.MILLISECONDS);
+            }
+        }
+    }
+
+    private void flushScheduled() {
+        synchronized (pendingMeasurements) {
+            scheduledFlush = null;
+            try {
+                flushPendingMeasurements();
+            } catch (MeasurementSerializationException e) {
+                // the measurements stay buffered and get committed with the next flush.
+                LOG.error(e.getMessage(), e);
+            }
+        }
+    }
+
+    private void flushPendingMeasurements() throws MeasurementSerializationException {
+        synchronized (pendingMeasurements) {
+            if (scheduledFlush != null) {
+                scheduledFlush.dispose();
+                scheduledFlush = null;
+            }
+            if (pendingMeasurements.isEmpty() || track == null)
+                return;
+
+            // only clear the buffer once the measurements have been committed.
+            enviroCarDB.insertMeasurements(track, pendingMeasurements);
+            LOG.info(String.format("%s measurements stored", pendingMeasurements.size()));
+            pendingMeasurements.clear();
+        }
+    }
+
     private void finishTrack(Track track) {
         if (track == null)
             return;
         LOG.info(String.format("Finishing current track %s", track.getDescription()));
 
+        synchronized (pendingMeasurements) {
+            try {
+                flushPendingMeasurements();
+            } catch (MeasurementSerializationException e) {
+                LOG.error(String.format("Unable to store the last %s measurements",
+                        pendingMeasurements.size()), e);
+                pendingMeasurements.clear();
+            }
+        }
+
         if (track.getMeasurements().size() <= 1) {
             LOG.info("Track had not enough measurements. Deleting track.");
             enviroCarDB.deleteTrack(track);
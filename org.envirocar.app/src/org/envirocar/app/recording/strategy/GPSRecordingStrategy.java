@@ -239,7 +239,8 @@ public class GPSRecordingStrategy implements LifecycleObserver, RecordingStrateg
                 eventBus.register(measurementProvider);
             } catch (Exception e) {
             }
-            return upstream.flatMap(aString -> measurementProvider.measurements(samplingRate));
+            return upstream.flatMap(aString ->
+                    measurementProvider.measurements(samplingRate, Schedulers.io()));
         };
     }
 
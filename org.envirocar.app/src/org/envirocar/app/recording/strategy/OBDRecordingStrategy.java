@@ -36,6 +36,7 @@ import org.envirocar.app.recording.events.EngineNotRunningEvent;
 import org.envirocar.app.recording.notification.SpeechOutput;
 import org.envirocar.app.recording.provider.LocationProvider;
 import org.envirocar.app.recording.provider.TrackDatabaseSink;
+import org.envirocar.app.recording.strategy.obd.OBDAdapterMemory;
 import org.envirocar.app.recording.strategy.obd.OBDConnectionHandler;
 import org.envirocar.core.entity.Car;
 import org.envirocar.core.entity.Measurement;
@@ -48,14 +49,23 @@ import org.envirocar.core.logging.Logger;
 import org.envirocar.core.trackprocessing.consumption.ConsumptionAlgorithm;
 import org.envirocar.core.trackprocessing.consumption.LoadBasedEnergyConsumptionAlgorithm;
 import org.envirocar.core.trackprocessing.statistics.CalculatedMAFWithStaticVolumetricEfficiency;
+import org.envirocar.core.util.Util;
 import org.envirocar.obd.ConnectionListener;
 import org.envirocar.obd.OBDController;
 import org.envirocar.obd.OBDSchedulers;
 import org.envirocar.obd.bluetooth.BluetoothSocketWrapper;
 import org.envirocar.obd.events.SpeedUpdateEvent;
 import org.envirocar.obd.exception.AllAdaptersFailedException;
+import org.envirocar.obd.session.SessionRecorder;
 
+import java.io.File;
+import java.io.FileOutputStream;
 import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.text.SimpleDateFormat;
+import java.util.Date;
+import java.util.Locale;
 import java.util.concurrent.TimeUnit;
 
 import io.reactivex.Observable;
@@ -73,6 +83,8 @@ import io.reactivex.schedulers.Schedulers;
 public class OBDRecordingStrategy implements RecordingStrategy {
     private static final Logger LOG = Logger.getLogger(OBDRecordingStrategy.class);
     protected static final int MAX_RECONNECT_COUNT = 2;
+    private static final String SESSION_PREFIX = "obd-session-";
+    private static final String SESSION_EXTENSION = ".ecos";
 
     protected Context context;
     protected Bus eventBus;
@@ -226,8 +238,19 @@ public class OBDRecordingStrategy implements RecordingStrategy {
             LOG.info(String.format("OBDConnectionService.onDeviceConntected(%s)", socket.getRemoteDeviceName()));
 
             try {
+                // the raw traffic is only recorded when enabled in the debug settings
+                final SessionRecorder recorder =
+                        ApplicationSettings.isOBDSessionRecordingEnabled(context) ?
+                                createSessionRecorder(socket) : null;
+                InputStream in = socket.getInputStream();
+                OutputStream out = socket.getOutputStream();
+                if (recorder != null) {
+                    in = recorder.wrap(in);
+                    out = recorder.wrap(out);
+                }
 
-                OBDController controller = new OBDController(socket, new ConnectionListener() {
+                OBDController controller = new OBDController(in, out, socket.getRemoteDeviceName(),
+                        socket.getRemoteDeviceAddress(), new ConnectionListener() {
                     int reconnectCount = 0;
 
                     @Override
@@ -274,7 +297,11 @@ public class OBDRecordingStrategy implements RecordingStrategy {
                             speechOutput.doTextToSpeech("Connection lost. Trying to reconnect.");
                         }
                     }
-                }, eventBus);
+                }, eventBus, new OBDAdapterMemory(context, carPreferenceHandler.getCar()));
+
+                // the values go straight to the measurement provider, not over the event bus
+                disposables.add(controller.getPropertyKeyEvents()
+                        .subscribe(measurementProvider::consider, LOG::error));
 
                 disposables.add(new Disposable() {
                     private boolean isDisposed = false;
@@ -292,6 +319,7 @@ public class OBDRecordingStrategy implements RecordingStrategy {
                         } catch (Exception e) {
                             LOG.error(e);
                         }
+                        closeSessionRecorder(recorder);
                         isDisposed = true;
                     }
 
@@ -308,6 +336,37 @@ public class OBDRecordingStrategy implements RecordingStrategy {
         }));
     }
 
+    /**
+     * Creates a recorder for the raw traffic of the connection in the enviroCar folder of the
+     * external storage. The recording can be replayed with the session replay of the obd module.
+     *
+     * @param socket the connected socket
+     * @return the recorder, or null if the recording file could not be created
+     */
+    private SessionRecorder createSessionRecorder(BluetoothSocketWrapper socket) {
+        String fileName = SESSION_PREFIX + new SimpleDateFormat("yyyy-MM-dd'T'HH-mm-ss",
+                Locale.getDefault()).format(new Date()) + SESSION_EXTENSION;
+        try {
+            File file = Util.createFileOnExternalStorage(fileName);
+            LOG.info("Recording the OBD session to " + file.getAbsolutePath());
+            return new SessionRecorder(new FileOutputStream(file), socket.getRemoteDeviceName());
+        } catch (IOException e) {
+            LOG.warn("Could not create the OBD session recording. Continuing without.", e);
+            return null;
+        }
+    }
+
+    private void closeSessionRecorder(SessionRecorder recorder) {
+        if (recorder == null) {
+            return;
+        }
+        try {
+            recorder.close();
+        } catch (IOException e) {
+            LOG.warn("Could not close the OBD session recording.", e);
+        }
+    }
+
     private ObservableTransformer<BluetoothSocketWrapper, Measurement> receiveMeasurements() {
         return upstream -> {
             final int samplingRate = ApplicationSettings.getSamplingRate(context) * 1000;
@@ -315,7 +374,8 @@ public class OBDRecordingStrategy implements RecordingStrategy {
                 eventBus.register(measurementProvider);
             } catch (Exception e) {
             }
-            return upstream.flatMap(socket -> measurementProvider.measurements(samplingRate));
+            return upstream.flatMap(socket ->
+                    measurementProvider.measurements(samplingRate, Schedulers.io()));
         };
     }
 
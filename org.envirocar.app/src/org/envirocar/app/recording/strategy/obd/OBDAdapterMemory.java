@@ -0,0 +1,74 @@
+/**
+ * Copyright (C) 2013 - 2019 the enviroCar community
+ *
+ * This file is part of the enviroCar app.
+ *
+ * The enviroCar app is free software: you can redistribute it and/or
+ * modify it under the terms of the GNU General Public License as published
+ * by the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * The enviroCar app is distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU General
+ * Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License along
+ * with the enviroCar app. If not, see http://www.gnu.org/licenses/.
+ */
+package org.envirocar.app.recording.strategy.obd;
+
+import android.content.Context;
+import android.content.SharedPreferences;
+
+import org.envirocar.core.entity.Car;
+import org.envirocar.obd.AdapterMemory;
+import org.envirocar.obd.VehicleCapabilities;
+
+/**
+ * Remembers the OBD adapter implementation that last succeeded for every Bluetooth device and
+ * the capabilities of the vehicles connected via the device in the shared preferences. The
+ * vehicles are distinguished by the car selected for the recording.
+ */
+public class OBDAdapterMemory implements AdapterMemory {
+    private static final String PREFERENCES_NAME = "obd_adapter_memory";
+    private static final String VEHICLE_KEY_PREFIX = "vehicle:";
+
+    private final SharedPreferences preferences;
+    private final String carId;
+
+    /**
+     * Constructor
+     *
+     * @param context The context of the current scope.
+     * @param car     the car selected for the recording, may be null
+     */
+    public OBDAdapterMemory(Context context, Car car) {
+        this.preferences = context.getSharedPreferences(PREFERENCES_NAME, Context.MODE_PRIVATE);
+        this.carId = car != null && car.getId() != null ? car.getId() : "";
+    }
+
+    @Override
+    public String getAdapter(String deviceAddress) {
+        return preferences.getString(deviceAddress, null);
+    }
+
+    @Override
+    public void setAdapter(String deviceAddress, String adapterClass) {
+        preferences.edit().putString(deviceAddress, adapterClass).apply();
+    }
+
+    @Override
+    public VehicleCapabilities getVehicleCapabilities(String deviceAddress) {
+        return VehicleCapabilities.decode(preferences.getString(vehicleKey(deviceAddress), null));
+    }
+
+    @Override
+    public void setVehicleCapabilities(String deviceAddress, VehicleCapabilities capabilities) {
+        preferences.edit().putString(vehicleKey(deviceAddress), capabilities.encode()).apply();
+    }
+
+    private String vehicleKey(String deviceAddress) {
+        return VEHICLE_KEY_PREFIX + deviceAddress + "/" + carId;
+    }
+}
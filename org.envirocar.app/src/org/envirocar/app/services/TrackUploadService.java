@@ -83,7 +83,7 @@ public class TrackUploadService extends BaseInjectorService {
 
 
         // TODO change it to clean u
-        List<Track> localTrackList = enviroCarDB.getAllLocalTracks().blockingFirst();
+        List<Track> localTrackList = enviroCarDB.getAllLocalTracks(true).blockingFirst();
         if (localTrackList.size() > 0) {
             LOG.info(String.format("%s local tracks to upload", localTrackList.size()));
 
@@ -58,6 +58,7 @@ import org.envirocar.core.logging.LocalFileHandler;
 import org.envirocar.core.logging.Logger;
 import org.envirocar.core.util.Util;
 import org.envirocar.core.utils.CarUtils;
+import org.envirocar.storage.DatabaseMetrics;
 
 import java.io.File;
 import java.io.FileFilter;
@@ -88,6 +89,7 @@ public class SendLogFileActivity extends BaseInjectorActivity {
     private static final DateFormat dayFormat = new SimpleDateFormat("yyyy-MM-dd", Locale.getDefault());
     private static final String PREFIX = "report-";
     private static final String OTHER_DETAILS_PREFIX = "extra-info";
+    private static final String DATABASE_METRICS_FILE = "database-metrics.txt";
     private static final String EXTENSION = ".zip";
 
     @BindView(R.id.report_issue_header)
@@ -111,6 +113,8 @@ public class SendLogFileActivity extends BaseInjectorActivity {
     protected CarPreferenceHandler mCarPrefHandler;
     @Inject
     protected BluetoothHandler mBluetoothHandler;
+    @Inject
+    protected DatabaseMetrics mDatabaseMetrics;
 
     protected List<CheckBoxItem> checkBoxItems;
     protected List<String> subjectHeaders;
@@ -427,11 +431,19 @@ public class SendLogFileActivity extends BaseInjectorActivity {
         File targetFile = Util.createFileOnExternalStorage(PREFIX
                 + format.format(new Date()) + EXTENSION);
 
-        Util.zip(findAllLogFiles(), targetFile.toURI().getPath());
+        List<File> files = new ArrayList<>(findAllLogFiles());
+        files.add(createDatabaseMetricsFile());
+        Util.zip(files, targetFile.toURI().getPath());
 
         return targetFile;
     }
 
+    private File createDatabaseMetricsFile() throws IOException {
+        File metricsFile = Util.createFileOnExternalStorage(DATABASE_METRICS_FILE);
+        Util.saveContentsToFile(mDatabaseMetrics.dump(), metricsFile);
+        return metricsFile;
+    }
+
     private void removeOldReportBundles() throws IOException {
         File baseFolder = Util.resolveExternalStorageBaseFolder();
 
@@ -144,7 +144,16 @@ public class MapExpandedActivity extends BaseInjectorActivity {
         // Get the track to show.
         int trackID = getIntent().getIntExtra(EXTRA_TRACKID, -1);
         Track.TrackId trackid = new Track.TrackId(trackID);
-        Track track = enviroCarDB.getTrack(trackid)
+        // the map only needs the level of detail it is able to display.
+        int resolution = getResources().getDisplayMetrics().widthPixels
+                * TrackMapLayer.MEASUREMENTS_PER_PIXEL;
+        Track track = enviroCarDB.getTrack(trackid, true)
+                .flatMap(lazyTrack -> enviroCarDB.getMeasurementsForResolution(trackid, resolution)
+                        .map(measurements -> {
+                            lazyTrack.setMeasurements(measurements);
+                            lazyTrack.setLazyMeasurements(false);
+                            return lazyTrack;
+                        }))
                 .subscribeOn(Schedulers.io())
                 .blockingFirst();
         this.track = track;
@@ -58,11 +58,12 @@ import org.envirocar.core.EnviroCarDB;
 import org.envirocar.core.entity.Car;
 import org.envirocar.core.entity.Measurement;
 import org.envirocar.core.entity.Track;
+import org.envirocar.core.entity.TrackColumns;
+import org.envirocar.core.entity.internal.TrackSummary;
 import org.envirocar.core.exception.FuelConsumptionException;
-import org.envirocar.core.exception.NoMeasurementsException;
 import org.envirocar.core.exception.UnsupportedFuelTypeException;
 import org.envirocar.core.logging.Logger;
-import org.envirocar.core.trackprocessing.statistics.TrackStatisticsProvider;
+import org.envirocar.core.trackprocessing.statistics.TrackStatisticsProcessor;
 import org.envirocar.core.utils.CarUtils;
 
 import java.text.DateFormat;
@@ -77,6 +78,9 @@ import javax.inject.Inject;
 
 import butterknife.BindView;
 import butterknife.ButterKnife;
+import io.reactivex.Observable;
+import io.reactivex.android.schedulers.AndroidSchedulers;
+import io.reactivex.disposables.Disposable;
 import io.reactivex.schedulers.Schedulers;
 
 
@@ -173,6 +177,9 @@ public class TrackDetailsActivity extends BaseInjectorActivity {
 
 
     private Track track;
+    private TrackColumns mapColumns;
+    private Disposable loadDisposable;
+    private Disposable stopsDisposable;
     TrackMapLayer trackMapOverlay;
     protected MapboxMap mapboxMap;
     protected Style mapStyle;
@@ -201,12 +208,34 @@ public class TrackDetailsActivity extends BaseInjectorActivity {
         // Get the track to show.
         int mTrackID = getIntent().getIntExtra(EXTRA_TRACKID, -1);
         Track.TrackId trackid = new Track.TrackId(mTrackID);
-        Track track = mEnvirocarDB.getTrack(trackid)
+
+        // the statistics are taken from the summary instead of the measurements of the track,
+        // and the map only needs as many measurements as it is able to display.
+        int mapResolution = getResources().getDisplayMetrics().widthPixels *
+                TrackMapLayer.MEASUREMENTS_PER_PIXEL;
+        this.loadDisposable = Observable.zip(
+                mEnvirocarDB.getTrack(trackid, true).take(1),
+                mEnvirocarDB.getTrackSummary(trackid).take(1),
+                mEnvirocarDB.getTrackColumnsForResolution(trackid, mapResolution).take(1),
+                (track, summary, columns) -> {
+                    this.track = track;
+                    this.mapColumns = columns;
+                    return summary;
+                })
                 .subscribeOn(Schedulers.io())
-                .blockingFirst();
-        this.track = track;
+                .observeOn(AndroidSchedulers.mainThread())
+                .subscribe(this::initTrackViews, e -> LOG.error(e.getMessage(), e));
+
+        updateStatusBarColor();
+        mFAB.setOnClickListener(v -> {
+            TrackStatisticsActivity.createInstance(TrackDetailsActivity.this, mTrackID);
+        });
+
+        mMapViewContainer.setOnClickListener(v -> MapExpandedActivity.createInstance(TrackDetailsActivity.this, mTrackID));
+    }
 
-        this.trackMapOverlay = new TrackMapLayer(track);
+    private void initTrackViews(TrackSummary summary) {
+        this.trackMapOverlay = new TrackMapLayer(track, mapColumns);
 
         String itemTitle = track.getName();
         CollapsingToolbarLayout collapsingToolbarLayout = findViewById(R.id.collapsing_toolbar);
@@ -219,14 +248,7 @@ public class TrackDetailsActivity extends BaseInjectorActivity {
 
         // Initialize the mapview and the trackpath
         initMapView();
-        initViewValues(track);
-
-        updateStatusBarColor();
-        mFAB.setOnClickListener(v -> {
-            TrackStatisticsActivity.createInstance(TrackDetailsActivity.this, mTrackID);
-        });
-
-        mMapViewContainer.setOnClickListener(v -> MapExpandedActivity.createInstance(TrackDetailsActivity.this, mTrackID));
+        initViewValues(track, summary);
     }
 
     private void updateStatusBarColor() {
@@ -287,17 +309,25 @@ public class TrackDetailsActivity extends BaseInjectorActivity {
     }
 
     private void setUpStartStopIcons(@NonNull Style loadedMapStyle) {
-        int size = track.getMeasurements().size();
-        if (size >= 2) {
+        // the level of detail of the map keeps the first and last measurement of the track.
+        int first = -1;
+        int last = -1;
+        for (int row = 0; row < mapColumns.size(); row++) {
+            if (mapColumns.hasPosition(row)) {
+                first = first < 0 ? row : first;
+                last = row;
+            }
+        }
+        if (first >= 0 && last > first) {
             //Set Source with start and stop marker
-            Double lng = track.getMeasurements().get(0).getLongitude();
-            Double lat = track.getMeasurements().get(0).getLatitude();
+            double lng = mapColumns.getLongitudes()[first];
+            double lat = mapColumns.getLatitudes()[first];
             GeoJsonSource geoJsonSource = new GeoJsonSource("marker-source1", Feature.fromGeometry(
                     Point.fromLngLat(lng, lat)));
             loadedMapStyle.addSource(geoJsonSource);
 
-            lng = track.getMeasurements().get(size - 1).getLongitude();
-            lat = track.getMeasurements().get(size - 1).getLatitude();
+            lng = mapColumns.getLongitudes()[last];
+            lat = mapColumns.getLatitudes()[last];
             geoJsonSource = new GeoJsonSource("marker-source2", Feature.fromGeometry(
                     Point.fromLngLat(lng, lat)));
             loadedMapStyle.addSource(geoJsonSource);
@@ -327,10 +357,10 @@ public class TrackDetailsActivity extends BaseInjectorActivity {
         }
     }
 
-    private void initViewValues(Track track) {
+    private void initViewValues(Track track, TrackSummary summary) {
         try {
             final String text = UTC_DATE_FORMATTER.format(new Date(track.getDuration()));
-            mDistanceText.setText(String.format("%s km", DECIMAL_FORMATTER_TWO_DIGITS.format(((TrackStatisticsProvider) track).getDistanceOfTrack())));
+            mDistanceText.setText(String.format("%s km", DECIMAL_FORMATTER_TWO_DIGITS.format(summary.getDistance())));
             mDurationText.setText(text);
 
             String ee = new SimpleDateFormat("EEEE").format(new Date(track.getStartTime()));
@@ -343,20 +373,27 @@ public class TrackDetailsActivity extends BaseInjectorActivity {
 
             // show consumption and emission either when the fuel type of the track's car is
             // gasoline or the beta setting has been enabled.
-            if (!track.hasProperty(Measurement.PropertyKey.SPEED)) {
+            if (!summary.hasProperty(Measurement.PropertyKey.SPEED)) {
                 mConsumptionContainer.setVisibility(View.GONE);
                 mCo2Container.setVisibility(View.GONE);
                 descriptionTv.setText(R.string.gps_track_details);
             } else if (track.getCar().getFuelType() == Car.FuelType.GASOLINE || ApplicationSettings.isDieselConsumptionEnabled(this)) {
-                TrackStatisticsProvider statsProvider = (TrackStatisticsProvider) track;
+                TrackStatisticsProcessor statsProcessor = new TrackStatisticsProcessor(car.getFuelType());
+                Double fuelConsumption = summary.getAverageConsumption();
+                if (fuelConsumption == null) {
+                    throw new FuelConsumptionException("No consumption values available");
+                }
 
                 // set consumption text.
-                String fuelConsumptionText = DECIMAL_FORMATTER_TWO_DIGITS.format(statsProvider.getFuelConsumptionPerHour());
-                String litrePerHundredKmText = DECIMAL_FORMATTER_TWO_DIGITS.format(statsProvider.getLiterPerHundredKm());
+                double litrePerHundredKm = statsProcessor.getLiterPerHundredKm(
+                        fuelConsumption, track.getDuration(), summary.getDistance());
+                String fuelConsumptionText = DECIMAL_FORMATTER_TWO_DIGITS.format(fuelConsumption);
+                String litrePerHundredKmText = DECIMAL_FORMATTER_TWO_DIGITS.format(litrePerHundredKm);
                 this.mConsumptionText.setText(String.format("%s l/h\n%s l/100 km", fuelConsumptionText, litrePerHundredKmText));
 
                 // set emissions
-                String emissions = DECIMAL_FORMATTER_TWO_DIGITS.format(statsProvider.getGramsPerKm());
+                String emissions = DECIMAL_FORMATTER_TWO_DIGITS.format(
+                        statsProcessor.getGramsPerKm(litrePerHundredKm, car.getFuelType()));
                 this.mEmissionText.setText(String.format("%s g/km", emissions));
             } else {
                 mEmissionText.setText(R.string.track_list_details_diesel_not_supported);
@@ -364,70 +401,72 @@ public class TrackDetailsActivity extends BaseInjectorActivity {
                 mEmissionText.setTextColor(Color.RED);
                 mConsumptionText.setTextColor(Color.RED);
             }
+        } catch (FuelConsumptionException | UnsupportedFuelTypeException e) {
+            LOG.error(e);
+        }
 
-            try {
-                Measurement.PropertyKey speedKey = track.hasProperty(Measurement.PropertyKey.SPEED) ? Measurement.PropertyKey.SPEED : Measurement.PropertyKey.GPS_SPEED;
-                if (track.hasProperty(speedKey)) {
-                    double totalSpeed = 0;
-                    int numMeasurements = 0;
-
-                    boolean foundStop = false;
-                    int numStops = 0;
-                    long lastBeginOfStop = 0;
-                    long totalStopTime = 0;
-                    for (Measurement m : track.getMeasurements()) {
-                        if (m.hasProperty(speedKey)) {
-                            double speed = m.getProperty(speedKey);
-                            totalSpeed += speed;
-                            numMeasurements++;
-
-                            if (speed == 0.0 && !foundStop) {
-                                foundStop = true;
-                                lastBeginOfStop = m.getTime();
-                                numStops++;
-                            } else if (speed > 0.0 && foundStop) {
-                                foundStop = false;
-                                totalStopTime += m.getTime() - lastBeginOfStop;
-                                lastBeginOfStop = 0;
-                            }
-                        }
-                    }
-
-                    String avgSpeedText = DECIMAL_FORMATTER_TWO_DIGITS.format(totalSpeed / numMeasurements) + " km/h";
-                    this.speedText.setText(avgSpeedText);
-
-                    String numStopsText = String.format("%d stops", numStops);
-                    this.stopsValue.setText(numStopsText);
-
-                    Calendar c = Calendar.getInstance();
-                    c.setTimeInMillis(totalStopTime);
-                    int minutes = c.get(Calendar.MINUTE);
-                    int seconds = c.get(Calendar.SECOND);
-
-                    String totalStopTimeText = "";
-                    if (minutes == 0){
-                        totalStopTimeText = String.format("%ds", seconds);
-                    } else {
-                        totalStopTimeText = String.format("%dm %ds", minutes, seconds);
-                    }
-                    this.stoptimeValue.setText(totalStopTimeText);
-                } else {
-                    // TODO remove exception, only for vacaction
-                    throw new Exception("No speed value available");
+        Double averageSpeed = summary.getAverageSpeed();
+        if (averageSpeed != null) {
+            String avgSpeedText = DECIMAL_FORMATTER_TWO_DIGITS.format(averageSpeed) + " km/h";
+            this.speedText.setText(avgSpeedText);
+
+            // the stops require the full speed series, which is loaded in the background.
+            Measurement.PropertyKey speedKey = summary.hasProperty(Measurement.PropertyKey.SPEED) ?
+                    Measurement.PropertyKey.SPEED : Measurement.PropertyKey.GPS_SPEED;
+            this.stopsDisposable = mEnvirocarDB.getTrackColumnsForResolution(track.getTrackID(),
+                    summary.getNumberOfMeasurements())
+                    .subscribeOn(Schedulers.io())
+                    .observeOn(AndroidSchedulers.mainThread())
+                    .subscribe(columns -> initStopValues(columns, speedKey), e -> {
+                        LOG.error(e);
+                        this.stopsLayout.setVisibility(View.GONE);
+                        this.stoptimeLayout.setVisibility(View.GONE);
+                    });
+        } else {
+            // just for the case: hide views completely.
+            this.speedLayout.setVisibility(View.GONE);
+            this.stopsLayout.setVisibility(View.GONE);
+            this.stoptimeLayout.setVisibility(View.GONE);
+        }
+    }
+
+    private void initStopValues(TrackColumns columns, Measurement.PropertyKey speedKey) {
+        boolean foundStop = false;
+        int numStops = 0;
+        long lastBeginOfStop = 0;
+        long totalStopTime = 0;
+        double[] speeds = columns.getColumn(speedKey);
+        long[] times = columns.getTimes();
+        for (int row = 0; speeds != null && row < columns.size(); row++) {
+            if (columns.isValid(speedKey, row)) {
+                double speed = speeds[row];
+                if (speed == 0.0 && !foundStop) {
+                    foundStop = true;
+                    lastBeginOfStop = times[row];
+                    numStops++;
+                } else if (speed > 0.0 && foundStop) {
+                    foundStop = false;
+                    totalStopTime += times[row] - lastBeginOfStop;
+                    lastBeginOfStop = 0;
                 }
-            } catch (Exception e) {
-                LOG.error(e);
-                // TODO remove exception, only for vacaction
-                // just for the case: hide views completely.
-                this.speedLayout.setVisibility(View.GONE);
-                this.stopsLayout.setVisibility(View.GONE);
-                this.stoptimeLayout.setVisibility(View.GONE);
             }
+        }
 
+        String numStopsText = String.format("%d stops", numStops);
+        this.stopsValue.setText(numStopsText);
 
-        } catch (FuelConsumptionException | NoMeasurementsException | UnsupportedFuelTypeException e) {
-            LOG.error(e);
+        Calendar c = Calendar.getInstance();
+        c.setTimeInMillis(totalStopTime);
+        int minutes = c.get(Calendar.MINUTE);
+        int seconds = c.get(Calendar.SECOND);
+
+        String totalStopTimeText = "";
+        if (minutes == 0){
+            totalStopTimeText = String.format("%ds", seconds);
+        } else {
+            totalStopTimeText = String.format("%dm %ds", minutes, seconds);
         }
+        this.stoptimeValue.setText(totalStopTimeText);
     }
 
     @Override
@@ -464,6 +503,12 @@ public class TrackDetailsActivity extends BaseInjectorActivity {
     @Override
     protected void onDestroy() {
         super.onDestroy();
+        if (loadDisposable != null) {
+            loadDisposable.dispose();
+        }
+        if (stopsDisposable != null) {
+            stopsDisposable.dispose();
+        }
         if (mapStyle != null) {
             mapStyle.removeLayer(MapLayer.LAYER_NAME);
             mapStyle.removeLayer("marker-layer1");
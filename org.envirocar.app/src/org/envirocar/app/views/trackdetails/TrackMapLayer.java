@@ -36,10 +36,10 @@ import com.mapbox.mapboxsdk.style.sources.GeoJsonSource;
 
 import org.envirocar.core.entity.Measurement;
 import org.envirocar.core.entity.Track;
+import org.envirocar.core.entity.TrackColumns;
 import org.envirocar.core.logging.Logger;
 
 import java.util.ArrayList;
-import java.util.Collections;
 import java.util.List;
 
 import static com.mapbox.mapboxsdk.style.expressions.Expression.interpolate;
@@ -61,9 +61,15 @@ public class TrackMapLayer extends MapLayer{
     public static final String GRADIENT_LAYER = "gradient-layer";
     public static final String GRADIENT_SOURCE = "source-layer";
 
+    /**
+     * Number of measurements to draw per horizontal pixel of the display, which leaves some
+     * detail for zooming into the track.
+     */
+    public static final int MEASUREMENTS_PER_PIXEL = 2;
+
     private Float gradMax, gradMin;
     private final Track mTrack;
-    private List<Measurement> measurementList = new ArrayList<>();
+    private TrackColumns columns;
     private Boolean hasNoMeasurements;
     protected LatLngBounds mTrackBoundingBox;
     protected LatLngBounds mViewBoundingBox;
@@ -75,11 +81,31 @@ public class TrackMapLayer extends MapLayer{
      * @param track the track to create a overlay for.
      */
     public TrackMapLayer(Track track) {
+        this(track, track.getMeasurements());
+    }
+
+    /**
+     * Constructor.
+     *
+     * @param track        the track to create a overlay for.
+     * @param measurements the measurements to draw, e.g. a level of detail of the track.
+     */
+    public TrackMapLayer(Track track, List<Measurement> measurements) {
+        this(track, measurements != null ? TrackColumns.fromMeasurements(measurements) : null);
+    }
+
+    /**
+     * Constructor.
+     *
+     * @param track   the track to create a overlay for.
+     * @param columns the columns of the measurements to draw.
+     */
+    public TrackMapLayer(Track track, TrackColumns columns) {
         super();
         mTrack = track;
-        if(mTrack.getMeasurements() != null)
+        if(columns != null)
         {
-            measurementList = mTrack.getMeasurements();
+            this.columns = columns;
             hasNoMeasurements = false;
         }
         else
@@ -97,11 +123,13 @@ public class TrackMapLayer extends MapLayer{
             // For each measurement value add the longitude and latitude coordinates as a new
             // mappoint to the point list. In addition, try to find out the maximum and minimum
             // lon/lat coordinates for the zoom value of the mapview.
-            for (Measurement measurement : measurementList) {
-                double latitude = measurement.getLatitude();
-                double longitude = measurement.getLongitude();
+            double[] latitudes = columns.getLatitudes();
+            double[] longitudes = columns.getLongitudes();
+            for (int row = 0; row < columns.size(); row++) {
+                double latitude = latitudes[row];
+                double longitude = longitudes[row];
 
-                if(latitude == 0.0 || longitude == 0.0) {
+                if(!columns.hasPosition(row) || latitude == 0.0 || longitude == 0.0) {
                     LOG.warn("An coordinate was 0.0");
                     continue;
                 }
@@ -188,28 +216,28 @@ public class TrackMapLayer extends MapLayer{
 
         if(!hasNoMeasurements)
         {
-            float size = (float)measurementList.size(), i= 0f;
+            float size = (float)columns.size(), i= 0f;
             if(size>2)
             {
-                List<Double> propertyValues = new ArrayList<>();
-                for(Measurement measurement : measurementList){
-                    if(measurement.hasProperty(propertyKey))
-                        propertyValues.add(measurement.getProperty(propertyKey));
-                    else {
-                        propertyValues.add((double) 0);
-                        LOG.info("Measurement doesnt have " + propertyKey.toString());
-                    }
+                // rows without a value of the property are drawn as 0.
+                double[] propertyValues = columns.getColumn(propertyKey);
+                if (propertyValues == null)
+                    propertyValues = new double[columns.size()];
+                int missing = columns.size() - columns.countValid(propertyKey);
+                if (missing > 0)
+                    LOG.info(missing + " measurements dont have " + propertyKey.toString());
+
+                double min = Double.POSITIVE_INFINITY;
+                double max = Double.NEGATIVE_INFINITY;
+                for (double value : propertyValues) {
+                    min = Math.min(min, value);
+                    max = Math.max(max, value);
                 }
-
-                Double min ;
                 if(propertyKey.equals(Measurement.PropertyKey.SPEED))
-                    min = (double) 0;
-                else
-                    min = Collections.min(propertyValues);
+                    min = 0;
 
-                Double max = Collections.max(propertyValues);
-                gradMax = max.floatValue();
-                gradMin = min.floatValue();
+                gradMax = (float) max;
+                gradMin = (float) min;
 
                 //Set the start and end colors for the map legend
                 int startColor = Color.parseColor("#00FF00");
@@ -217,12 +245,12 @@ public class TrackMapLayer extends MapLayer{
                 ArgbEvaluator evaluator = new ArgbEvaluator();
                 List<Expression.Stop> stops  = new ArrayList<>();
 
-                for(Double value : propertyValues){
+                for(double value : propertyValues){
                     //Calculate the color that each point on the line should be and add it to
                     // the list of stops
-                    Double fraction = value / max;
-                    Float stop = i / size;
-                    Integer temp = (Integer) evaluator.evaluate(fraction.floatValue(), startColor, endColor);
+                    float fraction = (float) (value / max);
+                    float stop = i / size;
+                    Integer temp = (Integer) evaluator.evaluate(fraction, startColor, endColor);
                     stops.add(Expression.stop(stop, rgb(Color.red(temp), Color.green(temp), Color.blue(temp))));
                     i++;
                 }
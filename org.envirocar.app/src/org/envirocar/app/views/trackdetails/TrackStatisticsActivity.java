@@ -22,7 +22,6 @@ import android.annotation.SuppressLint;
 import android.app.Activity;
 import android.app.Fragment;
 import android.content.Intent;
-import android.location.Location;
 import android.os.Bundle;
 import androidx.annotation.Nullable;
 import androidx.appcompat.widget.Toolbar;
@@ -36,8 +35,10 @@ import org.envirocar.app.BaseApplicationComponent;
 import org.envirocar.app.R;
 import org.envirocar.core.entity.Measurement;
 import org.envirocar.core.entity.Track;
+import org.envirocar.core.entity.TrackColumns;
 import org.envirocar.app.injection.BaseInjectorActivity;
 import org.envirocar.core.EnviroCarDB;
+import org.envirocar.core.trackprocessing.statistics.TrackStatisticsProcessor;
 
 import java.util.ArrayList;
 import java.util.List;
@@ -81,7 +82,7 @@ public class TrackStatisticsActivity extends BaseInjectorActivity {
     @BindView(R.id.activity_track_statistics_toolbar)
     protected Toolbar mToolbar;
 
-    private Track mTrack;
+    private TrackColumns mColumns;
     private PlaceholderFragment mPlaceholderFragment;
 
     @Override
@@ -97,13 +98,15 @@ public class TrackStatisticsActivity extends BaseInjectorActivity {
         int trackID = getIntent().getIntExtra(EXTRA_TRACKID, -1);
         Track.TrackId trackid = new Track.TrackId(trackID);
 
-        enviroCarDB.getTrack(trackid)
+        // the charts only need as many measurements as there are pixels to draw them.
+        int resolution = getResources().getDisplayMetrics().widthPixels;
+        enviroCarDB.getTrackColumnsForResolution(trackid, resolution)
                 .subscribeOn(Schedulers.io())
                 .observeOn(AndroidSchedulers.mainThread())
-                .subscribe(track -> {
-                    mTrack = track;
+                .subscribe(columns -> {
+                    mColumns = columns;
                     if (savedInstanceState == null) {
-                        mPlaceholderFragment = new PlaceholderFragment(mTrack);
+                        mPlaceholderFragment = new PlaceholderFragment(mColumns);
                         getFragmentManager().beginTransaction()
                                 .add(R.id.activity_track_statistics_layout_container,
                                         mPlaceholderFragment).commit();
@@ -113,7 +116,7 @@ public class TrackStatisticsActivity extends BaseInjectorActivity {
                     // fast such that no menu gets rendered. Therefore, the inflatation is
                     // postponed by 100 milliseconds.
                     AndroidSchedulers.mainThread().createWorker().schedule(
-                            () -> inflateMenuProperties(track), 100, TimeUnit.MILLISECONDS);
+                            () -> inflateMenuProperties(columns), 100, TimeUnit.MILLISECONDS);
                 });
 
         // Inject all annotated views.
@@ -150,12 +153,14 @@ public class TrackStatisticsActivity extends BaseInjectorActivity {
         return super.onOptionsItemSelected(item);
     }
 
-    private void inflateMenuProperties(Track track) {
+    private void inflateMenuProperties(TrackColumns columns) {
         Menu menu = mToolbar.getMenu();
         menu.clear();
-        if (mTrack != null && !mTrack.getMeasurements().isEmpty()) {
-            for (Measurement.PropertyKey key : mTrack.getSupportedProperties()) {
-                menu.add(key.getStringResource());
+        if (columns != null && !columns.isEmpty()) {
+            for (Measurement.PropertyKey key : Measurement.PropertyKey.values()) {
+                if (columns.hasColumn(key)) {
+                    menu.add(key.getStringResource());
+                }
             }
         }
 
@@ -172,15 +177,16 @@ public class TrackStatisticsActivity extends BaseInjectorActivity {
         private LineChartData mChartData;
         private LineChartData mPreviewChartData;
 
-        private final Track mTrack;
+        private final TrackColumns mColumns;
+        private double[] mDistances;
 
         public PlaceholderFragment() {
             this(null);
         }
 
         @SuppressLint("ValidFragment")
-        public PlaceholderFragment(Track track) {
-            this.mTrack = track;
+        public PlaceholderFragment(TrackColumns columns) {
+            this.mColumns = columns;
         }
 
         @Nullable
@@ -193,7 +199,7 @@ public class TrackStatisticsActivity extends BaseInjectorActivity {
             // Inject all annotated views.
             ButterKnife.bind(this, rootView);
 
-            if(mTrack.hasProperty(Measurement.PropertyKey.SPEED)){
+            if(mColumns.hasColumn(Measurement.PropertyKey.SPEED)){
                 generateData(Measurement.PropertyKey.SPEED);
             }else{
                 generateData(Measurement.PropertyKey.GPS_SPEED);
@@ -215,7 +221,7 @@ public class TrackStatisticsActivity extends BaseInjectorActivity {
 
         private void generateData(Measurement.PropertyKey propertyKey) {
             // Generate the PointValues for the Graph.
-            List<PointValue> values = generateDistancedBasedData(propertyKey, mTrack);
+            List<PointValue> values = generateDistancedBasedData(propertyKey, mColumns);
 
             Line line = new Line(values);
             line.setColor(getResources().getColor(R.color.green_dark_cario));
@@ -249,26 +255,22 @@ public class TrackStatisticsActivity extends BaseInjectorActivity {
         }
 
         private List<PointValue> generateDistancedBasedData(Measurement.PropertyKey propertyKey,
-                                                            Track track) {
+                                                            TrackColumns columns) {
             List<PointValue> values = new ArrayList<PointValue>();
+            double[] column = columns.getColumn(propertyKey);
+            if (column == null) {
+                return values;
+            }
 
-            // temporary array for computing distances.
-            float[] tmp = new float[1];
-            float distance = 0;
-
-            // temporary value for the last measurement
-            Measurement lastMeasurement = null;
+            // the distances are the same for all properties.
+            if (mDistances == null) {
+                mDistances = TrackStatisticsProcessor.computeCumulativeDistances(columns);
+            }
 
-            for (Measurement m : track.getMeasurements()) {
-                if (lastMeasurement != null) {
-                    Location.distanceBetween(lastMeasurement.getLatitude(), lastMeasurement
-                            .getLongitude(), m.getLatitude(), m.getLongitude(), tmp);
-                    distance += tmp[0] / 1000f; // we need km not meters.
-                }
-                if (m != null && m.hasProperty(propertyKey)) {
-                    values.add(new PointValue(distance, m.getProperty(propertyKey).floatValue()));
+            for (int row = 0; row < column.length; row++) {
+                if (columns.isValid(propertyKey, row)) {
+                    values.add(new PointValue((float) mDistances[row], (float) column[row]));
                 }
-                lastMeasurement = m;
             }
 
             return values;
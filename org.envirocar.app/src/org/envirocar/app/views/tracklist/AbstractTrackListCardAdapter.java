@@ -38,7 +38,10 @@ import com.mapbox.mapboxsdk.maps.Style;
 
 import org.envirocar.app.R;
 import org.envirocar.app.views.trackdetails.TrackMapLayer;
+import org.envirocar.core.EnviroCarDB;
 import org.envirocar.core.entity.Track;
+import org.envirocar.core.entity.TrackColumns;
+import org.envirocar.core.entity.internal.TrackSummary;
 import org.envirocar.core.exception.NoMeasurementsException;
 import org.envirocar.core.logging.Logger;
 import org.envirocar.core.trackprocessing.statistics.TrackStatisticsProvider;
@@ -49,7 +52,9 @@ import java.text.SimpleDateFormat;
 import java.util.Date;
 import java.util.List;
 import java.util.Locale;
+import java.util.Map;
 import java.util.TimeZone;
+import java.util.concurrent.ConcurrentHashMap;
 
 import butterknife.BindView;
 import butterknife.ButterKnife;
@@ -78,6 +83,8 @@ public abstract class AbstractTrackListCardAdapter<E extends
     protected final List<Track> mTrackDataset;
     protected Scheduler.Worker mMainThreadWorker = AndroidSchedulers.mainThread().createWorker();
     protected final OnTrackInteractionCallback mTrackInteractionCallback;
+    protected final EnviroCarDB mEnviroCarDB;
+    protected final Map<Long, TrackSummary> mTrackSummaries = new ConcurrentHashMap<>();
 
     /**
      * Constructor.
@@ -86,10 +93,42 @@ public abstract class AbstractTrackListCardAdapter<E extends
      */
     public AbstractTrackListCardAdapter(List<Track> tracks, final OnTrackInteractionCallback
             callback) {
+        this(tracks, null, callback);
+    }
+
+    /**
+     * Constructor.
+     *
+     * @param tracks      the list of tracks to show cards for.
+     * @param enviroCarDB the database to load the map of lazily loaded tracks from.
+     * @param callback
+     */
+    public AbstractTrackListCardAdapter(List<Track> tracks, EnviroCarDB enviroCarDB,
+                                        final OnTrackInteractionCallback callback) {
         this.mTrackDataset = tracks;
+        this.mEnviroCarDB = enviroCarDB;
         this.mTrackInteractionCallback = callback;
     }
 
+    /**
+     * Sets the summaries that provide the duration and distance of the cards.
+     *
+     * @param summaries the summaries of the tracks.
+     */
+    public void setTrackSummaries(List<TrackSummary> summaries) {
+        for (TrackSummary summary : summaries) {
+            mTrackSummaries.put(summary.getTrackId().getId(), summary);
+        }
+    }
+
+    /**
+     * @param track the track of a card.
+     * @return the summary of the track, null if it is not known.
+     */
+    public TrackSummary getTrackSummary(Track track) {
+        return track.getTrackID() != null ? mTrackSummaries.get(track.getTrackID().getId()) : null;
+    }
+
     @Override
     public int getItemCount() {
         return mTrackDataset.size();
@@ -130,22 +169,25 @@ public abstract class AbstractTrackListCardAdapter<E extends
         // First, load the track from the dataset
         holder.mTitleTextView.setText(track.getName());
 
-        // Initialize the mapView.
-        initMapView(holder, track);
-
         // Set all the view parameters.
         new AsyncTask<Void, Void, Void>() {
             @Override
             protected Void doInBackground(Void... params) {
+                // Initialize the mapView.
+                TrackMapLayer trackMapOverlay = createTrackMapLayer(holder, track);
+                mMainThreadWorker.schedule(() -> initMapView(holder, trackMapOverlay));
+
                 // Set the duration text.
+                TrackSummary summary = getTrackSummary(track);
                 try {
-                    String date = UTC_DATE_FORMATTER.format(new Date(
-                            track.getDuration()));
+                    String date = UTC_DATE_FORMATTER.format(new Date(summary != null ?
+                            summary.getDuration() : track.getDuration()));
                     mMainThreadWorker.schedule(() -> holder.mDuration.setText(date));
 
                     // Set the tracklength parameter.
 
-                    double distanceOfTrack = track.getLength();
+                    double distanceOfTrack = summary != null ?
+                            summary.getDistance() : track.getLength();
                     String tracklength = String.format("%s km", DECIMAL_FORMATTER_TWO.format(
                             distanceOfTrack));
                     mMainThreadWorker.schedule(() -> holder.mDistance.setText(tracklength));
@@ -200,13 +242,28 @@ public abstract class AbstractTrackListCardAdapter<E extends
     }
 
 
+    /**
+     * Creates the map layer of a card. Lazily loaded tracks only load the level of detail that
+     * fits the card instead of their measurements.
+     */
+    private TrackMapLayer createTrackMapLayer(TrackCardViewHolder holder, Track track) {
+        if (!track.isLazyLoadingMeasurements() || mEnviroCarDB == null) {
+            return new TrackMapLayer(track);
+        }
+        int resolution = TrackMapLayer.MEASUREMENTS_PER_PIXEL *
+                holder.mMapView.getResources().getDisplayMetrics().widthPixels;
+        TrackColumns columns = mEnviroCarDB
+                .getTrackColumnsForResolution(track.getTrackID(), resolution)
+                .blockingFirst();
+        return new TrackMapLayer(track, columns);
+    }
+
     /**
      * Initializes the MapView, its base layers and settings.
      */
-    protected void initMapView(TrackCardViewHolder holder, Track track) {
+    protected void initMapView(TrackCardViewHolder holder, TrackMapLayer trackMapOverlay) {
         // First, clear the overlays in the MapView.
         LOG.info("initMapView()");
-        TrackMapLayer trackMapOverlay = new TrackMapLayer(track);
         final LatLngBounds viewBbox = trackMapOverlay.getViewBoundingBox();
         holder.mMapView.addOnDidFailLoadingMapListener(holder.failLoadingMapListener);
         holder.mMapView.getMapAsync(new OnMapReadyCallback() {
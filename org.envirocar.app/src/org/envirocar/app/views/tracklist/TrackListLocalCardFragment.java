@@ -42,6 +42,7 @@ import org.envirocar.app.views.utils.DialogUtils;
 import org.envirocar.app.views.utils.ECAnimationUtils;
 import org.envirocar.core.entity.Measurement;
 import org.envirocar.core.entity.Track;
+import org.envirocar.core.entity.internal.TrackSummary;
 import org.envirocar.core.exception.TrackUploadException;
 import org.envirocar.core.logging.Logger;
 import org.envirocar.core.util.TrackMetadata;
@@ -53,6 +54,7 @@ import java.util.List;
 import javax.inject.Inject;
 
 import butterknife.OnClick;
+import io.reactivex.Observable;
 import io.reactivex.android.schedulers.AndroidSchedulers;
 import io.reactivex.disposables.Disposable;
 import io.reactivex.observers.DisposableObserver;
@@ -129,7 +131,7 @@ public class TrackListLocalCardFragment extends AbstractTrackListCardFragment<Tr
 
     @Override
     public TrackListLocalCardAdapter getRecyclerViewAdapter() {
-        return new TrackListLocalCardAdapter(mTrackList, new OnTrackInteractionCallback() {
+        return new TrackListLocalCardAdapter(mTrackList, mEnvirocarDB, new OnTrackInteractionCallback() {
 
             /**
              * Inits the view transition to a {@link TrackDetailsActivity} showing the
@@ -156,7 +158,9 @@ public class TrackListLocalCardFragment extends AbstractTrackListCardFragment<Tr
             @Override
             public void onUploadTrackClicked(Track track) {
                 LOG.info(String.format("onUploadTrackClicked(%s)", track.getTrackID()));
-                if (track.hasProperty(Measurement.PropertyKey.SPEED)) {
+                TrackSummary summary = mRecyclerViewAdapter.getTrackSummary(track);
+                if (summary != null ? summary.hasProperty(Measurement.PropertyKey.SPEED) :
+                        track.hasProperty(Measurement.PropertyKey.SPEED)) {
                     // Upload the track
                     onUploadSingleTrack(track);
                 } else {
@@ -167,9 +171,16 @@ public class TrackListLocalCardFragment extends AbstractTrackListCardFragment<Tr
             @Override
             public void onExportTrackClicked(Track track) {
                 LOG.info(String.format("onExportTrackClicked(%s)", track.getTrackID()));
-                track.updateMetadata(new TrackMetadata(Util.getVersionString(getActivity()),
-                        mUserManager.getUser().getTermsOfUseVersion()));
-                exportTrack(track);
+                // the cards only hold lazily loaded tracks, the export requires the measurements.
+                mEnvirocarDB.getTrack(track.getTrackID())
+                        .subscribeOn(Schedulers.io())
+                        .observeOn(AndroidSchedulers.mainThread())
+                        .subscribe(fullTrack -> {
+                            fullTrack.updateMetadata(new TrackMetadata(
+                                    Util.getVersionString(getActivity()),
+                                    mUserManager.getUser().getTermsOfUseVersion()));
+                            exportTrack(fullTrack);
+                        }, e -> LOG.error(e.getMessage(), e));
             }
 
             @Override
@@ -219,7 +230,15 @@ public class TrackListLocalCardFragment extends AbstractTrackListCardFragment<Tr
                 }
             }
 
-            loadTracksSubscription = mEnvirocarDB.getAllLocalTracks()
+            // the cards are drawn from the track summaries, i.e. the measurements of the tracks
+            // are not loaded.
+            loadTracksSubscription = Observable.zip(
+                    mEnvirocarDB.getAllLocalTracks(true),
+                    mEnvirocarDB.getAllTrackSummaries(),
+                    (tracks, summaries) -> {
+                        mRecyclerViewAdapter.setTrackSummaries(summaries);
+                        return tracks;
+                    })
                     .subscribeOn(Schedulers.io())
                     .observeOn(AndroidSchedulers.mainThread())
                     .subscribeWith(new DisposableObserver<List<Track>>() {
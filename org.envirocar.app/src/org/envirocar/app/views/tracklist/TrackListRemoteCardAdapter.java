@@ -25,6 +25,7 @@ import android.view.ViewGroup;
 import com.mapbox.mapboxsdk.maps.MapView;
 
 import org.envirocar.app.R;
+import org.envirocar.core.EnviroCarDB;
 import org.envirocar.core.entity.Track;
 import org.envirocar.core.logging.Logger;
 
@@ -41,11 +42,13 @@ public class TrackListRemoteCardAdapter extends AbstractTrackListCardAdapter<
     /**
      * Constructor.
      *
-     * @param tracks   the list of tracks to show cards for.
+     * @param tracks      the list of tracks to show cards for.
+     * @param enviroCarDB the database to load the map of downloaded tracks from.
      * @param callback
      */
-    public TrackListRemoteCardAdapter(List<Track> tracks, OnTrackInteractionCallback callback) {
-        super(tracks, callback);
+    public TrackListRemoteCardAdapter(List<Track> tracks, EnviroCarDB enviroCarDB,
+                                      OnTrackInteractionCallback callback) {
+        super(tracks, enviroCarDB, callback);
     }
 
     protected List<MapView> mapViews = new ArrayList<>();
@@ -119,7 +119,7 @@ public class TrackListRemoteCardFragment extends AbstractTrackListCardFragment<T
 
     @Override
     public TrackListRemoteCardAdapter getRecyclerViewAdapter() {
-        return new TrackListRemoteCardAdapter(mTrackList,
+        return new TrackListRemoteCardAdapter(mTrackList, mEnvirocarDB,
                 new OnTrackInteractionCallback() {
 
                     /**
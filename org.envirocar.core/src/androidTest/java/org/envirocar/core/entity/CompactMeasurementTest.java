@@ -0,0 +1,107 @@
+/**
+ * Copyright (C) 2013 - 2019 the enviroCar community
+ *
+ * This file is part of the enviroCar app.
+ *
+ * The enviroCar app is free software: you can redistribute it and/or
+ * modify it under the terms of the GNU General Public License as published
+ * by the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * The enviroCar app is distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU General
+ * Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License along
+ * with the enviroCar app. If not, see http://www.gnu.org/licenses/.
+ */
+package org.envirocar.core.entity;
+
+import android.test.InstrumentationTestCase;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.Map;
+
+public class CompactMeasurementTest extends InstrumentationTestCase {
+
+    @Test
+    public void testProperties() {
+        CompactMeasurement m = new CompactMeasurement();
+        Assert.assertNull(m.getLatitude());
+        Assert.assertNull(m.getLongitude());
+        Assert.assertTrue(m.getAllProperties().isEmpty());
+
+        m.setLatitude(51.96);
+        m.setLongitude(7.62);
+        m.setProperty(Measurement.PropertyKey.SPEED, 42.0);
+        m.setProperty(Measurement.PropertyKey.RPM, 0.0);
+        m.setProperty(Measurement.PropertyKey.MAF, null);
+
+        Assert.assertEquals(51.96, m.getLatitude(), 0);
+        Assert.assertEquals(7.62, m.getLongitude(), 0);
+        Assert.assertEquals(42.0, m.getProperty(Measurement.PropertyKey.SPEED), 0);
+        Assert.assertEquals(0.0, m.getProperty(Measurement.PropertyKey.RPM), 0);
+        Assert.assertTrue(m.hasProperty(Measurement.PropertyKey.RPM));
+        Assert.assertFalse(m.hasProperty(Measurement.PropertyKey.MAF));
+        Assert.assertNull(m.getProperty(Measurement.PropertyKey.MAF));
+
+        Map<Measurement.PropertyKey, Double> expected = new HashMap<>();
+        expected.put(Measurement.PropertyKey.SPEED, 42.0);
+        expected.put(Measurement.PropertyKey.RPM, 0.0);
+        Assert.assertEquals(expected, m.getAllProperties());
+
+        m.reset();
+        Assert.assertNull(m.getLatitude());
+        Assert.assertTrue(m.getAllProperties().isEmpty());
+    }
+
+    @Test
+    public void testPropertyView() {
+        CompactMeasurement m = new CompactMeasurement();
+        Map<Measurement.PropertyKey, Double> view = m.getAllProperties();
+
+        view.put(Measurement.PropertyKey.CO2, 12.5);
+        Assert.assertEquals(12.5, m.getProperty(Measurement.PropertyKey.CO2), 0);
+
+        m.setProperty(Measurement.PropertyKey.SPEED, 30.0);
+        Assert.assertEquals(2, view.size());
+
+        for (Map.Entry<Measurement.PropertyKey, Double> entry : view.entrySet()) {
+            entry.setValue(entry.getValue() * 2);
+        }
+        Assert.assertEquals(25.0, m.getProperty(Measurement.PropertyKey.CO2), 0);
+        Assert.assertEquals(60.0, m.getProperty(Measurement.PropertyKey.SPEED), 0);
+
+        Iterator<Measurement.PropertyKey> keys = view.keySet().iterator();
+        while (keys.hasNext()) {
+            if (keys.next() == Measurement.PropertyKey.SPEED) {
+                keys.remove();
+            }
+        }
+        Assert.assertFalse(m.hasProperty(Measurement.PropertyKey.SPEED));
+
+        Assert.assertEquals(25.0, view.remove(Measurement.PropertyKey.CO2), 0);
+        Assert.assertTrue(m.getAllProperties().isEmpty());
+    }
+
+    @Test
+    public void testCarbonCopyIsIndependent() {
+        CompactMeasurement m = new CompactMeasurement(51.96, 7.62);
+        m.setTrackId(new Track.TrackId(3));
+        m.setTime(1000);
+        m.setProperty(Measurement.PropertyKey.SPEED, 42.0);
+
+        Measurement copy = m.carbonCopy();
+        m.setProperty(Measurement.PropertyKey.SPEED, 10.0);
+
+        Assert.assertEquals(42.0, copy.getProperty(Measurement.PropertyKey.SPEED), 0);
+        Assert.assertEquals(51.96, copy.getLatitude(), 0);
+        Assert.assertEquals(1000, copy.getTime());
+        Assert.assertEquals(3, copy.getTrackId().getId());
+    }
+}
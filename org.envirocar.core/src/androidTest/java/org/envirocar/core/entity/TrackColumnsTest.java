@@ -0,0 +1,80 @@
+/**
+ * Copyright (C) 2013 - 2019 the enviroCar community
+ *
+ * This file is part of the enviroCar app.
+ *
+ * The enviroCar app is free software: you can redistribute it and/or
+ * modify it under the terms of the GNU General Public License as published
+ * by the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * The enviroCar app is distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU General
+ * Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License along
+ * with the enviroCar app. If not, see http://www.gnu.org/licenses/.
+ */
+package org.envirocar.core.entity;
+
+import android.test.InstrumentationTestCase;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+public class TrackColumnsTest extends InstrumentationTestCase {
+
+    @Test
+    public void testFromMeasurements() {
+        List<Measurement> measurements = new ArrayList<>();
+        for (int i = 0; i < 100; i++) {
+            Measurement m = new CompactMeasurement();
+            m.setTime(1000 + i);
+            if (i != 50) {
+                m.setLatitude(51.0 + i);
+                m.setLongitude(7.0 + i);
+            }
+            m.setProperty(Measurement.PropertyKey.SPEED, (double) i);
+            if (i % 10 == 0) {
+                m.setProperty(Measurement.PropertyKey.RPM, i * 100.0);
+            }
+            measurements.add(m);
+        }
+
+        TrackColumns columns = TrackColumns.fromMeasurements(measurements);
+        Assert.assertEquals(100, columns.size());
+        Assert.assertEquals(1099, columns.getTimes()[99]);
+        Assert.assertTrue(columns.hasPosition(49));
+        Assert.assertFalse(columns.hasPosition(50));
+        Assert.assertEquals(58.0, columns.getLatitudes()[7], 0);
+
+        Assert.assertTrue(columns.hasColumn(Measurement.PropertyKey.SPEED));
+        Assert.assertFalse(columns.hasColumn(Measurement.PropertyKey.MAF));
+        Assert.assertNull(columns.getColumn(Measurement.PropertyKey.MAF));
+        Assert.assertEquals(100, columns.countValid(Measurement.PropertyKey.SPEED));
+        Assert.assertEquals(10, columns.countValid(Measurement.PropertyKey.RPM));
+        Assert.assertTrue(columns.isValid(Measurement.PropertyKey.RPM, 70));
+        Assert.assertFalse(columns.isValid(Measurement.PropertyKey.RPM, 71));
+        Assert.assertEquals(7000.0, columns.getColumn(Measurement.PropertyKey.RPM)[70], 0);
+
+        Measurement row = columns.getMeasurement(70);
+        Assert.assertEquals(measurements.get(70).getAllProperties(), row.getAllProperties());
+        Assert.assertEquals(1070, row.getTime());
+        Assert.assertNull(columns.getMeasurement(50).getLatitude());
+    }
+
+    @Test
+    public void testBuilderRequiresRow() {
+        try {
+            new TrackColumns.Builder().setValue(Measurement.PropertyKey.SPEED, 1.0);
+            Assert.fail("Expected an IllegalStateException");
+        } catch (IllegalStateException e) {
+            // expected
+        }
+        Assert.assertTrue(new TrackColumns.Builder().build().isEmpty());
+    }
+}
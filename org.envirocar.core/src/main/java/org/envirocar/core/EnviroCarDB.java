@@ -20,12 +20,15 @@ package org.envirocar.core;
 
 import org.envirocar.core.entity.Measurement;
 import org.envirocar.core.entity.Track;
+import org.envirocar.core.entity.TrackColumns;
+import org.envirocar.core.entity.internal.TrackSummary;
 import org.envirocar.core.exception.MeasurementSerializationException;
 import org.envirocar.core.exception.TrackSerializationException;
 import org.envirocar.core.util.TrackMetadata;
 
 import java.util.List;
 
+import io.reactivex.Flowable;
 import io.reactivex.Observable;
 
 
@@ -73,6 +76,30 @@ public interface EnviroCarDB {
 
     Observable<Track> insertTrackObservable(Track track);
 
+    /**
+     * Inserts a track together with the given measurements, e.g. while importing a downloaded
+     * track. All rows are written in one transaction, and subscribers get notified once after
+     * the import. Finished tracks, e.g. downloaded ones, are written directly as archive chunks;
+     * the measurements of other tracks are written using multi-row inserts.
+     *
+     * @param track        the track to insert.
+     * @param measurements the measurements of the track.
+     * @throws TrackSerializationException
+     */
+    void insertTrackBulk(Track track, Iterable<Measurement> measurements) throws
+            TrackSerializationException;
+
+    /**
+     * Inserts a track together with the columns of its measurements, e.g. while importing a
+     * downloaded track that has been read as columns. Rows are only turned into measurements
+     * one at a time while they are written.
+     *
+     * @param track   the track to insert.
+     * @param columns the measurements of the track as columns.
+     * @throws TrackSerializationException
+     */
+    void insertTrack(Track track, TrackColumns columns) throws TrackSerializationException;
+
     boolean updateTrack(Track track);
 
     Observable<Track> updateTrackObservable(Track track);
@@ -89,6 +116,17 @@ public interface EnviroCarDB {
 
     void insertMeasurement(Measurement measurement) throws MeasurementSerializationException;
 
+    /**
+     * Inserts a batch of measurements and updates the row of the track they belong to within a
+     * single transaction, i.e. subscribers get notified only once per batch.
+     *
+     * @param track        the track the measurements belong to.
+     * @param measurements the measurements to insert.
+     * @throws MeasurementSerializationException
+     */
+    void insertMeasurements(Track track, List<Measurement> measurements) throws
+            MeasurementSerializationException;
+
     void automaticDeleteMeasurements(long time, Track.TrackId trackId);
 
     Observable<Void> insertMeasurementObservable(Measurement measurement);
@@ -103,6 +141,68 @@ public interface EnviroCarDB {
 
     Observable<Track> getActiveTrackObservable(boolean lazy);
 
+    /**
+     * Streams the measurements of a track ordered by time. The measurements are read from a
+     * database cursor on demand, i.e. arbitrarily long tracks can be processed in constant
+     * memory as long as the subscriber does not collect them.
+     *
+     * @param trackId the id of the track.
+     * @return a backpressure-aware stream of the measurements of the track.
+     */
+    Flowable<Measurement> getMeasurementsFlowable(Track.TrackId trackId);
+
+    /**
+     * Streams the measurements of a track within the time window [startTime, endTime) ordered
+     * by time.
+     *
+     * @param trackId   the id of the track.
+     * @param startTime the inclusive start of the time window.
+     * @param endTime   the exclusive end of the time window.
+     * @return a backpressure-aware stream of the measurements within the time window.
+     */
+    Flowable<Measurement> getMeasurementsFlowable(Track.TrackId trackId, long startTime, long endTime);
+
+    /**
+     * Returns the measurements of a track at a level of detail appropriate for displaying at
+     * most about the given number of measurements, e.g. the width of a chart or map in pixels.
+     * For finished tracks, the finest precomputed level that fits is returned (or the coarsest
+     * one), otherwise all measurements of the track.
+     *
+     * @param trackId         the id of the track.
+     * @param maxMeasurements the number of measurements the caller is able to display.
+     * @return the measurements of the track ordered by time.
+     */
+    Observable<List<Measurement>> getMeasurementsForResolution(Track.TrackId trackId,
+                                                               int maxMeasurements);
+
+    /**
+     * Returns the measurements of a track at the same level of detail as
+     * {@link #getMeasurementsForResolution(Track.TrackId, int)}, but as columns for analysis
+     * and rendering. Measurement rows are read into the columns directly.
+     *
+     * @param trackId         the id of the track.
+     * @param maxMeasurements the number of measurements the caller is able to display.
+     * @return the columns of the track ordered by time.
+     */
+    Observable<TrackColumns> getTrackColumnsForResolution(Track.TrackId trackId,
+                                                          int maxMeasurements);
+
+    /**
+     * Returns the incrementally maintained summary of a track, which provides the track-level
+     * statistics without loading its measurements.
+     *
+     * @param trackId the id of the track.
+     * @return the summary of the track.
+     */
+    Observable<TrackSummary> getTrackSummary(Track.TrackId trackId);
+
+    /**
+     * Returns the summaries of all tracks stored in the database.
+     *
+     * @return the summaries of all tracks.
+     */
+    Observable<List<TrackSummary>> getAllTrackSummaries();
+
     void updateTrackMetadata(final Track track, final TrackMetadata trackMetadata) throws
             TrackSerializationException;
 
@@ -19,6 +19,7 @@
 package org.envirocar.core.dao;
 
 import org.envirocar.core.entity.Track;
+import org.envirocar.core.entity.TrackColumns;
 import org.envirocar.core.exception.DataCreationFailureException;
 import org.envirocar.core.exception.DataRetrievalFailureException;
 import org.envirocar.core.exception.DataUpdateFailureException;
@@ -42,6 +43,16 @@ public interface TrackDAO {
 
     Observable<Track> getTrackByIdObservable(String id);
 
+    /**
+     * Returns the measurements of a track as columns, without creating a measurement per row.
+     *
+     * @param id    the id of the track.
+     * @param track the track to apply the properties of the loaded track to.
+     * @return the columns of the measurements of the track.
+     */
+    TrackColumns getTrackColumnsById(String id, Track track) throws
+            DataRetrievalFailureException, NotConnectedException, UnauthorizedException;
+
     List<Track> getTrackIds() throws DataRetrievalFailureException, NotConnectedException,
             UnauthorizedException;
 
@@ -0,0 +1,325 @@
+/**
+ * Copyright (C) 2013 - 2019 the enviroCar community
+ *
+ * This file is part of the enviroCar app.
+ *
+ * The enviroCar app is free software: you can redistribute it and/or
+ * modify it under the terms of the GNU General Public License as published
+ * by the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * The enviroCar app is distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU General
+ * Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License along
+ * with the enviroCar app. If not, see http://www.gnu.org/licenses/.
+ */
+package org.envirocar.core.entity;
+
+import java.util.AbstractMap;
+import java.util.AbstractSet;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.Set;
+
+/**
+ * Memory efficient {@link Measurement} for tracks with many measurements. The property values
+ * are kept in a double array indexed by {@link PropertyKey#ordinal()} and their presence in a
+ * bitmask, so neither boxed values nor map entries are allocated per measurement. The map
+ * returned by {@link #getAllProperties()} is a view backed by the measurement.
+ */
+public class CompactMeasurement implements Measurement {
+    private static final PropertyKey[] PROPERTY_KEYS = PropertyKey.values();
+    private static final long LATITUDE_FLAG = 1L << 62;
+    private static final long LONGITUDE_FLAG = 1L << 63;
+    private static final long PROPERTY_MASK = ~(LATITUDE_FLAG | LONGITUDE_FLAG);
+
+    static {
+        if (PROPERTY_KEYS.length > 62) {
+            throw new IllegalStateException("Too many property keys for the presence mask");
+        }
+    }
+
+    protected Track.TrackId trackId;
+    protected double latitude;
+    protected double longitude;
+    protected long time;
+    protected long presence;
+    protected double[] values;
+
+    /**
+     * Constructor.
+     */
+    public CompactMeasurement() {
+
+    }
+
+    /**
+     * Constructor.
+     *
+     * @param latitude  the latitude value
+     * @param longitude the longitude value
+     */
+    public CompactMeasurement(double latitude, double longitude) {
+        setLatitude(latitude);
+        setLongitude(longitude);
+    }
+
+    @Override
+    public Track.TrackId getTrackId() {
+        return trackId;
+    }
+
+    @Override
+    public void setTrackId(Track.TrackId trackId) {
+        this.trackId = trackId;
+    }
+
+    @Override
+    public Double getLatitude() {
+        return (presence & LATITUDE_FLAG) != 0 ? latitude : null;
+    }
+
+    @Override
+    public void setLatitude(double latitude) {
+        this.latitude = latitude;
+        this.presence |= LATITUDE_FLAG;
+    }
+
+    @Override
+    public Double getLongitude() {
+        return (presence & LONGITUDE_FLAG) != 0 ? longitude : null;
+    }
+
+    @Override
+    public void setLongitude(double longitude) {
+        this.longitude = longitude;
+        this.presence |= LONGITUDE_FLAG;
+    }
+
+    @Override
+    public long getTime() {
+        return time;
+    }
+
+    @Override
+    public void setTime(long time) {
+        this.time = time;
+    }
+
+    @Override
+    public Double getProperty(PropertyKey key) {
+        return hasProperty(key) ? values[key.ordinal()] : null;
+    }
+
+    @Override
+    public void setProperty(PropertyKey key, Double value) {
+        if (key != null && value != null) {
+            if (values == null) {
+                values = new double[PROPERTY_KEYS.length];
+            }
+            values[key.ordinal()] = value;
+            presence |= 1L << key.ordinal();
+        }
+    }
+
+    @Override
+    public boolean hasProperty(PropertyKey key) {
+        return key != null && (presence & (1L << key.ordinal())) != 0;
+    }
+
+    @Override
+    public Map<PropertyKey, Double> getAllProperties() {
+        return new PropertyMap();
+    }
+
+    /**
+     * Replaces the properties by the entries of the given map. Unlike {@link MeasurementImpl},
+     * the values are copied and later changes of the map are not reflected.
+     *
+     * @param properties the new properties
+     */
+    @Override
+    public void setAllProperties(Map<PropertyKey, Double> properties) {
+        presence &= ~PROPERTY_MASK;
+        if (properties != null) {
+            for (Map.Entry<PropertyKey, Double> entry : properties.entrySet()) {
+                setProperty(entry.getKey(), entry.getValue());
+            }
+        }
+    }
+
+    @Override
+    public Measurement carbonCopy() {
+        CompactMeasurement res = new CompactMeasurement();
+        res.trackId = trackId;
+        res.latitude = latitude;
+        res.longitude = longitude;
+        res.time = time;
+        res.presence = presence;
+        if (values != null) {
+            res.values = Arrays.copyOf(values, values.length);
+        }
+        return res;
+    }
+
+    @Override
+    public synchronized void reset() {
+        presence = 0;
+    }
+
+    private void removeProperty(int ordinal) {
+        presence &= ~(1L << ordinal);
+    }
+
+    /**
+     * Map view of the properties.
+     */
+    private final class PropertyMap extends AbstractMap<PropertyKey, Double> {
+
+        @Override
+        public int size() {
+            return Long.bitCount(presence & PROPERTY_MASK);
+        }
+
+        @Override
+        public boolean isEmpty() {
+            return (presence & PROPERTY_MASK) == 0;
+        }
+
+        @Override
+        public boolean containsKey(Object key) {
+            return key instanceof PropertyKey && hasProperty((PropertyKey) key);
+        }
+
+        @Override
+        public Double get(Object key) {
+            return key instanceof PropertyKey ? getProperty((PropertyKey) key) : null;
+        }
+
+        @Override
+        public Double put(PropertyKey key, Double value) {
+            if (key == null || value == null) {
+                throw new NullPointerException("Null keys and values are not supported");
+            }
+            Double previous = getProperty(key);
+            setProperty(key, value);
+            return previous;
+        }
+
+        @Override
+        public Double remove(Object key) {
+            Double previous = get(key);
+            if (previous != null) {
+                removeProperty(((PropertyKey) key).ordinal());
+            }
+            return previous;
+        }
+
+        @Override
+        public void clear() {
+            presence &= ~PROPERTY_MASK;
+        }
+
+        @Override
+        public Set<Entry<PropertyKey, Double>> entrySet() {
+            return new AbstractSet<Entry<PropertyKey, Double>>() {
+                @Override
+                public Iterator<Entry<PropertyKey, Double>> iterator() {
+                    return new PropertyIterator();
+                }
+
+                @Override
+                public int size() {
+                    return PropertyMap.this.size();
+                }
+            };
+        }
+    }
+
+    /**
+     * Iterates the present properties in the order of their keys.
+     */
+    private final class PropertyIterator implements Iterator<Map.Entry<PropertyKey, Double>> {
+        private long remaining = presence & PROPERTY_MASK;
+        private int last = -1;
+
+        @Override
+        public boolean hasNext() {
+            return remaining != 0;
+        }
+
+        @Override
+        public Map.Entry<PropertyKey, Double> next() {
+            if (remaining == 0) {
+                throw new NoSuchElementException();
+            }
+            last = Long.numberOfTrailingZeros(remaining);
+            remaining &= remaining - 1;
+            return new PropertyEntry(PROPERTY_KEYS[last]);
+        }
+
+        @Override
+        public void remove() {
+            if (last < 0) {
+                throw new IllegalStateException();
+            }
+            removeProperty(last);
+            last = -1;
+        }
+    }
+
+    /**
+     * Entry writing through to the measurement.
+     */
+    private final class PropertyEntry implements Map.Entry<PropertyKey, Double> {
+        private final PropertyKey key;
+
+        private PropertyEntry(PropertyKey key) {
+            this.key = key;
+        }
+
+        @Override
+        public PropertyKey getKey() {
+            return key;
+        }
+
+        @Override
+        public Double getValue() {
+            return values[key.ordinal()];
+        }
+
+        @Override
+        public Double setValue(Double value) {
+            if (value == null) {
+                throw new NullPointerException("Null values are not supported");
+            }
+            Double previous = getValue();
+            values[key.ordinal()] = value;
+            return previous;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (!(o instanceof Map.Entry)) {
+                return false;
+            }
+            Map.Entry<?, ?> other = (Map.Entry<?, ?>) o;
+            return key == other.getKey() && getValue().equals(other.getValue());
+        }
+
+        @Override
+        public int hashCode() {
+            return key.hashCode() ^ getValue().hashCode();
+        }
+
+        @Override
+        public String toString() {
+            return key + "=" + getValue();
+        }
+    }
+}
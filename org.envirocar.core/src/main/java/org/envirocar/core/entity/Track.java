@@ -134,6 +134,16 @@ public interface Track extends BaseEntity<Track>, Comparable<Track> {
 
     void setMeasurements(List<Measurement> measurements);
 
+    /**
+     * Returns the number of measurements of this track. For lazily loaded tracks this is the
+     * number of measurements stored in the database.
+     *
+     * @return the number of measurements.
+     */
+    int getNumberOfMeasurements();
+
+    void setNumberOfMeasurements(int numberOfMeasurements);
+
     boolean hasProperty(Measurement.PropertyKey propertyKey);
 
     List<Measurement.PropertyKey> getSupportedProperties();
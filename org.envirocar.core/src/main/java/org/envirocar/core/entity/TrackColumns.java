@@ -0,0 +1,329 @@
+/**
+ * Copyright (C) 2013 - 2019 the enviroCar community
+ *
+ * This file is part of the enviroCar app.
+ *
+ * The enviroCar app is free software: you can redistribute it and/or
+ * modify it under the terms of the GNU General Public License as published
+ * by the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * The enviroCar app is distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU General
+ * Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License along
+ * with the enviroCar app. If not, see http://www.gnu.org/licenses/.
+ */
+package org.envirocar.core.entity;
+
+import java.util.AbstractList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Column oriented, read-only representation of the measurements of a track for analysis and
+ * rendering. Times, coordinates and the values of each {@link Measurement.PropertyKey} are held
+ * in primitive arrays indexed by the row, i.e. the position of the measurement in the track, so
+ * that passes over a single property run over one array without per measurement lookups.
+ * <p>
+ * Rows without a position have NaN coordinates. Whether a property is present in a row is
+ * recorded in a validity bitset per property; the value of an absent property is 0.
+ */
+public final class TrackColumns {
+    private static final Measurement.PropertyKey[] PROPERTY_KEYS =
+            Measurement.PropertyKey.values();
+
+    private final int size;
+    private final long[] times;
+    private final double[] latitudes;
+    private final double[] longitudes;
+    private final double[][] values;
+    private final long[][] validity;
+
+    private TrackColumns(int size, long[] times, double[] latitudes, double[] longitudes,
+                         double[][] values, long[][] validity) {
+        this.size = size;
+        this.times = times;
+        this.latitudes = latitudes;
+        this.longitudes = longitudes;
+        this.values = values;
+        this.validity = validity;
+    }
+
+    /**
+     * Creates the columns of a list of measurements.
+     *
+     * @param measurements the measurements ordered by time.
+     * @return the columns.
+     */
+    public static TrackColumns fromMeasurements(List<Measurement> measurements) {
+        Builder builder = new Builder(measurements.size());
+        for (Measurement measurement : measurements) {
+            builder.addMeasurement(measurement);
+        }
+        return builder.build();
+    }
+
+    /**
+     * @return the number of rows.
+     */
+    public int size() {
+        return size;
+    }
+
+    public boolean isEmpty() {
+        return size == 0;
+    }
+
+    /**
+     * @return the time column. The array must not be modified.
+     */
+    public long[] getTimes() {
+        return times;
+    }
+
+    /**
+     * @return the latitude column, NaN for rows without a position. The array must not be
+     * modified.
+     */
+    public double[] getLatitudes() {
+        return latitudes;
+    }
+
+    /**
+     * @return the longitude column, NaN for rows without a position. The array must not be
+     * modified.
+     */
+    public double[] getLongitudes() {
+        return longitudes;
+    }
+
+    public boolean hasPosition(int row) {
+        return !Double.isNaN(latitudes[row]) && !Double.isNaN(longitudes[row]);
+    }
+
+    /**
+     * @param key the property.
+     * @return true if at least one row has a value of the property.
+     */
+    public boolean hasColumn(Measurement.PropertyKey key) {
+        return values[key.ordinal()] != null;
+    }
+
+    /**
+     * @param key the property.
+     * @return the values of the property or null if no row has one. Rows without a value are
+     * 0, see {@link #isValid(Measurement.PropertyKey, int)}. The array must not be modified.
+     */
+    public double[] getColumn(Measurement.PropertyKey key) {
+        return values[key.ordinal()];
+    }
+
+    /**
+     * @param key the property.
+     * @param row the row.
+     * @return true if the row has a value of the property.
+     */
+    public boolean isValid(Measurement.PropertyKey key, int row) {
+        long[] bits = validity[key.ordinal()];
+        return bits != null && (bits[row >>> 6] & (1L << row)) != 0;
+    }
+
+    /**
+     * @param key the property.
+     * @return the number of rows that have a value of the property.
+     */
+    public int countValid(Measurement.PropertyKey key) {
+        long[] bits = validity[key.ordinal()];
+        if (bits == null) {
+            return 0;
+        }
+        int count = 0;
+        for (long word : bits) {
+            count += Long.bitCount(word);
+        }
+        return count;
+    }
+
+    /**
+     * Creates a measurement of a single row, e.g. for algorithms that work on measurements.
+     *
+     * @param row the row.
+     * @return the measurement of the row.
+     */
+    public Measurement getMeasurement(int row) {
+        return getMeasurement(row, new CompactMeasurement());
+    }
+
+    /**
+     * Returns a read-only list view of the rows for code that works on measurements. Every
+     * access creates the measurement of the row, so the view does not hold the measurements of
+     * all rows.
+     *
+     * @return the rows as list of measurements.
+     */
+    public List<Measurement> asMeasurementList() {
+        return new AbstractList<Measurement>() {
+            @Override
+            public Measurement get(int index) {
+                return getMeasurement(index);
+            }
+
+            @Override
+            public int size() {
+                return size;
+            }
+        };
+    }
+
+    /**
+     * Fills a measurement with a single row, so that passes over all rows can reuse one
+     * measurement.
+     *
+     * @param row    the row.
+     * @param result the measurement to reset and fill.
+     * @return the given measurement.
+     */
+    public Measurement getMeasurement(int row, Measurement result) {
+        result.reset();
+        result.setTime(times[row]);
+        if (hasPosition(row)) {
+            result.setLatitude(latitudes[row]);
+            result.setLongitude(longitudes[row]);
+        }
+        for (Measurement.PropertyKey key : PROPERTY_KEYS) {
+            if (isValid(key, row)) {
+                result.setProperty(key, values[key.ordinal()][row]);
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Appends rows to growing columns, e.g. while iterating a cursor or parsing a download.
+     */
+    public static final class Builder {
+        private int size;
+        private long[] times;
+        private double[] latitudes;
+        private double[] longitudes;
+        private final double[][] values = new double[PROPERTY_KEYS.length][];
+        private final long[][] validity = new long[PROPERTY_KEYS.length][];
+
+        public Builder() {
+            this(64);
+        }
+
+        /**
+         * @param expectedSize the expected number of rows.
+         */
+        public Builder(int expectedSize) {
+            int capacity = Math.max(expectedSize, 1);
+            times = new long[capacity];
+            latitudes = new double[capacity];
+            longitudes = new double[capacity];
+        }
+
+        /**
+         * Starts a new row without position and properties.
+         *
+         * @param time the time of the row.
+         * @return this builder.
+         */
+        public Builder addRow(long time) {
+            if (size == times.length) {
+                int capacity = size * 2;
+                times = Arrays.copyOf(times, capacity);
+                latitudes = Arrays.copyOf(latitudes, capacity);
+                longitudes = Arrays.copyOf(longitudes, capacity);
+            }
+            times[size] = time;
+            latitudes[size] = Double.NaN;
+            longitudes[size] = Double.NaN;
+            size++;
+            return this;
+        }
+
+        /**
+         * Appends a row with the time, position and properties of a measurement, e.g. while
+         * consuming a measurement stream.
+         *
+         * @param measurement the measurement.
+         * @return this builder.
+         */
+        public Builder addMeasurement(Measurement measurement) {
+            addRow(measurement.getTime());
+            Double latitude = measurement.getLatitude();
+            Double longitude = measurement.getLongitude();
+            if (latitude != null && longitude != null) {
+                setPosition(latitude, longitude);
+            }
+            for (Measurement.PropertyKey key : PROPERTY_KEYS) {
+                Double value = measurement.getProperty(key);
+                if (value != null) {
+                    setValue(key, value);
+                }
+            }
+            return this;
+        }
+
+        /**
+         * Sets the position of the current row.
+         */
+        public Builder setPosition(double latitude, double longitude) {
+            int row = currentRow();
+            latitudes[row] = latitude;
+            longitudes[row] = longitude;
+            return this;
+        }
+
+        /**
+         * Sets a property value of the current row.
+         */
+        public Builder setValue(Measurement.PropertyKey key, double value) {
+            int row = currentRow();
+            int ordinal = key.ordinal();
+            double[] column = values[ordinal];
+            if (column == null || column.length <= row) {
+                column = values[ordinal] = column == null
+                        ? new double[times.length] : Arrays.copyOf(column, times.length);
+            }
+            long[] bits = validity[ordinal];
+            int words = (times.length + 63) >>> 6;
+            if (bits == null || bits.length < words) {
+                bits = validity[ordinal] = bits == null
+                        ? new long[words] : Arrays.copyOf(bits, words);
+            }
+            column[row] = value;
+            bits[row >>> 6] |= 1L << row;
+            return this;
+        }
+
+        /**
+         * @return the columns of the rows added so far.
+         */
+        public TrackColumns build() {
+            double[][] resultValues = new double[PROPERTY_KEYS.length][];
+            long[][] resultValidity = new long[PROPERTY_KEYS.length][];
+            int words = (size + 63) >>> 6;
+            for (int i = 0; i < PROPERTY_KEYS.length; i++) {
+                if (values[i] != null) {
+                    resultValues[i] = Arrays.copyOf(values[i], size);
+                    resultValidity[i] = Arrays.copyOf(validity[i], words);
+                }
+            }
+            return new TrackColumns(size, Arrays.copyOf(times, size),
+                    Arrays.copyOf(latitudes, size), Arrays.copyOf(longitudes, size),
+                    resultValues, resultValidity);
+        }
+
+        private int currentRow() {
+            if (size == 0) {
+                throw new IllegalStateException("No row has been added");
+            }
+            return size - 1;
+        }
+    }
+}
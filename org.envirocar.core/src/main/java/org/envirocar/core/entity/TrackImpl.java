@@ -52,6 +52,7 @@ public class TrackImpl implements Track, TrackStatisticsProvider {
     protected DownloadState downloadState;
 
     protected boolean isLazyLoadingMeasurements = false;
+    protected Integer numberOfMeasurements;
 
     protected Double distanceOfTrack;
     protected Double consumptionPerHour;
@@ -120,6 +121,9 @@ public class TrackImpl implements Track, TrackStatisticsProvider {
         track.setMeasurements(new ArrayList<>(measurements));
         track.setLazyMeasurements(isLazyLoadingMeasurements);
         track.setLength(length);
+        if (numberOfMeasurements != null) {
+            track.setNumberOfMeasurements(numberOfMeasurements);
+        }
         return track;
     }
 
@@ -299,6 +303,19 @@ public class TrackImpl implements Track, TrackStatisticsProvider {
         this.measurements = measurements;
     }
 
+    @Override
+    public int getNumberOfMeasurements() {
+        if (numberOfMeasurements != null && measurements.isEmpty()) {
+            return numberOfMeasurements;
+        }
+        return measurements.size();
+    }
+
+    @Override
+    public void setNumberOfMeasurements(int numberOfMeasurements) {
+        this.numberOfMeasurements = numberOfMeasurements;
+    }
+
     @Override
     public boolean hasProperty(Measurement.PropertyKey propertyKey) {
         for (Measurement m : measurements) {
@@ -0,0 +1,293 @@
+/**
+ * Copyright (C) 2013 - 2019 the enviroCar community
+ *
+ * This file is part of the enviroCar app.
+ *
+ * The enviroCar app is free software: you can redistribute it and/or
+ * modify it under the terms of the GNU General Public License as published
+ * by the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * The enviroCar app is distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU General
+ * Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License along
+ * with the enviroCar app. If not, see http://www.gnu.org/licenses/.
+ */
+package org.envirocar.core.entity.internal;
+
+import org.envirocar.core.entity.Measurement;
+import org.envirocar.core.entity.Track;
+import org.envirocar.core.utils.LocationUtils;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Track-level statistics that are accumulated measurement by measurement, so that they can be
+ * persisted and queried without loading the measurements of a track.
+ */
+public class TrackSummary {
+
+    private final Track.TrackId trackId;
+
+    private long startTime;
+    private long endTime;
+    private int numberOfMeasurements;
+    private double distance;
+
+    private double speedSum;
+    private int speedCount;
+    private double consumptionSum;
+    private int consumptionCount;
+    private double co2Sum;
+    private int co2Count;
+
+    private double minLatitude;
+    private double maxLatitude;
+    private double minLongitude;
+    private double maxLongitude;
+    private Double lastLatitude;
+    private Double lastLongitude;
+
+    private long supportedProperties;
+    private boolean finished;
+
+    /**
+     * Constructor.
+     *
+     * @param trackId the id of the summarized track.
+     */
+    public TrackSummary(Track.TrackId trackId) {
+        this.trackId = trackId;
+    }
+
+    /**
+     * Adds a measurement to the summary. Measurements have to be added in time order.
+     *
+     * @param measurement the measurement to add.
+     */
+    public void accumulate(Measurement measurement) {
+        long time = measurement.getTime();
+        if (numberOfMeasurements == 0) {
+            startTime = time;
+        }
+        endTime = time;
+        numberOfMeasurements++;
+
+        Double latitude = measurement.getLatitude();
+        Double longitude = measurement.getLongitude();
+        if (latitude != null && longitude != null) {
+            if (lastLatitude == null) {
+                minLatitude = maxLatitude = latitude;
+                minLongitude = maxLongitude = longitude;
+            } else {
+                distance += LocationUtils.getDistance(lastLatitude, lastLongitude, latitude, longitude);
+                minLatitude = Math.min(minLatitude, latitude);
+                maxLatitude = Math.max(maxLatitude, latitude);
+                minLongitude = Math.min(minLongitude, longitude);
+                maxLongitude = Math.max(maxLongitude, longitude);
+            }
+            lastLatitude = latitude;
+            lastLongitude = longitude;
+        }
+
+        for (Measurement.PropertyKey key : measurement.getAllProperties().keySet()) {
+            supportedProperties |= 1L << key.ordinal();
+        }
+
+        Double speed = measurement.getProperty(Measurement.PropertyKey.SPEED);
+        if (speed == null) {
+            speed = measurement.getProperty(Measurement.PropertyKey.GPS_SPEED);
+        }
+        if (speed != null) {
+            speedSum += speed;
+            speedCount++;
+        }
+
+        Double consumption = measurement.getProperty(Measurement.PropertyKey.CONSUMPTION);
+        if (consumption != null) {
+            consumptionSum += consumption;
+            consumptionCount++;
+        }
+
+        Double co2 = measurement.getProperty(Measurement.PropertyKey.CO2);
+        if (co2 != null) {
+            co2Sum += co2;
+            co2Count++;
+        }
+    }
+
+    public Track.TrackId getTrackId() {
+        return trackId;
+    }
+
+    public long getStartTime() {
+        return startTime;
+    }
+
+    public long getEndTime() {
+        return endTime;
+    }
+
+    public long getDuration() {
+        return endTime - startTime;
+    }
+
+    public int getNumberOfMeasurements() {
+        return numberOfMeasurements;
+    }
+
+    /**
+     * @return the distance of the track in km.
+     */
+    public double getDistance() {
+        return distance;
+    }
+
+    /**
+     * @return the average speed in km/h or null if no speed values are available.
+     */
+    public Double getAverageSpeed() {
+        return speedCount > 0 ? speedSum / speedCount : null;
+    }
+
+    /**
+     * @return the average fuel consumption in l/h or null if no consumption values are available.
+     */
+    public Double getAverageConsumption() {
+        return consumptionCount > 0 ? consumptionSum / consumptionCount : null;
+    }
+
+    /**
+     * @return the average CO2 emission in kg/h or null if no CO2 values are available.
+     */
+    public Double getAverageCO2() {
+        return co2Count > 0 ? co2Sum / co2Count : null;
+    }
+
+    public boolean hasBoundingBox() {
+        return lastLatitude != null;
+    }
+
+    public double getMinLatitude() {
+        return minLatitude;
+    }
+
+    public double getMaxLatitude() {
+        return maxLatitude;
+    }
+
+    public double getMinLongitude() {
+        return minLongitude;
+    }
+
+    public double getMaxLongitude() {
+        return maxLongitude;
+    }
+
+    public Double getLastLatitude() {
+        return lastLatitude;
+    }
+
+    public Double getLastLongitude() {
+        return lastLongitude;
+    }
+
+    /**
+     * @return a bitmask over the ordinals of all property keys that occur in the track.
+     */
+    public long getSupportedPropertiesMask() {
+        return supportedProperties;
+    }
+
+    public boolean hasProperty(Measurement.PropertyKey key) {
+        return (supportedProperties & (1L << key.ordinal())) != 0;
+    }
+
+    public List<Measurement.PropertyKey> getSupportedProperties() {
+        List<Measurement.PropertyKey> result = new ArrayList<>();
+        for (Measurement.PropertyKey key : Measurement.PropertyKey.values()) {
+            if (hasProperty(key)) {
+                result.add(key);
+            }
+        }
+        return result;
+    }
+
+    public boolean isFinished() {
+        return finished;
+    }
+
+    public void setFinished(boolean finished) {
+        this.finished = finished;
+    }
+
+    public double getSpeedSum() {
+        return speedSum;
+    }
+
+    public int getSpeedCount() {
+        return speedCount;
+    }
+
+    public double getConsumptionSum() {
+        return consumptionSum;
+    }
+
+    public int getConsumptionCount() {
+        return consumptionCount;
+    }
+
+    public double getCO2Sum() {
+        return co2Sum;
+    }
+
+    public int getCO2Count() {
+        return co2Count;
+    }
+
+    public void setTimes(long startTime, long endTime, int numberOfMeasurements) {
+        this.startTime = startTime;
+        this.endTime = endTime;
+        this.numberOfMeasurements = numberOfMeasurements;
+    }
+
+    public void setDistance(double distance) {
+        this.distance = distance;
+    }
+
+    public void setSpeed(double speedSum, int speedCount) {
+        this.speedSum = speedSum;
+        this.speedCount = speedCount;
+    }
+
+    public void setConsumption(double consumptionSum, int consumptionCount) {
+        this.consumptionSum = consumptionSum;
+        this.consumptionCount = consumptionCount;
+    }
+
+    public void setCO2(double co2Sum, int co2Count) {
+        this.co2Sum = co2Sum;
+        this.co2Count = co2Count;
+    }
+
+    public void setBoundingBox(double minLatitude, double maxLatitude,
+                               double minLongitude, double maxLongitude) {
+        this.minLatitude = minLatitude;
+        this.maxLatitude = maxLatitude;
+        this.minLongitude = minLongitude;
+        this.maxLongitude = maxLongitude;
+    }
+
+    public void setLastPosition(Double lastLatitude, Double lastLongitude) {
+        this.lastLatitude = lastLatitude;
+        this.lastLongitude = lastLongitude;
+    }
+
+    public void setSupportedPropertiesMask(long supportedProperties) {
+        this.supportedProperties = supportedProperties;
+    }
+}
@@ -21,7 +21,9 @@ package org.envirocar.core.trackprocessing.statistics;
 import android.location.Location;
 
 import org.envirocar.core.entity.Car;
+import org.envirocar.core.entity.CompactMeasurement;
 import org.envirocar.core.entity.Measurement;
+import org.envirocar.core.entity.TrackColumns;
 import org.envirocar.core.exception.FuelConsumptionException;
 import org.envirocar.core.exception.UnsupportedFuelTypeException;
 import org.envirocar.core.logging.Logger;
@@ -73,6 +75,98 @@ public class TrackStatisticsProcessor {
         return distance / 1000.0d;
     }
 
+    /**
+     * Computes the distance of a track from its coordinate columns. Rows without a position
+     * are skipped.
+     *
+     * @param columns the columns of the track.
+     * @return the distance in km.
+     */
+    public double computeDistanceOfTrack(TrackColumns columns) {
+        double[] distances = computeCumulativeDistances(columns);
+        return distances.length == 0 ? 0.0 : distances[distances.length - 1];
+    }
+
+    /**
+     * Computes the distance from the start of the track for every row. Rows without a position
+     * get the distance of the previous row.
+     *
+     * @param columns the columns of the track.
+     * @return the distance in km per row.
+     */
+    public static double[] computeCumulativeDistances(TrackColumns columns) {
+        double[] latitudes = columns.getLatitudes();
+        double[] longitudes = columns.getLongitudes();
+        double[] result = new double[columns.size()];
+        float[] distanceArray = new float[1];
+
+        int last = -1;
+        double distance = 0.0;
+        for (int i = 0; i < result.length; i++) {
+            if (columns.hasPosition(i)) {
+                if (last >= 0) {
+                    Location.distanceBetween(latitudes[last], longitudes[last],
+                            latitudes[i], longitudes[i], distanceArray);
+                    distance += distanceArray[0] / 1000.0d;
+                }
+                last = i;
+            }
+            result[i] = distance;
+        }
+        return result;
+    }
+
+    public Double getCO2Average(TrackColumns columns) throws FuelConsumptionException {
+        if (consumptionAlgorithm == null) {
+            return null;
+        }
+
+        double co2Avg = 0.0;
+        double[] consumption = columns.getColumn(Measurement.PropertyKey.CONSUMPTION);
+        if (consumption != null) {
+            for (int i = 0; i < consumption.length; i++) {
+                if (columns.isValid(Measurement.PropertyKey.CONSUMPTION, i)) {
+                    co2Avg += consumptionAlgorithm.calculateCO2FromConsumption(consumption[i]);
+                }
+            }
+        }
+        return co2Avg / columns.size();
+    }
+
+    public Double getFuelConsumptionPerHour(TrackColumns columns)
+            throws FuelConsumptionException {
+        if (consumptionAlgorithm == null) {
+            return null;
+        }
+
+        // the consumption algorithms work on measurements, so every row is filled into the
+        // same measurement.
+        Measurement row = new CompactMeasurement();
+        double consumption = 0.0;
+        int consideredCount = 0;
+        for (int i = 0; i < columns.size(); i++) {
+            try {
+                consumption += consumptionAlgorithm.calculateConsumption(
+                        columns.getMeasurement(i, row));
+                consideredCount++;
+            } catch (UnsupportedFuelTypeException e) {
+                LOG.debug(e.getMessage());
+            } catch (FuelConsumptionException e) {
+                // no action required.
+            }
+        }
+
+        LOG.info(String.format("%s of %s rows used for consumption/hour calculation",
+                consideredCount, columns.size()));
+
+        if (consideredCount <= 0) {
+            throw new FuelConsumptionException("No fuel consumption computation possible. " +
+                    "No values with required parameters");
+        }
+
+        return consumption / consideredCount;
+    }
+
     public Double getCO2Average(List<Measurement> measurements) throws FuelConsumptionException {
         double co2Avg = 0.0;
         if (consumptionAlgorithm == null) {
@@ -0,0 +1,154 @@
+/**
+ * Copyright (C) 2013 - 2019 the enviroCar community
+ *
+ * This file is part of the enviroCar app.
+ *
+ * The enviroCar app is free software: you can redistribute it and/or
+ * modify it under the terms of the GNU General Public License as published
+ * by the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * The enviroCar app is distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU General
+ * Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License along
+ * with the enviroCar app. If not, see http://www.gnu.org/licenses/.
+ */
+package org.envirocar.obd.emulator;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.io.OutputStream;
+
+/**
+ * A bounded byte buffer between two threads with stream views on both ends. Unlike the
+ * {@link java.io.PipedInputStream} it does not break when a writing thread terminates, which
+ * happens all the time with the thread pools the adapters run on.
+ */
+class BytePipe {
+    private static final int CAPACITY = 64 * 1024;
+
+    private final byte[] buffer = new byte[CAPACITY];
+    private int head;
+    private int count;
+    private boolean closed;
+
+    private final InputStream inputStream = new InputStream() {
+        @Override
+        public int read() throws IOException {
+            byte[] b = new byte[1];
+            return BytePipe.this.read(b, 0, 1, 0) < 0 ? -1 : b[0] & 0xFF;
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len) throws IOException {
+            return BytePipe.this.read(b, off, len, 0);
+        }
+
+        @Override
+        public int available() {
+            return BytePipe.this.available();
+        }
+
+        @Override
+        public void close() {
+            BytePipe.this.close();
+        }
+    };
+
+    private final OutputStream outputStream = new OutputStream() {
+        @Override
+        public void write(int b) throws IOException {
+            BytePipe.this.write(new byte[]{(byte) b}, 0, 1);
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) throws IOException {
+            BytePipe.this.write(b, off, len);
+        }
+
+        @Override
+        public void close() {
+            BytePipe.this.close();
+        }
+    };
+
+    InputStream getInputStream() {
+        return inputStream;
+    }
+
+    OutputStream getOutputStream() {
+        return outputStream;
+    }
+
+    /**
+     * @param timeout the maximum time to wait for data in ms, 0 to wait until data arrives
+     * @return the number of bytes read, 0 on timeout or -1 if the pipe is closed
+     */
+    synchronized int read(byte[] b, int off, int len, long timeout) throws IOException {
+        if (len == 0) {
+            return 0;
+        }
+
+        long deadline = System.currentTimeMillis() + timeout;
+        try {
+            while (count == 0) {
+                if (closed) {
+                    return -1;
+                }
+
+                if (timeout <= 0) {
+                    wait();
+                } else {
+                    long remaining = deadline - System.currentTimeMillis();
+                    if (remaining <= 0) {
+                        return 0;
+                    }
+                    wait(remaining);
+                }
+            }
+        } catch (InterruptedException e) {
+            throw new InterruptedIOException();
+        }
+
+        int result = Math.min(len, count);
+        for (int i = 0; i < result; i++) {
+            b[off + i] = buffer[head];
+            head = (head + 1) % CAPACITY;
+        }
+        count -= result;
+        notifyAll();
+        return result;
+    }
+
+    synchronized void write(byte[] b, int off, int len) throws IOException {
+        try {
+            for (int i = off; i < off + len; i++) {
+                while (count == CAPACITY && !closed) {
+                    wait();
+                }
+                if (closed) {
+                    throw new IOException("Pipe closed");
+                }
+
+                buffer[(head + count) % CAPACITY] = b[i];
+                count++;
+            }
+        } catch (InterruptedException e) {
+            throw new InterruptedIOException();
+        }
+        notifyAll();
+    }
+
+    synchronized int available() {
+        return count;
+    }
+
+    synchronized void close() {
+        closed = true;
+        notifyAll();
+    }
+}
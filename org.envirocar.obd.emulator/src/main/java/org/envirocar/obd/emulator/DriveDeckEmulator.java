@@ -0,0 +1,217 @@
+/**
+ * Copyright (C) 2013 - 2019 the enviroCar community
+ *
+ * This file is part of the enviroCar app.
+ *
+ * The enviroCar app is free software: you can redistribute it and/or
+ * modify it under the terms of the GNU General Public License as published
+ * by the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * The enviroCar app is distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU General
+ * Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License along
+ * with the enviroCar app. If not, see http://www.gnu.org/licenses/.
+ */
+package org.envirocar.obd.emulator;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Emulates a DriveDeck Sport W4. The adapter connects to the vehicle on its own and reports
+ * its state, the protocol, the VIN and the supported PIDs. Once it received a cycle command
+ * ("a17" followed by the PIDs, each increased by 0x0D) it streams the values of these PIDs
+ * in binary form, one response every latency, until another cycle command arrives.
+ * <p>
+ * Binary values that would collide with the line end or the separators of the protocol are
+ * shifted by one, so that every emulated response can be parsed.
+ */
+public class DriveDeckEmulator extends Emulator {
+    private static final char COMMAND_END = '\r';
+    private static final char RESPONSE_END = '>';
+    private static final char SEPARATOR = '<';
+    private static final byte[] CYCLE_PREFIX = "a17".getBytes();
+    private static final int CYCLE_PID_OFFSET = 0x0D;
+    private static final long STATUS_INTERVAL = 100;
+    private static final int CONNECTING_MESSAGES = 3;
+
+    private static final Map<Signal, String> RESPONSE_IDS = new EnumMap<>(Signal.class);
+
+    static {
+        RESPONSE_IDS.put(Signal.RPM, "40");
+        RESPONSE_IDS.put(Signal.SPEED, "41");
+        RESPONSE_IDS.put(Signal.MAF, "42");
+        RESPONSE_IDS.put(Signal.TPS, "44");
+        RESPONSE_IDS.put(Signal.CALCULATED_ENGINE_LOAD, "45");
+        RESPONSE_IDS.put(Signal.INTAKE_AIR_TEMP, "49");
+        RESPONSE_IDS.put(Signal.O2_LAMBDA_PROBE_1_VOLTAGE, "4D");
+        RESPONSE_IDS.put(Signal.O2_LAMBDA_PROBE_1_CURRENT, "4D");
+        RESPONSE_IDS.put(Signal.INTAKE_MAP, "52");
+    }
+
+    private List<Signal> cycle = new ArrayList<>();
+    private int cycleIndex;
+
+    public DriveDeckEmulator(VehicleProfile profile) {
+        super(profile);
+    }
+
+    @Override
+    public String getDeviceName() {
+        return "DRIVEDECK W4";
+    }
+
+    @Override
+    protected void serve() throws IOException, InterruptedException {
+        for (int i = 0; i < CONNECTING_MESSAGES; i++) {
+            respondLine("B14".getBytes());
+            awaitCommands(STATUS_INTERVAL);
+        }
+
+        respondLine("C1".getBytes());
+        respondLine(("B15" + profile.getVin()).getBytes());
+        for (int group = 0; group <= 0x40; group += 0x20) {
+            byte[] supported = supportedResponse(group);
+            if (supported != null) {
+                respondLine(supported);
+            }
+        }
+
+        while (true) {
+            if (cycle.isEmpty()) {
+                // engine on
+                respondLine("B31".getBytes());
+                awaitCommands(STATUS_INTERVAL);
+            } else {
+                respondValue(cycle.get(cycleIndex++ % cycle.size()));
+                awaitCommands(nextLatency());
+            }
+        }
+    }
+
+    private void awaitCommands(long timeout) throws IOException {
+        byte[] command = pollCommand(COMMAND_END, timeout);
+        while (command != null) {
+            if (isCycleCommand(command)) {
+                setCycle(command);
+            }
+            command = pollCommand(COMMAND_END, 0);
+        }
+    }
+
+    private boolean isCycleCommand(byte[] command) {
+        if (command.length < CYCLE_PREFIX.length) {
+            return false;
+        }
+        for (int i = 0; i < CYCLE_PREFIX.length; i++) {
+            if (command[i] != CYCLE_PREFIX[i]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private void setCycle(byte[] command) {
+        List<Signal> result = new ArrayList<>();
+        for (int i = CYCLE_PREFIX.length; i < command.length; i++) {
+            Signal s = Signal.fromPid((command[i] & 0xFF) - CYCLE_PID_OFFSET);
+            if (s != null && RESPONSE_IDS.containsKey(s) && profile.supports(s)) {
+                result.add(s);
+            }
+        }
+
+        this.cycle = result;
+        this.cycleIndex = 0;
+    }
+
+    private void respondValue(Signal signal) throws IOException {
+        ByteArrayOutputStream line = new ByteArrayOutputStream();
+        line.write('B');
+        line.write(RESPONSE_IDS.get(signal).getBytes());
+
+        Fault fault = nextFault();
+        if (fault == Fault.NO_DATA) {
+            line.write(SEPARATOR);
+            line.write(SEPARATOR);
+        } else if (fault == Fault.NONE) {
+            int[] encoded = signal.encode(profile.getValue(signal, getElapsedTime()));
+            int[] data = new int[6];
+            if (encoded.length == 4) {
+                // lambda probes carry their voltage or current in the third pair
+                data[0] = encoded[0];
+                data[1] = encoded[1];
+                data[4] = encoded[2];
+                data[5] = encoded[3];
+            } else {
+                System.arraycopy(encoded, 0, data, 0, encoded.length);
+            }
+
+            for (int i = 0; i < data.length; i += 2) {
+                line.write(SEPARATOR);
+                line.write(escape(data[i]));
+                line.write(escape(data[i + 1]));
+            }
+        }
+        // an error leaves the response truncated after the id
+
+        respondLine(line.toByteArray());
+    }
+
+    private byte[] supportedResponse(int group) {
+        long mask = 0;
+        boolean any = false;
+        for (Signal s : Signal.values()) {
+            int offset = s.getPid() - group;
+            if (profile.supports(s) && offset >= 1 && offset <= 0x20) {
+                mask |= 1L << (0x20 - offset);
+                any = true;
+            } else if (profile.supports(s) && offset > 0x20) {
+                mask |= 1;
+            }
+        }
+
+        if (!any && group > 0) {
+            return null;
+        }
+
+        ByteArrayOutputStream line = new ByteArrayOutputStream();
+        line.write('B');
+        line.write('7');
+        line.write('0');
+        line.write('7');
+        line.write('E');
+        line.write('8');
+        String g = String.format("%02X", group);
+        line.write(g.charAt(0));
+        line.write(g.charAt(1));
+        line.write(SEPARATOR);
+        line.write((int) (mask >> 24) & 0xFF);
+        line.write((int) (mask >> 16) & 0xFF);
+        line.write(SEPARATOR);
+        line.write((int) (mask >> 8) & 0xFF);
+        line.write((int) mask & 0xFF);
+        return line.toByteArray();
+    }
+
+    private int escape(int value) {
+        if (value == RESPONSE_END || value == COMMAND_END || value == SEPARATOR) {
+            return value + 1;
+        }
+        return value;
+    }
+
+    private void respondLine(byte[] line) throws IOException {
+        byte[] result = new byte[line.length + 1];
+        System.arraycopy(line, 0, result, 0, line.length);
+        result[line.length] = RESPONSE_END;
+        respond(result);
+    }
+}
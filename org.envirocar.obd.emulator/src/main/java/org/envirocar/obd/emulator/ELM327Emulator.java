@@ -0,0 +1,403 @@
+/**
+ * Copyright (C) 2013 - 2019 the enviroCar community
+ *
+ * This file is part of the enviroCar app.
+ *
+ * The enviroCar app is free software: you can redistribute it and/or
+ * modify it under the terms of the GNU General Public License as published
+ * by the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * The enviroCar app is distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU General
+ * Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License along
+ * with the enviroCar app. If not, see http://www.gnu.org/licenses/.
+ */
+package org.envirocar.obd.emulator;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+
+/**
+ * Emulates an ELM327 on a CAN (ISO 15765-4, 11 bit, 500 kbaud) vehicle.
+ * <p>
+ * Supported are the usual AT configuration commands (echo, line feeds, spaces, headers,
+ * timeout and adaptive timing), identification via ATI and - if configured - the STN
+ * specific STI, and mode 01 requests of up to six PIDs with an optional response count
+ * digit. Responses longer than a single CAN frame are split into ISO-TP frames the way the
+ * ELM327 prints them.
+ * <p>
+ * Like the ELM327, the emulator ignores everything received while it resets. The timing
+ * follows the ELM327 as well: a response is sent after the vehicle latency and,
+ * unless the response count digit was satisfied, after the time the ELM327 keeps waiting for
+ * further ECUs. That is the full AT ST timeout without adaptive timing and an approximation
+ * of the learned wait otherwise.
+ */
+public class ELM327Emulator extends Emulator {
+    private static final char COMMAND_END = '\r';
+    private static final String PROMPT = ">";
+    private static final String NO_DATA = "NO DATA";
+    private static final String UNKNOWN = "?";
+    private static final String[] ERRORS = {"CAN ERROR", "BUS BUSY", "STOPPED"};
+    private static final int MAX_PIDS = 6;
+    private static final int DEFAULT_TIMEOUT = 0x32;
+    private static final long RESET_DURATION = 200;
+
+    private String identity = "ELM327 v1.5";
+    private String stnIdentity;
+    private boolean emulateSearching = true;
+
+    private boolean echo;
+    private boolean lineFeeds;
+    private boolean spaces;
+    private boolean headers;
+    private boolean searching;
+    private int timeout;
+    private int adaptiveTiming;
+    private byte[] lastCommand = new byte[0];
+
+    public ELM327Emulator(VehicleProfile profile) {
+        super(profile);
+        reset();
+    }
+
+    @Override
+    public String getDeviceName() {
+        return "OBDII";
+    }
+
+    /**
+     * @param identity the response to ATI
+     */
+    public void setIdentity(String identity) {
+        this.identity = identity;
+    }
+
+    /**
+     * @param stnIdentity the response to STI, null if the emulated adapter has no STN chip
+     */
+    public void setStnIdentity(String stnIdentity) {
+        this.stnIdentity = stnIdentity;
+    }
+
+    /**
+     * @param emulateSearching true if the first request after a reset or protocol selection
+     *                         shall report "SEARCHING..."
+     */
+    public void setEmulateSearching(boolean emulateSearching) {
+        this.emulateSearching = emulateSearching;
+    }
+
+    @Override
+    protected void serve() throws IOException, InterruptedException {
+        while (true) {
+            byte[] command = readCommand(COMMAND_END);
+            if (command.length == 0) {
+                // a bare carriage return repeats the last command
+                command = lastCommand;
+            }
+            lastCommand = command;
+
+            if (echo) {
+                respond(new String(command) + COMMAND_END);
+            }
+            String normalized = new String(command).replace(" ", "").toUpperCase(Locale.US);
+            if (normalized.equals("ATZ") || normalized.equals("ATWS")) {
+                // the ELM327 does not listen while it restarts
+                Thread.sleep(RESET_DURATION);
+                discardInput();
+            }
+
+            handle(normalized);
+        }
+    }
+
+    private void reset() {
+        echo = true;
+        lineFeeds = false;
+        spaces = true;
+        headers = false;
+        searching = true;
+        timeout = DEFAULT_TIMEOUT;
+        adaptiveTiming = 1;
+    }
+
+    private void handle(String command) throws IOException, InterruptedException {
+        if (command.startsWith("AT")) {
+            respondLines(0, handleConfiguration(command.substring(2)));
+        } else if (command.startsWith("ST")) {
+            respondLines(0, command.equals("STI") && stnIdentity != null ? stnIdentity : UNKNOWN);
+        } else if (command.length() >= 2 && command.matches("[0-9A-F]+")) {
+            handleRequest(command);
+        } else {
+            respondLines(0, UNKNOWN);
+        }
+    }
+
+    private String handleConfiguration(String at) {
+        switch (at) {
+            case "Z":
+                reset();
+                return "\r" + identity;
+            case "WS":
+                reset();
+                return identity;
+            case "D":
+                reset();
+                return "OK";
+            case "I":
+                return identity;
+            case "@1":
+                return "OBDII to RS232 Interpreter";
+            case "DP":
+                return "AUTO, ISO 15765-4 (CAN 11/500)";
+            case "DPN":
+                return "A6";
+            case "RV":
+                return "12.6V";
+            case "E0":
+            case "E1":
+                echo = at.endsWith("1");
+                return "OK";
+            case "L0":
+            case "L1":
+                lineFeeds = at.endsWith("1");
+                return "OK";
+            case "S0":
+            case "S1":
+                spaces = at.endsWith("1");
+                return "OK";
+            case "H0":
+            case "H1":
+                headers = at.endsWith("1");
+                return "OK";
+            case "AT0":
+            case "AT1":
+            case "AT2":
+                adaptiveTiming = at.charAt(2) - '0';
+                return "OK";
+        }
+
+        if (at.startsWith("ST") && at.length() > 2) {
+            try {
+                timeout = Integer.parseInt(at.substring(2), 16);
+            } catch (NumberFormatException e) {
+                return UNKNOWN;
+            }
+            return "OK";
+        }
+
+        if (at.startsWith("SP") || at.startsWith("TP")) {
+            searching = at.length() > 2 && (at.charAt(2) == '0' || at.charAt(2) == 'A');
+            return "OK";
+        }
+
+        // everything else is accepted without changing the emulation
+        return "OK";
+    }
+
+    private void handleRequest(String command) throws IOException, InterruptedException {
+        int mode = Integer.parseInt(command.substring(0, 2), 16);
+        String body = command.substring(2);
+
+        int hint = 0;
+        if (body.length() % 2 == 1) {
+            hint = Character.digit(body.charAt(body.length() - 1), 16);
+            body = body.substring(0, body.length() - 1);
+        }
+
+        int count = body.length() / 2;
+        if (count == 0 || count > MAX_PIDS) {
+            respondLines(0, UNKNOWN);
+            return;
+        }
+
+        List<String> lines = new ArrayList<>();
+        if (searching && emulateSearching) {
+            lines.add("SEARCHING...");
+        }
+        searching = false;
+
+        long latency = nextLatency();
+        Fault fault = nextFault();
+        if (fault == Fault.ERROR) {
+            lines.add(ERRORS[nextInt(ERRORS.length)]);
+            respondLines(latency, lines.toArray(new String[0]));
+            return;
+        }
+
+        List<Integer> payload = new ArrayList<>();
+        payload.add(0x40 + mode);
+        if (mode == 1 && fault == Fault.NONE) {
+            for (int i = 0; i < count; i++) {
+                appendPid(payload, Integer.parseInt(body.substring(i * 2, i * 2 + 2), 16));
+            }
+        }
+
+        if (payload.size() == 1) {
+            lines.add(NO_DATA);
+            respondLines(latency + timeout * 4L, lines.toArray(new String[0]));
+            return;
+        }
+
+        List<String> frames = new ArrayList<>();
+        String header = formatFrames(payload, frames);
+
+        long wait;
+        if (hint > 0 && hint <= frames.size()) {
+            // the ELM327 stops listening after the expected number of frames
+            frames = frames.subList(0, hint);
+            wait = latency;
+        } else {
+            wait = latency + idleWait(latency, hint > 0);
+        }
+
+        if (header != null) {
+            lines.add(header);
+        }
+        lines.addAll(frames);
+        respondLines(wait, lines.toArray(new String[0]));
+    }
+
+    private void appendPid(List<Integer> payload, int pid) {
+        if (pid % 0x20 == 0 && pid <= 0xE0) {
+            long mask = supportedMask(pid);
+            if (mask != 0 || pid == 0) {
+                payload.add(pid);
+                for (int shift = 24; shift >= 0; shift -= 8) {
+                    payload.add((int) (mask >> shift) & 0xFF);
+                }
+            }
+            return;
+        }
+
+        Signal signal = Signal.fromPid(pid);
+        if (signal != null && profile.supports(signal)) {
+            payload.add(pid);
+            for (int b : signal.encode(profile.getValue(signal, getElapsedTime()))) {
+                payload.add(b);
+            }
+        }
+    }
+
+    private long supportedMask(int base) {
+        long mask = 0;
+        boolean further = false;
+        for (Signal s : Signal.values()) {
+            if (!profile.supports(s)) {
+                continue;
+            }
+
+            int offset = s.getPid() - base;
+            if (offset >= 1 && offset <= 0x20) {
+                mask |= 1L << (0x20 - offset);
+            } else if (offset > 0x20) {
+                further = true;
+            }
+        }
+
+        if (further) {
+            mask |= 1;
+        }
+        return mask;
+    }
+
+    /**
+     * @return the ISO-TP length line for multi-frame responses without headers, else null
+     */
+    private String formatFrames(List<Integer> payload, List<String> frames) {
+        int length = payload.size();
+        if (length <= 7) {
+            frames.add((headers ? join("7E8", hex(length)) + separator() : "")
+                    + bytes(payload, 0, length));
+            return null;
+        }
+
+        int index = 0;
+        int sequence = 0;
+        while (index < length) {
+            int size = sequence == 0 ? 6 : 7;
+            List<Integer> data = new ArrayList<>(payload.subList(index, Math.min(length, index + size)));
+            while (sequence > 0 && data.size() < size) {
+                data.add(0xAA);
+            }
+
+            String prefix;
+            if (headers) {
+                prefix = sequence == 0 ? join("7E8", "10", hex(length)) :
+                        join("7E8", hex(0x20 + (sequence & 0x0F)));
+                prefix += separator();
+            } else {
+                prefix = Integer.toHexString(sequence & 0x0F).toUpperCase(Locale.US) + ":"
+                        + separator();
+            }
+
+            frames.add(prefix + bytes(data, 0, data.size()));
+            index += size;
+            sequence++;
+        }
+
+        return headers ? null : String.format("%03X", length);
+    }
+
+    /**
+     * @return the time the ELM327 waits for further responses after the last one
+     */
+    private long idleWait(long latency, boolean unsatisfiedHint) {
+        long full = timeout * 4L;
+        if (unsatisfiedHint || adaptiveTiming == 0) {
+            return full;
+        } else if (adaptiveTiming == 1) {
+            return Math.min(full, 2 * latency + 8);
+        }
+        return Math.min(full, latency + 4);
+    }
+
+    private void respondLines(long delay, String... lines) throws IOException,
+            InterruptedException {
+        pause(delay);
+
+        String eol = lineFeeds ? "\r\n" : "\r";
+        StringBuilder sb = new StringBuilder();
+        for (String l : lines) {
+            sb.append(l).append(eol);
+        }
+        sb.append(eol).append(PROMPT);
+        respond(sb.toString());
+    }
+
+    private String bytes(List<Integer> values, int from, int to) {
+        StringBuilder sb = new StringBuilder();
+        for (int i = from; i < to; i++) {
+            if (i > from) {
+                sb.append(separator());
+            }
+            sb.append(hex(values.get(i)));
+        }
+        return sb.toString();
+    }
+
+    private String join(String... parts) {
+        StringBuilder sb = new StringBuilder();
+        for (String p : parts) {
+            if (sb.length() > 0) {
+                sb.append(separator());
+            }
+            sb.append(p);
+        }
+        return sb.toString();
+    }
+
+    private String separator() {
+        return spaces ? " " : "";
+    }
+
+    private static String hex(int value) {
+        return String.format("%02X", value);
+    }
+}
@@ -0,0 +1,278 @@
+/**
+ * Copyright (C) 2013 - 2019 the enviroCar community
+ *
+ * This file is part of the enviroCar app.
+ *
+ * The enviroCar app is free software: you can redistribute it and/or
+ * modify it under the terms of the GNU General Public License as published
+ * by the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * The enviroCar app is distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU General
+ * Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License along
+ * with the enviroCar app. If not, see http://www.gnu.org/licenses/.
+ */
+package org.envirocar.obd.emulator;
+
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.Random;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Base class of the emulated adapters. An emulator serves the streams returned by
+ * {@link #getInputStream()} and {@link #getOutputStream()} on its own thread, so they can be
+ * handed to an adapter or the OBDController like the streams of a Bluetooth socket.
+ * <p>
+ * The response latency, its jitter and the rates of injected faults can be changed at any
+ * time. Faults are drawn from a seeded random generator to keep runs reproducible.
+ */
+public abstract class Emulator implements Closeable {
+
+    public enum Fault {
+        NONE, NO_DATA, ERROR
+    }
+
+    protected final VehicleProfile profile;
+
+    private final BytePipe requests = new BytePipe();
+    private final BytePipe responses = new BytePipe();
+    private final ByteArrayOutputStream line = new ByteArrayOutputStream();
+    private final byte[] single = new byte[1];
+    private final AtomicLong requestCount = new AtomicLong();
+
+    private Random random = new Random(0);
+    private volatile long latency;
+    private volatile int jitter;
+    private volatile double noDataRate;
+    private volatile double errorRate;
+
+    private Thread worker;
+    private long startTime;
+
+    protected Emulator(VehicleProfile profile) {
+        this.profile = profile;
+    }
+
+    /**
+     * @return the stream to read the responses of the emulator from
+     */
+    public InputStream getInputStream() {
+        return responses.getInputStream();
+    }
+
+    /**
+     * @return the stream to write the commands for the emulator to
+     */
+    public OutputStream getOutputStream() {
+        return requests.getOutputStream();
+    }
+
+    /**
+     * @return a device name the adapter implementation accepts
+     */
+    public abstract String getDeviceName();
+
+    /**
+     * Starts serving the streams.
+     */
+    public synchronized void start() {
+        if (worker != null) {
+            return;
+        }
+
+        startTime = System.currentTimeMillis();
+        worker = new Thread(() -> {
+            try {
+                serve();
+            } catch (IOException | InterruptedException e) {
+                // the emulator was closed
+            } finally {
+                responses.close();
+            }
+        }, getClass().getSimpleName());
+        worker.setDaemon(true);
+        worker.start();
+    }
+
+    /**
+     * Stops the emulator. Pending reads of the adapter return the end of the stream.
+     */
+    @Override
+    public synchronized void close() {
+        requests.close();
+        responses.close();
+        if (worker != null) {
+            worker.interrupt();
+        }
+    }
+
+    /**
+     * @param latency the time in ms it takes the vehicle to answer a request
+     */
+    public void setLatency(long latency) {
+        this.latency = latency;
+    }
+
+    /**
+     * @param jitter the maximum random time in ms added to the latency
+     */
+    public void setJitter(int jitter) {
+        this.jitter = jitter;
+    }
+
+    /**
+     * @param noDataRate the probability that a request is not answered by the vehicle
+     */
+    public void setNoDataRate(double noDataRate) {
+        this.noDataRate = noDataRate;
+    }
+
+    /**
+     * @param errorRate the probability that a request fails with an adapter error
+     */
+    public void setErrorRate(double errorRate) {
+        this.errorRate = errorRate;
+    }
+
+    public synchronized void setSeed(long seed) {
+        this.random = new Random(seed);
+    }
+
+    /**
+     * @return the number of data requests served so far
+     */
+    public long getRequestCount() {
+        return requestCount.get();
+    }
+
+    /**
+     * Serves the streams until the emulator is closed.
+     */
+    protected abstract void serve() throws IOException, InterruptedException;
+
+    /**
+     * Blocks until a complete command arrived.
+     *
+     * @param terminator the end of a command
+     * @return the command without its terminator
+     * @throws EOFException if the emulator was closed
+     */
+    protected byte[] readCommand(char terminator) throws IOException {
+        while (true) {
+            if (requests.read(single, 0, 1, 0) < 0) {
+                throw new EOFException();
+            }
+            if (single[0] == terminator) {
+                return takeLine();
+            }
+            line.write(single[0]);
+        }
+    }
+
+    /**
+     * Waits at most the timeout for a complete command. Incomplete commands are kept for
+     * the next call.
+     *
+     * @param terminator the end of a command
+     * @param timeout    the maximum time to wait in ms, 0 to only use what has arrived
+     * @return the command without its terminator or null if none is complete
+     * @throws EOFException if the emulator was closed
+     */
+    protected byte[] pollCommand(char terminator, long timeout) throws IOException {
+        long deadline = System.currentTimeMillis() + timeout;
+        while (true) {
+            long remaining = deadline - System.currentTimeMillis();
+            boolean pending = requests.available() > 0;
+            if (!pending && remaining <= 0) {
+                return null;
+            }
+
+            int count = requests.read(single, 0, 1, pending ? 0 : remaining);
+            if (count < 0) {
+                throw new EOFException();
+            } else if (count == 0) {
+                return null;
+            }
+
+            if (single[0] == terminator) {
+                return takeLine();
+            }
+            line.write(single[0]);
+        }
+    }
+
+    /**
+     * Drops everything that was received but not read yet.
+     */
+    protected void discardInput() throws IOException {
+        byte[] pending = new byte[requests.available()];
+        if (pending.length > 0) {
+            requests.read(pending, 0, pending.length, 0);
+        }
+        line.reset();
+    }
+
+    private byte[] takeLine() {
+        byte[] result = line.toByteArray();
+        line.reset();
+        return result;
+    }
+
+    protected void respond(String response) throws IOException {
+        respond(response.getBytes());
+    }
+
+    protected void respond(byte[] response) throws IOException {
+        responses.write(response, 0, response.length);
+    }
+
+    protected void pause(long millis) throws InterruptedException {
+        if (millis > 0) {
+            Thread.sleep(millis);
+        }
+    }
+
+    /**
+     * @return the latency of the next response in ms, including jitter
+     */
+    protected synchronized long nextLatency() {
+        return latency + (jitter > 0 ? random.nextInt(jitter + 1) : 0);
+    }
+
+    /**
+     * Counts a data request and draws whether it fails.
+     *
+     * @return the fault of the request
+     */
+    protected synchronized Fault nextFault() {
+        requestCount.incrementAndGet();
+
+        double r = random.nextDouble();
+        if (r < noDataRate) {
+            return Fault.NO_DATA;
+        } else if (r < noDataRate + errorRate) {
+            return Fault.ERROR;
+        }
+        return Fault.NONE;
+    }
+
+    protected synchronized int nextInt(int bound) {
+        return random.nextInt(bound);
+    }
+
+    /**
+     * @return the time in ms since the emulator was started
+     */
+    protected long getElapsedTime() {
+        return System.currentTimeMillis() - startTime;
+    }
+}
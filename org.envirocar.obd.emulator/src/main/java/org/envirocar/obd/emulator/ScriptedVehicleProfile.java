@@ -0,0 +1,198 @@
+/**
+ * Copyright (C) 2013 - 2019 the enviroCar community
+ *
+ * This file is part of the enviroCar app.
+ *
+ * The enviroCar app is free software: you can redistribute it and/or
+ * modify it under the terms of the GNU General Public License as published
+ * by the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * The enviroCar app is distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU General
+ * Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License along
+ * with the enviroCar app. If not, see http://www.gnu.org/licenses/.
+ */
+package org.envirocar.obd.emulator;
+
+import java.util.ArrayList;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * A vehicle that follows scripted curves. Every signal is interpolated linearly between its
+ * points and the script starts over after its last point, so that a short cycle can drive
+ * sessions of any length.
+ */
+public class ScriptedVehicleProfile implements VehicleProfile {
+    private static final String DEFAULT_VIN = "WVWZZZ1KZAW000001";
+
+    private final Map<Signal, long[]> times;
+    private final Map<Signal, double[]> values;
+    private final long duration;
+    private final String vin;
+
+    private ScriptedVehicleProfile(Builder builder) {
+        this.times = new EnumMap<>(Signal.class);
+        this.values = new EnumMap<>(Signal.class);
+
+        long end = 0;
+        for (Map.Entry<Signal, List<double[]>> e : builder.points.entrySet()) {
+            List<double[]> points = e.getValue();
+            points.sort((a, b) -> Double.compare(a[0], b[0]));
+
+            long[] t = new long[points.size()];
+            double[] v = new double[points.size()];
+            for (int i = 0; i < points.size(); i++) {
+                t[i] = (long) points.get(i)[0];
+                v[i] = points.get(i)[1];
+            }
+
+            this.times.put(e.getKey(), t);
+            this.values.put(e.getKey(), v);
+            end = Math.max(end, t[t.length - 1]);
+        }
+
+        this.duration = end;
+        this.vin = builder.vin;
+    }
+
+    /**
+     * @return a stop-and-go city cycle of two minutes that reports all signals
+     */
+    public static ScriptedVehicleProfile urbanCycle() {
+        return new Builder()
+                .keyframe(0, 0, 800, 2.5)
+                .keyframe(10000, 30, 2200, 12)
+                .keyframe(25000, 50, 2000, 14)
+                .keyframe(40000, 50, 1900, 11)
+                .keyframe(50000, 0, 800, 2.5)
+                .keyframe(65000, 0, 800, 2.5)
+                .keyframe(80000, 45, 2600, 17)
+                .keyframe(100000, 30, 1600, 8)
+                .keyframe(120000, 0, 800, 2.5)
+                .point(Signal.CALCULATED_ENGINE_LOAD, 0, 20)
+                .point(Signal.CALCULATED_ENGINE_LOAD, 10000, 65)
+                .point(Signal.CALCULATED_ENGINE_LOAD, 40000, 35)
+                .point(Signal.CALCULATED_ENGINE_LOAD, 50000, 20)
+                .point(Signal.CALCULATED_ENGINE_LOAD, 80000, 70)
+                .point(Signal.CALCULATED_ENGINE_LOAD, 120000, 20)
+                .point(Signal.INTAKE_MAP, 0, 30)
+                .point(Signal.INTAKE_MAP, 10000, 75)
+                .point(Signal.INTAKE_MAP, 40000, 45)
+                .point(Signal.INTAKE_MAP, 50000, 30)
+                .point(Signal.INTAKE_MAP, 80000, 85)
+                .point(Signal.INTAKE_MAP, 120000, 30)
+                .point(Signal.TPS, 0, 12)
+                .point(Signal.TPS, 10000, 40)
+                .point(Signal.TPS, 50000, 12)
+                .point(Signal.TPS, 80000, 50)
+                .point(Signal.TPS, 120000, 12)
+                .point(Signal.ENGINE_FUEL_RATE, 0, 0.6)
+                .point(Signal.ENGINE_FUEL_RATE, 10000, 3.5)
+                .point(Signal.ENGINE_FUEL_RATE, 50000, 0.6)
+                .point(Signal.ENGINE_FUEL_RATE, 80000, 5)
+                .point(Signal.ENGINE_FUEL_RATE, 120000, 0.6)
+                .point(Signal.SHORT_TERM_FUEL_TRIM_BANK_1, 0, -2)
+                .point(Signal.SHORT_TERM_FUEL_TRIM_BANK_1, 60000, 3)
+                .point(Signal.SHORT_TERM_FUEL_TRIM_BANK_1, 120000, -2)
+                .constant(Signal.LONG_TERM_FUEL_TRIM_BANK_1, 1.5)
+                .constant(Signal.COOLANT_TEMP, 90)
+                .constant(Signal.INTAKE_AIR_TEMP, 28)
+                .constant(Signal.FUEL_PRESSURE, 380)
+                .constant(Signal.O2_LAMBDA_PROBE_1_VOLTAGE, 1.0)
+                .build();
+    }
+
+    @Override
+    public boolean supports(Signal signal) {
+        return times.containsKey(signal);
+    }
+
+    @Override
+    public double getValue(Signal signal, long time) {
+        long[] t = times.get(signal);
+        double[] v = values.get(signal);
+        if (t == null) {
+            return Double.NaN;
+        }
+
+        long local = duration > 0 ? time % duration : 0;
+        if (local <= t[0]) {
+            return v[0];
+        }
+
+        for (int i = 1; i < t.length; i++) {
+            if (local <= t[i]) {
+                double fraction = (double) (local - t[i - 1]) / (t[i] - t[i - 1]);
+                return v[i - 1] + (v[i] - v[i - 1]) * fraction;
+            }
+        }
+        return v[v.length - 1];
+    }
+
+    @Override
+    public String getVin() {
+        return vin;
+    }
+
+    public static class Builder {
+        private final Map<Signal, List<double[]>> points = new EnumMap<>(Signal.class);
+        private String vin = DEFAULT_VIN;
+
+        /**
+         * Adds a point to the curve of a signal.
+         *
+         * @param signal the signal
+         * @param time   the time in ms since the start of the script
+         * @param value  the value at that time
+         * @return this builder
+         */
+        public Builder point(Signal signal, long time, double value) {
+            List<double[]> list = points.get(signal);
+            if (list == null) {
+                list = new ArrayList<>();
+                points.put(signal, list);
+            }
+            list.add(new double[]{time, value});
+            return this;
+        }
+
+        /**
+         * Adds a point to the curves of the driving signals.
+         *
+         * @param time  the time in ms since the start of the script
+         * @param speed the speed in km/h
+         * @param rpm   the engine speed in rpm
+         * @param maf   the mass air flow in g/s
+         * @return this builder
+         */
+        public Builder keyframe(long time, double speed, double rpm, double maf) {
+            return point(Signal.SPEED, time, speed)
+                    .point(Signal.RPM, time, rpm)
+                    .point(Signal.MAF, time, maf);
+        }
+
+        /**
+         * @param signal the signal
+         * @param value  the value reported throughout the script
+         * @return this builder
+         */
+        public Builder constant(Signal signal, double value) {
+            return point(signal, 0, value);
+        }
+
+        public Builder vin(String vin) {
+            this.vin = vin;
+            return this;
+        }
+
+        public ScriptedVehicleProfile build() {
+            return new ScriptedVehicleProfile(this);
+        }
+    }
+}
@@ -0,0 +1,169 @@
+/**
+ * Copyright (C) 2013 - 2019 the enviroCar community
+ *
+ * This file is part of the enviroCar app.
+ *
+ * The enviroCar app is free software: you can redistribute it and/or
+ * modify it under the terms of the GNU General Public License as published
+ * by the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * The enviroCar app is distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU General
+ * Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License along
+ * with the enviroCar app. If not, see http://www.gnu.org/licenses/.
+ */
+package org.envirocar.obd.emulator;
+
+/**
+ * The mode 01 PIDs the emulators know how to encode, with the value in the unit of the
+ * OBD-II specification, e.g. km/h for {@link #SPEED}, rpm for {@link #RPM} or g/s for
+ * {@link #MAF}. The lambda probes take the equivalence ratio and report a fixed voltage or
+ * current.
+ */
+public enum Signal {
+    CALCULATED_ENGINE_LOAD(0x04, 1) {
+        @Override
+        int[] encode(double value) {
+            return new int[]{clamp(value * 255 / 100, 0xFF)};
+        }
+    },
+    COOLANT_TEMP(0x05, 1) {
+        @Override
+        int[] encode(double value) {
+            return new int[]{clamp(value + 40, 0xFF)};
+        }
+    },
+    SHORT_TERM_FUEL_TRIM_BANK_1(0x06, 1) {
+        @Override
+        int[] encode(double value) {
+            return new int[]{clamp(value * 128 / 100 + 128, 0xFF)};
+        }
+    },
+    LONG_TERM_FUEL_TRIM_BANK_1(0x07, 1) {
+        @Override
+        int[] encode(double value) {
+            return new int[]{clamp(value * 128 / 100 + 128, 0xFF)};
+        }
+    },
+    FUEL_PRESSURE(0x0A, 1) {
+        @Override
+        int[] encode(double value) {
+            return new int[]{clamp(value / 3, 0xFF)};
+        }
+    },
+    INTAKE_MAP(0x0B, 1) {
+        @Override
+        int[] encode(double value) {
+            return new int[]{clamp(value, 0xFF)};
+        }
+    },
+    RPM(0x0C, 2) {
+        @Override
+        int[] encode(double value) {
+            return split(clamp(value * 4, 0xFFFF));
+        }
+    },
+    SPEED(0x0D, 1) {
+        @Override
+        int[] encode(double value) {
+            return new int[]{clamp(value, 0xFF)};
+        }
+    },
+    INTAKE_AIR_TEMP(0x0F, 1) {
+        @Override
+        int[] encode(double value) {
+            return new int[]{clamp(value + 40, 0xFF)};
+        }
+    },
+    MAF(0x10, 2) {
+        @Override
+        int[] encode(double value) {
+            return split(clamp(value * 100, 0xFFFF));
+        }
+    },
+    TPS(0x11, 1) {
+        @Override
+        int[] encode(double value) {
+            return new int[]{clamp(value * 255 / 100, 0xFF)};
+        }
+    },
+    O2_LAMBDA_PROBE_1_VOLTAGE(0x24, 4) {
+        @Override
+        int[] encode(double value) {
+            // 0.45 V, the stoichiometric voltage of a narrow band probe
+            return lambda(value, 0x0E66);
+        }
+    },
+    O2_LAMBDA_PROBE_1_CURRENT(0x34, 4) {
+        @Override
+        int[] encode(double value) {
+            // 0 mA
+            return lambda(value, 0x8000);
+        }
+    },
+    ENGINE_FUEL_RATE(0x5E, 2) {
+        @Override
+        int[] encode(double value) {
+            return split(clamp(value * 20, 0xFFFF));
+        }
+    };
+
+    private final int pid;
+    private final int length;
+
+    Signal(int pid, int length) {
+        this.pid = pid;
+        this.length = length;
+    }
+
+    /**
+     * @return the mode 01 PID of the signal
+     */
+    public int getPid() {
+        return pid;
+    }
+
+    /**
+     * @return the number of data bytes in a response
+     */
+    public int getLength() {
+        return length;
+    }
+
+    /**
+     * @param value the value in the unit of the OBD-II specification
+     * @return the data bytes of a response
+     */
+    abstract int[] encode(double value);
+
+    /**
+     * @param pid the mode 01 PID
+     * @return the signal or null if the PID is not emulated
+     */
+    public static Signal fromPid(int pid) {
+        for (Signal s : values()) {
+            if (s.pid == pid) {
+                return s;
+            }
+        }
+        return null;
+    }
+
+    private static int clamp(double value, int max) {
+        return (int) Math.max(0, Math.min(max, Math.round(value)));
+    }
+
+    private static int[] split(int value) {
+        return new int[]{value >> 8, value & 0xFF};
+    }
+
+    private static int[] lambda(double ratio, int second) {
+        int[] r = split(clamp(ratio * 32768, 0xFFFF));
+        int[] s = split(second);
+        return new int[]{r[0], r[1], s[0], s[1]};
+    }
+}
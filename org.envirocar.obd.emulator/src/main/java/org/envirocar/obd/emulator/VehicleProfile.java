@@ -0,0 +1,43 @@
+/**
+ * Copyright (C) 2013 - 2019 the enviroCar community
+ *
+ * This file is part of the enviroCar app.
+ *
+ * The enviroCar app is free software: you can redistribute it and/or
+ * modify it under the terms of the GNU General Public License as published
+ * by the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * The enviroCar app is distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU General
+ * Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License along
+ * with the enviroCar app. If not, see http://www.gnu.org/licenses/.
+ */
+package org.envirocar.obd.emulator;
+
+/**
+ * Provides the values an emulated vehicle reports.
+ */
+public interface VehicleProfile {
+
+    /**
+     * @param signal the signal
+     * @return true if the vehicle reports the signal
+     */
+    boolean supports(Signal signal);
+
+    /**
+     * @param signal a supported signal
+     * @param time   the time in ms since the emulator was started
+     * @return the value in the unit of the OBD-II specification
+     */
+    double getValue(Signal signal, long time);
+
+    /**
+     * @return the vehicle identification number
+     */
+    String getVin();
+}
@@ -0,0 +1,103 @@
+/**
+ * Copyright (C) 2013 - 2019 the enviroCar community
+ *
+ * This file is part of the enviroCar app.
+ *
+ * The enviroCar app is free software: you can redistribute it and/or
+ * modify it under the terms of the GNU General Public License as published
+ * by the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * The enviroCar app is distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU General
+ * Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License along
+ * with the enviroCar app. If not, see http://www.gnu.org/licenses/.
+ */
+package org.envirocar.obd.emulator;
+
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+
+public class DriveDeckEmulatorTest {
+
+    private DriveDeckEmulator emulator;
+
+    @Before
+    public void setup() {
+        emulator = new DriveDeckEmulator(new ScriptedVehicleProfile.Builder()
+                .keyframe(0, 77, 2000, 12.5)
+                .vin("WVWZZZ1KZAW123456")
+                .build());
+        emulator.start();
+    }
+
+    @After
+    public void teardown() {
+        emulator.close();
+    }
+
+    @Test
+    public void testConnection() throws IOException {
+        Assert.assertEquals("B14", readLine());
+        Assert.assertEquals("B14", readLine());
+        Assert.assertEquals("B14", readLine());
+        Assert.assertEquals("C1", readLine());
+        Assert.assertEquals("B15WVWZZZ1KZAW123456", readLine());
+
+        byte[] supported = readLine().getBytes("ISO-8859-1");
+        Assert.assertEquals("B707E800", new String(supported, 0, 8));
+        // 0x0C, 0x0D and 0x10
+        Assert.assertEquals(0x19, supported[10] & 0xFF);
+        Assert.assertEquals(0x00, supported[12] & 0xFF);
+
+        Assert.assertEquals("B31", readLine());
+    }
+
+    @Test
+    public void testCycle() throws IOException {
+        // speed: 0x0D + 0x0D
+        emulator.getOutputStream().write(new byte[]{'a', '1', '7', 0x1A, '\r'});
+
+        String line;
+        do {
+            line = readLine();
+        } while (!line.startsWith("B41"));
+
+        byte[] bytes = line.getBytes("ISO-8859-1");
+        Assert.assertEquals('<', bytes[3]);
+        Assert.assertEquals(77, bytes[4] & 0xFF);
+        Assert.assertEquals("B41", readLine().substring(0, 3));
+    }
+
+    @Test
+    public void testNoData() throws IOException {
+        emulator.setNoDataRate(1);
+        emulator.getOutputStream().write(new byte[]{'a', '1', '7', 0x1A, '\r'});
+
+        String line;
+        do {
+            line = readLine();
+        } while (!line.startsWith("B41"));
+
+        Assert.assertEquals("B41<<", line);
+    }
+
+    private String readLine() throws IOException {
+        InputStream in = emulator.getInputStream();
+        ByteArrayOutputStream line = new ByteArrayOutputStream();
+        int b;
+        while ((b = in.read()) >= 0 && b != '>') {
+            line.write(b);
+        }
+        return line.toString("ISO-8859-1");
+    }
+}
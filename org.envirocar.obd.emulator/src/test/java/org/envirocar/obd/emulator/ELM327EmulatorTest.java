@@ -0,0 +1,161 @@
+/**
+ * Copyright (C) 2013 - 2019 the enviroCar community
+ *
+ * This file is part of the enviroCar app.
+ *
+ * The enviroCar app is free software: you can redistribute it and/or
+ * modify it under the terms of the GNU General Public License as published
+ * by the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * The enviroCar app is distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU General
+ * Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License along
+ * with the enviroCar app. If not, see http://www.gnu.org/licenses/.
+ */
+package org.envirocar.obd.emulator;
+
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+
+public class ELM327EmulatorTest {
+
+    private ELM327Emulator emulator;
+
+    @Before
+    public void setup() {
+        emulator = new ELM327Emulator(new ScriptedVehicleProfile.Builder()
+                .keyframe(0, 50, 2000, 12.5)
+                .constant(Signal.INTAKE_AIR_TEMP, 25)
+                .build());
+        emulator.setEmulateSearching(false);
+        emulator.start();
+    }
+
+    @After
+    public void teardown() {
+        emulator.close();
+    }
+
+    @Test
+    public void testInitialization() throws IOException {
+        Assert.assertEquals("ATZ\r\rELM327 v1.5\r\r>", send("ATZ"));
+        Assert.assertEquals("AT E0\rOK\r\r>", send("AT E0"));
+        Assert.assertEquals("OK\r\r>", send("AT L0"));
+        Assert.assertEquals("ELM327 v1.5\r\r>", send("ATI"));
+        Assert.assertEquals("?\r\r>", send("STI"));
+
+        emulator.setStnIdentity("STN1110 v4.0.1");
+        Assert.assertEquals("STN1110 v4.0.1\r\r>", send("STI"));
+    }
+
+    @Test
+    public void testSinglePID() throws IOException {
+        send("ATE0");
+
+        Assert.assertEquals("41 0C 1F 40\r\r>", send("010C"));
+        Assert.assertEquals("41 0D 32\r\r>", send("01 0D"));
+
+        send("ATS0");
+        Assert.assertEquals("410F41\r\r>", send("010F"));
+        Assert.assertEquals("NO DATA\r\r>", send("0111"));
+    }
+
+    @Test
+    public void testSupportedPIDs() throws IOException {
+        send("ATE0");
+        send("ATS0");
+
+        // 0x0C, 0x0D, 0x0F and 0x10
+        Assert.assertEquals("4100001B0000\r\r>", send("0100"));
+        Assert.assertEquals("NO DATA\r\r>", send("0120"));
+    }
+
+    @Test
+    public void testMultiPID() throws IOException {
+        send("ATE0");
+        send("ATS0");
+
+        Assert.assertEquals("410C1F400D32\r\r>", send("010C0D"));
+        Assert.assertEquals("00B\r0:410C1F400D32\r1:0F411004E2AAAA\r\r>",
+                send("010C0D0F10"));
+
+        send("ATH1");
+        Assert.assertEquals("7E8100B410C1F400D32\r7E8210F411004E2AAAA\r\r>",
+                send("010C0D0F10"));
+    }
+
+    @Test
+    public void testResponseCountHint() throws IOException {
+        send("ATE0");
+        send("ATS0");
+        send("ATAT0");
+        send("ATST0A");
+
+        long start = System.currentTimeMillis();
+        Assert.assertEquals("410C1F40\r\r>", send("010C1"));
+        long hinted = System.currentTimeMillis() - start;
+
+        start = System.currentTimeMillis();
+        Assert.assertEquals("410C1F40\r\r>", send("010C"));
+        long unhinted = System.currentTimeMillis() - start;
+
+        Assert.assertTrue(unhinted >= 40);
+        Assert.assertTrue(hinted < unhinted);
+
+        // the ELM327 stops after the expected number of frames
+        Assert.assertEquals("00B\r0:410C1F400D32\r\r>", send("010C0D0F101"));
+    }
+
+    @Test
+    public void testFaultInjection() throws IOException {
+        send("ATE0");
+
+        emulator.setNoDataRate(1);
+        Assert.assertEquals("NO DATA\r\r>", send("010C"));
+
+        emulator.setNoDataRate(0);
+        emulator.setErrorRate(1);
+        String error = send("010C");
+        Assert.assertTrue(error.contains("ERROR") || error.contains("BUSY")
+                || error.contains("STOPPED"));
+
+        Assert.assertEquals(2, emulator.getRequestCount());
+    }
+
+    @Test
+    public void testSearching() throws IOException {
+        emulator.setEmulateSearching(true);
+        send("ATE0");
+        send("ATSP0");
+
+        Assert.assertEquals("SEARCHING...\r41 0D 32\r\r>", send("010D"));
+        Assert.assertEquals("41 0D 32\r\r>", send("010D"));
+    }
+
+    private String send(String command) throws IOException {
+        OutputStream out = emulator.getOutputStream();
+        out.write((command + "\r").getBytes());
+
+        InputStream in = emulator.getInputStream();
+        ByteArrayOutputStream response = new ByteArrayOutputStream();
+        int b;
+        while ((b = in.read()) >= 0) {
+            response.write(b);
+            if (b == '>') {
+                break;
+            }
+        }
+        return response.toString();
+    }
+}
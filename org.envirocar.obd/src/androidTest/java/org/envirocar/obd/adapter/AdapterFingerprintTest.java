@@ -0,0 +1,171 @@
+/**
+ * Copyright (C) 2013 - 2019 the enviroCar community
+ *
+ * This file is part of the enviroCar app.
+ *
+ * The enviroCar app is free software: you can redistribute it and/or
+ * modify it under the terms of the GNU General Public License as published
+ * by the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * The enviroCar app is distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU General
+ * Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License along
+ * with the enviroCar app. If not, see http://www.gnu.org/licenses/.
+ */
+package org.envirocar.obd.adapter;
+
+import android.test.InstrumentationTestCase;
+
+import org.envirocar.obd.adapter.async.DriveDeckSportAdapter;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+
+public class AdapterFingerprintTest extends InstrumentationTestCase {
+
+    private static final long PROBE_TIMEOUT = 200;
+
+    @Test
+    public void testELM327() throws IOException {
+        Map<String, String> responses = new HashMap<>();
+        responses.put("ATI", "ELM327 v1.5\r\r>");
+        responses.put("STI", "?\r\r>");
+
+        AdapterFingerprint.Family family = identify(responses);
+        Assert.assertEquals(AdapterFingerprint.Family.ELM327, family);
+        Assert.assertEquals(ELM327Adapter.class, family.getAdapterClass());
+    }
+
+    @Test
+    public void testOBDLink() throws IOException {
+        Map<String, String> responses = new HashMap<>();
+        responses.put("ATI", "ELM327 v1.3a\r\r>");
+        responses.put("STI", "STN1155 v4.3.0\r\r>");
+
+        AdapterFingerprint.Family family = identify(responses);
+        Assert.assertEquals(AdapterFingerprint.Family.OBDLINK, family);
+        Assert.assertEquals(OBDLinkAdapter.class, family.getAdapterClass());
+    }
+
+    @Test
+    public void testCarTrend() throws IOException {
+        Map<String, String> responses = new HashMap<>();
+        responses.put("ATI", "?\r>");
+        responses.put("@", "MS4200 v1.2\r>");
+
+        Assert.assertEquals(AdapterFingerprint.Family.CARTREND, identify(responses));
+    }
+
+    @Test
+    public void testDriveDeck() throws IOException {
+        Map<String, String> responses = new HashMap<>();
+        responses.put("ATI", "B14>");
+
+        AdapterFingerprint.Family family = identify(responses);
+        Assert.assertEquals(AdapterFingerprint.Family.DRIVEDECK, family);
+        Assert.assertEquals(DriveDeckSportAdapter.class, family.getAdapterClass());
+    }
+
+    @Test
+    public void testSilentAdapter() throws IOException {
+        Assert.assertEquals(AdapterFingerprint.Family.UNKNOWN, identify(new HashMap<>()));
+        Assert.assertNull(AdapterFingerprint.Family.UNKNOWN.getAdapterClass());
+    }
+
+    @Test
+    public void testLateResponseIsDrained() throws IOException, InterruptedException {
+        Map<String, String> responses = new HashMap<>();
+        responses.put("ATI", "ELM327 v1.5\r\r>");
+        responses.put("STI", "?\r\r>");
+
+        // the STI response arrives after its probe timed out
+        ScriptedAdapter adapter = new ScriptedAdapter(responses,
+                Collections.singletonMap("STI", PROBE_TIMEOUT + 100));
+        AdapterFingerprint.Family family =
+                new AdapterFingerprint(adapter.input, adapter.output, PROBE_TIMEOUT).identify();
+
+        Assert.assertEquals(AdapterFingerprint.Family.ELM327, family);
+        Thread.sleep(PROBE_TIMEOUT);
+        Assert.assertEquals(0, adapter.input.available());
+    }
+
+    private AdapterFingerprint.Family identify(Map<String, String> responses) throws IOException {
+        ScriptedAdapter adapter = new ScriptedAdapter(responses, Collections.emptyMap());
+        return new AdapterFingerprint(adapter.input, adapter.output, PROBE_TIMEOUT).identify();
+    }
+
+    /**
+     * Answers every command with the scripted response, and nothing if there is none. Delayed
+     * responses are sent from a separate thread.
+     */
+    private static class ScriptedAdapter {
+        private final Queue<Byte> pending = new ConcurrentLinkedQueue<>();
+        private final ByteArrayOutputStream command = new ByteArrayOutputStream();
+
+        private final InputStream input = new InputStream() {
+            @Override
+            public int read() {
+                Byte b = pending.poll();
+                return b == null ? -1 : b & 0xFF;
+            }
+
+            @Override
+            public int available() {
+                return pending.size();
+            }
+        };
+
+        private final OutputStream output;
+
+        private ScriptedAdapter(Map<String, String> responses, Map<String, Long> delays) {
+            this.output = new OutputStream() {
+                @Override
+                public void write(int b) {
+                    if (b != '\r') {
+                        command.write(b);
+                        return;
+                    }
+
+                    String response = responses.get(command.toString());
+                    Long delay = delays.get(command.toString());
+                    command.reset();
+                    if (response == null) {
+                        return;
+                    }
+
+                    if (delay == null) {
+                        respond(response);
+                    } else {
+                        new Thread(() -> {
+                            try {
+                                Thread.sleep(delay);
+                            } catch (InterruptedException e) {
+                                return;
+                            }
+                            respond(response);
+                        }).start();
+                    }
+                }
+            };
+        }
+
+        private void respond(String response) {
+            for (byte r : response.getBytes()) {
+                pending.offer(r);
+            }
+        }
+    }
+}
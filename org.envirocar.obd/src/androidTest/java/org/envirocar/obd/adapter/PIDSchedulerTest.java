@@ -0,0 +1,176 @@
+/**
+ * Copyright (C) 2013 - 2019 the enviroCar community
+ *
+ * This file is part of the enviroCar app.
+ *
+ * The enviroCar app is free software: you can redistribute it and/or
+ * modify it under the terms of the GNU General Public License as published
+ * by the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * The enviroCar app is distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU General
+ * Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License along
+ * with the enviroCar app. If not, see http://www.gnu.org/licenses/.
+ */
+package org.envirocar.obd.adapter;
+
+import android.test.InstrumentationTestCase;
+
+import org.envirocar.obd.commands.PID;
+import org.envirocar.obd.commands.PIDUtil;
+import org.envirocar.obd.commands.request.PIDCommand;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.EnumMap;
+import java.util.EnumSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+public class PIDSchedulerTest extends InstrumentationTestCase {
+
+    private static final long REQUEST_DURATION = 150;
+
+    @Test
+    public void testFirstRoundFollowsInsertionOrder() {
+        PIDScheduler scheduler = createScheduler();
+
+        Assert.assertEquals(PID.SPEED, scheduler.next(0).getPid());
+        Assert.assertEquals(PID.MAF, scheduler.next(150).getPid());
+        Assert.assertEquals(PID.INTAKE_AIR_TEMP, scheduler.next(300).getPid());
+        Assert.assertEquals(PID.RPM, scheduler.next(450).getPid());
+    }
+
+    @Test
+    public void testSlowPIDsArePolledLessOften() {
+        PIDScheduler scheduler = createScheduler();
+        Map<PID, Integer> counts = simulate(scheduler, 60000);
+
+        Assert.assertTrue(counts.get(PID.SPEED) > 2 * counts.get(PID.INTAKE_AIR_TEMP));
+        Assert.assertTrue(counts.get(PID.MAF) > 2 * counts.get(PID.INTAKE_AIR_TEMP));
+    }
+
+    @Test
+    public void testMaximumIntervalIsRespected() {
+        PIDScheduler scheduler = createScheduler();
+        long maxInterval = PIDScheduler.defaultPolicy(PID.INTAKE_AIR_TEMP).getMaxInterval();
+
+        long lastRequest = -1;
+        for (long now = 0; now < 60000; now += REQUEST_DURATION) {
+            PIDCommand cmd = scheduler.next(now);
+            respond(scheduler, cmd.getPid(), now);
+            if (cmd.getPid() == PID.INTAKE_AIR_TEMP) {
+                if (lastRequest >= 0) {
+                    Assert.assertTrue(now - lastRequest <= maxInterval + REQUEST_DURATION);
+                }
+                lastRequest = now;
+            }
+        }
+    }
+
+    @Test
+    public void testMostOverduePIDFirst() {
+        PIDScheduler scheduler = new PIDScheduler();
+        scheduler.add(PIDUtil.instantiateCommand(PID.INTAKE_AIR_TEMP),
+                new PIDScheduler.Policy(1.0, 0, 4000));
+        scheduler.add(PIDUtil.instantiateCommand(PID.SPEED),
+                new PIDScheduler.Policy(1.0, 0, 1000));
+        scheduler.add(PIDUtil.instantiateCommand(PID.RPM),
+                new PIDScheduler.Policy(100.0, 0, 60000));
+        Assert.assertEquals(PID.INTAKE_AIR_TEMP, scheduler.next(0).getPid());
+        Assert.assertEquals(PID.SPEED, scheduler.next(0).getPid());
+        Assert.assertEquals(PID.RPM, scheduler.next(0).getPid());
+
+        // both are overdue: the speed by ten, the intake air temperature by 2.5 of its maximum
+        // interval. The RPM is not overdue yet, despite its higher priority.
+        Assert.assertEquals(PID.SPEED, scheduler.next(10000).getPid());
+        Assert.assertEquals(PID.INTAKE_AIR_TEMP, scheduler.next(10000).getPid());
+        Assert.assertEquals(PID.RPM, scheduler.next(10000).getPid());
+    }
+
+    @Test
+    public void testBatchContainsDistinctEligiblePIDs() {
+        PIDScheduler scheduler = createScheduler();
+
+        List<PIDCommand> batch = new ArrayList<>();
+        Assert.assertEquals(4, scheduler.next(0, 6, batch));
+
+        Set<PID> pids = EnumSet.noneOf(PID.class);
+        for (PIDCommand cmd : batch) {
+            pids.add(cmd.getPid());
+        }
+        Assert.assertEquals(4, pids.size());
+
+        // the intake air temperature is still within its minimum interval
+        batch.clear();
+        scheduler.next(500, 6, batch);
+        for (PIDCommand cmd : batch) {
+            Assert.assertFalse(cmd.getPid() == PID.INTAKE_AIR_TEMP);
+        }
+        Assert.assertEquals(3, batch.size());
+    }
+
+    @Test
+    public void testRemovedPIDIsNotPolled() {
+        PIDScheduler scheduler = createScheduler();
+        scheduler.remove(PID.RPM);
+
+        Map<PID, Integer> counts = simulate(scheduler, 10000);
+        Assert.assertFalse(counts.containsKey(PID.RPM));
+        Assert.assertEquals(3, scheduler.size());
+    }
+
+    @Test
+    public void testSampleRates() {
+        PIDScheduler scheduler = createScheduler();
+        simulate(scheduler, 60000);
+
+        Map<PID, Double> rates = scheduler.getSampleRates(60000);
+        Assert.assertEquals(4, rates.size());
+        Assert.assertTrue(rates.get(PID.SPEED) > rates.get(PID.INTAKE_AIR_TEMP));
+        Assert.assertTrue(rates.get(PID.INTAKE_AIR_TEMP) > 0);
+    }
+
+    private PIDScheduler createScheduler() {
+        PIDScheduler scheduler = new PIDScheduler();
+        for (PID pid : new PID[]{PID.SPEED, PID.MAF, PID.INTAKE_AIR_TEMP, PID.RPM}) {
+            scheduler.add(PIDUtil.instantiateCommand(pid), PIDScheduler.defaultPolicy(pid));
+        }
+        return scheduler;
+    }
+
+    private Map<PID, Integer> simulate(PIDScheduler scheduler, long duration) {
+        Map<PID, Integer> counts = new EnumMap<>(PID.class);
+        for (long now = 0; now < duration; now += REQUEST_DURATION) {
+            PID pid = scheduler.next(now).getPid();
+            respond(scheduler, pid, now + REQUEST_DURATION);
+            Integer count = counts.get(pid);
+            counts.put(pid, count == null ? 1 : count + 1);
+        }
+        return counts;
+    }
+
+    private void respond(PIDScheduler scheduler, PID pid, long time) {
+        double value;
+        switch (pid) {
+            case SPEED:
+                value = 50 + 30 * Math.sin(time / 5000.0);
+                break;
+            case RPM:
+                value = 2000 + 800 * Math.sin(time / 3000.0);
+                break;
+            case MAF:
+                value = 10 + 5 * Math.sin(time / 2000.0);
+                break;
+            default:
+                value = 30;
+        }
+        scheduler.onResponse(pid, value, time);
+    }
+}
@@ -0,0 +1,139 @@
+/**
+ * Copyright (C) 2013 - 2019 the enviroCar community
+ *
+ * This file is part of the enviroCar app.
+ *
+ * The enviroCar app is free software: you can redistribute it and/or
+ * modify it under the terms of the GNU General Public License as published
+ * by the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * The enviroCar app is distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU General
+ * Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License along
+ * with the enviroCar app. If not, see http://www.gnu.org/licenses/.
+ */
+package org.envirocar.obd.adapter;
+
+import android.test.InstrumentationTestCase;
+
+import org.envirocar.obd.exception.StreamFinishedException;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.Set;
+
+public class ResponseLineFramerTest extends InstrumentationTestCase {
+
+    private static final Set<Character> IGNORED = new HashSet<>(Arrays.asList(' ', '>'));
+
+    @Test
+    public void testEndOfLineSplitAcrossReads() throws Throwable {
+        // every read delivers at most three bytes, so the lines end within and at block borders.
+        ResponseLineFramer framer = new ResponseLineFramer(
+                new BlockInputStream("41 0C 1A\r41 0D\r".getBytes(), 3), IGNORED, (byte) '\r');
+
+        Assert.assertEquals("410C1A", readLine(framer));
+        Assert.assertEquals("410D", readLine(framer));
+        Assert.assertFalse(framer.isDataAvailable());
+    }
+
+    @Test
+    public void testIgnoredBytesAreDropped() throws Throwable {
+        byte[] input = new byte[]{'>', ' ', '4', '1', ' ', (byte) 0xFF, '>', '\r', '\r'};
+        ResponseLineFramer framer = new ResponseLineFramer(
+                new ByteArrayInputStream(input), IGNORED, (byte) '\r');
+
+        framer.clear();
+        framer.readLine();
+        Assert.assertArrayEquals(new byte[]{'4', '1', (byte) 0xFF}, framer.copyLine());
+
+        // the following end of line results in an empty line.
+        Assert.assertEquals("", readLine(framer));
+    }
+
+    @Test
+    public void testLinesLongerThanTheInitialBuffer() throws Throwable {
+        StringBuilder response = new StringBuilder();
+        for (int i = 0; i < 300; i++) {
+            response.append((char) ('A' + i % 26));
+        }
+        ResponseLineFramer framer = new ResponseLineFramer(
+                new BlockInputStream((response + "\r").getBytes(), 7), IGNORED, (byte) '\r');
+
+        framer.clear();
+        framer.readLine();
+        Assert.assertEquals(300, framer.getLineLength());
+        Assert.assertEquals(response.toString(), new String(framer.getLine(), 0, 300));
+    }
+
+    @Test
+    public void testQuirkAppendsEndOfLine() throws Throwable {
+        InputStream input = new BlockInputStream("41 0C\r1A 2B\rOK\r".getBytes(), 4);
+        CommandExecutor executor = new CommandExecutor(input, new ByteArrayOutputStream(),
+                IGNORED, '\r', '\r');
+        executor.setQuirk(byteArray -> new String(byteArray).equals("410C"));
+
+        // the end of line within the response is kept as data and the next line gets appended.
+        Assert.assertEquals("410C\r1A2B", new String(executor.retrieveLatestResponse()));
+        Assert.assertEquals("OK", new String(executor.retrieveLatestResponse()));
+    }
+
+    @Test
+    public void testEndOfStream() throws Throwable {
+        ResponseLineFramer framer = new ResponseLineFramer(
+                new BlockInputStream("OK\r41".getBytes(), 2), IGNORED, (byte) '\r');
+        Assert.assertEquals("OK", readLine(framer));
+
+        // an unterminated line is not returned.
+        try {
+            readLine(framer);
+            Assert.fail("Expected the stream to be finished");
+        } catch (StreamFinishedException e) {
+            // expected.
+        }
+
+        ResponseLineFramer empty = new ResponseLineFramer(
+                new ByteArrayInputStream(new byte[0]), IGNORED, (byte) '\r');
+        try {
+            readLine(empty);
+            Assert.fail("Expected the stream to be finished");
+        } catch (StreamFinishedException e) {
+            // expected.
+        }
+    }
+
+    private static String readLine(ResponseLineFramer framer)
+            throws IOException, StreamFinishedException {
+        framer.clear();
+        framer.readLine();
+        return new String(framer.copyLine());
+    }
+
+    /**
+     * Stream that delivers at most a given number of bytes per read, like a socket that receives
+     * a response in several packets.
+     */
+    private static class BlockInputStream extends ByteArrayInputStream {
+        private final int blockSize;
+
+        BlockInputStream(byte[] data, int blockSize) {
+            super(data);
+            this.blockSize = blockSize;
+        }
+
+        @Override
+        public synchronized int read(byte[] b, int off, int len) {
+            return super.read(b, off, Math.min(len, blockSize));
+        }
+    }
+}
@@ -0,0 +1,128 @@
+/**
+ * Copyright (C) 2013 - 2019 the enviroCar community
+ *
+ * This file is part of the enviroCar app.
+ *
+ * The enviroCar app is free software: you can redistribute it and/or
+ * modify it under the terms of the GNU General Public License as published
+ * by the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * The enviroCar app is distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU General
+ * Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License along
+ * with the enviroCar app. If not, see http://www.gnu.org/licenses/.
+ */
+package org.envirocar.obd.adapter;
+
+import android.test.InstrumentationTestCase;
+
+import org.envirocar.obd.commands.request.elm.AdaptiveTiming;
+import org.envirocar.obd.commands.request.elm.ConfigurationCommand;
+import org.envirocar.obd.commands.request.elm.Timeout;
+import org.junit.Assert;
+import org.junit.Test;
+
+public class ResponseTimeTunerTest extends InstrumentationTestCase {
+
+    private static final int INITIAL_TIMEOUT = 62;
+
+    @Test
+    public void testHintsEnabledAfterBaseline() {
+        ResponseTimeTuner tuner = new ResponseTimeTuner(INITIAL_TIMEOUT);
+        Assert.assertFalse(tuner.useResponseCountHints());
+
+        respond(tuner, 50, 90);
+        Assert.assertTrue(tuner.useResponseCountHints());
+        Assert.assertEquals(90.0, tuner.getBaselineRoundTripTime(), 0.001);
+        Assert.assertTrue(Double.isNaN(tuner.getTunedRoundTripTime()));
+    }
+
+    @Test
+    public void testRejectedHintsAreDisabled() {
+        ResponseTimeTuner tuner = new ResponseTimeTuner(INITIAL_TIMEOUT);
+        respond(tuner, 50, 90);
+
+        Assert.assertTrue(tuner.onFailure(false));
+        Assert.assertTrue(tuner.onFailure(false));
+        Assert.assertTrue(tuner.onFailure(false));
+        Assert.assertFalse(tuner.useResponseCountHints());
+        Assert.assertFalse(tuner.onFailure(false));
+    }
+
+    @Test
+    public void testConfirmedHintsStayEnabled() {
+        ResponseTimeTuner tuner = new ResponseTimeTuner(INITIAL_TIMEOUT);
+        respond(tuner, 53, 90);
+
+        Assert.assertFalse(tuner.onFailure(false));
+        Assert.assertFalse(tuner.onFailure(true));
+        Assert.assertTrue(tuner.useResponseCountHints());
+    }
+
+    @Test
+    public void testTimeoutFollowsResponseTimes() {
+        ResponseTimeTuner tuner = new ResponseTimeTuner(INITIAL_TIMEOUT);
+        respond(tuner, 50, 90);
+        Assert.assertNull(tuner.pollTuningCommand());
+
+        respond(tuner, 64, 40);
+
+        // 40 ms * 1.5 = 60 ms = 15 * 4 ms, limited to the minimum of 16
+        ConfigurationCommand timeout = tuner.pollTuningCommand();
+        Assert.assertTrue(timeout instanceof Timeout);
+        Assert.assertEquals(16, ((Timeout) timeout).getTimeout());
+
+        ConfigurationCommand adaptiveTiming = tuner.pollTuningCommand();
+        Assert.assertTrue(adaptiveTiming instanceof AdaptiveTiming);
+        Assert.assertEquals(2, ((AdaptiveTiming) adaptiveTiming).getMode());
+
+        Assert.assertNull(tuner.pollTuningCommand());
+        Assert.assertEquals(40.0, tuner.getTunedRoundTripTime(), 0.001);
+    }
+
+    @Test
+    public void testTimeoutBacksOffOnNoData() {
+        ResponseTimeTuner tuner = new ResponseTimeTuner(INITIAL_TIMEOUT);
+        respond(tuner, 50, 90);
+        respond(tuner, 64, 40);
+        while (tuner.pollTuningCommand() != null) {
+            // drain the commands of the first tuning
+        }
+
+        for (int i = 0; i < 10; i++) {
+            tuner.onFailure(true);
+        }
+        respond(tuner, 64, 40);
+
+        ConfigurationCommand timeout = tuner.pollTuningCommand();
+        Assert.assertTrue(timeout instanceof Timeout);
+        Assert.assertEquals(32, ((Timeout) timeout).getTimeout());
+        Assert.assertEquals(1, tuner.getAdaptiveTiming());
+    }
+
+    @Test
+    public void testNoDataAttributedToLoweredTimeout() {
+        ResponseTimeTuner tuner = new ResponseTimeTuner(INITIAL_TIMEOUT);
+
+        // with the initial timeout, NO DATA counts against the PIDs
+        Assert.assertFalse(tuner.onFailure(true));
+        respond(tuner, 50, 90);
+        Assert.assertFalse(tuner.onFailure(true));
+
+        respond(tuner, 64, 40);
+        Assert.assertTrue(tuner.getTimeout() < INITIAL_TIMEOUT);
+        for (int i = 0; i < 10; i++) {
+            Assert.assertTrue(tuner.onFailure(true));
+        }
+    }
+
+    private void respond(ResponseTimeTuner tuner, int count, long roundTripMillis) {
+        for (int i = 0; i < count; i++) {
+            tuner.onResponse(roundTripMillis);
+        }
+    }
+}
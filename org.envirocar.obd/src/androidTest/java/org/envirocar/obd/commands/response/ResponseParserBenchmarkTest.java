@@ -0,0 +1,58 @@
+/**
+ * Copyright (C) 2013 - 2019 the enviroCar community
+ *
+ * This file is part of the enviroCar app.
+ *
+ * The enviroCar app is free software: you can redistribute it and/or
+ * modify it under the terms of the GNU General Public License as published
+ * by the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * The enviroCar app is distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU General
+ * Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License along
+ * with the enviroCar app. If not, see http://www.gnu.org/licenses/.
+ */
+package org.envirocar.obd.commands.response;
+
+import android.test.InstrumentationTestCase;
+import android.util.Log;
+
+import org.junit.Test;
+
+/**
+ * Measures the parsing throughput for a typical mix of responses.
+ */
+public class ResponseParserBenchmarkTest extends InstrumentationTestCase {
+    private static final String TAG = ResponseParserBenchmarkTest.class.getSimpleName();
+    private static final int WARMUP_ITERATIONS = 20000;
+    private static final int ITERATIONS = 200000;
+
+    private static final byte[][] RESPONSES = {
+            "410C1AF8".getBytes(),
+            "410D3C".getBytes(),
+            "41100BB8".getBytes(),
+            "410F5A".getBytes(),
+            "410B64".getBytes(),
+            "412407FF0028".getBytes()
+    };
+
+    @Test
+    public void testParseThroughput() throws Exception {
+        ResponseParser parser = new ResponseParser();
+        for (int i = 0; i < WARMUP_ITERATIONS; i++) {
+            parser.parse(RESPONSES[i % RESPONSES.length]);
+        }
+
+        long start = System.nanoTime();
+        for (int i = 0; i < ITERATIONS; i++) {
+            parser.parse(RESPONSES[i % RESPONSES.length]);
+        }
+        long nanos = System.nanoTime() - start;
+        Log.i(TAG, String.format("%s responses in %s ms (%s ns/response)", ITERATIONS,
+                nanos / 1000000, nanos / ITERATIONS));
+    }
+}
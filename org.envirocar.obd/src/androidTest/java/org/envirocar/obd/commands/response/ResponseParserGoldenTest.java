@@ -0,0 +1,121 @@
+/**
+ * Copyright (C) 2013 - 2019 the enviroCar community
+ *
+ * This file is part of the enviroCar app.
+ *
+ * The enviroCar app is free software: you can redistribute it and/or
+ * modify it under the terms of the GNU General Public License as published
+ * by the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * The enviroCar app is distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU General
+ * Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License along
+ * with the enviroCar app. If not, see http://www.gnu.org/licenses/.
+ */
+package org.envirocar.obd.commands.response;
+
+import android.test.InstrumentationTestCase;
+
+import org.envirocar.obd.commands.PID;
+import org.envirocar.obd.commands.response.entity.GenericDataResponse;
+import org.envirocar.obd.exception.AdapterSearchingException;
+import org.envirocar.obd.exception.InvalidCommandResponseException;
+import org.envirocar.obd.exception.NoDataReceivedException;
+import org.envirocar.obd.exception.UnmatchedResponseException;
+import org.hamcrest.CoreMatchers;
+import org.junit.Assert;
+import org.junit.Test;
+
+/**
+ * Regression suite of recorded responses and the values the parser has to produce for them.
+ */
+public class ResponseParserGoldenTest extends InstrumentationTestCase {
+
+    private static final Object[][] GOLDEN_RESPONSES = {
+            {"41047F", PID.CALCULATED_ENGINE_LOAD, (127 * 100.0f) / 255.0f},
+            {"4104FF", PID.CALCULATED_ENGINE_LOAD, 100.0f},
+            {"410680", PID.SHORT_TERM_FUEL_TRIM_BANK_1, 0.0d},
+            {"41069A", PID.SHORT_TERM_FUEL_TRIM_BANK_1, 20.3125d},
+            {"410770", PID.LONG_TERM_FUEL_TRIM_BANK_1, -12.5d},
+            {"410A23", PID.FUEL_PRESSURE, 105},
+            {"410B64", PID.INTAKE_MAP, 100},
+            {"410C1AF8", PID.RPM, 1726},
+            {"410c1af8", PID.RPM, 1726},
+            {"410C0000", PID.RPM, 0},
+            {"410D3C", PID.SPEED, 60},
+            {"410DFF", PID.SPEED, 255},
+            {"410F5A", PID.INTAKE_AIR_TEMP, 50},
+            {"410F00", PID.INTAKE_AIR_TEMP, -40},
+            {"41100BB8", PID.MAF, 30.0f},
+            {"4110FFFF", PID.MAF, 655.35f},
+            {"41117F", PID.TPS, 49},
+            {"410D3C+1", PID.SPEED, 60},
+    };
+
+    @Test
+    public void testGoldenResponses() throws Exception {
+        ResponseParser parser = new ResponseParser();
+        for (Object[] golden : GOLDEN_RESPONSES) {
+            DataResponse response = parser.parse(((String) golden[0]).getBytes());
+            Assert.assertThat((String) golden[0], response.getPid(), CoreMatchers.is(golden[1]));
+            Assert.assertThat((String) golden[0], response.getValue(), CoreMatchers.is(golden[2]));
+        }
+    }
+
+    @Test
+    public void testGenericResponse() throws Exception {
+        ResponseParser parser = new ResponseParser();
+        // a longer response first, in order to verify that no stale bytes are handed out.
+        parser.parse("410C1AF8".getBytes());
+        DataResponse response = parser.parse("415E0190".getBytes());
+
+        Assert.assertThat(response, CoreMatchers.instanceOf(GenericDataResponse.class));
+        Assert.assertThat(response.getPid(), CoreMatchers.is(PID.ENGINE_FUEL_RATE));
+        Assert.assertArrayEquals(new int[]{0, 0, 1, 144},
+                ((GenericDataResponse) response).getProcessedData());
+    }
+
+    @Test
+    public void testErrorResponses() throws Exception {
+        assertThrows("SEARCHING...", AdapterSearchingException.class);
+        assertThrows("BUS INIT: ...STOPPED", AdapterSearchingException.class);
+        assertThrows("NODATA", NoDataReceivedException.class);
+        assertThrows("7F0112", InvalidCommandResponseException.class);
+        assertThrows("420C1AF8", InvalidCommandResponseException.class);
+        assertThrows("41FF00", InvalidCommandResponseException.class);
+        assertThrows("410D-1", InvalidCommandResponseException.class);
+        assertThrows("410C", UnmatchedResponseException.class);
+        assertThrows("410C1A", UnmatchedResponseException.class);
+        assertThrows("410C1AZZ", NumberFormatException.class);
+    }
+
+    @Test
+    public void testInvalidCommandNames() throws Exception {
+        ResponseParser parser = new ResponseParser();
+        try {
+            parser.parse("41FF00".getBytes());
+            Assert.fail();
+        } catch (InvalidCommandResponseException e) {
+            Assert.assertThat(e.getCommand(), CoreMatchers.is("FF"));
+        }
+        try {
+            parser.parse("420C1AF8".getBytes());
+            Assert.fail();
+        } catch (InvalidCommandResponseException e) {
+            Assert.assertThat(e.getCommand(), CoreMatchers.is(PID.RPM.toString()));
+        }
+    }
+
+    private void assertThrows(String response, Class<? extends Exception> expected) {
+        try {
+            new ResponseParser().parse(response.getBytes());
+            Assert.fail("No exception for " + response);
+        } catch (Exception e) {
+            Assert.assertThat(response, e, CoreMatchers.instanceOf(expected));
+        }
+    }
+}
@@ -21,7 +21,11 @@ package org.envirocar.obd.commands.response;
 import android.test.InstrumentationTestCase;
 
 import org.envirocar.obd.commands.PID;
+import org.envirocar.obd.commands.response.entity.EngineRPMResponse;
+import org.envirocar.obd.commands.response.entity.IntakeManifoldAbsolutePressureResponse;
 import org.envirocar.obd.commands.response.entity.LambdaProbeVoltageResponse;
+import org.envirocar.obd.commands.response.entity.MAFResponse;
+import org.envirocar.obd.commands.response.entity.SpeedResponse;
 import org.envirocar.obd.exception.AdapterSearchingException;
 import org.envirocar.obd.exception.InvalidCommandResponseException;
 import org.envirocar.obd.exception.NoDataReceivedException;
@@ -30,6 +34,8 @@ import org.hamcrest.CoreMatchers;
 import org.junit.Assert;
 import org.junit.Test;
 
+import java.util.List;
+
 public class ResponseParserTest extends InstrumentationTestCase {
 
     @Test
@@ -61,4 +67,56 @@ public class ResponseParserTest extends InstrumentationTestCase {
         Assert.assertThat(parse, CoreMatchers.instanceOf(LambdaProbeVoltageResponse.class));
     }
 
+    @Test
+    public void testMultiPIDSingleFrame() throws InvalidCommandResponseException, NoDataReceivedException, UnmatchedResponseException, AdapterSearchingException {
+        ResponseParser responseParser = new ResponseParser();
+
+        List<DataResponse> responses = responseParser.parseMultiple("410C1AF80D32".getBytes());
+
+        Assert.assertThat(responses.size(), CoreMatchers.is(2));
+        Assert.assertThat(responses.get(0), CoreMatchers.instanceOf(EngineRPMResponse.class));
+        Assert.assertThat(responses.get(0).getValue().intValue(), CoreMatchers.is((0x1A * 256 + 0xF8) / 4));
+        Assert.assertThat(responses.get(1), CoreMatchers.instanceOf(SpeedResponse.class));
+        Assert.assertThat(responses.get(1).getValue().intValue(), CoreMatchers.is(0x32));
+    }
+
+    @Test
+    public void testMultiPIDMultiFrame() throws InvalidCommandResponseException, NoDataReceivedException, UnmatchedResponseException, AdapterSearchingException {
+        ResponseParser responseParser = new ResponseParser();
+
+        // 11 bytes in two frames, the second one padded
+        List<DataResponse> responses = responseParser.parseMultiple(
+                "00B0:410C1AF80D321:101F400B65AAAA".getBytes());
+
+        Assert.assertThat(responses.size(), CoreMatchers.is(4));
+        Assert.assertThat(responses.get(0), CoreMatchers.instanceOf(EngineRPMResponse.class));
+        Assert.assertThat(responses.get(1), CoreMatchers.instanceOf(SpeedResponse.class));
+        Assert.assertThat(responses.get(2), CoreMatchers.instanceOf(MAFResponse.class));
+        Assert.assertThat(responses.get(2).getValue().floatValue(), CoreMatchers.is(0x1F40 / 100.0f));
+        Assert.assertThat(responses.get(3), CoreMatchers.instanceOf(IntakeManifoldAbsolutePressureResponse.class));
+        Assert.assertThat(responses.get(3).getValue().intValue(), CoreMatchers.is(0x65));
+    }
+
+    @Test
+    public void testMultiPIDTruncated() throws InvalidCommandResponseException, NoDataReceivedException, UnmatchedResponseException, AdapterSearchingException {
+        ResponseParser responseParser = new ResponseParser();
+
+        List<DataResponse> responses = responseParser.parseMultiple("410D32101F".getBytes());
+
+        Assert.assertThat(responses.size(), CoreMatchers.is(1));
+        Assert.assertThat(responses.get(0).getPid(), CoreMatchers.is(PID.SPEED));
+    }
+
+    @Test
+    public void testMultiPIDRejected() throws NoDataReceivedException, UnmatchedResponseException, AdapterSearchingException {
+        ResponseParser responseParser = new ResponseParser();
+
+        try {
+            responseParser.parseMultiple("?".getBytes());
+            Assert.fail("Expected an InvalidCommandResponseException");
+        } catch (InvalidCommandResponseException e) {
+            // expected
+        }
+    }
+
 }
@@ -0,0 +1,192 @@
+/**
+ * Copyright (C) 2013 - 2019 the enviroCar community
+ *
+ * This file is part of the enviroCar app.
+ *
+ * The enviroCar app is free software: you can redistribute it and/or
+ * modify it under the terms of the GNU General Public License as published
+ * by the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * The enviroCar app is distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU General
+ * Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License along
+ * with the enviroCar app. If not, see http://www.gnu.org/licenses/.
+ */
+package org.envirocar.obd.session;
+
+import android.test.InstrumentationTestCase;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.Arrays;
+
+public class SessionReplayTest extends InstrumentationTestCase {
+
+    private static final String RESET_RESPONSE = "ELM327 v1.5\r\r>";
+    private static final String RPM_RESPONSE = "41 0C 1A F8\r\r>";
+
+    @Test
+    public void testRecordAndRead() throws IOException {
+        SessionRecording recording = SessionRecording.read(record());
+
+        Assert.assertEquals("OBDII", recording.getDeviceName());
+        Assert.assertEquals(4, recording.getFrames().size());
+        assertFrame(recording.getFrames().get(0), SessionFrame.Direction.REQUEST, "ATZ\r");
+        assertFrame(recording.getFrames().get(1), SessionFrame.Direction.RESPONSE, RESET_RESPONSE);
+        assertFrame(recording.getFrames().get(2), SessionFrame.Direction.REQUEST, "010C\r");
+        assertFrame(recording.getFrames().get(3), SessionFrame.Direction.RESPONSE, RPM_RESPONSE);
+        Assert.assertEquals(9, recording.getByteCount(SessionFrame.Direction.REQUEST));
+
+        long previous = 0;
+        for (SessionFrame f : recording.getFrames()) {
+            Assert.assertTrue(f.getTime() >= previous);
+            previous = f.getTime();
+        }
+
+        SessionRecording copy = SessionRecording.read(recording.toByteArray());
+        Assert.assertEquals(recording.getFrames().size(), copy.getFrames().size());
+        Assert.assertEquals(recording.getDuration(), copy.getDuration());
+    }
+
+    @Test
+    public void testTruncatedRecording() throws IOException {
+        byte[] bytes = record();
+        SessionRecording recording = SessionRecording.read(Arrays.copyOf(bytes, bytes.length - 3));
+
+        Assert.assertEquals(3, recording.getFrames().size());
+    }
+
+    @Test
+    public void testReplayWaitsForRequests() throws IOException {
+        SessionReplay replay = new SessionReplay(SessionRecording.read(record()),
+                SessionReplay.UNTHROTTLED);
+        InputStream in = replay.getInputStream();
+        OutputStream out = replay.getOutputStream();
+
+        Assert.assertEquals(0, in.available());
+        out.write("ATZ\r".getBytes());
+        Assert.assertEquals(RESET_RESPONSE.length(), in.available());
+        Assert.assertEquals(RESET_RESPONSE, readString(in, RESET_RESPONSE.length()));
+
+        Assert.assertEquals(0, in.available());
+        out.write("010C\r".getBytes());
+        Assert.assertEquals(RPM_RESPONSE, readString(in, RPM_RESPONSE.length()));
+
+        Assert.assertEquals(-1, in.read());
+        Assert.assertTrue(replay.isFinished());
+        Assert.assertEquals(0, replay.getDivergences());
+    }
+
+    @Test
+    public void testDivergence() throws IOException {
+        SessionRecording recording = SessionRecording.read(record());
+
+        SessionReplay lenient = new SessionReplay(recording, SessionReplay.UNTHROTTLED);
+        lenient.getOutputStream().write("ATD\r".getBytes());
+        Assert.assertEquals(1, lenient.getDivergences());
+        Assert.assertEquals(RESET_RESPONSE.length(), lenient.getInputStream().available());
+
+        SessionReplay strict = new SessionReplay(recording, SessionReplay.UNTHROTTLED, true);
+        try {
+            strict.getOutputStream().write("ATD\r".getBytes());
+            Assert.fail("Expected the divergent write to fail");
+        } catch (IOException e) {
+            Assert.assertEquals(1, strict.getDivergences());
+        }
+    }
+
+    @Test
+    public void testLengthDivergentWrites() throws IOException {
+        // shorter than the recorded request: the rest of the recorded request is skipped.
+        SessionReplay shorter = new SessionReplay(SessionRecording.read(record()),
+                SessionReplay.UNTHROTTLED);
+        shorter.getOutputStream().write("AT\r".getBytes());
+        Assert.assertEquals(1, shorter.getDivergences());
+        Assert.assertEquals(RESET_RESPONSE,
+                readString(shorter.getInputStream(), RESET_RESPONSE.length()));
+        shorter.getOutputStream().write("010C\r".getBytes());
+        Assert.assertEquals(RPM_RESPONSE,
+                readString(shorter.getInputStream(), RPM_RESPONSE.length()));
+        Assert.assertEquals(1, shorter.getDivergences());
+        Assert.assertTrue(shorter.isFinished());
+
+        // longer than the recorded request: the surplus bytes do not consume the next request.
+        SessionReplay longer = new SessionReplay(SessionRecording.read(record()),
+                SessionReplay.UNTHROTTLED);
+        longer.getOutputStream().write("ATZ0\r".getBytes());
+        Assert.assertEquals(1, longer.getDivergences());
+        Assert.assertEquals(RESET_RESPONSE,
+                readString(longer.getInputStream(), RESET_RESPONSE.length()));
+        Assert.assertEquals(0, longer.getInputStream().available());
+        longer.getOutputStream().write("010C\r".getBytes());
+        Assert.assertEquals(RPM_RESPONSE,
+                readString(longer.getInputStream(), RPM_RESPONSE.length()));
+        Assert.assertEquals(1, longer.getDivergences());
+        Assert.assertTrue(longer.isFinished());
+    }
+
+    @Test
+    public void testReplaySpeed() throws IOException {
+        SessionRecording recording = new SessionRecording("OBDII", 0, Arrays.asList(
+                new SessionFrame(SessionFrame.Direction.REQUEST, 0, "ATZ\r".getBytes()),
+                new SessionFrame(SessionFrame.Direction.RESPONSE, 200000,
+                        RESET_RESPONSE.getBytes())));
+
+        Assert.assertTrue(replayTime(recording, 1) >= 190);
+        Assert.assertTrue(replayTime(recording, 10) < 190);
+    }
+
+    private long replayTime(SessionRecording recording, float speed) throws IOException {
+        SessionReplay replay = new SessionReplay(recording, speed);
+        long start = System.currentTimeMillis();
+        replay.getOutputStream().write("ATZ\r".getBytes());
+        Assert.assertEquals(0, replay.getInputStream().available());
+        readString(replay.getInputStream(), RESET_RESPONSE.length());
+        return System.currentTimeMillis() - start;
+    }
+
+    private byte[] record() throws IOException {
+        ByteArrayOutputStream file = new ByteArrayOutputStream();
+        ByteArrayOutputStream commands = new ByteArrayOutputStream();
+        SessionRecorder recorder = new SessionRecorder(file, "OBDII");
+
+        InputStream in = recorder.wrap(new ByteArrayInputStream(
+                (RESET_RESPONSE + RPM_RESPONSE).getBytes()));
+        OutputStream out = recorder.wrap(commands);
+
+        out.write("ATZ\r".getBytes());
+        readString(in, RESET_RESPONSE.length());
+        out.write("010C\r".getBytes());
+        readString(in, RPM_RESPONSE.length());
+        recorder.close();
+
+        Assert.assertEquals("ATZ\r010C\r", commands.toString());
+        return file.toByteArray();
+    }
+
+    private String readString(InputStream in, int length) throws IOException {
+        byte[] buffer = new byte[length];
+        int offset = 0;
+        while (offset < length) {
+            int count = in.read(buffer, offset, length - offset);
+            Assert.assertTrue(count > 0);
+            offset += count;
+        }
+        return new String(buffer);
+    }
+
+    private void assertFrame(SessionFrame frame, SessionFrame.Direction direction, String data) {
+        Assert.assertEquals(direction, frame.getDirection());
+        Assert.assertEquals(data, new String(frame.getData()));
+    }
+}
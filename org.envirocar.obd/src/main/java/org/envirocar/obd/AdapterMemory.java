@@ -0,0 +1,54 @@
+/**
+ * Copyright (C) 2013 - 2019 the enviroCar community
+ *
+ * This file is part of the enviroCar app.
+ *
+ * The enviroCar app is free software: you can redistribute it and/or
+ * modify it under the terms of the GNU General Public License as published
+ * by the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * The enviroCar app is distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU General
+ * Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License along
+ * with the enviroCar app. If not, see http://www.gnu.org/licenses/.
+ */
+package org.envirocar.obd;
+
+/**
+ * Interface is used by the {@link OBDController} to remember which adapter implementation
+ * succeeded for a Bluetooth device and the capabilities of the vehicle it was connected to,
+ * so that reconnects can initialize it right away.
+ */
+public interface AdapterMemory {
+
+    /**
+     * @param deviceAddress the Bluetooth address of the device
+     * @return the class name of the adapter that last succeeded, null if unknown
+     */
+    String getAdapter(String deviceAddress);
+
+    /**
+     * @param deviceAddress the Bluetooth address of the device
+     * @param adapterClass  the class name of the adapter that succeeded
+     */
+    void setAdapter(String deviceAddress, String adapterClass);
+
+    /**
+     * Implementations key the capabilities by the vehicle, i.e. the device address combined
+     * with the car selected by the user.
+     *
+     * @param deviceAddress the Bluetooth address of the device
+     * @return the capabilities of the vehicle last connected via the device, null if unknown
+     */
+    VehicleCapabilities getVehicleCapabilities(String deviceAddress);
+
+    /**
+     * @param deviceAddress the Bluetooth address of the device
+     * @param capabilities  the capabilities discovered for the connected vehicle
+     */
+    void setVehicleCapabilities(String deviceAddress, VehicleCapabilities capabilities);
+}
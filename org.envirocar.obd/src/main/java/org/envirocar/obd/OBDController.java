@@ -23,11 +23,13 @@ import com.squareup.otto.Bus;
 
 import org.envirocar.core.entity.Measurement;
 import org.envirocar.core.logging.Logger;
+import org.envirocar.obd.adapter.AdapterFingerprint;
 import org.envirocar.obd.adapter.AposW3Adapter;
 import org.envirocar.obd.adapter.CarTrendAdapter;
 import org.envirocar.obd.adapter.ELM327Adapter;
 import org.envirocar.obd.adapter.OBDAdapter;
 import org.envirocar.obd.adapter.OBDLinkAdapter;
+import org.envirocar.obd.adapter.SyncAdapter;
 import org.envirocar.obd.adapter.async.DriveDeckSportAdapter;
 import org.envirocar.obd.bluetooth.BluetoothSocketWrapper;
 import org.envirocar.obd.commands.PID;
@@ -48,10 +50,15 @@ import java.util.ArrayDeque;
 import java.util.Queue;
 import java.util.concurrent.TimeUnit;
 
+import io.reactivex.BackpressureOverflowStrategy;
+import io.reactivex.Flowable;
 import io.reactivex.Observer;
 import io.reactivex.Scheduler;
+import io.reactivex.Single;
 import io.reactivex.disposables.Disposable;
 import io.reactivex.observers.DisposableObserver;
+import io.reactivex.processors.FlowableProcessor;
+import io.reactivex.processors.PublishProcessor;
 import io.reactivex.schedulers.Schedulers;
 
 
@@ -60,12 +67,18 @@ import io.reactivex.schedulers.Schedulers;
  * It takes {@link InputStream} and {@link OutputStream} objects
  * to do the actual raw communication. The {@link ConnectionListener} will get informed on
  * certain changes in the connection state.
+ * <p>
+ * The values read from the vehicle are published through {@link #getPropertyKeyEvents()}.
+ * The event bus only receives speed and RPM updates for the UI, at most every
+ * {@value #UI_UPDATE_INTERVAL} ms.
  *
  * @author matthes rieke
  */
 public class OBDController {
     private static final Logger LOG = Logger.getLogger(OBDController.class);
     public static final long MAX_NODATA_TIME = 10000;
+    private static final long UI_UPDATE_INTERVAL = 500;
+    private static final int EVENT_BUFFER_SIZE = 1024;
 
     private Disposable initSubscription;
     private Disposable dataSubscription;
@@ -76,9 +89,16 @@ public class OBDController {
     private OutputStream outputStream;
     private ConnectionListener connectionListener;
     private String deviceName;
+    private String deviceAddress;
+    private AdapterMemory adapterMemory;
+    private Disposable fingerprintSubscription;
     private boolean userRequestedStop = false;
     private Bus eventBus;
     private Scheduler.Worker eventBusWorker;
+    private long lastSpeedUpdate;
+    private long lastRPMUpdate;
+    private final FlowableProcessor<PropertyKeyEvent> propertyKeyEvents =
+            PublishProcessor.<PropertyKeyEvent>create().toSerialized();
 
     /**
      * Default Constructor.
@@ -89,10 +109,24 @@ public class OBDController {
      */
     public OBDController(BluetoothSocketWrapper bluetoothSocketWrapper, ConnectionListener cl,
                          Bus bus) throws IOException {
+        this(bluetoothSocketWrapper, cl, bus, null);
+    }
+
+    /**
+     * Constructor that remembers the adapter which succeeded for the device.
+     *
+     * @param bluetoothSocketWrapper
+     * @param cl
+     * @param bus
+     * @param adapterMemory the memory of adapters per device, may be null
+     */
+    public OBDController(BluetoothSocketWrapper bluetoothSocketWrapper, ConnectionListener cl,
+                         Bus bus, AdapterMemory adapterMemory) throws IOException {
         this(bluetoothSocketWrapper.getInputStream(),
                 bluetoothSocketWrapper.getOutputStream(),
                 bluetoothSocketWrapper.getRemoteDeviceName(),
-                cl, bus);
+                bluetoothSocketWrapper.getRemoteDeviceAddress(),
+                cl, bus, adapterMemory);
     }
 
     /**
@@ -104,18 +138,36 @@ public class OBDController {
      */
     public OBDController(InputStream in, OutputStream out,
                          String deviceName, ConnectionListener cl, Bus bus) {
+        this(in, out, deviceName, null, cl, bus, null);
+    }
+
+    /**
+     * Init the OBD control layer with the streams and listeners to be used.
+     *
+     * @param in            the inputStream of the connection
+     * @param out           the outputStream of the connection
+     * @param deviceName    the name of the device
+     * @param deviceAddress the address of the device, may be null
+     * @param cl            the connection listener which receives connection state changes
+     * @param adapterMemory the memory of adapters per device, may be null
+     */
+    public OBDController(InputStream in, OutputStream out, String deviceName,
+                         String deviceAddress, ConnectionListener cl, Bus bus,
+                         AdapterMemory adapterMemory) {
         this.inputStream = Preconditions.checkNotNull(in);
         this.outputStream = Preconditions.checkNotNull(out);
         this.connectionListener = Preconditions.checkNotNull(cl);
         this.deviceName = Preconditions.checkNotNull(deviceName);
-
-        setupAdapterCandidates();
-        startPreferredAdapter();
+        this.deviceAddress = deviceAddress;
+        this.adapterMemory = adapterMemory;
 
         this.eventBus = bus;
         if (this.eventBus != null) {
             this.eventBusWorker = Schedulers.io().createWorker();
         }
+
+        setupAdapterCandidates();
+        startPreferredAdapter();
     }
 
     /**
@@ -131,16 +183,54 @@ public class OBDController {
     }
 
     /**
-     * start the preferred adapter, determined by the device name
+     * start the preferred adapter: the adapter that last succeeded for the device, the adapter
+     * matching the device name or the adapter identified by its fingerprint, in that order.
      */
     private void startPreferredAdapter() {
+        String remembered = adapterMemory != null && deviceAddress != null ?
+                adapterMemory.getAdapter(deviceAddress) : null;
+        if (remembered != null) {
+            for (OBDAdapter ac : adapterCandidates) {
+                if (ac.getClass().getName().equals(remembered)) {
+                    LOG.info("Adapter remembered for " + deviceAddress + ": " + remembered);
+                    usePreferredAdapter(ac);
+                    return;
+                }
+            }
+        }
+
         for (OBDAdapter ac : adapterCandidates) {
             if (ac.supportsDevice(this.deviceName)) {
-                this.obdAdapter = ac;
-                break;
+                usePreferredAdapter(ac);
+                return;
             }
         }
 
+        this.fingerprintSubscription = Single.fromCallable(() ->
+                new AdapterFingerprint(inputStream, outputStream).identify())
+                .subscribeOn(Schedulers.io())
+                .observeOn(OBDSchedulers.scheduler())
+                .subscribe(family -> {
+                    OBDAdapter identified = null;
+                    for (OBDAdapter ac : adapterCandidates) {
+                        if (ac.getClass() == family.getAdapterClass()) {
+                            identified = ac;
+                            break;
+                        }
+                    }
+                    usePreferredAdapter(identified);
+                }, e -> {
+                    LOG.warn("Adapter fingerprinting failed", e);
+                    usePreferredAdapter(null);
+                });
+    }
+
+    private void usePreferredAdapter(OBDAdapter preferred) {
+        if (userRequestedStop) {
+            return;
+        }
+
+        this.obdAdapter = preferred;
         if (this.obdAdapter == null) {
             //poll the first instead
             this.obdAdapter = adapterCandidates.poll();
@@ -177,6 +267,12 @@ public class OBDController {
     private void startInitialization(boolean alreadyTried) {
         LOG.info("startInitialization()");
 
+        if (this.obdAdapter instanceof SyncAdapter && adapterMemory != null && deviceAddress != null) {
+            ((SyncAdapter) this.obdAdapter).setVehicleCapabilities(
+                    adapterMemory.getVehicleCapabilities(deviceAddress),
+                    capabilities -> adapterMemory.setVehicleCapabilities(deviceAddress, capabilities));
+        }
+
         // start the observable and subscribe to it
         this.initSubscription = this.obdAdapter.initialize(this.inputStream, this.outputStream)
                 .subscribeOn(Schedulers.io())
@@ -248,6 +344,8 @@ public class OBDController {
                 //unsubscribe, otherwise we will get a timeout
                 this.onComplete();
 
+                rememberAdapter();
+
                 startCollectingData();
                 //TODO implement equivalent notification method:
                 //dataListener.onConnected(deviceName);
@@ -256,6 +354,12 @@ public class OBDController {
         };
     }
 
+    private void rememberAdapter() {
+        if (adapterMemory != null && deviceAddress != null) {
+            adapterMemory.setAdapter(deviceAddress, obdAdapter.getClass().getName());
+        }
+    }
+
     /**
      * start the actual collection of data.
      * <p>
@@ -306,29 +410,45 @@ public class OBDController {
 
             @Override
             public void onNext(DataResponse dataResponse) {
-                pushToEventBus(dataResponse);
+                publish(dataResponse);
             }
         };
     }
 
-    private void pushToEventBus(DataResponse dataResponse) {
-        eventBusWorker.schedule(() -> {
-            PropertyKeyEvent[] pkes = createEventsFromDataResponse(dataResponse);
+    /**
+     * The values are emitted on the OBD thread without any further hop, so a subscriber
+     * should only hand them over. A subscriber that falls behind loses the oldest values
+     * beyond a buffer of {@value #EVENT_BUFFER_SIZE}.
+     *
+     * @return the values read from the vehicle, completing with the shutdown
+     */
+    public Flowable<PropertyKeyEvent> getPropertyKeyEvents() {
+        return propertyKeyEvents.onBackpressureBuffer(EVENT_BUFFER_SIZE,
+                () -> LOG.warn("Property key event subscriber too slow. Dropping events."),
+                BackpressureOverflowStrategy.DROP_OLDEST);
+    }
 
-            for (PropertyKeyEvent pke : pkes) {
-                eventBus.post(pke);
-            }
+    private void publish(DataResponse dataResponse) {
+        emitPropertyKeyEvents(dataResponse);
 
-            PID pid = dataResponse.getPid();
-            if (pid == PID.SPEED) {
-                eventBus.post(new SpeedUpdateEvent(dataResponse.getValue().intValue()));
-            } else if (pid == PID.RPM) {
-                eventBus.post(new RPMUpdateEvent(dataResponse.getValue().intValue()));
-            }
-        });
+        if (eventBusWorker == null) {
+            return;
+        }
+
+        PID pid = dataResponse.getPid();
+        long now = dataResponse.getTimestamp();
+        if (pid == PID.SPEED && now - lastSpeedUpdate >= UI_UPDATE_INTERVAL) {
+            lastSpeedUpdate = now;
+            int speed = dataResponse.getValue().intValue();
+            eventBusWorker.schedule(() -> eventBus.post(new SpeedUpdateEvent(speed)));
+        } else if (pid == PID.RPM && now - lastRPMUpdate >= UI_UPDATE_INTERVAL) {
+            lastRPMUpdate = now;
+            int rpm = dataResponse.getValue().intValue();
+            eventBusWorker.schedule(() -> eventBus.post(new RPMUpdateEvent(rpm)));
+        }
     }
 
-    protected PropertyKeyEvent[] createEventsFromDataResponse(DataResponse dataResponse) {
+    protected void emitPropertyKeyEvents(DataResponse dataResponse) {
         PID pid = dataResponse.getPid();
         switch (pid) {
 //            case FUEL_SYSTEM_STATUS:
@@ -342,10 +462,8 @@ public class OBDController {
             case INTAKE_AIR_TEMP:
             case MAF:
             case TPS:
-                return new PropertyKeyEvent[]{
-                        new PropertyKeyEvent(PIDUtil.toPropertyKey(pid),
-                                dataResponse.getValue(), dataResponse.getTimestamp())
-                };
+                emit(PIDUtil.toPropertyKey(pid), dataResponse.getValue(), dataResponse);
+                break;
             case O2_LAMBDA_PROBE_1_VOLTAGE:
             case O2_LAMBDA_PROBE_2_VOLTAGE:
             case O2_LAMBDA_PROBE_3_VOLTAGE:
@@ -353,13 +471,12 @@ public class OBDController {
             case O2_LAMBDA_PROBE_5_VOLTAGE:
             case O2_LAMBDA_PROBE_6_VOLTAGE:
             case O2_LAMBDA_PROBE_7_VOLTAGE:
-            case O2_LAMBDA_PROBE_8_VOLTAGE:
-                return new PropertyKeyEvent[]{
-                        new PropertyKeyEvent(Measurement.PropertyKey.LAMBDA_VOLTAGE_ER,
-                                dataResponse.getCompositeValues()[0], dataResponse.getTimestamp()),
-                        new PropertyKeyEvent(Measurement.PropertyKey.LAMBDA_VOLTAGE,
-                                dataResponse.getCompositeValues()[1], dataResponse.getTimestamp())
-                };
+            case O2_LAMBDA_PROBE_8_VOLTAGE: {
+                Number[] values = dataResponse.getCompositeValues();
+                emit(Measurement.PropertyKey.LAMBDA_VOLTAGE_ER, values[0], dataResponse);
+                emit(Measurement.PropertyKey.LAMBDA_VOLTAGE, values[1], dataResponse);
+                break;
+            }
             case O2_LAMBDA_PROBE_1_CURRENT:
             case O2_LAMBDA_PROBE_2_CURRENT:
             case O2_LAMBDA_PROBE_3_CURRENT:
@@ -367,16 +484,18 @@ public class OBDController {
             case O2_LAMBDA_PROBE_5_CURRENT:
             case O2_LAMBDA_PROBE_6_CURRENT:
             case O2_LAMBDA_PROBE_7_CURRENT:
-            case O2_LAMBDA_PROBE_8_CURRENT:
-                return new PropertyKeyEvent[]{
-                        new PropertyKeyEvent(Measurement.PropertyKey.LAMBDA_CURRENT_ER,
-                                dataResponse.getCompositeValues()[0], dataResponse.getTimestamp()),
-                        new PropertyKeyEvent(Measurement.PropertyKey.LAMBDA_CURRENT,
-                                dataResponse.getCompositeValues()[1], dataResponse.getTimestamp())
-                };
+            case O2_LAMBDA_PROBE_8_CURRENT: {
+                Number[] values = dataResponse.getCompositeValues();
+                emit(Measurement.PropertyKey.LAMBDA_CURRENT_ER, values[0], dataResponse);
+                emit(Measurement.PropertyKey.LAMBDA_CURRENT, values[1], dataResponse);
+                break;
+            }
         }
+    }
 
-        return new PropertyKeyEvent[0];
+    private void emit(Measurement.PropertyKey key, Number value, DataResponse dataResponse) {
+        propertyKeyEvents.onNext(new PropertyKeyEvent(key, value, dataResponse.getTimestamp(),
+                dataResponse.getReceivedTime()));
     }
 
     /**
@@ -395,11 +514,15 @@ public class OBDController {
          */
         userRequestedStop = true;
 
+        if (this.fingerprintSubscription != null && !this.fingerprintSubscription.isDisposed()) {
+            this.fingerprintSubscription.dispose();
+        }
         if (this.initSubscription != null && !this.initSubscription.isDisposed()) {
             this.initSubscription.dispose();
         }
         if (this.dataSubscription != null && !this.dataSubscription.isDisposed()) {
             this.dataSubscription.dispose();
         }
+        this.propertyKeyEvents.onComplete();
     }
 }
@@ -0,0 +1,124 @@
+/**
+ * Copyright (C) 2013 - 2019 the enviroCar community
+ *
+ * This file is part of the enviroCar app.
+ *
+ * The enviroCar app is free software: you can redistribute it and/or
+ * modify it under the terms of the GNU General Public License as published
+ * by the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * The enviroCar app is distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU General
+ * Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License along
+ * with the enviroCar app. If not, see http://www.gnu.org/licenses/.
+ */
+package org.envirocar.obd;
+
+import org.envirocar.obd.commands.PID;
+
+import java.util.Collections;
+import java.util.EnumSet;
+import java.util.Set;
+
+/**
+ * The capabilities of a vehicle discovered during a connection: the supported PIDs and the
+ * protocol negotiated by the adapter. They are remembered per vehicle so that reconnects can
+ * skip the discovery queries.
+ */
+public class VehicleCapabilities {
+    private static final char SEPARATOR = ';';
+    private static final char PID_SEPARATOR = ',';
+
+    private final Set<PID> supportedPIDs;
+    private final String protocol;
+    private final long discoveryTime;
+
+    /**
+     * Constructor
+     *
+     * @param supportedPIDs the PIDs supported by the vehicle
+     * @param protocol      the protocol number reported by the adapter ("AT DPN"), null if
+     *                      unknown
+     * @param discoveryTime the time the capabilities have been discovered
+     */
+    public VehicleCapabilities(Set<PID> supportedPIDs, String protocol, long discoveryTime) {
+        this.supportedPIDs = supportedPIDs.isEmpty() ?
+                Collections.emptySet() :
+                Collections.unmodifiableSet(EnumSet.copyOf(supportedPIDs));
+        this.protocol = protocol;
+        this.discoveryTime = discoveryTime;
+    }
+
+    public Set<PID> getSupportedPIDs() {
+        return supportedPIDs;
+    }
+
+    public String getProtocol() {
+        return protocol;
+    }
+
+    public long getDiscoveryTime() {
+        return discoveryTime;
+    }
+
+    /**
+     * @return the capabilities as a single line, see {@link #decode(String)}
+     */
+    public String encode() {
+        StringBuilder sb = new StringBuilder();
+        sb.append(protocol != null ? protocol : "").append(SEPARATOR);
+        sb.append(discoveryTime).append(SEPARATOR);
+        for (PID pid : supportedPIDs) {
+            if (sb.charAt(sb.length() - 1) != SEPARATOR) {
+                sb.append(PID_SEPARATOR);
+            }
+            sb.append(pid.name());
+        }
+        return sb.toString();
+    }
+
+    /**
+     * @param encoded the capabilities encoded by {@link #encode()}
+     * @return the capabilities or null if the value is not a valid encoding. PIDs that are
+     * unknown to this version are ignored.
+     */
+    public static VehicleCapabilities decode(String encoded) {
+        if (encoded == null) {
+            return null;
+        }
+
+        int first = encoded.indexOf(SEPARATOR);
+        int second = first < 0 ? -1 : encoded.indexOf(SEPARATOR, first + 1);
+        if (second < 0) {
+            return null;
+        }
+
+        long discoveryTime;
+        try {
+            discoveryTime = Long.parseLong(encoded.substring(first + 1, second));
+        } catch (NumberFormatException e) {
+            return null;
+        }
+
+        Set<PID> pids = EnumSet.noneOf(PID.class);
+        for (String name : encoded.substring(second + 1).split(String.valueOf(PID_SEPARATOR))) {
+            try {
+                pids.add(PID.valueOf(name));
+            } catch (IllegalArgumentException e) {
+                // empty or removed PID
+            }
+        }
+
+        String protocol = encoded.substring(0, first);
+        return new VehicleCapabilities(pids, protocol.isEmpty() ? null : protocol, discoveryTime);
+    }
+
+    @Override
+    public String toString() {
+        return "VehicleCapabilities{protocol=" + protocol + ", supportedPIDs=" + supportedPIDs + "}";
+    }
+}
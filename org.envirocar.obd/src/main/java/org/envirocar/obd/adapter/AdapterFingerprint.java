@@ -0,0 +1,219 @@
+/**
+ * Copyright (C) 2013 - 2019 the enviroCar community
+ *
+ * This file is part of the enviroCar app.
+ *
+ * The enviroCar app is free software: you can redistribute it and/or
+ * modify it under the terms of the GNU General Public License as published
+ * by the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * The enviroCar app is distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU General
+ * Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License along
+ * with the enviroCar app. If not, see http://www.gnu.org/licenses/.
+ */
+package org.envirocar.obd.adapter;
+
+import org.envirocar.core.logging.Logger;
+import org.envirocar.obd.adapter.async.DriveDeckSportAdapter;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.Locale;
+
+/**
+ * Identifies the family of an OBD adapter from at most two probe responses, so that the
+ * matching adapter implementation can be initialized first instead of trying every
+ * implementation with its own init sequence and timeout.
+ * <p>
+ * ELM327 compatible adapters identify themselves on "ATI". OBDLink adapters additionally
+ * answer the STN specific "STI", CarTrend adapters answer their identify command "@" and
+ * DriveDeck adapters report their connection state without being asked.
+ */
+public class AdapterFingerprint {
+    private static final Logger LOG = Logger.getLogger(AdapterFingerprint.class);
+
+    private static final long PROBE_TIMEOUT = 1500;
+    private static final long POLL_INTERVAL = 25;
+    private static final long DRAIN_QUIET_TIME = 250;
+    private static final byte COMMAND_END = '\r';
+    private static final byte RESPONSE_END = '>';
+
+    public enum Family {
+        ELM327(ELM327Adapter.class),
+        OBDLINK(OBDLinkAdapter.class),
+        CARTREND(CarTrendAdapter.class),
+        DRIVEDECK(DriveDeckSportAdapter.class),
+        UNKNOWN(null);
+
+        private final Class<? extends OBDAdapter> adapterClass;
+
+        Family(Class<? extends OBDAdapter> adapterClass) {
+            this.adapterClass = adapterClass;
+        }
+
+        /**
+         * @return the adapter implementation of the family or null if unknown
+         */
+        public Class<? extends OBDAdapter> getAdapterClass() {
+            return adapterClass;
+        }
+    }
+
+    private final InputStream inputStream;
+    private final OutputStream outputStream;
+    private final long probeTimeout;
+    private boolean probeTimedOut;
+
+    public AdapterFingerprint(InputStream inputStream, OutputStream outputStream) {
+        this(inputStream, outputStream, PROBE_TIMEOUT);
+    }
+
+    /**
+     * @param probeTimeout the maximum time in ms to wait for the response of a probe
+     */
+    public AdapterFingerprint(InputStream inputStream, OutputStream outputStream, long probeTimeout) {
+        this.inputStream = inputStream;
+        this.outputStream = outputStream;
+        this.probeTimeout = probeTimeout;
+    }
+
+    /**
+     * Sends the probes and classifies the responses. Blocks for at most two probe timeouts,
+     * plus the time to drain a late response if a probe timed out.
+     *
+     * @return the identified family, {@link Family#UNKNOWN} if none matched
+     * @throws IOException if the connection failed
+     */
+    public Family identify() throws IOException {
+        String response = probe("ATI");
+        Family family = classify(response);
+
+        if (family == Family.ELM327) {
+            // OBDLink adapters answer ATI like any other ELM327, but also know STN commands
+            if (probe("STI").contains("STN")) {
+                family = Family.OBDLINK;
+            }
+        } else if (family == Family.UNKNOWN) {
+            family = classify(response + probe("@"));
+        }
+
+        // a late response must not end up as the response to the init of the adapter
+        if (probeTimedOut) {
+            drain();
+        }
+
+        LOG.info("Adapter fingerprint: " + family);
+        return family;
+    }
+
+    /**
+     * @param response the collected responses of the probes
+     * @return the family matching the responses
+     */
+    static Family classify(String response) {
+        String upper = response.toUpperCase(Locale.ENGLISH);
+        if (upper.contains("STN")) {
+            return Family.OBDLINK;
+        } else if (upper.contains("ELM327")) {
+            return Family.ELM327;
+        } else if (upper.contains("MS4200")) {
+            return Family.CARTREND;
+        }
+
+        // DriveDeck status lines: connecting (B14), VIN (B15), supported PIDs (B70), protocol (C)
+        for (String line : upper.split("[\r\n>]")) {
+            String trimmed = line.trim();
+            if (trimmed.startsWith("B14") || trimmed.startsWith("B15") || trimmed.startsWith("B70")
+                    || (trimmed.length() == 2 && trimmed.charAt(0) == 'C'
+                    && Character.isDigit(trimmed.charAt(1)))) {
+                return Family.DRIVEDECK;
+            }
+        }
+
+        return Family.UNKNOWN;
+    }
+
+    private String probe(String command) throws IOException {
+        synchronized (outputStream) {
+            outputStream.write(command.getBytes());
+            outputStream.write(COMMAND_END);
+            outputStream.flush();
+        }
+
+        ByteArrayOutputStream response = new ByteArrayOutputStream();
+        byte[] buffer = new byte[256];
+        long deadline = System.currentTimeMillis() + probeTimeout;
+
+        while (System.currentTimeMillis() < deadline) {
+            int available = inputStream.available();
+            if (available > 0) {
+                int read = inputStream.read(buffer, 0, Math.min(available, buffer.length));
+                if (read < 0) {
+                    break;
+                }
+                response.write(buffer, 0, read);
+                if (read > 0 && buffer[read - 1] == RESPONSE_END) {
+                    break;
+                }
+            } else {
+                try {
+                    Thread.sleep(POLL_INTERVAL);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    break;
+                }
+            }
+        }
+
+        byte[] bytes = response.toByteArray();
+        if (bytes.length == 0 || bytes[bytes.length - 1] != RESPONSE_END) {
+            probeTimedOut = true;
+        }
+
+        String result = response.toString();
+        LOG.info(String.format("Probe '%s' answered: %s", command, result.trim()));
+        return result;
+    }
+
+    /**
+     * Discards everything the adapter sends until it stayed quiet for a while, but blocks for
+     * at most one probe timeout.
+     */
+    private void drain() throws IOException {
+        byte[] buffer = new byte[256];
+        long start = System.currentTimeMillis();
+        long lastData = start;
+        int drained = 0;
+
+        while (System.currentTimeMillis() < start + probeTimeout
+                && System.currentTimeMillis() < lastData + DRAIN_QUIET_TIME) {
+            int available = inputStream.available();
+            if (available > 0) {
+                int read = inputStream.read(buffer, 0, Math.min(available, buffer.length));
+                if (read < 0) {
+                    break;
+                }
+                drained += read;
+                lastData = System.currentTimeMillis();
+            } else {
+                try {
+                    Thread.sleep(POLL_INTERVAL);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    break;
+                }
+            }
+        }
+
+        if (drained > 0) {
+            LOG.info(String.format("Discarded %d bytes of late probe responses", drained));
+        }
+    }
+}
@@ -44,7 +44,7 @@ public class AposW3Adapter extends ELM327Adapter {
         result.add(new DelayedConfigurationCommand("AT E0", ConfigurationCommand.Instance.ECHO_OFF, false, 250));
         result.add(new DelayedConfigurationCommand("AT E0", ConfigurationCommand.Instance.ECHO_OFF, false, 250));
         result.add(ConfigurationCommand.instance(ConfigurationCommand.Instance.LINE_FEED_OFF));
-        result.add(new Timeout(62));
+        result.add(new Timeout(INITIAL_TIMEOUT));
         result.add(ConfigurationCommand.instance(ConfigurationCommand.Instance.SELECT_AUTO_PROTOCOL));
         return result;
     }
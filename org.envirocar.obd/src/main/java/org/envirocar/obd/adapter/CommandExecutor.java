@@ -24,11 +24,9 @@ import org.envirocar.core.logging.Logger;
 import org.envirocar.obd.commands.request.BasicCommand;
 import org.envirocar.obd.exception.StreamFinishedException;
 
-import java.io.ByteArrayOutputStream;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.OutputStream;
-import java.util.HashSet;
 import java.util.Set;
 
 import io.reactivex.Observable;
@@ -38,11 +36,10 @@ import io.reactivex.ObservableOnSubscribe;
 public class CommandExecutor {
 
     private static final Logger LOGGER = Logger.getLogger(CommandExecutor.class.getName());
-    private final Set<Byte> ignoredChars;
     private final byte endOfLineOutput;
     private final byte endOfLineInput;
+    private final ResponseLineFramer framer;
     private OutputStream outputStream;
-    private InputStream inputStream;
     private ResponseQuirkWorkaround quirk;
     private boolean logEverything = false;
     private int currentLogLevel = Logger.DEBUG;
@@ -50,16 +47,10 @@ public class CommandExecutor {
 
     public CommandExecutor(InputStream is, OutputStream os,
                            Set<Character> ignoredChars, Character endOfLineInput, Character endOfLineOutput) {
-        this.inputStream = is;
         this.outputStream = os;
-        this.ignoredChars = new HashSet<>(ignoredChars.size());
-
-        for (Character c : ignoredChars) {
-            this.ignoredChars.add((byte) c.charValue());
-        }
-
         this.endOfLineOutput = (byte) endOfLineOutput.charValue();
         this.endOfLineInput = (byte) endOfLineInput.charValue();
+        this.framer = new ResponseLineFramer(is, ignoredChars, this.endOfLineInput);
 
         this.setLogEverything(false);
     }
@@ -116,29 +107,25 @@ public class CommandExecutor {
 
 
     private byte[] readResponseLine() throws IOException, StreamFinishedException {
-        // TODO
-//        LOGGER.info("Reading response line...");
-
-        ByteArrayOutputStream baos = new ByteArrayOutputStream();
-
         // read until end of line arrives
-        readUntilLineEnd(baos);
+        framer.clear();
+        framer.readLine();
 
-        byte[] byteArray = baos.toByteArray();
+        // the line is copied once, as the responses keep a reference to their raw bytes.
+        byte[] byteArray = framer.copyLine();
 
         //some adapter (i.e. the drivedeck) MIGHT respond with linebreaks as actual data - detect this
         if (quirk != null && quirk.shouldWaitForNextTokenLine(byteArray)) {
             LOGGER.info("Detected quirk: " + this.quirk.getClass().getSimpleName());
 
             //re-add the end of line, it was dismissed previously
-            baos.write(this.endOfLineInput);
-            readUntilLineEnd(baos);
-            byteArray = baos.toByteArray();
+            framer.append(this.endOfLineInput);
+            framer.readLine();
+            byteArray = framer.copyLine();
         }
 
         if (byteArray.length == 0) {
             LOGGER.info("Unexpected empty line anomaly detected. Try to read next line.");
-//            baos.reset();
 
             try {
                 Thread.sleep(100);
@@ -146,8 +133,8 @@ public class CommandExecutor {
             }
 
             if (isDataAvailable()){
-                readUntilLineEnd(baos);
-                byteArray = baos.toByteArray();
+                framer.readLine();
+                byteArray = framer.copyLine();
             }
 
         }
@@ -161,29 +148,12 @@ public class CommandExecutor {
 
     public boolean isDataAvailable(){
         try {
-            return inputStream.available() > 0;
+            return framer.isDataAvailable();
         } catch (Exception e){
             return false;
         }
     }
 
-    private void readUntilLineEnd(ByteArrayOutputStream baos) throws IOException, StreamFinishedException {
-        int i = inputStream.read();
-        byte b = (byte) i;
-        while (b != this.endOfLineInput) {
-            if (i == -1) {
-                throw new StreamFinishedException("Stream finished");
-            }
-
-            if (!ignoredChars.contains(b)) {
-                baos.write(b);
-            }
-
-            i = inputStream.read();
-            b = (byte) i;
-        }
-    }
-
     public byte[] retrieveLatestResponse() throws IOException, StreamFinishedException {
         return readResponseLine();
     }
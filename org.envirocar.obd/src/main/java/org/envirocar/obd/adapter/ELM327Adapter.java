@@ -43,6 +43,11 @@ public class ELM327Adapter extends SyncAdapter {
 
     private static final Logger LOG = Logger.getLogger(ELM327Adapter.class);
 
+    /**
+     * The timeout set during the initialization in units of 4 ms, i.e. 248 ms.
+     */
+    protected static final int INITIAL_TIMEOUT = 62;
+
     private Queue<BasicCommand> initCommands;
     protected int succesfulCount;
     protected boolean certifiedConnection;
@@ -66,7 +71,7 @@ public class ELM327Adapter extends SyncAdapter {
         result.add(ConfigurationCommand.instance(ConfigurationCommand.Instance.ECHO_OFF));
         result.add(ConfigurationCommand.instance(ConfigurationCommand.Instance.MEMORY_OFF));
         result.add(ConfigurationCommand.instance(ConfigurationCommand.Instance.LINE_FEED_OFF));
-        result.add(new Timeout(62));
+        result.add(new Timeout(INITIAL_TIMEOUT));
         result.add(ConfigurationCommand.instance(ConfigurationCommand.Instance.SELECT_AUTO_PROTOCOL));
         return result;
     }
@@ -118,6 +123,16 @@ public class ELM327Adapter extends SyncAdapter {
         return succesfulCount >= 5;
     }
 
+    @Override
+    protected boolean supportsMultiPIDRequests() {
+        return true;
+    }
+
+    @Override
+    protected ResponseTimeTuner createResponseTimeTuner() {
+        return new ResponseTimeTuner(INITIAL_TIMEOUT);
+    }
+
     @Override
     protected byte[] preProcess(byte[] bytes) {
         return bytes;
@@ -43,7 +43,7 @@ public class OBDLinkAdapter extends ELM327Adapter{
         result.add(ConfigurationCommand.instance(ConfigurationCommand.Instance.ECHO_OFF));
         result.add(ConfigurationCommand.instance(ConfigurationCommand.Instance.MEMORY_OFF));
         result.add(ConfigurationCommand.instance(ConfigurationCommand.Instance.LINE_FEED_OFF));
-        result.add(new Timeout(62));
+        result.add(new Timeout(INITIAL_TIMEOUT));
         result.add(ConfigurationCommand.instance(ConfigurationCommand.Instance.SELECT_AUTO_PROTOCOL));
         return result;
     }
@@ -0,0 +1,340 @@
+/**
+ * Copyright (C) 2013 - 2019 the enviroCar community
+ *
+ * This file is part of the enviroCar app.
+ *
+ * The enviroCar app is free software: you can redistribute it and/or
+ * modify it under the terms of the GNU General Public License as published
+ * by the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * The enviroCar app is distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU General
+ * Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License along
+ * with the enviroCar app. If not, see http://www.gnu.org/licenses/.
+ */
+package org.envirocar.obd.adapter;
+
+import org.envirocar.obd.commands.PID;
+import org.envirocar.obd.commands.request.PIDCommand;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Decides which PID a synchronous adapter requests next. Instead of a plain round robin every
+ * PID gets a score from its configured priority, the time since it was last requested and the
+ * rate of change observed in its recent values, so that fast changing values such as speed,
+ * RPM and MAF are requested more often than slowly changing ones like the intake air
+ * temperature. A PID is never requested more often than its minimum interval allows (unless
+ * all PIDs are waiting) and always once its maximum interval has elapsed.
+ */
+public class PIDScheduler {
+
+    /**
+     * Smoothing factor of the exponential moving average of the relative rate of change.
+     */
+    private static final double VOLATILITY_ALPHA = 0.3;
+
+    /**
+     * Relative rate of change (per second) at which a PID gets half of the maximum boost.
+     */
+    private static final double VOLATILITY_REFERENCE = 0.05;
+
+    /**
+     * Maximum factor the priority of a volatile PID is multiplied with.
+     */
+    private static final double MAX_VOLATILITY_BOOST = 3.0;
+
+    /**
+     * The scheduling parameters of a single PID.
+     */
+    public static final class Policy {
+        private final double priority;
+        private final long minInterval;
+        private final long maxInterval;
+
+        /**
+         * @param priority    the relative weight of the PID, must be positive
+         * @param minInterval the minimum time between two requests in ms
+         * @param maxInterval the maximum time between two requests in ms
+         */
+        public Policy(double priority, long minInterval, long maxInterval) {
+            if (priority <= 0 || minInterval < 0 || maxInterval < minInterval) {
+                throw new IllegalArgumentException(String.format(
+                        "Invalid policy: priority=%s, minInterval=%s, maxInterval=%s",
+                        priority, minInterval, maxInterval));
+            }
+            this.priority = priority;
+            this.minInterval = minInterval;
+            this.maxInterval = maxInterval;
+        }
+
+        public double getPriority() {
+            return priority;
+        }
+
+        public long getMinInterval() {
+            return minInterval;
+        }
+
+        public long getMaxInterval() {
+            return maxInterval;
+        }
+    }
+
+    /**
+     * Returns the default policy of a PID. The values used by the consumption and emission
+     * algorithms get the highest priority, temperatures and fuel trims are only refreshed
+     * every few seconds.
+     *
+     * @param pid the PID
+     * @return the default policy
+     */
+    public static Policy defaultPolicy(PID pid) {
+        switch (pid) {
+            case SPEED:
+            case RPM:
+            case MAF:
+            case ENGINE_FUEL_RATE:
+                return new Policy(4.0, 0, 2000);
+            case INTAKE_MAP:
+            case CALCULATED_ENGINE_LOAD:
+            case TPS:
+                return new Policy(2.0, 250, 3000);
+            case INTAKE_AIR_TEMP:
+            case FUEL_PRESSURE:
+                return new Policy(0.5, 2000, 10000);
+            case SHORT_TERM_FUEL_TRIM_BANK_1:
+            case LONG_TERM_FUEL_TRIM_BANK_1:
+                return new Policy(0.5, 1000, 10000);
+            default:
+                return new Policy(1.0, 500, 5000);
+        }
+    }
+
+    private static final class Entry {
+        private final PIDCommand command;
+        private final Policy policy;
+
+        private long lastRequest = Long.MIN_VALUE;
+        private long lastResponse = Long.MIN_VALUE;
+        private double lastValue = Double.NaN;
+        private double volatility;
+
+        private long responseCount;
+        private long firstResponse = Long.MIN_VALUE;
+        private long selectionRound;
+
+        private Entry(PIDCommand command, Policy policy) {
+            this.command = command;
+            this.policy = policy;
+        }
+    }
+
+    private final Map<PID, Entry> entries = new EnumMap<>(PID.class);
+    private final List<Entry> order = new ArrayList<>();
+    private long selectionRound;
+
+    /**
+     * Adds a command to the schedule. Commands for an already scheduled PID replace the
+     * previous one.
+     *
+     * @param command the command to request
+     * @param policy  the scheduling policy of its PID
+     */
+    public void add(PIDCommand command, Policy policy) {
+        remove(command.getPid());
+        Entry entry = new Entry(command, policy);
+        entries.put(command.getPid(), entry);
+        order.add(entry);
+    }
+
+    /**
+     * Removes a PID from the schedule, e.g. because it failed too often.
+     *
+     * @param pid the PID to remove
+     */
+    public void remove(PID pid) {
+        Entry entry = entries.remove(pid);
+        if (entry != null) {
+            order.remove(entry);
+        }
+    }
+
+    public boolean isEmpty() {
+        return order.isEmpty();
+    }
+
+    public int size() {
+        return order.size();
+    }
+
+    /**
+     * Selects the command to request next and marks it as requested.
+     *
+     * @param now the current time in ms
+     * @return the next command or null if nothing is scheduled
+     */
+    public PIDCommand next(long now) {
+        selectionRound++;
+        Entry entry = select(now, false);
+        return entry == null ? null : entry.command;
+    }
+
+    /**
+     * Selects up to max distinct commands to request together and marks them as requested.
+     * The first command is selected as by {@link #next(long)}, the remaining ones only if
+     * their minimum interval has elapsed.
+     *
+     * @param now    the current time in ms
+     * @param max    the maximum number of commands
+     * @param target the list to add the selected commands to
+     * @return the number of selected commands
+     */
+    public int next(long now, int max, List<PIDCommand> target) {
+        selectionRound++;
+        int count = 0;
+        Entry entry = select(now, false);
+        while (entry != null && count < max) {
+            target.add(entry.command);
+            count++;
+            entry = select(now, true);
+        }
+        return count;
+    }
+
+    private Entry select(long now, boolean eligibleOnly) {
+        Entry best = null;
+        boolean bestOverdue = false;
+        double bestScore = Double.NEGATIVE_INFINITY;
+        Entry earliest = null;
+        long earliestEligible = Long.MAX_VALUE;
+
+        for (int i = 0; i < order.size(); i++) {
+            Entry entry = order.get(i);
+            if (entry.selectionRound == selectionRound) {
+                continue;
+            }
+
+            // never requested yet: take them in the order they were added
+            if (entry.lastRequest == Long.MIN_VALUE) {
+                best = entry;
+                break;
+            }
+
+            long elapsed = now - entry.lastRequest;
+            if (elapsed < entry.policy.minInterval) {
+                long eligible = entry.lastRequest + entry.policy.minInterval;
+                if (eligible < earliestEligible) {
+                    earliestEligible = eligible;
+                    earliest = entry;
+                }
+                continue;
+            }
+
+            // overdue PIDs win over everything else, the most overdue relative to its maximum
+            // interval first
+            boolean overdue = elapsed >= entry.policy.maxInterval;
+            double score;
+            if (overdue) {
+                score = (double) elapsed / Math.max(entry.policy.maxInterval, 1);
+            } else {
+                score = elapsed * entry.policy.priority * volatilityBoost(entry);
+            }
+
+            if (overdue != bestOverdue ? overdue : score > bestScore) {
+                bestOverdue = overdue;
+                bestScore = score;
+                best = entry;
+            }
+        }
+
+        // everything is within its minimum interval: do not leave the bus idle
+        if (best == null && !eligibleOnly) {
+            best = earliest;
+        }
+
+        if (best != null) {
+            best.lastRequest = now;
+            best.selectionRound = selectionRound;
+        }
+        return best;
+    }
+
+    /**
+     * Records a value received for a PID and updates its observed rate of change.
+     *
+     * @param pid   the PID of the response
+     * @param value the received value
+     * @param time  the time of the response in ms
+     */
+    public void onResponse(PID pid, Number value, long time) {
+        Entry entry = entries.get(pid);
+        if (entry == null) {
+            return;
+        }
+
+        if (entry.firstResponse == Long.MIN_VALUE) {
+            entry.firstResponse = time;
+        }
+        entry.responseCount++;
+
+        if (value == null) {
+            return;
+        }
+
+        double current = value.doubleValue();
+        if (!Double.isNaN(entry.lastValue) && time > entry.lastResponse) {
+            double seconds = (time - entry.lastResponse) / 1000.0;
+            double scale = Math.max(Math.abs(entry.lastValue), 1.0);
+            double rate = Math.abs(current - entry.lastValue) / scale / seconds;
+            entry.volatility += VOLATILITY_ALPHA * (rate - entry.volatility);
+        }
+
+        entry.lastValue = current;
+        entry.lastResponse = time;
+    }
+
+    /**
+     * Returns the effective sample rate achieved for every scheduled PID, i.e. the received
+     * responses per second since the first response of that PID.
+     *
+     * @param now the current time in ms
+     * @return the sample rates in Hz
+     */
+    public Map<PID, Double> getSampleRates(long now) {
+        Map<PID, Double> result = new EnumMap<>(PID.class);
+        for (Entry entry : order) {
+            double rate = 0.0;
+            if (entry.firstResponse != Long.MIN_VALUE && now > entry.firstResponse) {
+                rate = entry.responseCount * 1000.0 / (now - entry.firstResponse);
+            }
+            result.put(entry.command.getPid(), rate);
+        }
+        return Collections.unmodifiableMap(result);
+    }
+
+    /**
+     * @param now the current time in ms
+     * @return a log friendly summary of the effective sample rates
+     */
+    public String describeSampleRates(long now) {
+        StringBuilder sb = new StringBuilder("Effective sample rates:");
+        for (Map.Entry<PID, Double> rate : getSampleRates(now).entrySet()) {
+            sb.append(String.format(" %s=%.2fHz", rate.getKey(), rate.getValue()));
+        }
+        return sb.toString();
+    }
+
+    private static double volatilityBoost(Entry entry) {
+        double normalized = entry.volatility / (entry.volatility + VOLATILITY_REFERENCE);
+        return 1.0 + (MAX_VOLATILITY_BOOST - 1.0) * normalized;
+    }
+}
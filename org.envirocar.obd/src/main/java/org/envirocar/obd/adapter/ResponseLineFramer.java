@@ -0,0 +1,139 @@
+/**
+ * Copyright (C) 2013 - 2019 the enviroCar community
+ *
+ * This file is part of the enviroCar app.
+ *
+ * The enviroCar app is free software: you can redistribute it and/or
+ * modify it under the terms of the GNU General Public License as published
+ * by the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * The enviroCar app is distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU General
+ * Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License along
+ * with the enviroCar app. If not, see http://www.gnu.org/licenses/.
+ */
+package org.envirocar.obd.adapter;
+
+import org.envirocar.obd.exception.StreamFinishedException;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Arrays;
+import java.util.Set;
+
+/**
+ * Splits the byte stream of an adapter into response lines. The stream is read in blocks into a
+ * reused buffer, ignored bytes are filtered through a bitmap and the current line is assembled
+ * in a reused line buffer, which is handed out as a slice (see {@link #getLine()} and
+ * {@link #getLineLength()}) that is valid until the next line is read.
+ */
+class ResponseLineFramer {
+
+    private static final int READ_BUFFER_SIZE = 1024;
+    private static final int INITIAL_LINE_SIZE = 64;
+
+    private final InputStream inputStream;
+    private final boolean[] ignored = new boolean[256];
+    private final byte endOfLine;
+
+    private final byte[] readBuffer = new byte[READ_BUFFER_SIZE];
+    private int readPosition;
+    private int readLimit;
+
+    private byte[] line = new byte[INITIAL_LINE_SIZE];
+    private int lineLength;
+
+    /**
+     * Constructor.
+     *
+     * @param inputStream  the stream of the adapter.
+     * @param ignoredChars the characters to drop from the lines.
+     * @param endOfLine    the character terminating a line.
+     */
+    ResponseLineFramer(InputStream inputStream, Set<Character> ignoredChars, byte endOfLine) {
+        this.inputStream = inputStream;
+        this.endOfLine = endOfLine;
+        for (Character c : ignoredChars) {
+            this.ignored[((byte) c.charValue()) & 0xFF] = true;
+        }
+    }
+
+    /**
+     * Clears the current line.
+     */
+    void clear() {
+        lineLength = 0;
+    }
+
+    /**
+     * Reads until the next end of line and appends the read bytes (without the ignored ones and
+     * the end of line) to the current line.
+     *
+     * @throws IOException             if reading from the stream failed.
+     * @throws StreamFinishedException if the stream ended before the end of line.
+     */
+    void readLine() throws IOException, StreamFinishedException {
+        while (true) {
+            if (readPosition == readLimit) {
+                int read = inputStream.read(readBuffer, 0, readBuffer.length);
+                if (read == -1) {
+                    throw new StreamFinishedException("Stream finished");
+                }
+                readPosition = 0;
+                readLimit = read;
+            }
+
+            while (readPosition < readLimit) {
+                byte b = readBuffer[readPosition++];
+                if (b == endOfLine) {
+                    return;
+                }
+                if (!ignored[b & 0xFF]) {
+                    append(b);
+                }
+            }
+        }
+    }
+
+    /**
+     * Appends a byte to the current line.
+     *
+     * @param b the byte to append.
+     */
+    void append(byte b) {
+        if (lineLength == line.length) {
+            line = Arrays.copyOf(line, line.length * 2);
+        }
+        line[lineLength++] = b;
+    }
+
+    /**
+     * @return true if there are bytes in the buffer or available from the stream.
+     * @throws IOException if the availability of the stream could not be determined.
+     */
+    boolean isDataAvailable() throws IOException {
+        return readPosition < readLimit || inputStream.available() > 0;
+    }
+
+    /**
+     * @return the buffer holding the current line, valid until the next line is read.
+     */
+    byte[] getLine() {
+        return line;
+    }
+
+    int getLineLength() {
+        return lineLength;
+    }
+
+    /**
+     * @return a copy of the current line.
+     */
+    byte[] copyLine() {
+        return Arrays.copyOf(line, lineLength);
+    }
+}
@@ -0,0 +1,242 @@
+/**
+ * Copyright (C) 2013 - 2019 the enviroCar community
+ *
+ * This file is part of the enviroCar app.
+ *
+ * The enviroCar app is free software: you can redistribute it and/or
+ * modify it under the terms of the GNU General Public License as published
+ * by the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * The enviroCar app is distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU General
+ * Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License along
+ * with the enviroCar app. If not, see http://www.gnu.org/licenses/.
+ */
+package org.envirocar.obd.adapter;
+
+import org.envirocar.core.logging.Logger;
+import org.envirocar.obd.commands.request.elm.AdaptiveTiming;
+import org.envirocar.obd.commands.request.elm.ConfigurationCommand;
+import org.envirocar.obd.commands.request.elm.Timeout;
+
+import java.util.ArrayDeque;
+import java.util.Arrays;
+import java.util.Queue;
+
+/**
+ * Tunes the response timing of ELM327 compatible adapters. After a baseline phase with the
+ * default settings, the tuner enables response count hints, so that the adapter returns as
+ * soon as the expected number of responses arrived instead of waiting for its timeout. It then
+ * derives the timeout ("AT ST") and the adaptive timing mode ("AT AT") from the measured
+ * round trip times. If the adapter rejects the hints they are disabled again, and if lowering
+ * the timeout results in more "NO DATA" responses the timeout is raised again.
+ */
+public class ResponseTimeTuner {
+
+    private static final Logger LOGGER = Logger.getLogger(ResponseTimeTuner.class);
+
+    private static final int BASELINE_SAMPLES = 50;
+    private static final int WINDOW_SIZE = 64;
+    private static final int MAX_HINT_FAILURES = 3;
+    private static final int MIN_HINT_SUCCESSES = 3;
+
+    /**
+     * The lowest timeout in units of 4 ms the tuner sets, i.e. 64 ms.
+     */
+    private static final int MIN_TIMEOUT = 16;
+    private static final double TIMEOUT_MARGIN = 1.5;
+    private static final double NO_DATA_TOLERANCE = 0.05;
+
+    private static final int ADAPTIVE_TIMING_DEFAULT = 1;
+    private static final int ADAPTIVE_TIMING_AGGRESSIVE = 2;
+
+    private final int initialTimeout;
+    private int timeout;
+    private int minimumTimeout = MIN_TIMEOUT;
+    private int adaptiveTiming = ADAPTIVE_TIMING_DEFAULT;
+
+    private boolean baseline = true;
+    private boolean hintsEnabled;
+    private boolean hintsConfirmed;
+    private int hintFailures;
+    private int hintSuccesses;
+
+    private final long[] window = new long[WINDOW_SIZE];
+    private int windowCount;
+    private int windowNoData;
+
+    private long baselineTotal;
+    private int baselineCount;
+    private int baselineNoData;
+    private long tunedTotal;
+    private long tunedCount;
+
+    private final Queue<ConfigurationCommand> pendingCommands = new ArrayDeque<>();
+
+    /**
+     * @param initialTimeout the timeout set during the initialization in units of 4 ms
+     */
+    public ResponseTimeTuner(int initialTimeout) {
+        this.initialTimeout = initialTimeout;
+        this.timeout = initialTimeout;
+    }
+
+    /**
+     * @return true if the data requests should contain the expected number of responses
+     */
+    public boolean useResponseCountHints() {
+        return hintsEnabled;
+    }
+
+    /**
+     * @return the next configuration command to send to the adapter or null if the current
+     * settings are up to date
+     */
+    public ConfigurationCommand pollTuningCommand() {
+        return pendingCommands.poll();
+    }
+
+    /**
+     * Records the round trip time of an answered data request.
+     *
+     * @param roundTripMillis the time between sending the request and receiving its response
+     */
+    public void onResponse(long roundTripMillis) {
+        if (baseline) {
+            baselineTotal += roundTripMillis;
+            if (++baselineCount >= BASELINE_SAMPLES) {
+                LOGGER.info(String.format("Baseline round trip time: %.1f ms. Enabling response count hints.",
+                        getBaselineRoundTripTime()));
+                baseline = false;
+                hintsEnabled = true;
+                windowCount = 0;
+                windowNoData = 0;
+            }
+            return;
+        }
+
+        tunedTotal += roundTripMillis;
+        tunedCount++;
+        if (hintsEnabled && !hintsConfirmed && ++hintSuccesses >= MIN_HINT_SUCCESSES) {
+            hintsConfirmed = true;
+        }
+
+        window[windowCount++] = roundTripMillis;
+        if (windowCount == WINDOW_SIZE) {
+            tune();
+            windowCount = 0;
+            windowNoData = 0;
+        }
+    }
+
+    /**
+     * Records a failed data request.
+     *
+     * @param noData true if the adapter answered with "NO DATA"
+     * @return true if the failure is attributed to the response count hints or to a lowered
+     * timeout and should not count against the requested PIDs
+     */
+    public boolean onFailure(boolean noData) {
+        // adapters without support for the hints reject the request, they do not time out
+        if (hintsEnabled && !hintsConfirmed && !noData) {
+            if (++hintFailures >= MAX_HINT_FAILURES) {
+                LOGGER.info("Adapter does not accept response count hints. Disabling them.");
+                hintsEnabled = false;
+            }
+            return true;
+        }
+
+        if (noData) {
+            if (baseline) {
+                baselineNoData++;
+            } else {
+                windowNoData++;
+            }
+            // with a lowered timeout the ECU may just answer too late. Such answers must not
+            // blacklist the PID; the tuner raises the timeout again if they become more frequent
+            // than during the baseline, where unsupported PIDs are still counted.
+            return timeout < initialTimeout;
+        }
+        return false;
+    }
+
+    private void tune() {
+        long[] sorted = Arrays.copyOf(window, WINDOW_SIZE);
+        Arrays.sort(sorted);
+        long median = sorted[WINDOW_SIZE / 2];
+        long p95 = sorted[(int) (WINDOW_SIZE * 0.95)];
+
+        double baselineNoDataRate = (double) baselineNoData / (baselineCount + baselineNoData);
+        double noDataRate = (double) windowNoData / (WINDOW_SIZE + windowNoData);
+
+        if (timeout < initialTimeout && noDataRate > baselineNoDataRate + NO_DATA_TOLERANCE) {
+            // the ECU needs more time than granted: back off and never go below that again
+            minimumTimeout = Math.min(initialTimeout, timeout * 2);
+            LOGGER.info(String.format("NO DATA rate increased to %.2f. Raising the timeout.", noDataRate));
+            setTimeout(minimumTimeout);
+            setAdaptiveTiming(ADAPTIVE_TIMING_DEFAULT);
+            return;
+        }
+
+        int target = (int) Math.ceil(p95 * TIMEOUT_MARGIN / 4.0);
+        target = Math.max(minimumTimeout, Math.min(initialTimeout, target));
+        if (Math.abs(target - timeout) * 10 >= timeout) {
+            setTimeout(target);
+        }
+
+        // stable response times allow the adapter to shorten its timeout aggressively
+        setAdaptiveTiming(p95 <= 2 * median ? ADAPTIVE_TIMING_AGGRESSIVE : ADAPTIVE_TIMING_DEFAULT);
+    }
+
+    private void setTimeout(int value) {
+        if (value != timeout) {
+            timeout = value;
+            pendingCommands.offer(new Timeout(value));
+        }
+    }
+
+    private void setAdaptiveTiming(int mode) {
+        if (mode != adaptiveTiming) {
+            adaptiveTiming = mode;
+            pendingCommands.offer(new AdaptiveTiming(mode));
+        }
+    }
+
+    /**
+     * @return the current timeout in units of 4 ms
+     */
+    public int getTimeout() {
+        return timeout;
+    }
+
+    public int getAdaptiveTiming() {
+        return adaptiveTiming;
+    }
+
+    /**
+     * @return the mean round trip time in ms with the initial settings, NaN if not measured yet
+     */
+    public double getBaselineRoundTripTime() {
+        return baselineCount == 0 ? Double.NaN : (double) baselineTotal / baselineCount;
+    }
+
+    /**
+     * @return the mean round trip time in ms with the tuned settings, NaN if not measured yet
+     */
+    public double getTunedRoundTripTime() {
+        return tunedCount == 0 ? Double.NaN : (double) tunedTotal / tunedCount;
+    }
+
+    /**
+     * @return a log friendly summary of the round trip times and current settings
+     */
+    public String describe() {
+        return String.format("Round trip time: baseline %.1f ms, tuned %.1f ms (hints %s, AT ST %s, AT AT%s)",
+                getBaselineRoundTripTime(), getTunedRoundTripTime(), hintsEnabled ? "on" : "off",
+                Integer.toHexString(timeout), adaptiveTiming);
+    }
+}
@@ -21,11 +21,14 @@ package org.envirocar.obd.adapter;
 import android.util.Base64;
 
 import org.envirocar.core.logging.Logger;
+import org.envirocar.obd.VehicleCapabilities;
 import org.envirocar.obd.commands.PID;
 import org.envirocar.obd.commands.PIDSupported;
 import org.envirocar.obd.commands.PIDUtil;
 import org.envirocar.obd.commands.request.BasicCommand;
+import org.envirocar.obd.commands.request.MultiPIDCommand;
 import org.envirocar.obd.commands.request.PIDCommand;
+import org.envirocar.obd.commands.request.elm.ConfigurationCommand;
 import org.envirocar.obd.commands.response.DataResponse;
 import org.envirocar.obd.commands.response.ResponseParser;
 import org.envirocar.obd.exception.AdapterFailedException;
@@ -42,8 +45,12 @@ import java.io.OutputStream;
 import java.util.ArrayDeque;
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Collections;
+import java.util.EnumMap;
+import java.util.EnumSet;
 import java.util.HashMap;
 import java.util.HashSet;
+import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
 import java.util.Queue;
@@ -51,6 +58,8 @@ import java.util.Set;
 import java.util.concurrent.atomic.AtomicInteger;
 
 import io.reactivex.Observable;
+import io.reactivex.ObservableEmitter;
+import io.reactivex.functions.Consumer;
 
 
 public abstract class SyncAdapter implements OBDAdapter {
@@ -63,6 +72,9 @@ public abstract class SyncAdapter implements OBDAdapter {
     private static final char COMMAND_RECEIVE_END = '>';
     private static final char COMMAND_RECEIVE_SPACE = ' ';
     private static final int MAX_ERROR_PER_COMMAND = 5;
+    private static final long SAMPLE_RATE_LOG_PERIOD = 60000;
+    private static final int MAX_MULTI_PID_FAILURES = 3;
+    private static final int DISCOVERY_REQUEST_INTERVAL = 8;
 
     private Set<Character> ignoredChars = new HashSet<>(Arrays.asList(COMMAND_RECEIVE_SPACE, COMMAND_SEND_END));
     private CommandExecutor commandExecutor;
@@ -72,13 +84,40 @@ public abstract class SyncAdapter implements OBDAdapter {
 
     private Map<PID, AtomicInteger> failureMap = new HashMap<>();
     private List<PIDCommand> requestCommands;
-    private Queue<PIDCommand> commandRingBuffer = new ArrayDeque<>();
+    private PIDScheduler scheduler = new PIDScheduler();
+    private long lastSampleRateLog;
+    private boolean multiPIDRequests;
+    private int multiPIDFailures;
+    private ResponseTimeTuner tuner;
+    private Map<PID, PIDCommand> hintedCommands = new EnumMap<>(PID.class);
     private Queue<PIDSupported> pidSupportedCommands = new ArrayDeque<>(
             Arrays.asList(
                     new PIDSupported(),
                     new PIDSupported("20"),
                     new PIDSupported("40"),
                     new PIDSupported("80")));
+    private VehicleCapabilities rememberedCapabilities;
+    private Consumer<VehicleCapabilities> capabilitiesListener;
+    private boolean protocolSelected;
+    private String negotiatedProtocol;
+    private Set<PID> discoveredPIDs = new HashSet<>();
+    private Queue<BasicCommand> discoveryCommands = new ArrayDeque<>();
+    private int requestsSinceDiscovery;
+
+    /**
+     * Provides the capabilities remembered for the vehicle. If the first supported PIDs query
+     * confirms them, the remaining discovery queries are skipped during the initialization and
+     * sent in between the data requests instead. The protocol is tried first on adapters that
+     * select the protocol.
+     *
+     * @param remembered the capabilities remembered for the vehicle, may be null
+     * @param listener   receives the capabilities once they have been discovered, may be null
+     */
+    public void setVehicleCapabilities(VehicleCapabilities remembered,
+                                       Consumer<VehicleCapabilities> listener) {
+        this.rememberedCapabilities = remembered;
+        this.capabilitiesListener = listener;
+    }
 
 
     @Override
@@ -101,18 +140,7 @@ public abstract class SyncAdapter implements OBDAdapter {
                          * a successful data connection has been established:
                          * retrieve the supported PIDs
                          */
-                        PIDSupported pid = pidSupportedCommands.poll();
-                        while (pid != null) {
-                            commandExecutor.execute(pid);
-                            byte[] resp = commandExecutor.retrieveLatestResponse();
-                            try {
-                                supportedPIDs.addAll(pid.parsePIDs(resp));
-                            } catch (InvalidCommandResponseException e) {
-                                LOGGER.warn(e.getMessage(), e);
-                            }
-                            LOGGER.info("Currently supported PIDs: " + supportedPIDs.toString());
-                            pid = pidSupportedCommands.poll();
-                        }
+                        discoverSupportedPIDs();
 
                         // If the supported PIDs is empty, then usually the engine isn't running.
                         if (supportedPIDs.size() == 0) {
@@ -129,6 +157,8 @@ public abstract class SyncAdapter implements OBDAdapter {
                                     "All init commands sent, but could not verify connection"));
                         }
 
+                        cc = withRememberedProtocol(cc);
+
                         LOGGER.info("Sending Init Command: " + cc.toString());
                         //push the command to the output stream
                         commandExecutor.execute(cc);
@@ -171,6 +201,135 @@ public abstract class SyncAdapter implements OBDAdapter {
         return obs;
     }
 
+    private BasicCommand withRememberedProtocol(BasicCommand command) {
+        if (!(command instanceof ConfigurationCommand) || ((ConfigurationCommand) command)
+                .getInstance() != ConfigurationCommand.Instance.SELECT_AUTO_PROTOCOL) {
+            return command;
+        }
+
+        protocolSelected = true;
+        if (rememberedCapabilities == null || rememberedCapabilities.getProtocol() == null) {
+            return command;
+        }
+
+        LOGGER.info("Trying the remembered protocol first: " + rememberedCapabilities.getProtocol());
+        return ConfigurationCommand.selectProtocol(rememberedCapabilities.getProtocol());
+    }
+
+    /**
+     * Queries the supported PIDs. The remembered PIDs are used if the vehicle reports the same
+     * PIDs for the first group, the other groups and the negotiated protocol are then refreshed
+     * in the background.
+     */
+    private void discoverSupportedPIDs() throws IOException, StreamFinishedException {
+        PIDSupported first = pidSupportedCommands.poll();
+        Set<PID> firstGroup = querySupportedPIDs(first);
+
+        if (rememberedCapabilities != null && !firstGroup.isEmpty()
+                && firstGroup.equals(filterGroup(rememberedCapabilities.getSupportedPIDs(), first))) {
+            LOGGER.info("Supported PIDs confirmed, using the remembered PIDs: "
+                    + rememberedCapabilities.getSupportedPIDs());
+            discoveryCommands.addAll(pidSupportedCommands);
+            pidSupportedCommands.clear();
+            supportedPIDs.addAll(rememberedCapabilities.getSupportedPIDs());
+        }
+
+        PIDSupported pid = pidSupportedCommands.poll();
+        while (pid != null) {
+            querySupportedPIDs(pid);
+            pid = pidSupportedCommands.poll();
+        }
+
+        if (protocolSelected) {
+            discoveryCommands.add(ConfigurationCommand.instance(
+                    ConfigurationCommand.Instance.DESCRIBE_PROTOCOL_NUMBER));
+        }
+        if (discoveryCommands.isEmpty()) {
+            onDiscoveryFinished();
+        }
+    }
+
+    private Set<PID> querySupportedPIDs(PIDSupported pid) throws IOException, StreamFinishedException {
+        commandExecutor.execute(pid);
+        Set<PID> result = parseSupportedPIDs(pid, commandExecutor.retrieveLatestResponse());
+        supportedPIDs.addAll(result);
+        discoveredPIDs.addAll(result);
+        LOGGER.info("Currently supported PIDs: " + supportedPIDs.toString());
+        return result;
+    }
+
+    private static Set<PID> parseSupportedPIDs(PIDSupported pid, byte[] response) {
+        try {
+            return pid.parsePIDs(response);
+        } catch (InvalidCommandResponseException e) {
+            LOGGER.warn(e.getMessage(), e);
+            return Collections.emptySet();
+        }
+    }
+
+    private static Set<PID> filterGroup(Set<PID> pids, PIDSupported query) {
+        int offset = Integer.parseInt(query.getGroup(), 16);
+        Set<PID> result = new HashSet<>();
+        for (PID pid : pids) {
+            int value = Integer.parseInt(pid.getHexadecimalRepresentation(), 16);
+            if (value > offset && value <= offset + 0x20) {
+                result.add(pid);
+            }
+        }
+        return result;
+    }
+
+    /**
+     * @return the next pending discovery command if enough data requests have been sent since
+     * the last one, null otherwise
+     */
+    private BasicCommand pollDiscoveryCommand() {
+        if (discoveryCommands.isEmpty() || ++requestsSinceDiscovery < DISCOVERY_REQUEST_INTERVAL) {
+            return null;
+        }
+        requestsSinceDiscovery = 0;
+        return discoveryCommands.poll();
+    }
+
+    private void onDiscoveryResponse(BasicCommand command, byte[] response) {
+        if (command instanceof PIDSupported) {
+            discoveredPIDs.addAll(parseSupportedPIDs((PIDSupported) command, response));
+        } else {
+            String content = new String(response).trim();
+            if (content.matches("A?[1-9A-C]")) {
+                negotiatedProtocol = content.substring(content.length() - 1);
+            } else {
+                LOGGER.warn("Unexpected protocol number: " + content);
+            }
+        }
+
+        if (discoveryCommands.isEmpty()) {
+            onDiscoveryFinished();
+        }
+    }
+
+    /**
+     * Reports the discovered capabilities. PIDs that turned out to be supported in the
+     * background are requested from the next connection on, the ones that are no longer
+     * supported get blacklisted by their failures.
+     */
+    private void onDiscoveryFinished() {
+        if (discoveredPIDs.isEmpty()) {
+            return;
+        }
+
+        VehicleCapabilities capabilities = new VehicleCapabilities(discoveredPIDs,
+                negotiatedProtocol, System.currentTimeMillis());
+        LOGGER.info("Discovered " + capabilities);
+        if (capabilitiesListener != null) {
+            try {
+                capabilitiesListener.accept(capabilities);
+            } catch (Exception e) {
+                LOGGER.warn("Could not report the vehicle capabilities", e);
+            }
+        }
+    }
+
     @Override
     public Observable<DataResponse> observe() {
         return Observable.create(subscriber -> {
@@ -183,16 +342,51 @@ public abstract class SyncAdapter implements OBDAdapter {
 
             PIDCommand latestCommand = null;
             byte[] bytes = null;
+            long requestStart;
             while (!subscriber.isDisposed()) {
                 try {
+                    BasicCommand discoveryCommand = pollDiscoveryCommand();
+                    if (discoveryCommand != null) {
+                        commandExecutor.execute(discoveryCommand);
+                        onDiscoveryResponse(discoveryCommand, commandExecutor.retrieveLatestResponse());
+                        continue;
+                    }
+
+                    if (tuner != null) {
+                        ConfigurationCommand tuningCommand = tuner.pollTuningCommand();
+                        if (tuningCommand != null) {
+                            commandExecutor.execute(tuningCommand);
+                            bytes = commandExecutor.retrieveLatestResponse();
+                            LOGGER.info(String.format("Sent tuning command %s, received %s",
+                                    new String(tuningCommand.getOutputBytes()), new String(bytes)));
+                            continue;
+                        }
+                    }
+
+                    if (multiPIDRequests) {
+                        MultiPIDCommand multiCommand = pollNextCommands();
+                        latestCommand = multiCommand.getCommands().get(0);
+                        LOGGER.debug("Sending command " + multiCommand.getPids());
+
+                        requestStart = System.nanoTime();
+                        commandExecutor.execute(multiCommand);
+                        bytes = commandExecutor.retrieveLatestResponse();
+
+                        for (DataResponse response : parseMultiPIDResponse(multiCommand, bytes, requestStart)) {
+                            emitResponse(subscriber, response);
+                        }
+                        continue;
+                    }
+
                     latestCommand = pollNextCommand();
                     LOGGER.debug("Sending command " + (latestCommand != null ? latestCommand.getPid().toString() : "n/a"));
 
                     /**
                      * write the next pending command
                      */
+                    requestStart = System.nanoTime();
                     if (latestCommand != null) {
-                        commandExecutor.execute(latestCommand);
+                        commandExecutor.execute(withResponseCountHint(latestCommand));
                     }
 
                     /**
@@ -203,8 +397,10 @@ public abstract class SyncAdapter implements OBDAdapter {
                     DataResponse response = parser.parse(preProcess(bytes));
 
                     if (response != null) {
-                        LOGGER.debug("isDisposed? " + subscriber.isDisposed());
-                        subscriber.onNext(response);
+                        if (tuner != null) {
+                            tuner.onResponse(millisSince(requestStart));
+                        }
+                        emitResponse(subscriber, response);
                     }
                 } catch (IOException e) {
                     if (!subscriber.isDisposed())
@@ -222,43 +418,236 @@ public abstract class SyncAdapter implements OBDAdapter {
                     LOGGER.warn("Adapter still searching: " + e.getMessage());
                 } catch (NoDataReceivedException e) {
                     LOGGER.warn("No data received: " + e.getMessage());
-                    increaseFailureCount(latestCommand.getPid());
+                    if (!isCausedByTuning(true)) {
+                        increaseFailureCount(latestCommand.getPid());
+                    }
                 } catch (InvalidCommandResponseException e) {
                     LOGGER.warn("Received InvalidCommandResponseException: " + e.getCommand());
-                    increaseFailureCount(PIDUtil.fromString(e.getCommand()));
+                    if (!isCausedByTuning(false)) {
+                        increaseFailureCount(PIDUtil.fromString(e.getCommand()));
+                    }
                 } catch (UnmatchedResponseException e) {
                     LOGGER.warn("Unmatched response: " + e.getMessage());
+                    isCausedByTuning(false);
                 }
             }
 
         });
     }
 
-    protected PIDCommand pollNextCommand() throws AdapterFailedException {
-        if (this.commandRingBuffer.isEmpty()) {
+    private void emitResponse(ObservableEmitter<DataResponse> subscriber, DataResponse response) {
+        scheduler.onResponse(response.getPid(), response.getValue(), response.getTimestamp());
+        logSampleRates(response.getTimestamp());
+        LOGGER.debug("isDisposed? " + subscriber.isDisposed());
+        subscriber.onNext(response);
+    }
+
+    /**
+     * Splits the response of a multi-PID request. Falls back to single PID requests if the ECU
+     * repeatedly rejects the combined requests or only answers the first PID of them, which is
+     * the case for most non-CAN vehicles.
+     */
+    private List<DataResponse> parseMultiPIDResponse(MultiPIDCommand command, byte[] bytes,
+                                                     long requestStart)
+            throws AdapterFailedException, AdapterSearchingException {
+        List<DataResponse> responses;
+        try {
+            responses = parser.parseMultiple(preProcess(bytes));
+        } catch (NoDataReceivedException | InvalidCommandResponseException
+                | UnmatchedResponseException e) {
+            LOGGER.warn("Multi-PID request failed: " + e.getMessage());
+            if (!isCausedByTuning(e instanceof NoDataReceivedException)) {
+                increaseMultiPIDFailureCount();
+            }
+            return Collections.emptyList();
+        }
+
+        int requested = command.getCommands().size();
+        if (responses.isEmpty() || (requested > 1 && responses.size() == 1)) {
+            LOGGER.warn(String.format("Multi-PID request answered %s of %s PIDs",
+                    responses.size(), requested));
+            if (!isCausedByTuning(false)) {
+                increaseMultiPIDFailureCount();
+            }
+            return responses;
+        }
+
+        multiPIDFailures = 0;
+        if (tuner != null) {
+            tuner.onResponse(millisSince(requestStart));
+        }
+        if (responses.size() < requested) {
+            Set<PID> missing = EnumSet.copyOf(command.getPids());
+            for (DataResponse response : responses) {
+                missing.remove(response.getPid());
+            }
+            for (PID pid : missing) {
+                increaseFailureCount(pid);
+            }
+        }
+        return responses;
+    }
+
+    private void increaseMultiPIDFailureCount() {
+        if (++multiPIDFailures >= MAX_MULTI_PID_FAILURES) {
+            LOGGER.info("Multi-PID requests are not supported. Falling back to single PID requests.");
+            multiPIDRequests = false;
+        }
+    }
+
+    /**
+     * Selects the PIDs for the next multi-PID request.
+     *
+     * @return the next combined command
+     */
+    protected MultiPIDCommand pollNextCommands() throws AdapterFailedException {
+        if (this.scheduler.isEmpty()) {
             throw new AdapterFailedException("No available commands left in the buffer");
         }
 
-        PIDCommand cmd = commandRingBuffer.poll();
+        List<PIDCommand> batch = new ArrayList<>(MultiPIDCommand.MAX_PIDS);
+        scheduler.next(System.currentTimeMillis(), MultiPIDCommand.MAX_PIDS, batch);
 
-        if (cmd != null) {
-            if (!checkIsBlacklisted(cmd.getPid())) {
+        String mode = null;
+        Iterator<PIDCommand> it = batch.iterator();
+        while (it.hasNext()) {
+            PIDCommand cmd = it.next();
+            if (checkIsBlacklisted(cmd.getPid())) {
                 /**
-                 * not blacklisted: add it back as the last element of the ring
+                 * blacklisted: remove it from the schedule and the request
                  */
-                commandRingBuffer.offer(cmd);
-                return cmd;
-            } else {
-                /**
-                 * blacklisted: do not re-add it and return the next candidate
-                 */
-                return pollNextCommand();
+                scheduler.remove(cmd.getPid());
+                it.remove();
+            } else if (mode == null) {
+                mode = cmd.getMode();
+            } else if (!mode.equals(cmd.getMode())) {
+                // only PIDs of the same mode can be combined, the others follow later
+                it.remove();
             }
         }
 
+        if (batch.isEmpty()) {
+            return pollNextCommands();
+        }
+
+        if (tuner != null && tuner.useResponseCountHints()) {
+            return new MultiPIDCommand(mode, batch, expectedFrames(batch));
+        }
+        return new MultiPIDCommand(mode, batch);
+    }
+
+    /**
+     * @return the number of CAN frames of the combined response: a single frame carries up to 7
+     * bytes, the first frame of a multi frame response 6 bytes and all consecutive frames 7 bytes.
+     */
+    private static int expectedFrames(List<PIDCommand> commands) {
+        int bytes = 1;
+        for (PIDCommand cmd : commands) {
+            bytes += 1 + ResponseParser.getDataLength(cmd.getPid());
+        }
+        if (bytes <= 7) {
+            return 1;
+        }
+        int remaining = bytes - 6;
+        return 1 + (remaining + 6) / 7;
+    }
+
+    private PIDCommand withResponseCountHint(PIDCommand command) {
+        if (tuner == null || !tuner.useResponseCountHints() || command.getExpectedResponseLines() > 0) {
+            return command;
+        }
+
+        PIDCommand hinted = hintedCommands.get(command.getPid());
+        if (hinted == null) {
+            hinted = new PIDCommand(command.getMode(), command.getPid(), 1);
+            hintedCommands.put(command.getPid(), hinted);
+        }
+        return hinted;
+    }
+
+    /**
+     * @param noData true if the adapter answered with "NO DATA"
+     * @return true if the failure is caused by the response time tuning and should not count
+     * against the requested PIDs
+     */
+    private boolean isCausedByTuning(boolean noData) {
+        return tuner != null && tuner.onFailure(noData);
+    }
+
+    private static long millisSince(long nanoTime) {
+        return (System.nanoTime() - nanoTime) / 1000000;
+    }
+
+    /**
+     * Creates the tuner of the response timing. Adapters that support response count hints and
+     * the "AT ST"/"AT AT" commands provide one.
+     *
+     * @return the tuner or null if the adapter does not support the tuning
+     */
+    protected ResponseTimeTuner createResponseTimeTuner() {
+        return null;
+    }
+
+    /**
+     * @return the mean round trip time of the data requests in ms before the response timing
+     * was tuned, NaN if the adapter does not tune it or the time has not been measured yet
+     */
+    public double getBaselineRoundTripTime() {
+        return tuner == null ? Double.NaN : tuner.getBaselineRoundTripTime();
+    }
+
+    /**
+     * @return the mean round trip time of the data requests in ms after the response timing
+     * was tuned, NaN if the adapter does not tune it or the time has not been measured yet
+     */
+    public double getTunedRoundTripTime() {
+        return tuner == null ? Double.NaN : tuner.getTunedRoundTripTime();
+    }
+
+    /**
+     * @return true if the adapter is able to send several PIDs in a single request. The adapter
+     * falls back to single PID requests if the vehicle rejects them.
+     */
+    protected boolean supportsMultiPIDRequests() {
+        return false;
+    }
+
+    protected PIDCommand pollNextCommand() throws AdapterFailedException {
+        if (this.scheduler.isEmpty()) {
+            throw new AdapterFailedException("No available commands left in the buffer");
+        }
+
+        PIDCommand cmd = scheduler.next(System.currentTimeMillis());
+
+        if (cmd != null && checkIsBlacklisted(cmd.getPid())) {
+            /**
+             * blacklisted: remove it from the schedule and return the next candidate
+             */
+            scheduler.remove(cmd.getPid());
+            return pollNextCommand();
+        }
+
         return cmd;
     }
 
+    /**
+     * Provides the scheduling policy of a PID. Adapters can override this to prefer or
+     * throttle specific PIDs.
+     *
+     * @param pid the PID
+     * @return the policy used to schedule the requests of the PID
+     */
+    protected PIDScheduler.Policy providePollPolicy(PID pid) {
+        return PIDScheduler.defaultPolicy(pid);
+    }
+
+    /**
+     * @return the effective sample rate per PID in Hz
+     */
+    public Map<PID, Double> getSampleRates() {
+        return scheduler.getSampleRates(System.currentTimeMillis());
+    }
+
     protected void increaseFailureCount(PID command) {
         if (command == null) {
             return;
@@ -296,11 +685,26 @@ public abstract class SyncAdapter implements OBDAdapter {
     }
 
     private void preparePendingCommands() {
-        commandRingBuffer = new ArrayDeque<>();
+        scheduler = new PIDScheduler();
+        lastSampleRateLog = System.currentTimeMillis();
+        multiPIDRequests = supportsMultiPIDRequests();
+        multiPIDFailures = 0;
+        tuner = createResponseTimeTuner();
+        hintedCommands.clear();
 
         for (PIDCommand cmd : providePendingCommands()) {
             if (cmd != null) {
-                commandRingBuffer.offer(cmd);
+                scheduler.add(cmd, providePollPolicy(cmd.getPid()));
+            }
+        }
+    }
+
+    private void logSampleRates(long now) {
+        if (now - lastSampleRateLog >= SAMPLE_RATE_LOG_PERIOD) {
+            lastSampleRateLog = now;
+            LOGGER.info(scheduler.describeSampleRates(now));
+            if (tuner != null) {
+                LOGGER.info(tuner.describe());
             }
         }
     }
@@ -24,21 +24,40 @@ import org.envirocar.obd.commands.request.PIDCommand;
 
 public class PIDUtil {
 
+	private static final PID[] LOOKUP = new PID[256];
+
+	static {
+		for (PID p : PID.values()) {
+			LOOKUP[Integer.parseInt(p.getHexadecimalRepresentation(), 16)] = p;
+		}
+	}
+
 	public static PID fromString(String s) {
-		if (s == null || s.isEmpty()) {
+		if (s == null || s.length() != 2) {
 			return null;
 		}
-		
-		for (PID p : PID.values()) {
-			if (s.equalsIgnoreCase(p.getHexadecimalRepresentation())) {
-				return p;
-			}
+
+		int high = Character.digit(s.charAt(0), 16);
+		int low = Character.digit(s.charAt(1), 16);
+		if (high < 0 || low < 0 || s.charAt(0) > 'f' || s.charAt(1) > 'f') {
+			return null;
 		}
-		
-		return null;
+		return LOOKUP[(high << 4) | low];
+	}
+
+	/**
+	 * Resolves a PID by its numerical value.
+	 *
+	 * @param value the value of the PID byte
+	 * @return the PID or null if the value is unknown
+	 */
+	public static PID fromByte(int value) {
+		if (value < 0 || value >= LOOKUP.length) {
+			return null;
+		}
+		return LOOKUP[value];
 	}
 
-	
 	public static PIDCommand instantiateCommand(String pid) {
 		return instantiateCommand(fromString(pid));
 	}
@@ -0,0 +1,112 @@
+/**
+ * Copyright (C) 2013 - 2019 the enviroCar community
+ *
+ * This file is part of the enviroCar app.
+ *
+ * The enviroCar app is free software: you can redistribute it and/or
+ * modify it under the terms of the GNU General Public License as published
+ * by the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * The enviroCar app is distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU General
+ * Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License along
+ * with the enviroCar app. If not, see http://www.gnu.org/licenses/.
+ */
+package org.envirocar.obd.commands.request;
+
+import org.envirocar.obd.commands.PID;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Requests several PIDs of the same mode at once, e.g. "01 0C 0D 10". ELM327 compatible
+ * adapters forward such requests on CAN buses (ISO 15765-4), where the ECU answers all PIDs
+ * in a single, possibly multi-frame, response.
+ */
+public class MultiPIDCommand implements BasicCommand {
+
+    /**
+     * The maximum number of PIDs allowed in a single request by ISO 15765-4.
+     */
+    public static final int MAX_PIDS = 6;
+
+    private final String mode;
+    private final List<PIDCommand> commands;
+    private final int expectedResponseLines;
+    private final byte[] bytes;
+
+    /**
+     * @param mode     the mode of the PID commands
+     * @param commands the commands to combine, between 1 and {@link #MAX_PIDS}
+     */
+    public MultiPIDCommand(String mode, List<PIDCommand> commands) {
+        this(mode, commands, 0);
+    }
+
+    /**
+     * @param mode                  the mode of the PID commands
+     * @param commands              the commands to combine, between 1 and {@link #MAX_PIDS}
+     * @param expectedResponseLines the number of CAN frames the combined response consists of,
+     *                              see {@link PIDCommand#PIDCommand(String, PID, int)}.
+     */
+    public MultiPIDCommand(String mode, List<PIDCommand> commands, int expectedResponseLines) {
+        if (commands.isEmpty() || commands.size() > MAX_PIDS) {
+            throw new IllegalStateException("Number of PIDs out of allowed bounds: " + commands.size());
+        }
+        if (expectedResponseLines < 0 || expectedResponseLines > 9) {
+            throw new IllegalStateException("expectedResponseLines out of allowed bounds");
+        }
+
+        this.mode = mode;
+        this.commands = Collections.unmodifiableList(new ArrayList<>(commands));
+        this.expectedResponseLines = expectedResponseLines;
+        this.bytes = prepareBytes();
+    }
+
+    private byte[] prepareBytes() {
+        StringBuilder sb = new StringBuilder(mode);
+        for (PIDCommand cmd : commands) {
+            sb.append(' ').append(cmd.getPid().getHexadecimalRepresentation());
+        }
+        if (expectedResponseLines > 0) {
+            sb.append(expectedResponseLines);
+        }
+        return sb.toString().getBytes();
+    }
+
+    public String getMode() {
+        return mode;
+    }
+
+    public List<PIDCommand> getCommands() {
+        return commands;
+    }
+
+    public int getExpectedResponseLines() {
+        return expectedResponseLines;
+    }
+
+    public List<PID> getPids() {
+        List<PID> result = new ArrayList<>(commands.size());
+        for (PIDCommand cmd : commands) {
+            result.add(cmd.getPid());
+        }
+        return result;
+    }
+
+    @Override
+    public byte[] getOutputBytes() {
+        return bytes;
+    }
+
+    @Override
+    public boolean awaitsResults() {
+        return true;
+    }
+}
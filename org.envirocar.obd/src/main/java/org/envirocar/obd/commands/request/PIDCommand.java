@@ -88,6 +88,10 @@ public class PIDCommand implements BasicCommand {
         return pid;
     }
 
+    public int getExpectedResponseLines() {
+        return expectedResponseLines;
+    }
+
     @Override
     public byte[] getOutputBytes() {
         return bytes;
@@ -0,0 +1,47 @@
+/**
+ * Copyright (C) 2013 - 2019 the enviroCar community
+ *
+ * This file is part of the enviroCar app.
+ *
+ * The enviroCar app is free software: you can redistribute it and/or
+ * modify it under the terms of the GNU General Public License as published
+ * by the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * The enviroCar app is distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU General
+ * Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License along
+ * with the enviroCar app. If not, see http://www.gnu.org/licenses/.
+ */
+package org.envirocar.obd.commands.request.elm;
+
+
+/**
+ * Selects the adaptive timing mode of the OBD interface, i.e. how aggressively it shortens
+ * the timeout set by {@link Timeout} based on the response times it measured for the ECU.
+ * Mode 0 disables the adaptive timing, mode 1 is the default and mode 2 is the aggressive mode.
+ */
+public class AdaptiveTiming extends ConfigurationCommand {
+
+	private final int mode;
+
+	/**
+	 * @param mode
+	 *            the adaptive timing mode between 0 and 2
+	 */
+	public AdaptiveTiming(int mode) {
+		super("AT AT" + mode, Instance.ADAPTIVE_TIMING, true);
+		if (mode < 0 || mode > 2) {
+			throw new IllegalArgumentException("Adaptive timing mode out of bounds: " + mode);
+		}
+		this.mode = mode;
+	}
+
+	public int getMode() {
+		return mode;
+	}
+
+}
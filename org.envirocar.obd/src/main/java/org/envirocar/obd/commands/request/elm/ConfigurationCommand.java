@@ -69,11 +69,24 @@ public class ConfigurationCommand implements BasicCommand {
                 return new ConfigurationCommand("AT SP 0", i, true);
             case SPACES_OFF:
                 return new ConfigurationCommand("AT S0", i, true);
+            case DESCRIBE_PROTOCOL_NUMBER:
+                return new ConfigurationCommand("AT DPN", i, true);
         }
 
         return null;
     }
 
+    /**
+     * Selects the given protocol, falling back to the automatic search if the vehicle does
+     * not respond to it.
+     *
+     * @param protocol the protocol number as reported by "AT DPN"
+     * @return the command, treated as {@link Instance#SELECT_AUTO_PROTOCOL}
+     */
+    public static ConfigurationCommand selectProtocol(String protocol) {
+        return new ConfigurationCommand("AT SP A" + protocol, Instance.SELECT_AUTO_PROTOCOL, true);
+    }
+
     public enum Instance {
         DEFAULTS,
         ECHO_OFF,
@@ -84,7 +97,9 @@ public class ConfigurationCommand implements BasicCommand {
         RESET,
         SELECT_AUTO_PROTOCOL,
         TIMEOUT,
-        SPACES_OFF
+        ADAPTIVE_TIMING,
+        SPACES_OFF,
+        DESCRIBE_PROTOCOL_NUMBER
     }
 
     @NonNull
@@ -25,6 +25,8 @@ package org.envirocar.obd.commands.request.elm;
  */
 public class Timeout extends ConfigurationCommand {
 
+	private final int timeout;
+
 	/**
 	 * @param timeout
 	 *            value between 0 and 255 that multiplied by 4 results in the
@@ -32,6 +34,14 @@ public class Timeout extends ConfigurationCommand {
 	 */
 	public Timeout(int timeout) {
 		super("AT ST " + Integer.toHexString(0xFF & timeout), Instance.TIMEOUT, true);
+		this.timeout = 0xFF & timeout;
+	}
+
+	/**
+	 * @return the timeout in units of 4 ms
+	 */
+	public int getTimeout() {
+		return timeout;
 	}
 
 
@@ -24,15 +24,24 @@ import org.envirocar.obd.events.Timestamped;
 public abstract class DataResponse extends CommandResponse implements Timestamped {
 
     private final long timestamp;
+    private final long receivedTime;
 
     public DataResponse() {
         this.timestamp = System.currentTimeMillis();
+        this.receivedTime = System.nanoTime();
     }
 
     public long getTimestamp() {
         return timestamp;
     }
 
+    /**
+     * @return the {@link System#nanoTime()} when the response was read from the adapter
+     */
+    public long getReceivedTime() {
+        return receivedTime;
+    }
+
     public abstract PID getPid();
 
     public abstract Number getValue();
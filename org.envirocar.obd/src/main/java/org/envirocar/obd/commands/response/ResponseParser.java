@@ -39,15 +39,40 @@ import org.envirocar.obd.exception.InvalidCommandResponseException;
 import org.envirocar.obd.exception.NoDataReceivedException;
 import org.envirocar.obd.exception.UnmatchedResponseException;
 
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Parses the hexadecimal Mode 01 responses of the adapters. The parser decodes the nibbles
+ * directly from the raw bytes into a reused buffer, i.e. a parser instance must not be shared
+ * between threads.
+ */
 public class ResponseParser {
 
     private static final Logger LOGGER = Logger.getLogger(ResponseParser.class);
 
-    private static final CharSequence SEARCHING = "SEARCHING";
-    private static final CharSequence STOPPED = "STOPPED";
-    private static final CharSequence NO_DATA = "NODATA";
+    private static final byte[] SEARCHING = "SEARCHING".getBytes();
+    private static final byte[] STOPPED = "STOPPED".getBytes();
+    private static final byte[] NO_DATA = "NODATA".getBytes();
     public static final String STATUS_OK = "41";
 
+    private static final byte[] HEX_VALUES = new byte[128];
+
+    static {
+        Arrays.fill(HEX_VALUES, (byte) -1);
+        for (int i = 0; i < 10; i++) {
+            HEX_VALUES['0' + i] = (byte) i;
+        }
+        for (int i = 0; i < 6; i++) {
+            HEX_VALUES['A' + i] = (byte) (10 + i);
+            HEX_VALUES['a' + i] = (byte) (10 + i);
+        }
+    }
+
+    private int[] buffer = new int[16];
+    private int bufferLength;
+
     public ResponseParser() {
 
     }
@@ -59,90 +84,227 @@ public class ResponseParser {
          * we received a char array as hexadecimal -->
          * two chars represent one byte
          */
-        int index = 0;
-        int length = 2;
-
-        String dataString = new String(data);
 
         //cartrend: 7E803410D00AAAAAAAA
         //= 410D00AAAAAAAA
-//        if (dataString.startsWith("7E803")) {
-//            dataString = dataString.substring(5, dataString.length());
-//        }
 
-        if (isSearching(dataString)) {
+        if (isSearching(data)) {
             throw new AdapterSearchingException();
-        } else if (isNoDataCommand(dataString)) {
+        } else if (isNoDataCommand(data)) {
             throw new NoDataReceivedException("NODATA was received");
         }
 
-        int[] buffer = new int[data.length / 2];
-        boolean error = false;
+        bufferLength = data.length / 2;
+        if (buffer.length < bufferLength) {
+            buffer = new int[Math.max(bufferLength, buffer.length * 2)];
+        }
+        // the status and id bytes are not part of the processed data.
+        buffer[0] = 0;
+        if (bufferLength > 1) {
+            buffer[1] = 0;
+        }
 
-        PID pid = null;
-        while (index + length <= data.length) {
-            String tmp = new String(data, index, length);
+        // this is the status
+        boolean error = data.length >= 2 && (data[0] != '4' || data[1] != '1');
 
-            // this is the status
-            if (index == 0) {
-                if (!tmp.equals(STATUS_OK)) {
-                    error = true;
-                }
+        // this is the ID byte
+        PID pid = null;
+        if (data.length >= 4) {
+            int id = hexByte(data[2], data[3]);
+            pid = id < 0 ? null : PIDUtil.fromByte(id);
+            if (error || pid == null) {
+                throw new InvalidCommandResponseException(
+                        pid == null ? new String(data, 2, 2) : pid.toString());
             }
-            // this is the ID byte
-            else if (index == 2) {
-                pid = PIDUtil.fromString(tmp);
-                if (error || pid == null) {
-                    throw new InvalidCommandResponseException(pid == null ? tmp : pid.toString());
-                }
-            } else {
-                if (error || pid == null){
-                    throw new InvalidCommandResponseException(pid == null ? tmp : pid.toString());
-                }
+        }
 
-                /*
-                 * this is a hex number
-                 */
-                buffer[index / 2] = Integer.parseInt(tmp, 16);
-                if (buffer[index / 2] < 0) {
+        for (int index = 4; index + 2 <= data.length; index += 2) {
+            /*
+             * this is a hex number
+             */
+            int value = hexByte(data[index], data[index + 1]);
+            if (value < 0) {
+                value = parseSignedHexByte(data, index);
+                if (value < 0) {
                     throw new InvalidCommandResponseException(pid.toString());
                 }
             }
-
-            index += length;
+            buffer[index / 2] = value;
         }
 
         try {
-            return createDataResponse(pid, buffer, data);
+            return createDataResponse(pid, data);
         } catch (Exception e){
             throw new UnmatchedResponseException(e);
         }
     }
 
-    private DataResponse createDataResponse(PID pid, int[] processedData, byte[] rawData) {
+    /**
+     * Parses the combined response of a multi-PID request (e.g. "01 0C 0D 10"). The response
+     * contains the status byte once, followed by every answered PID and its data bytes. Longer
+     * responses are split into several CAN frames, which arrive as the byte count followed by
+     * the indexed frames once the line breaks are removed,
+     * e.g. "00B0:410C1AF80D321:101F400B65AAAA".
+     *
+     * @param data the raw response
+     * @return the responses of all PIDs that could be split from the response, in response order
+     */
+    public List<DataResponse> parseMultiple(byte[] data) throws AdapterSearchingException,
+            NoDataReceivedException, InvalidCommandResponseException, UnmatchedResponseException {
+        if (isSearching(data)) {
+            throw new AdapterSearchingException();
+        } else if (isNoDataCommand(data)) {
+            throw new NoDataReceivedException("NODATA was received");
+        }
+
+        byte[] payload = stripFrameFormatting(data);
+        if (payload.length < 2 || payload[0] != '4' || payload[1] != '1') {
+            throw new InvalidCommandResponseException(new String(data));
+        }
+
+        List<DataResponse> result = new ArrayList<>();
+        int index = 2;
+        while (index + 2 <= payload.length) {
+            int id = hexByte(payload[index], payload[index + 1]);
+            PID pid = id < 0 ? null : PIDUtil.fromByte(id);
+            int length = pid == null ? -1 : getDataLength(pid);
+            int end = index + 2 + length * 2;
+            if (length < 0 || end > payload.length) {
+                // unknown PID, padding or a truncated response: nothing more to split
+                break;
+            }
+
+            byte[] single = new byte[2 + end - index];
+            single[0] = '4';
+            single[1] = '1';
+            System.arraycopy(payload, index, single, 2, end - index);
+            result.add(parse(single));
+            index = end;
+        }
+
+        return result;
+    }
+
+    /**
+     * @param pid the PID
+     * @return the number of data bytes of a Mode 01 response for the PID
+     */
+    public static int getDataLength(PID pid) {
+        switch (pid) {
+            case RPM:
+            case MAF:
+            case ENGINE_FUEL_RATE:
+                return 2;
+            case O2_LAMBDA_PROBE_1_VOLTAGE:
+            case O2_LAMBDA_PROBE_2_VOLTAGE:
+            case O2_LAMBDA_PROBE_3_VOLTAGE:
+            case O2_LAMBDA_PROBE_4_VOLTAGE:
+            case O2_LAMBDA_PROBE_5_VOLTAGE:
+            case O2_LAMBDA_PROBE_6_VOLTAGE:
+            case O2_LAMBDA_PROBE_7_VOLTAGE:
+            case O2_LAMBDA_PROBE_8_VOLTAGE:
+            case O2_LAMBDA_PROBE_1_CURRENT:
+            case O2_LAMBDA_PROBE_2_CURRENT:
+            case O2_LAMBDA_PROBE_3_CURRENT:
+            case O2_LAMBDA_PROBE_4_CURRENT:
+            case O2_LAMBDA_PROBE_5_CURRENT:
+            case O2_LAMBDA_PROBE_6_CURRENT:
+            case O2_LAMBDA_PROBE_7_CURRENT:
+            case O2_LAMBDA_PROBE_8_CURRENT:
+                return 4;
+            default:
+                return 1;
+        }
+    }
+
+    /**
+     * Removes the ISO-TP formatting of a multi frame response, i.e. the leading length and the
+     * frame indices, and cuts off the padding of the last frame. Single frame responses are
+     * returned as they are.
+     */
+    private static byte[] stripFrameFormatting(byte[] data) {
+        if (data.length < 5 || data[4] != ':') {
+            return data;
+        }
+
+        int high = hexByte((byte) '0', data[0]);
+        int low = hexByte(data[1], data[2]);
+        if ((high | low) < 0) {
+            return data;
+        }
+
+        byte[] result = new byte[((high << 8) | low) * 2];
+        int pos = 0;
+        for (int i = 3; i < data.length && pos < result.length; i++) {
+            if (i + 1 < data.length && data[i + 1] == ':') {
+                // skip the frame index and its separator
+                i++;
+                continue;
+            }
+            result[pos++] = data[i];
+        }
+
+        return pos == result.length ? result : Arrays.copyOf(result, pos);
+    }
+
+    private static int hexByte(byte high, byte low) {
+        if (high < 0 || low < 0) {
+            return -1;
+        }
+        int h = HEX_VALUES[high];
+        int l = HEX_VALUES[low];
+        return (h | l) < 0 ? -1 : (h << 4) | l;
+    }
+
+    /**
+     * Handles the rare pairs that are no plain hex byte, in the same way as
+     * {@link Integer#parseInt(String, int)} with radix 16 would do, i.e. a leading sign.
+     */
+    private static int parseSignedHexByte(byte[] data, int index) {
+        byte sign = data[index];
+        byte digit = data[index + 1];
+        int value = digit >= 0 ? HEX_VALUES[digit] : -1;
+        if ((sign == '+' || sign == '-') && value >= 0) {
+            return sign == '-' ? -value : value;
+        }
+        throw new NumberFormatException("For input string: \"" + new String(data, index, 2) + "\"");
+    }
+
+    /**
+     * @param index the index of the byte within the response, 0 being the status byte.
+     * @return the processed byte.
+     */
+    private int at(int index) {
+        if (index >= bufferLength) {
+            throw new ArrayIndexOutOfBoundsException(index);
+        }
+        return buffer[index];
+    }
+
+    private DataResponse createDataResponse(PID pid, byte[] rawData) {
         switch (pid) {
 //            case FUEL_SYSTEM_STATUS:
 //                return FuelSystemStatusResponse.fromRawData(rawData);
             case CALCULATED_ENGINE_LOAD:
-                return new EngineLoadResponse((processedData[2] * 100.0f) / 255.0f);
+                return new EngineLoadResponse((at(2) * 100.0f) / 255.0f);
             case FUEL_PRESSURE:
-                return new FuelPressureResponse(processedData[2] * 3);
+                return new FuelPressureResponse(at(2) * 3);
             case INTAKE_MAP:
-                return new IntakeManifoldAbsolutePressureResponse(processedData[2]);
+                return new IntakeManifoldAbsolutePressureResponse(at(2));
             case RPM:
-                return new EngineRPMResponse((processedData[2] * 256 + processedData[3]) / 4);
+                return new EngineRPMResponse((at(2) * 256 + at(3)) / 4);
             case SPEED:
-                return new SpeedResponse(processedData[2]);
+                return new SpeedResponse(at(2));
             case INTAKE_AIR_TEMP:
-                return new IntakeAirTemperatureResponse(processedData[2] - 40);
+                return new IntakeAirTemperatureResponse(at(2) - 40);
             case MAF:
-                return new MAFResponse((processedData[2] * 256 + processedData[3]) / 100.0f);
+                return new MAFResponse((at(2) * 256 + at(3)) / 100.0f);
             case TPS:
-                return new ThrottlePositionResponse((processedData[2] * 100) / 255);
+                return new ThrottlePositionResponse((at(2) * 100) / 255);
             case SHORT_TERM_FUEL_TRIM_BANK_1:
-                return new ShortTermFuelTrimResponse((processedData[2] - 128) * (100d / 128d), 1);
+                return new ShortTermFuelTrimResponse((at(2) - 128) * (100d / 128d), 1);
             case LONG_TERM_FUEL_TRIM_BANK_1:
-                return new LongTermFuelTrimResponse((processedData[2] - 128) * (100d / 128d), 1);
+                return new LongTermFuelTrimResponse((at(2) - 128) * (100d / 128d), 1);
             case O2_LAMBDA_PROBE_1_VOLTAGE:
             case O2_LAMBDA_PROBE_2_VOLTAGE:
             case O2_LAMBDA_PROBE_3_VOLTAGE:
@@ -152,8 +314,8 @@ public class ResponseParser {
             case O2_LAMBDA_PROBE_7_VOLTAGE:
             case O2_LAMBDA_PROBE_8_VOLTAGE:
                 LambdaProbeVoltageResponse lambda = new LambdaProbeVoltageResponse(
-                        ((processedData[4] * 256d) + processedData[5]) / 8192d,
-                        ((processedData[2] * 256d) + processedData[3]) / 32768d);
+                        ((at(4) * 256d) + at(5)) / 8192d,
+                        ((at(2) * 256d) + at(3)) / 32768d);
                 return lambda;
             case O2_LAMBDA_PROBE_1_CURRENT:
             case O2_LAMBDA_PROBE_2_CURRENT:
@@ -164,19 +326,32 @@ public class ResponseParser {
             case O2_LAMBDA_PROBE_7_CURRENT:
             case O2_LAMBDA_PROBE_8_CURRENT:
                 return new LambdaProbeCurrentResponse(
-                        ((processedData[4] * 256d) + processedData[5]) / 256d - 128,
-                        ((processedData[2] * 256d) + processedData[3]) / 32768d);
+                        ((at(4) * 256d) + at(5)) / 256d - 128,
+                        ((at(2) * 256d) + at(3)) / 32768d);
         }
 
-        return new GenericDataResponse(pid, processedData, rawData);
+        return new GenericDataResponse(pid, Arrays.copyOf(buffer, bufferLength), rawData);
     }
 
-    private boolean isSearching(String dataString) {
-        return dataString.contains(SEARCHING) || dataString.contains(STOPPED);
+    private boolean isSearching(byte[] data) {
+        return contains(data, SEARCHING) || contains(data, STOPPED);
     }
 
-    private boolean isNoDataCommand(String dataString) {
-        return dataString == null || dataString.contains(NO_DATA);
+    private boolean isNoDataCommand(byte[] data) {
+        return data == null || contains(data, NO_DATA);
+    }
+
+    private static boolean contains(byte[] data, byte[] pattern) {
+        outer:
+        for (int i = 0; i <= data.length - pattern.length; i++) {
+            for (int j = 0; j < pattern.length; j++) {
+                if (data[i + j] != pattern[j]) {
+                    continue outer;
+                }
+            }
+            return true;
+        }
+        return false;
     }
 
 
@@ -25,11 +25,22 @@ public class PropertyKeyEvent implements Timestamped {
     private final Measurement.PropertyKey propertyKey;
     private final Number value;
     private final long timestamp;
+    private final long receivedTime;
 
     public PropertyKeyEvent(Measurement.PropertyKey propertyKey, Number value, long timestamp) {
+        this(propertyKey, value, timestamp, 0);
+    }
+
+    /**
+     * @param receivedTime the {@link System#nanoTime()} when the value was read from the
+     *                     adapter, 0 if unknown
+     */
+    public PropertyKeyEvent(Measurement.PropertyKey propertyKey, Number value, long timestamp,
+                            long receivedTime) {
         this.propertyKey = propertyKey;
         this.value = value;
         this.timestamp = timestamp;
+        this.receivedTime = receivedTime;
     }
 
     public Measurement.PropertyKey getPropertyKey() {
@@ -44,4 +55,12 @@ public class PropertyKeyEvent implements Timestamped {
     public long getTimestamp() {
         return timestamp;
     }
+
+    /**
+     * @return the {@link System#nanoTime()} when the value was read from the adapter, 0 if
+     * unknown
+     */
+    public long getReceivedTime() {
+        return receivedTime;
+    }
 }
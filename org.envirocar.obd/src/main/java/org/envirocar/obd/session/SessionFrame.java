@@ -0,0 +1,90 @@
+/**
+ * Copyright (C) 2013 - 2019 the enviroCar community
+ *
+ * This file is part of the enviroCar app.
+ *
+ * The enviroCar app is free software: you can redistribute it and/or
+ * modify it under the terms of the GNU General Public License as published
+ * by the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * The enviroCar app is distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU General
+ * Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License along
+ * with the enviroCar app. If not, see http://www.gnu.org/licenses/.
+ */
+package org.envirocar.obd.session;
+
+/**
+ * A chunk of bytes that went over the adapter connection in one direction.
+ */
+public class SessionFrame {
+
+    public enum Direction {
+        /**
+         * bytes written to the adapter
+         */
+        REQUEST((byte) 'W'),
+        /**
+         * bytes read from the adapter
+         */
+        RESPONSE((byte) 'R');
+
+        private final byte code;
+
+        Direction(byte code) {
+            this.code = code;
+        }
+
+        byte getCode() {
+            return code;
+        }
+
+        static Direction fromCode(int code) {
+            for (Direction d : values()) {
+                if (d.code == code) {
+                    return d;
+                }
+            }
+            return null;
+        }
+    }
+
+    private final Direction direction;
+    private final long time;
+    private final byte[] data;
+
+    /**
+     * @param direction the direction of the bytes
+     * @param time      the time in microseconds since the start of the session
+     * @param data      the transferred bytes
+     */
+    public SessionFrame(Direction direction, long time, byte[] data) {
+        this.direction = direction;
+        this.time = time;
+        this.data = data;
+    }
+
+    public Direction getDirection() {
+        return direction;
+    }
+
+    /**
+     * @return the time in microseconds since the start of the session
+     */
+    public long getTime() {
+        return time;
+    }
+
+    public byte[] getData() {
+        return data;
+    }
+
+    @Override
+    public String toString() {
+        return String.format("%s@%d: %s", direction, time, new String(data).trim());
+    }
+}
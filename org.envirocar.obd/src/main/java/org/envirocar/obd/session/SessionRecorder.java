@@ -0,0 +1,141 @@
+/**
+ * Copyright (C) 2013 - 2019 the enviroCar community
+ *
+ * This file is part of the enviroCar app.
+ *
+ * The enviroCar app is free software: you can redistribute it and/or
+ * modify it under the terms of the GNU General Public License as published
+ * by the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * The enviroCar app is distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU General
+ * Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License along
+ * with the enviroCar app. If not, see http://www.gnu.org/licenses/.
+ */
+package org.envirocar.obd.session;
+
+import org.envirocar.core.logging.Logger;
+
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.DataOutputStream;
+import java.io.FilterInputStream;
+import java.io.FilterOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+
+/**
+ * Records the raw traffic of an adapter connection. The streams returned by
+ * {@link #wrap(InputStream)} and {@link #wrap(OutputStream)} are passed to the
+ * {@link org.envirocar.obd.OBDController} instead of the connection streams. Every chunk that
+ * goes through them is appended as a timestamped frame in the format of
+ * {@link SessionRecording}.
+ * <p>
+ * A failure to write the recording only stops the recording, the connection itself is never
+ * affected.
+ */
+public class SessionRecorder implements Closeable {
+    private static final Logger LOG = Logger.getLogger(SessionRecorder.class);
+
+    private final DataOutputStream target;
+    private final long startNanos;
+    private long previousFrame;
+    private boolean recording = true;
+
+    /**
+     * @param target     the stream to write the recording to, closed with the recorder
+     * @param deviceName the name of the recorded device
+     * @throws IOException if the header could not be written
+     */
+    public SessionRecorder(OutputStream target, String deviceName) throws IOException {
+        this.target = new DataOutputStream(new BufferedOutputStream(target));
+        this.startNanos = System.nanoTime();
+        SessionRecording.writeHeader(this.target, deviceName, System.currentTimeMillis());
+    }
+
+    /**
+     * @param in the input stream of the connection
+     * @return a stream that records everything read from the connection
+     */
+    public InputStream wrap(InputStream in) {
+        return new FilterInputStream(in) {
+            @Override
+            public int read() throws IOException {
+                int b = super.read();
+                if (b >= 0) {
+                    record(SessionFrame.Direction.RESPONSE, new byte[]{(byte) b}, 0, 1);
+                }
+                return b;
+            }
+
+            @Override
+            public int read(byte[] b, int off, int len) throws IOException {
+                int count = super.read(b, off, len);
+                if (count > 0) {
+                    record(SessionFrame.Direction.RESPONSE, b, off, count);
+                }
+                return count;
+            }
+
+            @Override
+            public long skip(long n) throws IOException {
+                // skipped bytes still have to show up in the recording
+                byte[] skipped = new byte[(int) Math.min(n, 512)];
+                int count = read(skipped, 0, skipped.length);
+                return Math.max(count, 0);
+            }
+        };
+    }
+
+    /**
+     * @param out the output stream of the connection
+     * @return a stream that records everything written to the connection
+     */
+    public OutputStream wrap(OutputStream out) {
+        return new FilterOutputStream(out) {
+            @Override
+            public void write(int b) throws IOException {
+                out.write(b);
+                record(SessionFrame.Direction.REQUEST, new byte[]{(byte) b}, 0, 1);
+            }
+
+            @Override
+            public void write(byte[] b, int off, int len) throws IOException {
+                out.write(b, off, len);
+                record(SessionFrame.Direction.REQUEST, b, off, len);
+            }
+        };
+    }
+
+    private synchronized void record(SessionFrame.Direction direction, byte[] bytes, int off,
+                                     int len) {
+        if (!recording) {
+            return;
+        }
+
+        long now = (System.nanoTime() - startNanos) / 1000;
+        try {
+            SessionRecording.writeFrame(target, direction, now - previousFrame, bytes, off, len);
+            previousFrame = now;
+        } catch (IOException e) {
+            LOG.warn("Could not record the session. Stopping the recording.", e);
+            recording = false;
+        }
+    }
+
+    /**
+     * Flushes and closes the recording. The recorded connection streams are not closed.
+     *
+     * @throws IOException if the recording could not be closed
+     */
+    @Override
+    public synchronized void close() throws IOException {
+        recording = false;
+        target.close();
+    }
+}
@@ -0,0 +1,214 @@
+/**
+ * Copyright (C) 2013 - 2019 the enviroCar community
+ *
+ * This file is part of the enviroCar app.
+ *
+ * The enviroCar app is free software: you can redistribute it and/or
+ * modify it under the terms of the GNU General Public License as published
+ * by the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * The enviroCar app is distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU General
+ * Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License along
+ * with the enviroCar app. If not, see http://www.gnu.org/licenses/.
+ */
+package org.envirocar.obd.session;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * A recorded adapter session and its file format.
+ * <p>
+ * The file starts with the magic "ECOS", a version byte, the device name and the start time
+ * in ms since the epoch. Every frame follows as its direction code ('W' or 'R'), the time
+ * since the previous frame in microseconds and the length of its data, both as unsigned
+ * varints, and the data itself. A session of several minutes thus takes only little more
+ * space than the raw traffic.
+ */
+public class SessionRecording {
+    static final byte[] MAGIC = {'E', 'C', 'O', 'S'};
+    static final int VERSION = 1;
+
+    private final String deviceName;
+    private final long startTime;
+    private final List<SessionFrame> frames;
+
+    public SessionRecording(String deviceName, long startTime, List<SessionFrame> frames) {
+        this.deviceName = deviceName;
+        this.startTime = startTime;
+        this.frames = Collections.unmodifiableList(frames);
+    }
+
+    public String getDeviceName() {
+        return deviceName;
+    }
+
+    /**
+     * @return the start of the session in ms since the epoch
+     */
+    public long getStartTime() {
+        return startTime;
+    }
+
+    public List<SessionFrame> getFrames() {
+        return frames;
+    }
+
+    /**
+     * @return the duration of the session in microseconds
+     */
+    public long getDuration() {
+        return frames.isEmpty() ? 0 : frames.get(frames.size() - 1).getTime();
+    }
+
+    /**
+     * @param direction the direction to count
+     * @return the sum of all bytes transferred in the direction
+     */
+    public long getByteCount(SessionFrame.Direction direction) {
+        long result = 0;
+        for (SessionFrame f : frames) {
+            if (f.getDirection() == direction) {
+                result += f.getData().length;
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Reads a recording. A truncated last frame, e.g. of a session that was not closed
+     * properly, is dropped.
+     *
+     * @param in the stream to read from, it is not closed
+     * @return the recording
+     * @throws IOException if the stream does not contain a recording
+     */
+    public static SessionRecording read(InputStream in) throws IOException {
+        DataInputStream data = new DataInputStream(in);
+
+        byte[] magic = new byte[MAGIC.length];
+        data.readFully(magic);
+        for (int i = 0; i < MAGIC.length; i++) {
+            if (magic[i] != MAGIC[i]) {
+                throw new IOException("Not an OBD session recording");
+            }
+        }
+
+        int version = data.readUnsignedByte();
+        if (version != VERSION) {
+            throw new IOException("Unsupported recording version: " + version);
+        }
+
+        String deviceName = data.readUTF();
+        long startTime = data.readLong();
+
+        List<SessionFrame> frames = new ArrayList<>();
+        long time = 0;
+        while (true) {
+            int code = data.read();
+            if (code < 0) {
+                break;
+            }
+
+            SessionFrame.Direction direction = SessionFrame.Direction.fromCode(code);
+            if (direction == null) {
+                throw new IOException("Unknown frame type: " + code);
+            }
+
+            try {
+                time += readVarint(data);
+                byte[] bytes = new byte[(int) readVarint(data)];
+                data.readFully(bytes);
+                frames.add(new SessionFrame(direction, time, bytes));
+            } catch (EOFException e) {
+                break;
+            }
+        }
+
+        return new SessionRecording(deviceName, startTime, frames);
+    }
+
+    /**
+     * @param bytes the content of a recording file
+     * @return the recording
+     * @throws IOException if the bytes do not contain a recording
+     */
+    public static SessionRecording read(byte[] bytes) throws IOException {
+        return read(new ByteArrayInputStream(bytes));
+    }
+
+    /**
+     * Writes the recording in the file format.
+     *
+     * @param out the stream to write to, it is not closed
+     * @throws IOException if writing failed
+     */
+    public void write(OutputStream out) throws IOException {
+        DataOutputStream data = new DataOutputStream(out);
+        writeHeader(data, deviceName, startTime);
+
+        long previous = 0;
+        for (SessionFrame f : frames) {
+            writeFrame(data, f.getDirection(), f.getTime() - previous, f.getData(), 0,
+                    f.getData().length);
+            previous = f.getTime();
+        }
+        data.flush();
+    }
+
+    public byte[] toByteArray() throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        write(out);
+        return out.toByteArray();
+    }
+
+    static void writeHeader(DataOutputStream out, String deviceName, long startTime)
+            throws IOException {
+        out.write(MAGIC);
+        out.writeByte(VERSION);
+        out.writeUTF(deviceName);
+        out.writeLong(startTime);
+    }
+
+    static void writeFrame(DataOutputStream out, SessionFrame.Direction direction, long delta,
+                           byte[] bytes, int off, int len) throws IOException {
+        out.writeByte(direction.getCode());
+        writeVarint(out, delta);
+        writeVarint(out, len);
+        out.write(bytes, off, len);
+    }
+
+    private static void writeVarint(DataOutputStream out, long value) throws IOException {
+        while ((value & ~0x7FL) != 0) {
+            out.writeByte((int) ((value & 0x7F) | 0x80));
+            value >>>= 7;
+        }
+        out.writeByte((int) value);
+    }
+
+    private static long readVarint(DataInputStream in) throws IOException {
+        long result = 0;
+        for (int shift = 0; shift < 64; shift += 7) {
+            int b = in.readUnsignedByte();
+            result |= (long) (b & 0x7F) << shift;
+            if ((b & 0x80) == 0) {
+                return result;
+            }
+        }
+        throw new IOException("Malformed varint");
+    }
+}
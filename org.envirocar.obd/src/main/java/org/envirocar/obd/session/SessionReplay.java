@@ -0,0 +1,314 @@
+/**
+ * Copyright (C) 2013 - 2019 the enviroCar community
+ *
+ * This file is part of the enviroCar app.
+ *
+ * The enviroCar app is free software: you can redistribute it and/or
+ * modify it under the terms of the GNU General Public License as published
+ * by the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * The enviroCar app is distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU General
+ * Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License along
+ * with the enviroCar app. If not, see http://www.gnu.org/licenses/.
+ */
+package org.envirocar.obd.session;
+
+import org.envirocar.core.logging.Logger;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.io.OutputStream;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Plays a {@link SessionRecording} back as the streams of an adapter connection, e.g. for
+ * the stream based constructor of the {@link org.envirocar.obd.OBDController}.
+ * <p>
+ * The replay is driven by the code under test: a recorded response is only released after
+ * every request that preceded it in the recording has been written. It is then delayed by
+ * its recorded distance to the previous frame divided by the speed, so that a speed of 1
+ * reproduces the timing of the adapter and {@link #UNTHROTTLED} releases it at once.
+ * <p>
+ * Written bytes are compared to the recorded requests. A lenient replay counts divergent
+ * bytes and keeps going, a strict replay fails the write. As requests are terminated by a
+ * carriage return, a lenient replay resynchronizes at the end of a request whose length
+ * diverged: the rest of a longer recorded request is skipped and the surplus bytes of a longer
+ * written request are not matched against the following recorded request.
+ */
+public class SessionReplay implements Closeable {
+    private static final Logger LOG = Logger.getLogger(SessionReplay.class);
+
+    public static final float UNTHROTTLED = 0;
+    private static final long UNSET = Long.MIN_VALUE;
+    private static final byte END_OF_REQUEST = '\r';
+
+    private final SessionRecording recording;
+    private final List<SessionFrame> frames;
+    private final float speed;
+    private final boolean strict;
+
+    // the time in ns when a request was completely written or a response was released
+    private final long[] eventTimes;
+    private final Object lock = new Object();
+
+    private long startTime = UNSET;
+    private int writeIndex;
+    private int writeOffset;
+    private int readIndex;
+    private int readOffset;
+    private int divergences;
+    private boolean closed;
+
+    private final InputStream inputStream = new InputStream() {
+        @Override
+        public int read() throws IOException {
+            byte[] b = new byte[1];
+            return read(b, 0, 1) < 0 ? -1 : b[0] & 0xFF;
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len) throws IOException {
+            return SessionReplay.this.read(b, off, len);
+        }
+
+        @Override
+        public int available() {
+            return SessionReplay.this.available();
+        }
+
+        @Override
+        public void close() {
+            SessionReplay.this.close();
+        }
+    };
+
+    private final OutputStream outputStream = new OutputStream() {
+        @Override
+        public void write(int b) throws IOException {
+            SessionReplay.this.write(new byte[]{(byte) b}, 0, 1);
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) throws IOException {
+            SessionReplay.this.write(b, off, len);
+        }
+
+        @Override
+        public void close() {
+            SessionReplay.this.close();
+        }
+    };
+
+    /**
+     * Creates a lenient replay.
+     *
+     * @param recording the recording to play back
+     * @param speed     the speed factor, e.g. 1 for real time or {@link #UNTHROTTLED}
+     */
+    public SessionReplay(SessionRecording recording, float speed) {
+        this(recording, speed, false);
+    }
+
+    /**
+     * @param recording the recording to play back
+     * @param speed     the speed factor, e.g. 1 for real time or {@link #UNTHROTTLED}
+     * @param strict    true if writes that diverge from the recording shall fail
+     */
+    public SessionReplay(SessionRecording recording, float speed, boolean strict) {
+        this.recording = recording;
+        this.frames = recording.getFrames();
+        this.speed = speed;
+        this.strict = strict;
+        this.eventTimes = new long[frames.size()];
+        Arrays.fill(this.eventTimes, UNSET);
+
+        this.writeIndex = nextFrame(0, SessionFrame.Direction.REQUEST);
+        this.readIndex = nextFrame(0, SessionFrame.Direction.RESPONSE);
+    }
+
+    public InputStream getInputStream() {
+        return inputStream;
+    }
+
+    public OutputStream getOutputStream() {
+        return outputStream;
+    }
+
+    public String getDeviceName() {
+        return recording.getDeviceName();
+    }
+
+    /**
+     * @return the number of writes that did not match the recording
+     */
+    public int getDivergences() {
+        synchronized (lock) {
+            return divergences;
+        }
+    }
+
+    /**
+     * @return true if every recorded frame has been written or read
+     */
+    public boolean isFinished() {
+        synchronized (lock) {
+            return writeIndex >= frames.size() && readIndex >= frames.size();
+        }
+    }
+
+    @Override
+    public void close() {
+        synchronized (lock) {
+            closed = true;
+            lock.notifyAll();
+        }
+    }
+
+    private void write(byte[] b, int off, int len) throws IOException {
+        synchronized (lock) {
+            if (closed) {
+                throw new IOException("Replay closed");
+            }
+            start();
+
+            for (int i = off; i < off + len; i++) {
+                if (writeIndex >= frames.size()) {
+                    diverge("Write beyond the end of the recording");
+                    continue;
+                }
+
+                byte expected = frames.get(writeIndex).getData()[writeOffset];
+                if (expected != b[i]) {
+                    diverge(String.format("Write diverged from frame %d: %s",
+                            writeIndex, frames.get(writeIndex)));
+
+                    if (b[i] == END_OF_REQUEST) {
+                        // the written request is shorter: continue after the recorded one
+                        skipRequest();
+                        continue;
+                    } else if (expected == END_OF_REQUEST) {
+                        // the written request is longer: wait for its end
+                        continue;
+                    }
+                }
+                advanceWrite();
+            }
+        }
+    }
+
+    private void advanceWrite() {
+        if (++writeOffset == frames.get(writeIndex).getData().length) {
+            eventTimes[writeIndex] = System.nanoTime();
+            writeIndex = nextFrame(writeIndex + 1, SessionFrame.Direction.REQUEST);
+            writeOffset = 0;
+            lock.notifyAll();
+        }
+    }
+
+    private void skipRequest() {
+        while (writeIndex < frames.size()) {
+            byte skipped = frames.get(writeIndex).getData()[writeOffset];
+            advanceWrite();
+            if (skipped == END_OF_REQUEST) {
+                return;
+            }
+        }
+    }
+
+    private int read(byte[] b, int off, int len) throws IOException {
+        if (len == 0) {
+            return 0;
+        }
+
+        synchronized (lock) {
+            start();
+
+            try {
+                while (true) {
+                    if (closed || readIndex >= frames.size()) {
+                        return -1;
+                    }
+
+                    if (isReleasable(readIndex)) {
+                        long wait = releaseTime(readIndex) - System.nanoTime();
+                        if (wait <= 0) {
+                            break;
+                        }
+                        lock.wait(wait / 1000000, (int) (wait % 1000000));
+                    } else {
+                        lock.wait();
+                    }
+                }
+            } catch (InterruptedException e) {
+                throw new InterruptedIOException();
+            }
+
+            byte[] data = frames.get(readIndex).getData();
+            int count = Math.min(len, data.length - readOffset);
+            System.arraycopy(data, readOffset, b, off, count);
+
+            readOffset += count;
+            if (readOffset == data.length) {
+                readIndex = nextFrame(readIndex + 1, SessionFrame.Direction.RESPONSE);
+                readOffset = 0;
+            }
+            return count;
+        }
+    }
+
+    private int available() {
+        synchronized (lock) {
+            if (closed || readIndex >= frames.size() || !isReleasable(readIndex)
+                    || releaseTime(readIndex) > System.nanoTime()) {
+                return 0;
+            }
+            return frames.get(readIndex).getData().length - readOffset;
+        }
+    }
+
+    private boolean isReleasable(int response) {
+        // every request recorded before the response has been written
+        return writeIndex > response;
+    }
+
+    private long releaseTime(int response) {
+        if (eventTimes[response] == UNSET) {
+            long anchor = response == 0 ? startTime : eventTimes[response - 1];
+            long delay = response == 0 ? frames.get(0).getTime() :
+                    frames.get(response).getTime() - frames.get(response - 1).getTime();
+            eventTimes[response] = speed <= 0 ? anchor : anchor + (long) (delay * 1000 / speed);
+        }
+        return eventTimes[response];
+    }
+
+    private void start() {
+        if (startTime == UNSET) {
+            startTime = System.nanoTime();
+        }
+    }
+
+    private void diverge(String message) throws IOException {
+        divergences++;
+        if (strict) {
+            throw new IOException(message);
+        }
+        if (divergences == 1) {
+            LOG.warn(message + ". Further divergences are not logged.");
+        }
+    }
+
+    private int nextFrame(int from, SessionFrame.Direction direction) {
+        while (from < frames.size() && frames.get(from).getDirection() != direction) {
+            from++;
+        }
+        return from;
+    }
+}
@@ -0,0 +1,75 @@
+/**
+ * Copyright (C) 2013 - 2019 the enviroCar community
+ *
+ * This file is part of the enviroCar app.
+ *
+ * The enviroCar app is free software: you can redistribute it and/or
+ * modify it under the terms of the GNU General Public License as published
+ * by the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * The enviroCar app is distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU General
+ * Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License along
+ * with the enviroCar app. If not, see http://www.gnu.org/licenses/.
+ */
+package org.envirocar.obd.adapter;
+
+import org.envirocar.obd.adapter.async.DriveDeckSportAdapter;
+import org.envirocar.obd.emulator.DriveDeckEmulator;
+import org.envirocar.obd.emulator.ELM327Emulator;
+import org.envirocar.obd.emulator.Emulator;
+import org.envirocar.obd.emulator.ScriptedVehicleProfile;
+
+/**
+ * Measures the request throughput of the ELM327 and the DriveDeck adapters against the emulated
+ * devices, with and without a simulated ECU latency. Run its main method with the test
+ * classpath, the build does not ship a benchmark harness.
+ */
+public class EmulatedAdapterBenchmark {
+    private static final int WARMUP_RESPONSES = 500;
+    private static final int RESPONSES = 5000;
+    private static final long[] LATENCIES = {0, 10};
+
+    public static void main(String[] args) {
+        for (long latency : LATENCIES) {
+            run(new ELM327Adapter(),
+                    new ELM327Emulator(ScriptedVehicleProfile.urbanCycle()), latency);
+            run(new DriveDeckSportAdapter(),
+                    new DriveDeckEmulator(ScriptedVehicleProfile.urbanCycle()), latency);
+        }
+    }
+
+    private static void run(OBDAdapter adapter, Emulator emulator, long latency) {
+        emulator.setLatency(latency);
+        emulator.start();
+        try {
+            adapter.initialize(emulator.getInputStream(), emulator.getOutputStream())
+                    .blockingFirst();
+
+            // the measurement starts once the adapter has warmed up, e.g. tuned its timing.
+            long[] start = new long[2];
+            int[] count = new int[1];
+            adapter.observe()
+                    .take(WARMUP_RESPONSES + RESPONSES)
+                    .doOnNext(response -> {
+                        if (++count[0] == WARMUP_RESPONSES) {
+                            start[0] = System.nanoTime();
+                            start[1] = emulator.getRequestCount();
+                        }
+                    })
+                    .blockingLast();
+
+            double seconds = (System.nanoTime() - start[0]) / 1e9;
+            long requests = emulator.getRequestCount() - start[1];
+            System.out.println(String.format("%-22s latency %2d ms: %8.1f requests/s, " +
+                            "%8.1f responses/s", adapter.getClass().getSimpleName(), latency,
+                    requests / seconds, RESPONSES / seconds));
+        } finally {
+            emulator.close();
+        }
+    }
+}
@@ -0,0 +1,135 @@
+/**
+ * Copyright (C) 2013 - 2019 the enviroCar community
+ *
+ * This file is part of the enviroCar app.
+ *
+ * The enviroCar app is free software: you can redistribute it and/or
+ * modify it under the terms of the GNU General Public License as published
+ * by the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * The enviroCar app is distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU General
+ * Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License along
+ * with the enviroCar app. If not, see http://www.gnu.org/licenses/.
+ */
+package org.envirocar.obd.adapter;
+
+import org.envirocar.obd.VehicleCapabilities;
+import org.envirocar.obd.adapter.async.DriveDeckSportAdapter;
+import org.envirocar.obd.commands.PID;
+import org.envirocar.obd.commands.response.DataResponse;
+import org.envirocar.obd.emulator.DriveDeckEmulator;
+import org.envirocar.obd.emulator.ELM327Emulator;
+import org.envirocar.obd.emulator.ScriptedVehicleProfile;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * Drives the adapters against the emulated devices on the JVM.
+ */
+public class EmulatedAdapterTest {
+
+    @Test
+    public void testELM327() {
+        ELM327Emulator emulator = new ELM327Emulator(ScriptedVehicleProfile.urbanCycle());
+        emulator.setLatency(20);
+        emulator.setNoDataRate(0.02);
+        emulator.start();
+
+        try {
+            ELM327Adapter adapter = new ELM327Adapter();
+            Assert.assertTrue(adapter.supportsDevice(emulator.getDeviceName()));
+            Assert.assertTrue(adapter.initialize(emulator.getInputStream(),
+                    emulator.getOutputStream()).blockingFirst());
+
+            List<DataResponse> responses = adapter.observe().take(1000).toList().blockingGet();
+            Assert.assertEquals(1000, responses.size());
+
+            Set<PID> pids = new HashSet<>();
+            for (DataResponse r : responses) {
+                pids.add(r.getPid());
+            }
+            Assert.assertTrue(pids.contains(PID.SPEED));
+            Assert.assertTrue(pids.contains(PID.RPM));
+            Assert.assertTrue(pids.contains(PID.MAF));
+
+            // the response count hints are in use
+            Assert.assertTrue(adapter.getTunedRoundTripTime() < adapter.getBaselineRoundTripTime());
+        } finally {
+            emulator.close();
+        }
+    }
+
+    @Test
+    public void testDriveDeck() {
+        DriveDeckEmulator emulator = new DriveDeckEmulator(ScriptedVehicleProfile.urbanCycle());
+        emulator.start();
+
+        try {
+            DriveDeckSportAdapter adapter = new DriveDeckSportAdapter();
+            Assert.assertTrue(adapter.supportsDevice(emulator.getDeviceName()));
+            Assert.assertTrue(adapter.initialize(emulator.getInputStream(),
+                    emulator.getOutputStream()).blockingFirst());
+
+            List<DataResponse> responses = adapter.observe().take(200).toList().blockingGet();
+            Assert.assertEquals(200, responses.size());
+
+            Set<PID> pids = new HashSet<>();
+            for (DataResponse r : responses) {
+                pids.add(r.getPid());
+            }
+            Assert.assertTrue(pids.contains(PID.SPEED));
+            Assert.assertTrue(pids.contains(PID.RPM));
+        } finally {
+            emulator.close();
+        }
+    }
+
+    @Test
+    public void testRememberedCapabilities() {
+        AtomicReference<VehicleCapabilities> discovered = new AtomicReference<>();
+        Assert.assertEquals(4L, connect(null, discovered));
+
+        VehicleCapabilities first = discovered.get();
+        Assert.assertNotNull(first);
+        Assert.assertEquals("6", first.getProtocol());
+        Assert.assertTrue(first.getSupportedPIDs().contains(PID.SPEED));
+
+        // only the first group is queried during the initialization, the rest in the background
+        discovered.set(null);
+        Assert.assertEquals(1L, connect(VehicleCapabilities.decode(first.encode()), discovered));
+        Assert.assertNotNull(discovered.get());
+        Assert.assertEquals(first.getSupportedPIDs(), discovered.get().getSupportedPIDs());
+        Assert.assertEquals(first.getProtocol(), discovered.get().getProtocol());
+    }
+
+    /**
+     * @return the number of OBD requests sent during the initialization
+     */
+    private long connect(VehicleCapabilities remembered, AtomicReference<VehicleCapabilities> discovered) {
+        ELM327Emulator emulator = new ELM327Emulator(ScriptedVehicleProfile.urbanCycle());
+        emulator.start();
+
+        try {
+            ELM327Adapter adapter = new ELM327Adapter();
+            adapter.setVehicleCapabilities(remembered, discovered::set);
+            Assert.assertTrue(adapter.initialize(emulator.getInputStream(),
+                    emulator.getOutputStream()).blockingFirst());
+            long initRequests = emulator.getRequestCount();
+
+            Assert.assertEquals(200, adapter.observe().take(200).toList().blockingGet().size());
+            return initRequests;
+        } finally {
+            emulator.close();
+        }
+    }
+}
@@ -22,6 +22,7 @@ import org.envirocar.core.CacheDirectoryProvider;
 import org.envirocar.core.dao.AbstractCacheDAO;
 import org.envirocar.core.dao.TrackDAO;
 import org.envirocar.core.entity.Track;
+import org.envirocar.core.entity.TrackColumns;
 import org.envirocar.core.exception.NotConnectedException;
 
 import java.util.List;
@@ -54,6 +55,12 @@ public class CacheTrackDAO extends AbstractCacheDAO implements TrackDAO {
         return Observable.error(new NotConnectedException("Not implemented for Cache DAO"));
     }
 
+    @Override
+    public TrackColumns getTrackColumnsById(String id, Track track)
+            throws NotConnectedException {
+        throw new NotConnectedException("Not implemented for Cache DAO");
+    }
+
     @Override
     public List<Track> getTrackIds() throws NotConnectedException {
         throw new NotConnectedException("Not implemented for Cache DAO");
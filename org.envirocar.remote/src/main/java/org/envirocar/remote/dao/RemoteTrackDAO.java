@@ -19,16 +19,19 @@
 package org.envirocar.remote.dao;
 
 import com.google.common.base.Preconditions;
+import com.google.gson.JsonParseException;
 
 import org.envirocar.core.UserManager;
 import org.envirocar.core.dao.TrackDAO;
 import org.envirocar.core.entity.Track;
+import org.envirocar.core.entity.TrackColumns;
 import org.envirocar.core.exception.DataCreationFailureException;
 import org.envirocar.core.exception.DataRetrievalFailureException;
 import org.envirocar.core.exception.NotConnectedException;
 import org.envirocar.core.exception.ResourceConflictException;
 import org.envirocar.core.exception.UnauthorizedException;
 import org.envirocar.core.logging.Logger;
+import org.envirocar.remote.serde.TrackColumnsReader;
 import org.envirocar.remote.service.EnviroCarService;
 import org.envirocar.remote.service.TrackService;
 import org.envirocar.remote.util.EnvirocarServiceUtils;
@@ -86,6 +89,36 @@ public class RemoteTrackDAO extends BaseRemoteDAO<TrackDAO, TrackService> implem
         }
     }
 
+    /**
+     * Downloads the measurements of a remote track as columns. The response gets parsed while
+     * it is streamed, without building the measurements of the track.
+     *
+     * @param id    the remote id of the track.
+     * @param track the track to apply the properties of the remote track to.
+     * @return the columns of the track.
+     */
+    @Override
+    public TrackColumns getTrackColumnsById(String id, Track track)
+            throws DataRetrievalFailureException, NotConnectedException, UnauthorizedException {
+        LOG.info(String.format("getTrackColumns(%s)", id));
+        final TrackService trackService = EnviroCarService.getTrackService();
+        Call<ResponseBody> trackCall = trackService.getTrackStream(
+                userManager.getUser().getUsername(), id);
+
+        try {
+            ResponseBody body = executeCall(trackCall).body();
+            try {
+                return new TrackColumnsReader().read(body.charStream(), track);
+            } finally {
+                body.close();
+            }
+        } catch (ResourceConflictException | JsonParseException | IllegalStateException e) {
+            throw new DataRetrievalFailureException(e);
+        } catch (IOException e) {
+            throw new NotConnectedException(e);
+        }
+    }
+
     @Override
     public Observable<Track> getTrackByIdObservable(final String id) {
         return Observable.create(emitter -> {
@@ -27,8 +27,8 @@ import com.google.gson.JsonParseException;
 import com.google.gson.JsonSerializationContext;
 import com.google.gson.JsonSerializer;
 
+import org.envirocar.core.entity.CompactMeasurement;
 import org.envirocar.core.entity.Measurement;
-import org.envirocar.core.entity.MeasurementImpl;
 import org.envirocar.core.entity.Track;
 import org.envirocar.core.logging.Logger;
 import org.envirocar.core.util.Util;
@@ -61,7 +61,7 @@ public class MeasurementSerde implements JsonSerializer<Measurement>,
                 .get(Track.KEY_TRACK_FEATURES_GEOMETRY).getAsJsonObject()
                 .get(Track.KEY_TRACK_FEATURES_GEOMETRY_COORDINATES).getAsJsonArray();
 
-        Measurement result = new MeasurementImpl();
+        Measurement result = new CompactMeasurement();
         result.setLatitude(coords.get(1).getAsFloat());
         result.setLongitude(coords.get(0).getAsFloat());
 
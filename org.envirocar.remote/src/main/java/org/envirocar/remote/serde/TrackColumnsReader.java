@@ -0,0 +1,210 @@
+/**
+ * Copyright (C) 2013 - 2019 the enviroCar community
+ *
+ * This file is part of the enviroCar app.
+ *
+ * The enviroCar app is free software: you can redistribute it and/or
+ * modify it under the terms of the GNU General Public License as published
+ * by the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * The enviroCar app is distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU General
+ * Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License along
+ * with the enviroCar app. If not, see http://www.gnu.org/licenses/.
+ */
+package org.envirocar.remote.serde;
+
+import com.google.gson.JsonObject;
+import com.google.gson.JsonParseException;
+import com.google.gson.JsonParser;
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonToken;
+
+import org.envirocar.core.entity.Car;
+import org.envirocar.core.entity.Measurement;
+import org.envirocar.core.entity.Track;
+import org.envirocar.core.entity.TrackColumns;
+import org.envirocar.core.util.Util;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.text.ParseException;
+
+/**
+ * Reads the measurements of a track in the GeoJSON format of the enviroCar API from a stream
+ * directly into {@link TrackColumns}, without building a JSON tree or measurement objects.
+ * Only the small properties object of the track is parsed as tree and applied to a track.
+ * Features without a geometry become rows without a position, features without a time are
+ * rejected.
+ */
+public class TrackColumnsReader {
+    private static final Measurement.PropertyKey[] PROPERTY_KEYS =
+            Measurement.PropertyKey.values();
+
+    private final double[] values = new double[PROPERTY_KEYS.length];
+    private long present;
+    private long time;
+    private boolean hasTime;
+    private double latitude;
+    private double longitude;
+    private boolean hasPosition;
+
+    /**
+     * @param in    the track document.
+     * @param track the track to apply the track properties to, or null to skip them.
+     * @return the columns of the measurements of the track.
+     * @throws IOException if the stream could not be read.
+     */
+    public TrackColumns read(Reader in, Track track) throws IOException {
+        JsonReader reader = new JsonReader(in);
+        try {
+            return read(reader, track);
+        } finally {
+            reader.close();
+        }
+    }
+
+    /**
+     * @param reader the reader positioned at the track document.
+     * @param track  the track to apply the track properties to, or null to skip them.
+     * @return the columns of the measurements of the track.
+     * @throws IOException if the stream could not be read.
+     */
+    public TrackColumns read(JsonReader reader, Track track) throws IOException {
+        TrackColumns.Builder builder = new TrackColumns.Builder();
+
+        reader.beginObject();
+        while (reader.hasNext()) {
+            String name = reader.nextName();
+            if (track != null && Track.KEY_TRACK_PROPERTIES.equals(name)) {
+                readTrackProperties(reader, track);
+            } else if (Track.KEY_TRACK_FEATURES.equals(name)) {
+                reader.beginArray();
+                while (reader.hasNext()) {
+                    readFeature(reader);
+                    appendRow(builder);
+                }
+                reader.endArray();
+            } else {
+                reader.skipValue();
+            }
+        }
+        reader.endObject();
+
+        return builder.build();
+    }
+
+    private void readTrackProperties(JsonReader reader, Track track) {
+        JsonObject properties = new JsonParser().parse(reader).getAsJsonObject();
+        Car car = new CarSerde().deserialize(properties.get(Track.KEY_TRACK_SENSOR), Car.class,
+                null);
+        new TrackSerde().deserializeProperties(properties, car, track);
+    }
+
+    private void readFeature(JsonReader reader) throws IOException {
+        present = 0;
+        hasTime = false;
+        hasPosition = false;
+
+        reader.beginObject();
+        while (reader.hasNext()) {
+            String name = reader.nextName();
+            if (Track.KEY_TRACK_FEATURES_GEOMETRY.equals(name)) {
+                readGeometry(reader);
+            } else if (Track.KEY_TRACK_FEATURES_PROPERTIES.equals(name)) {
+                readProperties(reader);
+            } else {
+                reader.skipValue();
+            }
+        }
+        reader.endObject();
+
+        if (!hasTime) {
+            throw new JsonParseException("Feature without " +
+                    Track.KEY_TRACK_FEATURES_PROPERTIES_TIME);
+        }
+    }
+
+    private void readGeometry(JsonReader reader) throws IOException {
+        if (reader.peek() == JsonToken.NULL) {
+            reader.nextNull();
+            return;
+        }
+
+        reader.beginObject();
+        while (reader.hasNext()) {
+            if (Track.KEY_TRACK_FEATURES_GEOMETRY_COORDINATES.equals(reader.nextName())) {
+                reader.beginArray();
+                longitude = reader.nextDouble();
+                latitude = reader.nextDouble();
+                while (reader.hasNext()) {
+                    reader.skipValue();
+                }
+                reader.endArray();
+                hasPosition = true;
+            } else {
+                reader.skipValue();
+            }
+        }
+        reader.endObject();
+    }
+
+    private void readProperties(JsonReader reader) throws IOException {
+        reader.beginObject();
+        while (reader.hasNext()) {
+            String name = reader.nextName();
+            if (Track.KEY_TRACK_FEATURES_PROPERTIES_TIME.equals(name)) {
+                try {
+                    time = Util.isoDateToLong(reader.nextString());
+                    hasTime = true;
+                } catch (ParseException e) {
+                    throw new JsonParseException(e);
+                }
+            } else if (Track.KEY_TRACK_FEATURES_PROPERTIES_PHENOMENONS.equals(name)) {
+                readPhenomenons(reader);
+            } else {
+                reader.skipValue();
+            }
+        }
+        reader.endObject();
+    }
+
+    private void readPhenomenons(JsonReader reader) throws IOException {
+        reader.beginObject();
+        while (reader.hasNext()) {
+            Measurement.PropertyKey key = Measurement.PropertyKeyValues.get(reader.nextName());
+            if (key == null) {
+                reader.skipValue();
+                continue;
+            }
+
+            reader.beginObject();
+            while (reader.hasNext()) {
+                if (Track.KEY_TRACK_FEATURES_PROPERTIES_PHENOMENONS_VALUE.equals(reader.nextName())
+                        && reader.peek() == JsonToken.NUMBER) {
+                    values[key.ordinal()] = reader.nextDouble();
+                    present |= 1L << key.ordinal();
+                } else {
+                    reader.skipValue();
+                }
+            }
+            reader.endObject();
+        }
+        reader.endObject();
+    }
+
+    private void appendRow(TrackColumns.Builder builder) {
+        builder.addRow(time);
+        if (hasPosition) {
+            builder.setPosition(latitude, longitude);
+        }
+        for (long mask = present; mask != 0; mask &= mask - 1) {
+            int ordinal = Long.numberOfTrailingZeros(mask);
+            builder.setValue(PROPERTY_KEYS[ordinal], values[ordinal]);
+        }
+    }
+}
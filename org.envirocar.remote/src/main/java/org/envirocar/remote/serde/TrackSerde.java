@@ -209,18 +209,6 @@ public class TrackSerde extends AbstractJsonSerde implements JsonSerializer<Trac
         // Get the properties json object.
         JsonObject p = json.getAsJsonObject().get(Track.KEY_TRACK_PROPERTIES).getAsJsonObject();
 
-        // Parse the properties
-        String id = p.get(Track.KEY_TRACK_ID).getAsString();
-        String name = p.has(Track.KEY_TRACK_NAME) ? p.get(Track.KEY_TRACK_NAME).getAsString() : "unnamed Track #" + id;
-        String description = p.has(Track.KEY_TRACK_DESC) ? p.get(Track.KEY_TRACK_DESC).getAsString() : "";
-
-        // parse start and end time
-        Long startTime = parseStringAsTime(Track.KEY_TRACK_BEGIN, p);
-        Long endTime = parseStringAsTime(Track.KEY_TRACK_END, p);
-
-        // parse the length
-        Double length = parseAsDouble(Track.KEY_TRACK_LENGTH, p);
-
         // Parse the car object.
         JsonObject carObject = p.get(Track.KEY_TRACK_SENSOR).getAsJsonObject();
         Car car = context.deserialize(carObject, Car.class);
@@ -236,6 +224,32 @@ public class TrackSerde extends AbstractJsonSerde implements JsonSerializer<Trac
 
         // Create the track
         Track track = new TrackImpl(Track.DownloadState.DOWNLOADED);
+        deserializeProperties(p, car, track);
+        track.setMeasurements(measurements); // Storing happens here...
+
+        return track;
+    }
+
+    /**
+     * Applies the properties of a remote track to a track.
+     *
+     * @param p     the properties json object of the track.
+     * @param car   the car of the track.
+     * @param track the track to apply the properties to.
+     */
+    void deserializeProperties(JsonObject p, Car car, Track track) {
+        // Parse the properties
+        String id = p.get(Track.KEY_TRACK_ID).getAsString();
+        String name = p.has(Track.KEY_TRACK_NAME) ? p.get(Track.KEY_TRACK_NAME).getAsString() : "unnamed Track #" + id;
+        String description = p.has(Track.KEY_TRACK_DESC) ? p.get(Track.KEY_TRACK_DESC).getAsString() : "";
+
+        // parse start and end time
+        Long startTime = parseStringAsTime(Track.KEY_TRACK_BEGIN, p);
+        Long endTime = parseStringAsTime(Track.KEY_TRACK_END, p);
+
+        // parse the length
+        Double length = parseAsDouble(Track.KEY_TRACK_LENGTH, p);
+
         track.setTrackStatus(Track.TrackStatus.FINISHED);
         track.setRemoteID(id);
         track.setName(name);
@@ -245,9 +259,6 @@ public class TrackSerde extends AbstractJsonSerde implements JsonSerializer<Trac
 
         track.setLength(length);
         track.setCar(car);
-        track.setMeasurements(measurements); // Storing happens here...
-
-        return track;
     }
 
     private JsonObject createPhenomenons(Measurement measurement, boolean isDiesel) throws
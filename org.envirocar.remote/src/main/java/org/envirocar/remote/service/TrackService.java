@@ -33,6 +33,7 @@ import retrofit2.http.GET;
 import retrofit2.http.POST;
 import retrofit2.http.Path;
 import retrofit2.http.Query;
+import retrofit2.http.Streaming;
 
 /**
  * @author dewall
@@ -43,6 +44,11 @@ public interface TrackService {
     Call<Track> getTrack(@Path("getUserStatistic") String user,
                          @Path("track") String track);
 
+    @Streaming
+    @GET("users/{getUserStatistic}/tracks/{track}")
+    Call<ResponseBody> getTrackStream(@Path("getUserStatistic") String user,
+                                      @Path("track") String track);
+
     @GET("users/{getUserStatistic}/tracks/{track}?limit=10000")
     Observable<Track> getTrackObservable(@Path("getUserStatistic") String user,
                                          @Path("track") String track);
@@ -0,0 +1,125 @@
+/**
+ * Copyright (C) 2013 - 2019 the enviroCar community
+ *
+ * This file is part of the enviroCar app.
+ *
+ * The enviroCar app is free software: you can redistribute it and/or
+ * modify it under the terms of the GNU General Public License as published
+ * by the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * The enviroCar app is distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU General
+ * Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License along
+ * with the enviroCar app. If not, see http://www.gnu.org/licenses/.
+ */
+package org.envirocar.remote.serde;
+
+import com.google.gson.JsonParseException;
+
+import org.envirocar.core.entity.Measurement;
+import org.envirocar.core.entity.Track;
+import org.envirocar.core.entity.TrackColumns;
+import org.envirocar.core.entity.TrackImpl;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.io.StringReader;
+
+/**
+ * Tests that {@link TrackColumnsReader} reads the properties and the features of a track
+ * document of the enviroCar API.
+ */
+public class TrackColumnsReaderTest {
+    private static final String TRACK_PROPERTIES = "\"properties\":{" +
+            "\"id\":\"5d7a0fd244ea8502d1a5e2d1\"," +
+            "\"name\":\"Track 1\"," +
+            "\"length\":12.5," +
+            "\"begin\":\"2019-09-12T09:00:00Z\"," +
+            "\"end\":\"2019-09-12T09:30:00Z\"," +
+            "\"sensor\":{\"type\":\"car\",\"properties\":{" +
+            "\"id\":\"5750591ee4b09078f98673d8\",\"manufacturer\":\"VW\",\"model\":\"Golf\"," +
+            "\"fuelType\":\"gasoline\",\"constructionYear\":2008,\"engineDisplacement\":1400}}}";
+
+    private static final String FEATURE = "{\"type\":\"Feature\"," +
+            "\"geometry\":{\"type\":\"Point\",\"coordinates\":[7.62,51.96]}," +
+            "\"properties\":{\"id\":\"m1\",\"time\":\"2019-09-12T09:00:05Z\",\"phenomenons\":{" +
+            "\"Speed\":{\"value\":42.5,\"unit\":\"km/h\"}," +
+            "\"Rpm\":{\"value\":1800,\"unit\":\"u/min\"}}}}";
+
+    private static final String FEATURE_WITHOUT_GEOMETRY = "{\"type\":\"Feature\"," +
+            "\"geometry\":null," +
+            "\"properties\":{\"time\":\"2019-09-12T09:00:10Z\",\"phenomenons\":{" +
+            "\"Speed\":{\"value\":50.0}}}}";
+
+    private static final String FEATURE_WITH_UNKNOWN_VALUES = "{\"type\":\"Feature\"," +
+            "\"geometry\":{\"type\":\"Point\",\"coordinates\":[7.63,51.97,55.0]}," +
+            "\"properties\":{\"time\":\"2019-09-12T09:00:15Z\",\"phenomenons\":{" +
+            "\"Unknown Phenomenon\":{\"value\":1.0}," +
+            "\"Speed\":{\"value\":\"fast\"}," +
+            "\"Rpm\":{\"value\":null}}}}";
+
+    private static final String FEATURE_WITHOUT_TIME = "{\"type\":\"Feature\"," +
+            "\"geometry\":{\"type\":\"Point\",\"coordinates\":[7.62,51.96]}," +
+            "\"properties\":{\"phenomenons\":{\"Speed\":{\"value\":42.5}}}}";
+
+    @Test
+    public void testReadTrack() throws IOException {
+        Track track = new TrackImpl();
+        TrackColumns columns = read(track, FEATURE, FEATURE_WITHOUT_GEOMETRY,
+                FEATURE_WITH_UNKNOWN_VALUES);
+
+        Assert.assertEquals("5d7a0fd244ea8502d1a5e2d1", track.getRemoteID());
+        Assert.assertEquals("Track 1", track.getName());
+        Assert.assertEquals(12.5, track.getLength(), 0);
+        Assert.assertEquals(30 * 60 * 1000L, track.getEndTime() - track.getStartTime());
+        Assert.assertEquals(Track.TrackStatus.FINISHED, track.getTrackStatus());
+        Assert.assertEquals("5750591ee4b09078f98673d8", track.getCar().getId());
+
+        Assert.assertEquals(3, columns.size());
+        Assert.assertEquals(5000L, columns.getTimes()[1] - columns.getTimes()[0]);
+
+        Assert.assertTrue(columns.hasPosition(0));
+        Assert.assertEquals(51.96, columns.getLatitudes()[0], 0);
+        Assert.assertEquals(7.62, columns.getLongitudes()[0], 0);
+        Assert.assertFalse(columns.hasPosition(1));
+        Assert.assertTrue(columns.hasPosition(2));
+
+        Assert.assertEquals(42.5, columns.getColumn(Measurement.PropertyKey.SPEED)[0], 0);
+        Assert.assertEquals(50.0, columns.getColumn(Measurement.PropertyKey.SPEED)[1], 0);
+        Assert.assertEquals(1800.0, columns.getColumn(Measurement.PropertyKey.RPM)[0], 0);
+
+        // unknown phenomenons and values that are no numbers are skipped.
+        Assert.assertFalse(columns.isValid(Measurement.PropertyKey.SPEED, 2));
+        Assert.assertFalse(columns.isValid(Measurement.PropertyKey.RPM, 1));
+        Assert.assertFalse(columns.isValid(Measurement.PropertyKey.RPM, 2));
+        Assert.assertEquals(2, columns.countValid(Measurement.PropertyKey.SPEED));
+    }
+
+    @Test
+    public void testSkipTrackProperties() throws IOException {
+        TrackColumns columns = read(null, FEATURE);
+        Assert.assertEquals(1, columns.size());
+        Assert.assertEquals(42.5, columns.getColumn(Measurement.PropertyKey.SPEED)[0], 0);
+    }
+
+    @Test(expected = JsonParseException.class)
+    public void testFeatureWithoutTime() throws IOException {
+        read(new TrackImpl(), FEATURE, FEATURE_WITHOUT_TIME);
+    }
+
+    private static TrackColumns read(Track track, String... features) throws IOException {
+        StringBuilder document = new StringBuilder("{\"type\":\"FeatureCollection\",")
+                .append(TRACK_PROPERTIES)
+                .append(",\"features\":[");
+        for (int i = 0; i < features.length; i++) {
+            document.append(i > 0 ? "," : "").append(features[i]);
+        }
+        document.append("]}");
+        return new TrackColumnsReader().read(new StringReader(document.toString()), track);
+    }
+}
@@ -0,0 +1,237 @@
+/**
+ * Copyright (C) 2013 - 2019 the enviroCar community
+ *
+ * This file is part of the enviroCar app.
+ *
+ * The enviroCar app is free software: you can redistribute it and/or
+ * modify it under the terms of the GNU General Public License as published
+ * by the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * The enviroCar app is distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU General
+ * Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License along
+ * with the enviroCar app. If not, see http://www.gnu.org/licenses/.
+ */
+package org.envirocar.storage;
+
+import android.database.Cursor;
+import android.database.sqlite.SQLiteDatabase;
+import android.test.InstrumentationTestCase;
+
+import androidx.sqlite.db.SupportSQLiteOpenHelper;
+import androidx.sqlite.db.SupportSQLiteStatement;
+import androidx.sqlite.db.framework.FrameworkSQLiteOpenHelperFactory;
+
+import com.squareup.sqlbrite3.BriteDatabase;
+import com.squareup.sqlbrite3.SqlBrite;
+
+import org.envirocar.core.entity.Measurement;
+import org.envirocar.core.entity.MeasurementImpl;
+import org.envirocar.core.entity.Track;
+import org.envirocar.core.entity.TrackImpl;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import io.reactivex.disposables.CompositeDisposable;
+import io.reactivex.schedulers.Schedulers;
+
+/**
+ * Tests the {@link DatabaseMetrics} recorded by the instrumented database, statements and
+ * cursors, and the notifications counted by its query transformer.
+ */
+public class DatabaseMetricsTest extends InstrumentationTestCase {
+    private static final int NUM_MEASUREMENTS = 100;
+    private static final long START_TIME = 1500000000000L;
+    private static final String SELECT_MEASUREMENTS = "SELECT * FROM " +
+            MeasurementTable.TABLE_NAME + " WHERE " + MeasurementTable.KEY_TRACK + "=?";
+    private static final String DELETE_MEASUREMENTS = "DELETE FROM " +
+            MeasurementTable.TABLE_NAME + " WHERE " + MeasurementTable.KEY_TRACK + "=?";
+
+    private SupportSQLiteOpenHelper helper;
+    private DatabaseMetrics metrics;
+    private BriteDatabase briteDatabase;
+    private EnviroCarDBImpl enviroCarDB;
+    private Track track;
+
+    @Override
+    protected void setUp() throws Exception {
+        super.setUp();
+        metrics = new DatabaseMetrics();
+        SupportSQLiteOpenHelper.Configuration config = SupportSQLiteOpenHelper.Configuration
+                .builder(getInstrumentation().getTargetContext())
+                .name(null)
+                .callback(new EnviroCarDBCallback(1))
+                .build();
+        helper = new InstrumentedOpenHelperFactory(new FrameworkSQLiteOpenHelperFactory(),
+                metrics).create(config);
+        briteDatabase = new SqlBrite.Builder()
+                .queryTransformer(metrics.queryTransformer())
+                .build()
+                .wrapDatabaseHelper(helper, Schedulers.trampoline());
+        metrics.attach(briteDatabase);
+        enviroCarDB = new EnviroCarDBImpl(briteDatabase);
+
+        track = new TrackImpl();
+        track.setName("Metrics");
+        track.setStartTime(START_TIME);
+        enviroCarDB.insertTrack(track);
+
+        List<Measurement> measurements = new ArrayList<>();
+        for (int i = 0; i < NUM_MEASUREMENTS; i++) {
+            measurements.add(createMeasurement(i));
+        }
+        enviroCarDB.insertMeasurements(track, measurements);
+
+        // only count what the tests do
+        metrics.reset();
+    }
+
+    @Override
+    protected void tearDown() throws Exception {
+        helper.close();
+        super.tearDown();
+    }
+
+    @Test
+    public void testQueryTimingPerShape() {
+        Assert.assertEquals(NUM_MEASUREMENTS, readAll(track.getTrackID().getId()));
+        Assert.assertEquals(0, readAll(track.getTrackID().getId() + 1));
+
+        // both queries have the same shape, only their arguments differ
+        DatabaseMetrics.Timing timing = getTiming(SELECT_MEASUREMENTS);
+        Assert.assertEquals(2, timing.getCount());
+        Assert.assertEquals(NUM_MEASUREMENTS, timing.getRows());
+        Assert.assertTrue(timing.getTotalNanos() > 0);
+        Assert.assertTrue(timing.getMaxNanos() <= timing.getTotalNanos());
+
+        long recorded = 0;
+        for (long bucket : timing.getHistogram()) {
+            recorded += bucket;
+        }
+        Assert.assertEquals(2, recorded);
+        Assert.assertTrue(timing.getPercentileMicros(1.0) > 0);
+    }
+
+    @Test
+    public void testCursorRecordsVisitedRowsOnce() {
+        Cursor cursor = briteDatabase.query(SELECT_MEASUREMENTS, track.getTrackID().getId());
+        cursor.moveToPosition(9);
+        cursor.close();
+        cursor.close();
+
+        DatabaseMetrics.Timing timing = getTiming(SELECT_MEASUREMENTS);
+        Assert.assertEquals(1, timing.getCount());
+        Assert.assertEquals(10, timing.getRows());
+    }
+
+    @Test
+    public void testStatementRowCounts() {
+        SupportSQLiteStatement statement =
+                briteDatabase.getWritableDatabase().compileStatement(DELETE_MEASUREMENTS);
+        statement.bindLong(1, track.getTrackID().getId());
+        Assert.assertEquals(NUM_MEASUREMENTS, statement.executeUpdateDelete());
+
+        // the delete of the database records the same shape
+        briteDatabase.delete(MeasurementTable.TABLE_NAME, MeasurementTable.KEY_TRACK + "=?",
+                Long.toString(track.getTrackID().getId()));
+
+        DatabaseMetrics.Timing timing = getTiming(DELETE_MEASUREMENTS);
+        Assert.assertEquals(2, timing.getCount());
+        Assert.assertEquals(NUM_MEASUREMENTS, timing.getRows());
+    }
+
+    @Test
+    public void testTransactions() {
+        BriteDatabase.Transaction transaction = briteDatabase.newTransaction();
+        try {
+            // a nested transaction is part of the outer one
+            BriteDatabase.Transaction nested = briteDatabase.newTransaction();
+            nested.markSuccessful();
+            nested.end();
+            transaction.markSuccessful();
+        } finally {
+            transaction.end();
+        }
+
+        BriteDatabase.Transaction rolledBack = briteDatabase.newTransaction();
+        rolledBack.end();
+
+        Assert.assertEquals(2, metrics.getTransactionTiming().getCount());
+        Assert.assertEquals(1, metrics.getRolledBackTransactions());
+    }
+
+    @Test
+    public void testNotificationFanOut() {
+        CompositeDisposable subscriptions = new CompositeDisposable();
+        for (int i = 0; i < 3; i++) {
+            subscriptions.add(briteDatabase.createQuery(TrackTable.TABLE_TRACK,
+                    "SELECT * FROM " + TrackTable.TABLE_TRACK).subscribe());
+        }
+        // every subscriber gets the initial result
+        Assert.assertEquals(3, metrics.getActiveQueries());
+        Assert.assertEquals(3, metrics.getNotifications());
+
+        // a transaction notifies every subscriber once, however many rows it writes
+        BriteDatabase.Transaction transaction = briteDatabase.newTransaction();
+        try {
+            for (int i = 0; i < 5; i++) {
+                Track other = new TrackImpl();
+                other.setName("Other " + i);
+                other.setStartTime(START_TIME);
+                briteDatabase.insert(TrackTable.TABLE_TRACK, SQLiteDatabase.CONFLICT_NONE,
+                        TrackTable.toContentValues(other));
+            }
+            transaction.markSuccessful();
+        } finally {
+            transaction.end();
+        }
+        Assert.assertEquals(6, metrics.getNotifications());
+
+        // writes to other tables do not notify
+        briteDatabase.delete(MeasurementTable.TABLE_NAME, MeasurementTable.KEY_TRACK + "=?",
+                Long.toString(track.getTrackID().getId()));
+        Assert.assertEquals(6, metrics.getNotifications());
+
+        subscriptions.dispose();
+        Assert.assertEquals(0, metrics.getActiveQueries());
+        Assert.assertTrue(metrics.dump().contains("notifications: 6"));
+    }
+
+    private int readAll(long trackId) {
+        Cursor cursor = briteDatabase.query(SELECT_MEASUREMENTS, trackId);
+        try {
+            int count = 0;
+            while (cursor.moveToNext()) {
+                count++;
+            }
+            return count;
+        } finally {
+            cursor.close();
+        }
+    }
+
+    private DatabaseMetrics.Timing getTiming(String shape) {
+        for (DatabaseMetrics.Timing timing : metrics.getQueryTimings()) {
+            if (timing.getShape().equals(shape)) {
+                return timing;
+            }
+        }
+        Assert.fail("No timing recorded for " + shape);
+        return null;
+    }
+
+    private Measurement createMeasurement(int i) {
+        MeasurementImpl m = new MeasurementImpl(51.96 + i * 1e-5, 7.62 + i * 1e-5);
+        m.setTrackId(track.getTrackID());
+        m.setTime(START_TIME + i * 1000L);
+        m.setProperty(Measurement.PropertyKey.SPEED, (double) (i % 100));
+        return m;
+    }
+}
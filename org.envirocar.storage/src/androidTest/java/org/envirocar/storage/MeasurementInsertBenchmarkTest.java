@@ -0,0 +1,126 @@
+/**
+ * Copyright (C) 2013 - 2019 the enviroCar community
+ *
+ * This file is part of the enviroCar app.
+ *
+ * The enviroCar app is free software: you can redistribute it and/or
+ * modify it under the terms of the GNU General Public License as published
+ * by the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * The enviroCar app is distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU General
+ * Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License along
+ * with the enviroCar app. If not, see http://www.gnu.org/licenses/.
+ */
+package org.envirocar.storage;
+
+import android.database.Cursor;
+import android.database.sqlite.SQLiteDatabase;
+import android.test.InstrumentationTestCase;
+import android.util.Log;
+
+import androidx.sqlite.db.SupportSQLiteDatabase;
+import androidx.sqlite.db.SupportSQLiteOpenHelper;
+import androidx.sqlite.db.SupportSQLiteStatement;
+import androidx.sqlite.db.framework.FrameworkSQLiteOpenHelperFactory;
+
+import org.envirocar.core.entity.Measurement;
+import org.envirocar.core.entity.MeasurementImpl;
+import org.envirocar.core.entity.Track;
+import org.junit.Assert;
+import org.junit.Test;
+
+/**
+ * Compares the ContentValues based measurement insert with the compiled statement insert.
+ */
+public class MeasurementInsertBenchmarkTest extends InstrumentationTestCase {
+    private static final String TAG = MeasurementInsertBenchmarkTest.class.getSimpleName();
+    private static final int NUM_MEASUREMENTS = 5000;
+
+    private SupportSQLiteOpenHelper helper;
+    private SupportSQLiteDatabase db;
+
+    @Override
+    protected void setUp() throws Exception {
+        super.setUp();
+        SupportSQLiteOpenHelper.Configuration config = SupportSQLiteOpenHelper.Configuration
+                .builder(getInstrumentation().getTargetContext())
+                .name(null)
+                .callback(new EnviroCarDBCallback(1))
+                .build();
+        helper = new FrameworkSQLiteOpenHelperFactory().create(config);
+        db = helper.getWritableDatabase();
+    }
+
+    @Override
+    protected void tearDown() throws Exception {
+        helper.close();
+        super.tearDown();
+    }
+
+    @Test
+    public void testContentValuesInsert() throws Exception {
+        long start = System.nanoTime();
+        db.beginTransaction();
+        try {
+            for (int i = 0; i < NUM_MEASUREMENTS; i++) {
+                db.insert(MeasurementTable.TABLE_NAME, SQLiteDatabase.CONFLICT_FAIL,
+                        MeasurementTable.toContentValues(createMeasurement(i)));
+            }
+            db.setTransactionSuccessful();
+        } finally {
+            db.endTransaction();
+        }
+        report("ContentValues", System.nanoTime() - start);
+        Assert.assertEquals(NUM_MEASUREMENTS, countMeasurements());
+    }
+
+    @Test
+    public void testCompiledStatementInsert() throws Exception {
+        long start = System.nanoTime();
+        SupportSQLiteStatement statement = db.compileStatement(MeasurementTable.INSERT);
+        db.beginTransaction();
+        try {
+            for (int i = 0; i < NUM_MEASUREMENTS; i++) {
+                MeasurementTable.bindInsert(statement, createMeasurement(i));
+                statement.executeInsert();
+            }
+            db.setTransactionSuccessful();
+        } finally {
+            db.endTransaction();
+        }
+        report("Compiled statement", System.nanoTime() - start);
+        Assert.assertEquals(NUM_MEASUREMENTS, countMeasurements());
+    }
+
+    private Measurement createMeasurement(int i) {
+        MeasurementImpl m = new MeasurementImpl(51.96 + i * 1e-5, 7.62 + i * 1e-5);
+        m.setTrackId(new Track.TrackId(1));
+        m.setTime(1500000000000L + i * 1000L);
+        m.setProperty(Measurement.PropertyKey.SPEED, 50.0 + i % 30);
+        m.setProperty(Measurement.PropertyKey.RPM, 1800.0 + i % 500);
+        m.setProperty(Measurement.PropertyKey.MAF, 12.5);
+        m.setProperty(Measurement.PropertyKey.INTAKE_TEMPERATURE, 30.0);
+        m.setProperty(Measurement.PropertyKey.GPS_ACCURACY, 5.0);
+        return m;
+    }
+
+    private int countMeasurements() {
+        Cursor cursor = db.query("SELECT COUNT(*) FROM " + MeasurementTable.TABLE_NAME);
+        try {
+            cursor.moveToFirst();
+            return cursor.getInt(0);
+        } finally {
+            cursor.close();
+        }
+    }
+
+    private void report(String name, long nanos) {
+        Log.i(TAG, String.format("%s: %s measurements in %s ms (%s us/insert)", name,
+                NUM_MEASUREMENTS, nanos / 1000000, nanos / 1000 / NUM_MEASUREMENTS));
+    }
+}
@@ -0,0 +1,172 @@
+/**
+ * Copyright (C) 2013 - 2019 the enviroCar community
+ *
+ * This file is part of the enviroCar app.
+ *
+ * The enviroCar app is free software: you can redistribute it and/or
+ * modify it under the terms of the GNU General Public License as published
+ * by the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * The enviroCar app is distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU General
+ * Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License along
+ * with the enviroCar app. If not, see http://www.gnu.org/licenses/.
+ */
+package org.envirocar.storage;
+
+import android.database.Cursor;
+import android.test.InstrumentationTestCase;
+
+import androidx.sqlite.db.SupportSQLiteOpenHelper;
+import androidx.sqlite.db.framework.FrameworkSQLiteOpenHelperFactory;
+
+import com.squareup.sqlbrite3.BriteDatabase;
+import com.squareup.sqlbrite3.SqlBrite;
+
+import org.envirocar.core.entity.Measurement;
+import org.envirocar.core.entity.MeasurementImpl;
+import org.envirocar.core.entity.Track;
+import org.envirocar.core.entity.TrackImpl;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import io.reactivex.schedulers.Schedulers;
+import io.reactivex.subscribers.TestSubscriber;
+
+/**
+ * Tests the cursor backed measurement streams of {@link EnviroCarDBImpl} for recorded and for
+ * archived tracks.
+ */
+public class MeasurementStreamTest extends InstrumentationTestCase {
+    private static final int NUM_MEASUREMENTS = 10000;
+    private static final long START_TIME = 1500000000000L;
+
+    private SupportSQLiteOpenHelper helper;
+    private BriteDatabase briteDatabase;
+    private EnviroCarDBImpl enviroCarDB;
+    private Track track;
+
+    @Override
+    protected void setUp() throws Exception {
+        super.setUp();
+        SupportSQLiteOpenHelper.Configuration config = SupportSQLiteOpenHelper.Configuration
+                .builder(getInstrumentation().getTargetContext())
+                .name(null)
+                .callback(new EnviroCarDBCallback(1))
+                .build();
+        helper = new FrameworkSQLiteOpenHelperFactory().create(config);
+        briteDatabase = new SqlBrite.Builder().build()
+                .wrapDatabaseHelper(helper, Schedulers.trampoline());
+        enviroCarDB = new EnviroCarDBImpl(briteDatabase);
+
+        track = new TrackImpl();
+        track.setName("Stream");
+        track.setStartTime(START_TIME);
+        enviroCarDB.insertTrack(track);
+
+        List<Measurement> measurements = new ArrayList<>();
+        for (int i = 0; i < NUM_MEASUREMENTS; i++) {
+            measurements.add(createMeasurement(i));
+        }
+        enviroCarDB.insertMeasurements(track, measurements);
+    }
+
+    @Override
+    protected void tearDown() throws Exception {
+        helper.close();
+        super.tearDown();
+    }
+
+    @Test
+    public void testStreamRecordedTrack() {
+        assertStream();
+    }
+
+    @Test
+    public void testStreamArchivedTrack() {
+        track.setTrackStatus(Track.TrackStatus.FINISHED);
+        track.setEndTime(START_TIME + (NUM_MEASUREMENTS - 1) * 1000L);
+        enviroCarDB.updateTrack(track);
+
+        assertStream();
+    }
+
+    @Test
+    public void testWindowReadsOverlappingChunksOnly() {
+        track.setTrackStatus(Track.TrackStatus.FINISHED);
+        track.setEndTime(START_TIME + (NUM_MEASUREMENTS - 1) * 1000L);
+        enviroCarDB.updateTrack(track);
+
+        // chunks hold 4096 measurements, one per second
+        TrackArchive archive = new TrackArchive(briteDatabase);
+        Assert.assertEquals(1, countChunks(archive, START_TIME + 5000 * 1000L,
+                START_TIME + 6000 * 1000L));
+        Assert.assertEquals(2, countChunks(archive, START_TIME + 4000 * 1000L,
+                START_TIME + 4200 * 1000L));
+        Assert.assertEquals(3, countChunks(archive, START_TIME,
+                START_TIME + NUM_MEASUREMENTS * 1000L));
+        Assert.assertEquals(0, countChunks(archive, START_TIME - 5000L, START_TIME));
+    }
+
+    @Test
+    public void testBackpressure() {
+        TestSubscriber<Measurement> subscriber =
+                enviroCarDB.getMeasurementsFlowable(track.getTrackID()).test(10);
+        subscriber.assertValueCount(10);
+        subscriber.assertNotComplete();
+
+        subscriber.request(5);
+        subscriber.assertValueCount(15);
+        Assert.assertEquals(START_TIME + 14000L, subscriber.values().get(14).getTime());
+
+        subscriber.cancel();
+        subscriber.assertNotComplete();
+    }
+
+    private void assertStream() {
+        List<Measurement> all = enviroCarDB.getMeasurementsFlowable(track.getTrackID())
+                .toList().blockingGet();
+        Assert.assertEquals(NUM_MEASUREMENTS, all.size());
+        for (int i = 0; i < NUM_MEASUREMENTS; i++) {
+            Assert.assertEquals(START_TIME + i * 1000L, all.get(i).getTime());
+        }
+        Assert.assertEquals(42.0, all.get(42).getProperty(Measurement.PropertyKey.SPEED), 0);
+
+        // the window spans the border of two archive chunks, the end is exclusive.
+        long windowStart = START_TIME + 4000 * 1000L;
+        long windowEnd = START_TIME + 4200 * 1000L;
+        List<Measurement> window = enviroCarDB.getMeasurementsFlowable(track.getTrackID(),
+                windowStart, windowEnd).toList().blockingGet();
+        Assert.assertEquals(200, window.size());
+        Assert.assertEquals(windowStart, window.get(0).getTime());
+        Assert.assertEquals(windowEnd - 1000L, window.get(199).getTime());
+
+        Assert.assertTrue(enviroCarDB.getMeasurementsFlowable(track.getTrackID(),
+                START_TIME - 5000L, START_TIME).toList().blockingGet().isEmpty());
+    }
+
+    private int countChunks(TrackArchive archive, long startTime, long endTime) {
+        Cursor cursor = archive.queryChunks(track.getTrackID(), startTime, endTime);
+        try {
+            return cursor.getCount();
+        } finally {
+            cursor.close();
+        }
+    }
+
+    private Measurement createMeasurement(int i) {
+        MeasurementImpl m = new MeasurementImpl(51.96 + i * 1e-5, 7.62 + i * 1e-5);
+        m.setTrackId(track.getTrackID());
+        m.setTime(START_TIME + i * 1000L);
+        m.setProperty(Measurement.PropertyKey.SPEED, (double) (i % 100));
+        m.setProperty(Measurement.PropertyKey.RPM, 1800.0 + i % 500);
+        return m;
+    }
+}
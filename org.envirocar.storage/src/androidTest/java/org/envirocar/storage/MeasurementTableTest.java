@@ -21,9 +21,11 @@ package org.envirocar.storage;
 import android.content.ContentValues;
 import android.test.InstrumentationTestCase;
 
+import org.envirocar.core.entity.CompactMeasurement;
 import org.envirocar.core.entity.Measurement;
 import org.envirocar.core.entity.MeasurementImpl;
 import org.envirocar.core.entity.Track;
+import org.envirocar.core.entity.TrackColumns;
 import org.hamcrest.CoreMatchers;
 import org.json.JSONObject;
 import org.junit.Assert;
@@ -44,14 +46,68 @@ public class MeasurementTableTest extends InstrumentationTestCase {
         m.setProperty(Measurement.PropertyKey.CONSUMPTION, 1.1);
         ContentValues vals = MeasurementTable.toContentValues(m);
 
-        Object props = vals.get(MeasurementTable.KEY_PROPERTIES);
+        byte[] props = vals.getAsByteArray(MeasurementTable.KEY_PROPERTIES);
 
-        JSONObject obj = new JSONObject(props.toString());
+        MeasurementImpl decoded = new MeasurementImpl();
+        MeasurementTable.decodeProperties(props, decoded);
 
-        Assert.assertThat(obj.get(Measurement.PropertyKey.CONSUMPTION.name()), CoreMatchers.is(1.1));
-        Assert.assertThat(obj.get(Measurement.PropertyKey.SPEED.name()), CoreMatchers.is(Double.MAX_VALUE));
-        Assert.assertThat(obj.has(Measurement.PropertyKey.CALCULATED_MAF.name()), CoreMatchers.is(false));
-        Assert.assertThat(obj.has(Measurement.PropertyKey.CO2.name()), CoreMatchers.is(false));
+        Assert.assertThat(decoded.getProperty(Measurement.PropertyKey.CONSUMPTION), CoreMatchers.is(1.1));
+        Assert.assertThat(decoded.getProperty(Measurement.PropertyKey.SPEED), CoreMatchers.is(Double.MAX_VALUE));
+        Assert.assertThat(decoded.hasProperty(Measurement.PropertyKey.CALCULATED_MAF), CoreMatchers.is(false));
+        Assert.assertThat(decoded.hasProperty(Measurement.PropertyKey.CO2), CoreMatchers.is(false));
+    }
+
+    @Test
+    public void testCompactMeasurementDecoding() throws Exception {
+        MeasurementImpl m = new MeasurementImpl();
+        m.setProperty(Measurement.PropertyKey.SPEED, 42.0);
+        m.setProperty(Measurement.PropertyKey.CO2, Double.POSITIVE_INFINITY);
+        m.setProperty(Measurement.PropertyKey.FUEL_SYSTEM_STATUS_CODE, 2.0);
+        byte[] props = MeasurementTable.toContentValues(m)
+                .getAsByteArray(MeasurementTable.KEY_PROPERTIES);
+
+        MeasurementImpl expected = new MeasurementImpl();
+        MeasurementTable.decodeProperties(props, expected);
+        CompactMeasurement decoded = new CompactMeasurement();
+        MeasurementTable.decodeProperties(props, decoded);
+
+        Assert.assertThat(decoded.getAllProperties().size(), CoreMatchers.is(2));
+        Assert.assertEquals(expected.getAllProperties(), decoded.getAllProperties());
+    }
+
+    @Test
+    public void testLegacyPropertiesMigration() throws Exception {
+        JSONObject legacy = new JSONObject();
+        legacy.put(Measurement.PropertyKey.SPEED.name(), 42.5);
+        legacy.put(Measurement.PropertyKey.SHORT_TERM_TRIM_1.name(), -3.25);
+
+        MeasurementImpl decoded = new MeasurementImpl();
+        MeasurementTable.decodeProperties(MeasurementTable.encodeProperties(
+                MeasurementTable.decodeLegacyProperties(legacy.toString())), decoded);
+
+        Assert.assertThat(decoded.getAllProperties().size(), CoreMatchers.is(2));
+        Assert.assertThat(decoded.getProperty(Measurement.PropertyKey.SPEED), CoreMatchers.is(42.5));
+        Assert.assertThat(decoded.getProperty(Measurement.PropertyKey.SHORT_TERM_TRIM_1), CoreMatchers.is(-3.25));
+    }
+
+    @Test
+    public void testDecodePropertiesIntoColumns() {
+        CompactMeasurement m = new CompactMeasurement();
+        m.setProperty(Measurement.PropertyKey.SPEED, 42.0);
+        m.setProperty(Measurement.PropertyKey.CO2, 3.5);
+        ContentValues vals = MeasurementTable.toContentValues(m);
+
+        TrackColumns.Builder builder = new TrackColumns.Builder(1);
+        builder.addRow(0);
+        builder.addRow(1);
+        MeasurementTable.decodeProperties(vals.getAsByteArray(MeasurementTable.KEY_PROPERTIES),
+                builder);
+        TrackColumns columns = builder.build();
+
+        Assert.assertFalse(columns.isValid(Measurement.PropertyKey.SPEED, 0));
+        Assert.assertTrue(columns.isValid(Measurement.PropertyKey.SPEED, 1));
+        Assert.assertEquals(42.0, columns.getColumn(Measurement.PropertyKey.SPEED)[1], 0);
+        Assert.assertEquals(3.5, columns.getColumn(Measurement.PropertyKey.CO2)[1], 0);
     }
 
 }
@@ -0,0 +1,173 @@
+/**
+ * Copyright (C) 2013 - 2019 the enviroCar community
+ *
+ * This file is part of the enviroCar app.
+ *
+ * The enviroCar app is free software: you can redistribute it and/or
+ * modify it under the terms of the GNU General Public License as published
+ * by the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * The enviroCar app is distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU General
+ * Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License along
+ * with the enviroCar app. If not, see http://www.gnu.org/licenses/.
+ */
+package org.envirocar.storage;
+
+import android.test.InstrumentationTestCase;
+
+import org.envirocar.core.entity.Measurement;
+import org.envirocar.core.entity.Measurement.PropertyKey;
+import org.envirocar.core.entity.MeasurementImpl;
+import org.envirocar.core.entity.Track;
+import org.hamcrest.CoreMatchers;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+public class TrackArchiveCodecTest extends InstrumentationTestCase {
+
+    private static final Track.TrackId TRACK_ID = new Track.TrackId(7);
+
+    @Test
+    public void testRoundTripOfNegativeDeltas() throws Exception {
+        List<Measurement> measurements = new ArrayList<>();
+        measurements.add(createMeasurement(1546300800000L, 51.9, 7.6));
+        measurements.add(createMeasurement(1546300805000L, 51.8, 7.5));
+        // time and coordinates going backwards result in negative zigzag coded deltas.
+        measurements.add(createMeasurement(1546300801000L, -33.9, -151.2));
+        measurements.add(createMeasurement(0L, 0.0, 0.0));
+
+        List<Measurement> decoded = roundTrip(measurements);
+
+        Assert.assertThat(decoded.size(), CoreMatchers.is(4));
+        for (int i = 0; i < measurements.size(); i++) {
+            Measurement expected = measurements.get(i);
+            Measurement actual = decoded.get(i);
+            Assert.assertThat(actual.getTrackId(), CoreMatchers.is(TRACK_ID));
+            Assert.assertThat(actual.getTime(), CoreMatchers.is(expected.getTime()));
+            Assert.assertEquals(expected.getLatitude(), actual.getLatitude(), 1e-9);
+            Assert.assertEquals(expected.getLongitude(), actual.getLongitude(), 1e-9);
+        }
+    }
+
+    @Test
+    public void testRoundTripOfSparseProperties() throws Exception {
+        Measurement first = createMeasurement(1000L, 51.0, 7.0);
+        first.setProperty(PropertyKey.SPEED, 42.5);
+        first.setProperty(PropertyKey.RPM, 1800.0);
+        Measurement second = createMeasurement(2000L, 51.0, 7.0);
+        second.setProperty(PropertyKey.RPM, 1800.0);
+        second.setProperty(PropertyKey.GPS_SPEED, -0.0);
+        Measurement third = createMeasurement(3000L, 51.0, 7.0);
+        third.setProperty(PropertyKey.SPEED, 43.0);
+
+        List<Measurement> decoded = roundTrip(Arrays.asList(first, second, third));
+
+        Assert.assertThat(decoded.get(0).getAllProperties().size(), CoreMatchers.is(2));
+        Assert.assertThat(decoded.get(0).getProperty(PropertyKey.SPEED), CoreMatchers.is(42.5));
+        Assert.assertThat(decoded.get(0).getProperty(PropertyKey.RPM), CoreMatchers.is(1800.0));
+
+        Assert.assertThat(decoded.get(1).getAllProperties().size(), CoreMatchers.is(2));
+        Assert.assertFalse(decoded.get(1).hasProperty(PropertyKey.SPEED));
+        Assert.assertThat(decoded.get(1).getProperty(PropertyKey.RPM), CoreMatchers.is(1800.0));
+        Assert.assertThat(decoded.get(1).getProperty(PropertyKey.GPS_SPEED), CoreMatchers.is(-0.0));
+
+        // the previous value of a property is kept across measurements that do not have it.
+        Assert.assertThat(decoded.get(2).getAllProperties().size(), CoreMatchers.is(1));
+        Assert.assertThat(decoded.get(2).getProperty(PropertyKey.SPEED), CoreMatchers.is(43.0));
+    }
+
+    @Test
+    public void testRoundTripWithoutPosition() throws Exception {
+        Measurement withPosition = createMeasurement(1000L, 51.5, 7.5);
+        Measurement withoutPosition = new MeasurementImpl();
+        withoutPosition.setTime(2000L);
+        withoutPosition.setProperty(PropertyKey.SPEED, 10.0);
+        Measurement latitudeOnly = new MeasurementImpl();
+        latitudeOnly.setTime(3000L);
+        latitudeOnly.setLatitude(52.0);
+        Measurement afterGap = createMeasurement(4000L, 51.6, 7.4);
+
+        List<Measurement> decoded = roundTrip(
+                Arrays.asList(withPosition, withoutPosition, latitudeOnly, afterGap));
+
+        Assert.assertNull(decoded.get(1).getLatitude());
+        Assert.assertNull(decoded.get(1).getLongitude());
+        Assert.assertThat(decoded.get(1).getProperty(PropertyKey.SPEED), CoreMatchers.is(10.0));
+        Assert.assertNull(decoded.get(2).getLatitude());
+        Assert.assertNull(decoded.get(2).getLongitude());
+        // the coordinate deltas continue from the last measurement with a position.
+        Assert.assertEquals(51.6, decoded.get(3).getLatitude(), 1e-9);
+        Assert.assertEquals(7.4, decoded.get(3).getLongitude(), 1e-9);
+    }
+
+    @Test
+    public void testCoordinatesAreRoundedToFixedPoint() throws Exception {
+        List<Measurement> decoded = roundTrip(Collections.singletonList(
+                createMeasurement(1000L, 51.123456789, -7.987654321)));
+
+        Assert.assertEquals(51.1234568, decoded.get(0).getLatitude(), 1e-12);
+        Assert.assertEquals(-7.9876543, decoded.get(0).getLongitude(), 1e-12);
+    }
+
+    @Test
+    public void testNonFiniteValuesAreSkipped() throws Exception {
+        Measurement measurement = createMeasurement(1000L, 51.0, 7.0);
+        measurement.setProperty(PropertyKey.SPEED, Double.NaN);
+        measurement.setProperty(PropertyKey.RPM, Double.POSITIVE_INFINITY);
+        measurement.setProperty(PropertyKey.MAF, Double.NEGATIVE_INFINITY);
+        measurement.setProperty(PropertyKey.INTAKE_TEMPERATURE, 21.0);
+
+        Measurement decoded = roundTrip(Collections.singletonList(measurement)).get(0);
+
+        Assert.assertThat(decoded.getAllProperties().size(), CoreMatchers.is(1));
+        Assert.assertThat(decoded.getProperty(PropertyKey.INTAKE_TEMPERATURE),
+                CoreMatchers.is(21.0));
+    }
+
+    @Test
+    public void testEmptyTrack() throws Exception {
+        List<Measurement> decoded = roundTrip(Collections.<Measurement>emptyList());
+
+        Assert.assertTrue(decoded.isEmpty());
+    }
+
+    @Test
+    public void testRangeOfList() throws Exception {
+        List<Measurement> measurements = new ArrayList<>();
+        for (int i = 0; i < 10; i++) {
+            measurements.add(createMeasurement(i * 1000L, 51.0 + i * 0.001, 7.0));
+        }
+
+        List<Measurement> decoded = TrackArchiveCodec.decode(
+                TrackArchiveCodec.encode(measurements, 3, 6), TRACK_ID);
+
+        Assert.assertThat(decoded.size(), CoreMatchers.is(3));
+        Assert.assertThat(decoded.get(0).getTime(), CoreMatchers.is(3000L));
+        Assert.assertEquals(51.003, decoded.get(0).getLatitude(), 1e-9);
+        Assert.assertThat(decoded.get(2).getTime(), CoreMatchers.is(5000L));
+    }
+
+    private static List<Measurement> roundTrip(List<Measurement> measurements) throws Exception {
+        byte[] data = TrackArchiveCodec.encode(measurements, 0, measurements.size());
+        return TrackArchiveCodec.decode(data, TRACK_ID);
+    }
+
+    private static Measurement createMeasurement(long time, double latitude, double longitude) {
+        Measurement measurement = new MeasurementImpl();
+        measurement.setTrackId(TRACK_ID);
+        measurement.setTime(time);
+        measurement.setLatitude(latitude);
+        measurement.setLongitude(longitude);
+        return measurement;
+    }
+}
@@ -0,0 +1,64 @@
+/**
+ * Copyright (C) 2013 - 2019 the enviroCar community
+ *
+ * This file is part of the enviroCar app.
+ *
+ * The enviroCar app is free software: you can redistribute it and/or
+ * modify it under the terms of the GNU General Public License as published
+ * by the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * The enviroCar app is distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU General
+ * Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License along
+ * with the enviroCar app. If not, see http://www.gnu.org/licenses/.
+ */
+package org.envirocar.storage;
+
+import android.test.InstrumentationTestCase;
+
+import org.envirocar.core.entity.Measurement;
+import org.envirocar.core.entity.MeasurementImpl;
+import org.envirocar.core.entity.Track;
+import org.hamcrest.CoreMatchers;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+public class TrackLevelsTest extends InstrumentationTestCase {
+
+    @Test
+    public void testDownsampleKeepsEndpointsAndPeaks() throws Exception {
+        List<Measurement> measurements = new ArrayList<>();
+        for (int i = 0; i < 1000; i++) {
+            Measurement m = new MeasurementImpl();
+            m.setTrackId(new Track.TrackId(1));
+            m.setTime(i * 1000L);
+            m.setLatitude(51.0 + Math.sin(i / 50.0) * 0.01);
+            m.setLongitude(7.0 + i * 0.0001);
+            m.setProperty(Measurement.PropertyKey.SPEED, i == 421 ? 180.0 : 50.0);
+            measurements.add(m);
+        }
+
+        List<Measurement> level = TrackLevels.downsample(measurements, TrackLevels.LEVEL_FACTOR);
+
+        Assert.assertThat(level.size(), CoreMatchers.is(252));
+        Assert.assertThat(level.get(0).getTime(), CoreMatchers.is(0L));
+        Assert.assertThat(level.get(level.size() - 1).getTime(), CoreMatchers.is(999000L));
+
+        double maxSpeed = 0;
+        for (int i = 0; i < level.size(); i++) {
+            maxSpeed = Math.max(maxSpeed, level.get(i).getProperty(Measurement.PropertyKey.SPEED));
+            if (i > 0) {
+                Assert.assertTrue(level.get(i).getTime() > level.get(i - 1).getTime());
+            }
+        }
+        Assert.assertThat(maxSpeed, CoreMatchers.is(180.0));
+    }
+
+}
@@ -0,0 +1,124 @@
+/**
+ * Copyright (C) 2013 - 2019 the enviroCar community
+ *
+ * This file is part of the enviroCar app.
+ *
+ * The enviroCar app is free software: you can redistribute it and/or
+ * modify it under the terms of the GNU General Public License as published
+ * by the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * The enviroCar app is distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU General
+ * Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License along
+ * with the enviroCar app. If not, see http://www.gnu.org/licenses/.
+ */
+package org.envirocar.storage;
+
+import android.test.InstrumentationTestCase;
+
+import androidx.sqlite.db.SupportSQLiteOpenHelper;
+import androidx.sqlite.db.framework.FrameworkSQLiteOpenHelperFactory;
+
+import com.squareup.sqlbrite3.BriteDatabase;
+import com.squareup.sqlbrite3.SqlBrite;
+
+import org.envirocar.core.entity.Measurement;
+import org.envirocar.core.entity.MeasurementImpl;
+import org.envirocar.core.entity.Track;
+import org.envirocar.core.entity.TrackImpl;
+import org.envirocar.core.entity.internal.TrackSummary;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.List;
+
+import io.reactivex.schedulers.Schedulers;
+
+/**
+ * Tests that the track summaries follow the inserted measurements without the measurements
+ * being reloaded.
+ */
+public class TrackSummaryTest extends InstrumentationTestCase {
+    private static final long START_TIME = 1500000000000L;
+
+    private SupportSQLiteOpenHelper helper;
+    private BriteDatabase briteDatabase;
+    private EnviroCarDBImpl enviroCarDB;
+
+    @Override
+    protected void setUp() throws Exception {
+        super.setUp();
+        SupportSQLiteOpenHelper.Configuration config = SupportSQLiteOpenHelper.Configuration
+                .builder(getInstrumentation().getTargetContext())
+                .name(null)
+                .callback(new EnviroCarDBCallback(1))
+                .build();
+        helper = new FrameworkSQLiteOpenHelperFactory().create(config);
+        briteDatabase = new SqlBrite.Builder().build()
+                .wrapDatabaseHelper(helper, Schedulers.trampoline());
+        enviroCarDB = new EnviroCarDBImpl(briteDatabase);
+    }
+
+    @Override
+    protected void tearDown() throws Exception {
+        helper.close();
+        super.tearDown();
+    }
+
+    @Test
+    public void testSingleInsertsUpdateSummary() throws Exception {
+        Track track = createTrack("Single");
+        for (int i = 0; i < 10; i++) {
+            enviroCarDB.insertMeasurement(createMeasurement(track, i));
+        }
+
+        TrackSummary summary = enviroCarDB.getTrackSummary(track.getTrackID()).blockingFirst();
+        Assert.assertEquals(10, summary.getNumberOfMeasurements());
+        Assert.assertEquals(START_TIME, summary.getStartTime());
+        Assert.assertEquals(START_TIME + 9000L, summary.getEndTime());
+        Assert.assertEquals(4.5, summary.getAverageSpeed(), 1e-9);
+        Assert.assertTrue(summary.hasProperty(Measurement.PropertyKey.SPEED));
+        Assert.assertFalse(summary.hasProperty(Measurement.PropertyKey.MAF));
+    }
+
+    @Test
+    public void testAllTrackSummaries() throws Exception {
+        Track first = createTrack("First");
+        enviroCarDB.insertMeasurement(createMeasurement(first, 0));
+        Track second = createTrack("Second");
+        enviroCarDB.insertMeasurement(createMeasurement(second, 0));
+        enviroCarDB.insertMeasurement(createMeasurement(second, 1));
+
+        // a summary that is missing, e.g. of a track recorded before the summary table existed,
+        // is rebuilt from the measurements.
+        briteDatabase.delete(TrackSummaryTable.TABLE_NAME, TrackSummaryTable.KEY_TRACK + "=?",
+                Long.toString(second.getTrackID().getId()));
+
+        List<TrackSummary> summaries = enviroCarDB.getAllTrackSummaries().blockingFirst();
+        Assert.assertEquals(2, summaries.size());
+        for (TrackSummary summary : summaries) {
+            int expected = summary.getTrackId().equals(first.getTrackID()) ? 1 : 2;
+            Assert.assertEquals(expected, summary.getNumberOfMeasurements());
+        }
+    }
+
+    private Track createTrack(String name) throws Exception {
+        Track track = new TrackImpl();
+        track.setName(name);
+        track.setStartTime(START_TIME);
+        enviroCarDB.insertTrack(track);
+        return track;
+    }
+
+    private Measurement createMeasurement(Track track, int i) {
+        MeasurementImpl m = new MeasurementImpl(51.96 + i * 1e-5, 7.62 + i * 1e-5);
+        m.setTrackId(track.getTrackID());
+        m.setTime(START_TIME + i * 1000L);
+        m.setProperty(Measurement.PropertyKey.SPEED, (double) i);
+        return m;
+    }
+}
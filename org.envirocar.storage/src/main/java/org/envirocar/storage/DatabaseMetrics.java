@@ -0,0 +1,293 @@
+/**
+ * Copyright (C) 2013 - 2019 the enviroCar community
+ *
+ * This file is part of the enviroCar app.
+ *
+ * The enviroCar app is free software: you can redistribute it and/or
+ * modify it under the terms of the GNU General Public License as published
+ * by the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * The enviroCar app is distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU General
+ * Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License along
+ * with the enviroCar app. If not, see http://www.gnu.org/licenses/.
+ */
+package org.envirocar.storage;
+
+import com.squareup.sqlbrite3.BriteDatabase;
+import com.squareup.sqlbrite3.SqlBrite;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Date;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import io.reactivex.ObservableTransformer;
+
+/**
+ * Collects timing metrics of the database, i.e. latency histograms and row counts per query
+ * shape, transaction durations and the number of query notifications of SqlBrite. The metrics
+ * are cheap enough to be recorded for every statement, whereas logging every statement is an
+ * opt-in debug mode (see {@link #setStatementLoggingEnabled(boolean)}).
+ */
+public class DatabaseMetrics {
+
+    /**
+     * Number of histogram buckets, bucket i holds durations within [2^i, 2^(i+1)) microseconds.
+     */
+    public static final int HISTOGRAM_BUCKETS = 24;
+
+    private static final int MAX_SHAPE_LENGTH = 240;
+
+    private final Map<String, Timing> queries = new ConcurrentHashMap<>();
+    private final Timing transactions = new Timing("TRANSACTION");
+    private final AtomicLong rolledBackTransactions = new AtomicLong();
+    private final AtomicLong notifications = new AtomicLong();
+    private final AtomicInteger activeQueries = new AtomicInteger();
+    private final ThreadLocal<TransactionState> transactionState = new ThreadLocal<TransactionState>() {
+        @Override
+        protected TransactionState initialValue() {
+            return new TransactionState();
+        }
+    };
+
+    private volatile long since = System.currentTimeMillis();
+    private volatile boolean statementLogging = false;
+    private BriteDatabase briteDatabase;
+
+    /**
+     * Statistics of a single query shape or of transactions.
+     */
+    public static final class Timing {
+        private final String shape;
+        private final long[] histogram = new long[HISTOGRAM_BUCKETS];
+        private long count;
+        private long rows;
+        private long totalNanos;
+        private long maxNanos;
+
+        Timing(String shape) {
+            this.shape = shape;
+        }
+
+        synchronized void record(long nanos, long rows) {
+            this.count++;
+            this.rows += rows;
+            this.totalNanos += nanos;
+            this.maxNanos = Math.max(maxNanos, nanos);
+            long micros = nanos / 1000;
+            int bucket = micros <= 1 ? 0 : 63 - Long.numberOfLeadingZeros(micros);
+            histogram[Math.min(bucket, HISTOGRAM_BUCKETS - 1)]++;
+        }
+
+        synchronized void clear() {
+            count = 0;
+            rows = 0;
+            totalNanos = 0;
+            maxNanos = 0;
+            Arrays.fill(histogram, 0);
+        }
+
+        public String getShape() {
+            return shape;
+        }
+
+        public synchronized long getCount() {
+            return count;
+        }
+
+        public synchronized long getRows() {
+            return rows;
+        }
+
+        public synchronized long getTotalNanos() {
+            return totalNanos;
+        }
+
+        public synchronized long getMaxNanos() {
+            return maxNanos;
+        }
+
+        public synchronized long[] getHistogram() {
+            return histogram.clone();
+        }
+
+        /**
+         * Returns the upper bound of the histogram bucket holding the given percentile.
+         *
+         * @param percentile the percentile within [0, 1].
+         * @return the upper bound in microseconds.
+         */
+        public synchronized long getPercentileMicros(double percentile) {
+            long threshold = (long) Math.ceil(count * percentile);
+            long seen = 0;
+            for (int i = 0; i < HISTOGRAM_BUCKETS; i++) {
+                seen += histogram[i];
+                if (seen >= threshold && seen > 0) {
+                    return 1L << (i + 1);
+                }
+            }
+            return 0;
+        }
+
+        @Override
+        public synchronized String toString() {
+            return String.format(Locale.US,
+                    "total=%.1fms n=%d rows=%d p50<%dus p90<%dus p99<%dus max=%.1fms | %s",
+                    totalNanos / 1e6, count, rows, getPercentileMicros(0.5),
+                    getPercentileMicros(0.9), getPercentileMicros(0.99), maxNanos / 1e6, shape);
+        }
+    }
+
+    private static final class TransactionState {
+        private int depth;
+        private long start;
+        private boolean successful;
+    }
+
+    /**
+     * Returns the statistics of all query shapes ordered by their total time.
+     *
+     * @return the statistics of all query shapes.
+     */
+    public List<Timing> getQueryTimings() {
+        List<Timing> result = new ArrayList<>(queries.values());
+        Collections.sort(result, (a, b) -> Long.compare(b.getTotalNanos(), a.getTotalNanos()));
+        return result;
+    }
+
+    public Timing getTransactionTiming() {
+        return transactions;
+    }
+
+    public long getRolledBackTransactions() {
+        return rolledBackTransactions.get();
+    }
+
+    /**
+     * @return the number of results emitted to subscribers of SqlBrite queries.
+     */
+    public long getNotifications() {
+        return notifications.get();
+    }
+
+    /**
+     * @return the number of currently subscribed SqlBrite queries.
+     */
+    public int getActiveQueries() {
+        return activeQueries.get();
+    }
+
+    /**
+     * Resets all metrics.
+     */
+    public void reset() {
+        queries.clear();
+        transactions.clear();
+        rolledBackTransactions.set(0);
+        notifications.set(0);
+        since = System.currentTimeMillis();
+    }
+
+    /**
+     * Enables or disables the logging of every statement by SqlBrite. This is expensive and
+     * only meant for debugging.
+     *
+     * @param enabled true if every statement should be logged.
+     */
+    public synchronized void setStatementLoggingEnabled(boolean enabled) {
+        this.statementLogging = enabled;
+        if (briteDatabase != null) {
+            briteDatabase.setLoggingEnabled(enabled);
+        }
+    }
+
+    public boolean isStatementLoggingEnabled() {
+        return statementLogging;
+    }
+
+    /**
+     * Creates a human readable report of the metrics, e.g. for the log export.
+     *
+     * @return the report.
+     */
+    public String dump() {
+        StringBuilder sb = new StringBuilder();
+        sb.append("Database metrics since ").append(new Date(since)).append('\n');
+        sb.append("transactions: ").append(transactions)
+                .append(", rolled back=").append(rolledBackTransactions.get()).append('\n');
+        long commits = transactions.getCount() - rolledBackTransactions.get();
+        sb.append(String.format(Locale.US,
+                "notifications: %d (%.2f per transaction), active queries: %d%n",
+                notifications.get(), commits > 0 ? notifications.get() / (double) commits : 0.0,
+                activeQueries.get()));
+        for (Timing timing : getQueryTimings()) {
+            sb.append(timing).append('\n');
+        }
+        return sb.toString();
+    }
+
+    synchronized void attach(BriteDatabase briteDatabase) {
+        this.briteDatabase = briteDatabase;
+        briteDatabase.setLoggingEnabled(statementLogging);
+    }
+
+    /**
+     * @return a transformer for {@link SqlBrite.Builder#queryTransformer} counting the
+     * notifications of subscribed queries.
+     */
+    ObservableTransformer<SqlBrite.Query, SqlBrite.Query> queryTransformer() {
+        return upstream -> upstream
+                .doOnSubscribe(disposable -> activeQueries.incrementAndGet())
+                .doFinally(activeQueries::decrementAndGet)
+                .doOnNext(query -> notifications.incrementAndGet());
+    }
+
+    void recordQuery(String sql, long nanos, long rows) {
+        String shape = sql.length() > MAX_SHAPE_LENGTH ? sql.substring(0, MAX_SHAPE_LENGTH) : sql;
+        Timing timing = queries.get(shape);
+        if (timing == null) {
+            Timing created = new Timing(shape);
+            timing = queries.putIfAbsent(shape, created);
+            if (timing == null) {
+                timing = created;
+            }
+        }
+        timing.record(nanos, rows);
+    }
+
+    void onBeginTransaction() {
+        TransactionState state = transactionState.get();
+        if (state.depth++ == 0) {
+            state.start = System.nanoTime();
+            state.successful = false;
+        }
+    }
+
+    void onTransactionSuccessful() {
+        TransactionState state = transactionState.get();
+        if (state.depth == 1) {
+            state.successful = true;
+        }
+    }
+
+    void onEndTransaction() {
+        TransactionState state = transactionState.get();
+        if (state.depth > 0 && --state.depth == 0) {
+            transactions.record(System.nanoTime() - state.start, 0);
+            if (!state.successful) {
+                rolledBackTransactions.incrementAndGet();
+            }
+        }
+    }
+}
@@ -47,28 +47,38 @@ public final class DatabaseModule {
 
     // configs
     private static final String DATABASE_NAME = "envirocar";
-    private static final int DATABASE_VERSION = 11;
+    private static final int DATABASE_VERSION = 16;
 
 
     @Provides
     @Singleton
-    SqlBrite provideSqlBrite() {
+    DatabaseMetrics provideDatabaseMetrics() {
+        return new DatabaseMetrics();
+    }
+
+    @Provides
+    @Singleton
+    SqlBrite provideSqlBrite(DatabaseMetrics metrics) {
         return new SqlBrite.Builder()
                 .logger(message -> LOG.info(message))
+                .queryTransformer(metrics.queryTransformer())
                 .build();
     }
 
     @Provides
     @Singleton
-    BriteDatabase provideBriteDatabase(@InjectApplicationScope Context context, SqlBrite sqlBrite) {
+    BriteDatabase provideBriteDatabase(@InjectApplicationScope Context context, SqlBrite sqlBrite,
+                                       DatabaseMetrics metrics) {
         SupportSQLiteOpenHelper.Configuration config = SupportSQLiteOpenHelper.Configuration.builder(context)
                 .name(DATABASE_NAME)
                 .callback(new EnviroCarDBCallback(DATABASE_VERSION))
                 .build();
 
-        SupportSQLiteOpenHelper helper = new FrameworkSQLiteOpenHelperFactory().create(config);
+        SupportSQLiteOpenHelper helper = new InstrumentedOpenHelperFactory(
+                new FrameworkSQLiteOpenHelperFactory(), metrics).create(config);
         BriteDatabase db = sqlBrite.wrapDatabaseHelper(helper, Schedulers.io());
-        db.setLoggingEnabled(true);
+        // logging every statement is an opt-in debug mode, the metrics are always recorded.
+        metrics.attach(db);
 
         return db;
     }
@@ -44,15 +44,47 @@ class EnviroCarDBCallback extends SupportSQLiteOpenHelper.Callback {
 //            db.execSQL("PRAGMA foreign_keys=ON;");
         db.execSQL(TrackTable.CREATE);
         db.execSQL(MeasurementTable.CREATE);
+        db.execSQL(MeasurementTable.CREATE_INDEX_TRACK_TIME);
+        db.execSQL(TrackSummaryTable.CREATE);
+        db.execSQL(TrackArchiveTable.CREATE);
+        db.execSQL(TrackLevelTable.CREATE);
     }
 
     @Override
     public void onUpgrade(SupportSQLiteDatabase db, int oldVersion, int newVersion) {
-        LOG.info("On update enviroCar database");
-        db.execSQL(MeasurementTable.DELETE);
-        db.execSQL(TrackTable.DELETE);
-        db.execSQL(TrackTable.CREATE);
-        db.execSQL(MeasurementTable.CREATE);
+        LOG.info(String.format("On update enviroCar database from version %s to %s",
+                oldVersion, newVersion));
+        if (oldVersion < 11) {
+            db.execSQL(MeasurementTable.DELETE);
+            db.execSQL(TrackTable.DELETE);
+            db.execSQL(TrackSummaryTable.DELETE);
+            db.execSQL(TrackArchiveTable.DELETE);
+            db.execSQL(TrackLevelTable.DELETE);
+            onCreate(db);
+            return;
+        }
+
+        if (oldVersion < 12) {
+            MeasurementTable.migrateToBinaryProperties(db);
+        }
+
+        if (oldVersion < 13) {
+            db.execSQL(MeasurementTable.CREATE_INDEX_TRACK_TIME);
+        }
+
+        if (oldVersion < 14) {
+            // summaries of existing tracks are created on first access.
+            db.execSQL(TrackSummaryTable.CREATE);
+        }
+
+        if (oldVersion < 15) {
+            // existing finished tracks remain as measurement rows, both layouts are readable.
+            db.execSQL(TrackArchiveTable.CREATE);
+        }
 
+        if (oldVersion < 16) {
+            // levels of already finished tracks are created on first access.
+            db.execSQL(TrackLevelTable.CREATE);
+        }
     }
 }
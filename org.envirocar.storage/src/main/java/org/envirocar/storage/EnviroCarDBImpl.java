@@ -22,11 +22,15 @@ import android.content.ContentValues;
 import android.database.Cursor;
 import android.database.sqlite.SQLiteDatabase;
 
+import androidx.sqlite.db.SupportSQLiteStatement;
+
 import com.squareup.sqlbrite3.BriteDatabase;
 
 import org.envirocar.core.EnviroCarDB;
 import org.envirocar.core.entity.Measurement;
 import org.envirocar.core.entity.Track;
+import org.envirocar.core.entity.TrackColumns;
+import org.envirocar.core.entity.internal.TrackSummary;
 import org.envirocar.core.exception.MeasurementSerializationException;
 import org.envirocar.core.exception.TrackSerializationException;
 import org.envirocar.core.logging.Logger;
@@ -34,12 +38,18 @@ import org.envirocar.core.util.TrackMetadata;
 import org.json.JSONException;
 
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
 import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.TimeUnit;
 
 import javax.inject.Inject;
 import javax.inject.Singleton;
 
+import io.reactivex.Emitter;
+import io.reactivex.Flowable;
 import io.reactivex.Observable;
 import io.reactivex.ObservableTransformer;
 import io.reactivex.functions.Function;
@@ -54,7 +64,68 @@ import io.reactivex.functions.Function;
 public class EnviroCarDBImpl implements EnviroCarDB {
     private static final Logger LOG = Logger.getLogger(EnviroCarDBImpl.class);
 
+    private static final String KEY_AGGREGATE_START_TIME = "measurements_start_time";
+    private static final String KEY_AGGREGATE_END_TIME = "measurements_end_time";
+    private static final String KEY_AGGREGATE_COUNT = "measurements_count";
+
+    private static final String MEASUREMENT_AGGREGATES =
+            "MIN(" + MeasurementTable.KEY_TIME + ") AS " + KEY_AGGREGATE_START_TIME + ", " +
+                    "MAX(" + MeasurementTable.KEY_TIME + ") AS " + KEY_AGGREGATE_END_TIME + ", " +
+                    "COUNT(*) AS " + KEY_AGGREGATE_COUNT;
+
+    private static final String ARCHIVE_AGGREGATES =
+            "MIN(" + TrackArchiveTable.KEY_START_TIME + "), " +
+                    "MAX(" + TrackArchiveTable.KEY_END_TIME + "), " +
+                    "SUM(" + TrackArchiveTable.KEY_COUNT + ")";
+
+    private static final String COMBINED_AGGREGATES =
+            "MIN(" + KEY_AGGREGATE_START_TIME + ") AS " + KEY_AGGREGATE_START_TIME + ", " +
+                    "MAX(" + KEY_AGGREGATE_END_TIME + ") AS " + KEY_AGGREGATE_END_TIME + ", " +
+                    "SUM(" + KEY_AGGREGATE_COUNT + ") AS " + KEY_AGGREGATE_COUNT;
+
+    // aggregates over both, raw measurement rows and archived chunks.
+    private static final String SELECT_TRACKS_WITH_AGGREGATES =
+            "SELECT " + TrackTable.TABLE_TRACK + ".*, " +
+                    KEY_AGGREGATE_START_TIME + ", " +
+                    KEY_AGGREGATE_END_TIME + ", " +
+                    KEY_AGGREGATE_COUNT +
+                    " FROM " + TrackTable.TABLE_TRACK +
+                    " LEFT JOIN (SELECT " + MeasurementTable.KEY_TRACK + ", " + COMBINED_AGGREGATES +
+                    " FROM (SELECT " + MeasurementTable.KEY_TRACK + ", " + MEASUREMENT_AGGREGATES +
+                    " FROM " + MeasurementTable.TABLE_NAME +
+                    " GROUP BY " + MeasurementTable.KEY_TRACK +
+                    " UNION ALL SELECT " + TrackArchiveTable.KEY_TRACK + ", " + ARCHIVE_AGGREGATES +
+                    " FROM " + TrackArchiveTable.TABLE_NAME +
+                    " GROUP BY " + TrackArchiveTable.KEY_TRACK + ")" +
+                    " GROUP BY " + MeasurementTable.KEY_TRACK + ") AS aggregates" +
+                    " ON " + TrackTable.TABLE_TRACK + "." + TrackTable.KEY_TRACK_ID +
+                    " = aggregates." + MeasurementTable.KEY_TRACK;
+
+    private static final String SELECT_TRACK_AGGREGATES =
+            "SELECT " + COMBINED_AGGREGATES +
+                    " FROM (SELECT " + MEASUREMENT_AGGREGATES +
+                    " FROM " + MeasurementTable.TABLE_NAME +
+                    " WHERE " + MeasurementTable.KEY_TRACK + "=?" +
+                    " UNION ALL SELECT " + ARCHIVE_AGGREGATES +
+                    " FROM " + TrackArchiveTable.TABLE_NAME +
+                    " WHERE " + TrackArchiveTable.KEY_TRACK + "=?)";
+
+    private static final List<String> MEASUREMENT_TABLES =
+            Arrays.asList(MeasurementTable.TABLE_NAME, TrackArchiveTable.TABLE_NAME);
+
+    // rows per multi-row insert, which keeps the bound variables below SQLite's limit of 999.
+    private static final int BULK_INSERT_ROWS = 100;
+
     protected BriteDatabase briteDatabase;
+    private final TrackArchive trackArchive;
+    private final TrackLevels trackLevels;
+
+    private final Map<Long, Long> trimmedTracks = new ConcurrentHashMap<>();
+
+    private final Object insertLock = new Object();
+    private SupportSQLiteStatement insertMeasurementStatement;
+    private SupportSQLiteStatement bulkInsertStatement;
+    private SupportSQLiteStatement trimMeasurementsStatement;
 
     /**
      * Constructor.
@@ -64,6 +135,8 @@ public class EnviroCarDBImpl implements EnviroCarDB {
     @Inject
     public EnviroCarDBImpl(BriteDatabase briteDatabase) {
         this.briteDatabase = briteDatabase;
+        this.trackArchive = new TrackArchive(briteDatabase);
+        this.trackLevels = new TrackLevels(briteDatabase);
     }
 
     @Override
@@ -75,7 +148,7 @@ public class EnviroCarDBImpl implements EnviroCarDB {
     public Observable<Track> getTrack(Track.TrackId trackId, boolean lazy) {
         return fetchTrackObservable(
                 "SELECT * FROM " + TrackTable.TABLE_TRACK +
-                        " WHERE " + TrackTable.KEY_TRACK_ID + "=" + trackId, lazy);
+                        " WHERE " + TrackTable.KEY_TRACK_ID + "=?", lazy, trackId.getId());
     }
 
     @Override
@@ -85,14 +158,12 @@ public class EnviroCarDBImpl implements EnviroCarDB {
 
     @Override
     public Observable<List<Track>> getAllTracks(final boolean lazy) {
-        return fetchTracksObservable(
-                "SELECT * FROM " + TrackTable.TABLE_TRACK, lazy);
+        return fetchTracksObservable(null, lazy);
     }
 
     @Override
     public Observable<List<Track>> getAllTracksByCar(String carID, boolean lazy) {
-        return fetchTracksObservable("SELECT * FROM " + TrackTable.TABLE_TRACK +
-                " WHERE " + TrackTable.KEY_TRACK_CAR_ID + "='" + carID + "'", lazy);
+        return fetchTracksObservable(TrackTable.KEY_TRACK_CAR_ID + "=?", lazy, carID);
     }
 
     @Override
@@ -102,9 +173,7 @@ public class EnviroCarDBImpl implements EnviroCarDB {
 
     @Override
     public Observable<List<Track>> getAllLocalTracks(boolean lazy) {
-        return fetchTracksObservable(
-                "SELECT * FROM " + TrackTable.TABLE_TRACK +
-                        " WHERE " + TrackTable.KEY_REMOTE_ID + " IS NULL", lazy);
+        return fetchTracksObservable(TrackTable.KEY_REMOTE_ID + " IS NULL", lazy);
     }
 
     @Override
@@ -120,9 +189,7 @@ public class EnviroCarDBImpl implements EnviroCarDB {
 
     @Override
     public Observable<List<Track>> getAllRemoteTracks(boolean lazy) {
-        return fetchTracksObservable(
-                "SELECT * FROM " + TrackTable.TABLE_TRACK +
-                        " WHERE " + TrackTable.KEY_REMOTE_ID + " IS NOT NULL", lazy);
+        return fetchTracksObservable(TrackTable.KEY_REMOTE_ID + " IS NOT NULL", lazy);
     }
 
     @Override
@@ -134,6 +201,18 @@ public class EnviroCarDBImpl implements EnviroCarDB {
     }
 
     public void insertTrack(final Track track) throws TrackSerializationException {
+        insertTrackBulk(track, track.getMeasurements());
+    }
+
+    @Override
+    public void insertTrack(Track track, TrackColumns columns) throws
+            TrackSerializationException {
+        insertTrackBulk(track, columns.asMeasurementList());
+    }
+
+    @Override
+    public void insertTrackBulk(final Track track, final Iterable<Measurement> measurements) throws
+            TrackSerializationException {
         LOG.info("insertTrack(): trying to insert a new track");
         BriteDatabase.Transaction transaction = briteDatabase.newTransaction();
         try {
@@ -144,17 +223,47 @@ public class EnviroCarDBImpl implements EnviroCarDB {
             LOG.info(String.format("insertTrack(): " +
                     "track has been successfully inserted ->[id = %s]", "" + result));
 
-            if (track.getMeasurements().size() > 0) {
-                for (Measurement measurement : track.getMeasurements()) {
+            TrackSummary summary = new TrackSummary(trackId);
+            int count = 0;
+            if (track.isFinished()) {
+                // finished tracks do not change anymore and are directly stored as archive.
+                // Lists are archived as they are, e.g. the row views of downloaded columns.
+                List<Measurement> archived = measurements instanceof List ?
+                        (List<Measurement>) measurements : new ArrayList<>();
+                for (Measurement measurement : measurements) {
+                    measurement.setTrackId(trackId);
+                    summary.accumulate(measurement);
+                    if (archived != measurements) {
+                        archived.add(measurement);
+                    }
+                }
+                trackArchive.write(trackId, archived);
+                trackLevels.write(trackId, archived);
+                count = archived.size();
+            } else {
+                Measurement[] batch = new Measurement[BULK_INSERT_ROWS];
+                int batchSize = 0;
+                for (Measurement measurement : measurements) {
                     measurement.setTrackId(trackId);
-                    briteDatabase.insert(MeasurementTable.TABLE_NAME, SQLiteDatabase.CONFLICT_FAIL,
-                            MeasurementTable.toContentValues(measurement));
+                    summary.accumulate(measurement);
+                    batch[batchSize++] = measurement;
+                    if (batchSize == BULK_INSERT_ROWS) {
+                        insertMeasurementBatch(batch);
+                        batchSize = 0;
+                    }
+                    count++;
+                }
+                for (int i = 0; i < batchSize; i++) {
+                    insertMeasurementRow(batch[i]);
                 }
             }
+            summary.setFinished(track.isFinished());
+            storeTrackSummary(summary);
 
             transaction.markSuccessful();
+            LOG.info(String.format("insertTrack(): %s measurements inserted", count));
         } finally {
-            transaction.close();
+            transaction.end();
         }
     }
 
@@ -175,8 +284,21 @@ public class EnviroCarDBImpl implements EnviroCarDB {
     public boolean updateTrack(Track track) {
         LOG.info(String.format("updateTrack(%s)", track.getTrackID()));
         ContentValues trackValues = TrackTable.toContentValues(track);
-        int update = briteDatabase.update(TrackTable.TABLE_TRACK, SQLiteDatabase.CONFLICT_FAIL, trackValues, TrackTable.KEY_TRACK_ID + "=" + track.getTrackID());
-        return update != -1;
+        BriteDatabase.Transaction transaction = briteDatabase.newTransaction();
+        try {
+            int update = briteDatabase.update(TrackTable.TABLE_TRACK, SQLiteDatabase.CONFLICT_FAIL,
+                    trackValues, TrackTable.KEY_TRACK_ID + "=?",
+                    Long.toString(track.getTrackID().getId()));
+
+            // finalize the summary and archive the measurements once the track has been finished.
+            if (track.isFinished()) {
+                archiveTrack(track.getTrackID());
+            }
+            transaction.markSuccessful();
+            return update != -1;
+        } finally {
+            transaction.end();
+        }
     }
 
     @Override
@@ -201,9 +323,12 @@ public class EnviroCarDBImpl implements EnviroCarDB {
 
     @Override
     public void deleteTrack(Track.TrackId trackId) {
+        trimmedTracks.remove(trackId.getId());
         briteDatabase.delete(TrackTable.TABLE_TRACK,
-                TrackTable.KEY_TRACK_ID + "='" + trackId + "'");
+                TrackTable.KEY_TRACK_ID + "=?", Long.toString(trackId.getId()));
         deleteMeasurementsOfTrack(trackId);
+        briteDatabase.delete(TrackSummaryTable.TABLE_NAME,
+                TrackSummaryTable.KEY_TRACK + "=?", Long.toString(trackId.getId()));
     }
 
     @Override
@@ -239,8 +364,77 @@ public class EnviroCarDBImpl implements EnviroCarDB {
     public void insertMeasurement(final Measurement measurement) throws
             MeasurementSerializationException {
         LOG.info("inserted measurement into track " + measurement.getTrackId());
-        briteDatabase.insert(MeasurementTable.TABLE_NAME, SQLiteDatabase.CONFLICT_FAIL,
-                MeasurementTable.toContentValues(measurement));
+        BriteDatabase.Transaction transaction = briteDatabase.newTransaction();
+        try {
+            TrackSummary summary = loadOrCreateTrackSummary(measurement.getTrackId());
+            insertMeasurementRow(measurement);
+            summary.accumulate(measurement);
+            storeTrackSummary(summary);
+            transaction.markSuccessful();
+        } finally {
+            transaction.end();
+        }
+    }
+
+    @Override
+    public void insertMeasurements(final Track track, final List<Measurement> measurements) throws
+            MeasurementSerializationException {
+        LOG.info(String.format("insertMeasurements(): inserting %s measurements into track %s",
+                measurements.size(), track.getTrackID()));
+        Long trimTime = trimmedTracks.get(track.getTrackID().getId());
+
+        BriteDatabase.Transaction transaction = briteDatabase.newTransaction();
+        try {
+            TrackSummary summary = loadOrCreateTrackSummary(track.getTrackID());
+            for (Measurement measurement : measurements) {
+                // do not re-insert measurements that have been trimmed in the meantime.
+                if (trimTime != null && measurement.getTime() >= trimTime)
+                    continue;
+                insertMeasurementRow(measurement);
+                summary.accumulate(measurement);
+            }
+            storeTrackSummary(summary);
+            updateTrack(track);
+            transaction.markSuccessful();
+        } finally {
+            transaction.end();
+        }
+    }
+
+    /**
+     * Inserts a full batch of {@link #BULK_INSERT_ROWS} measurements with a single multi-row
+     * insert statement. Within a transaction, subscribers get notified once at its end.
+     *
+     * @param batch the measurements to insert.
+     */
+    private void insertMeasurementBatch(Measurement[] batch) {
+        synchronized (insertLock) {
+            if (bulkInsertStatement == null) {
+                bulkInsertStatement = briteDatabase.getWritableDatabase()
+                        .compileStatement(MeasurementTable.createBulkInsert(BULK_INSERT_ROWS));
+            }
+            for (int i = 0; i < batch.length; i++) {
+                MeasurementTable.bindInsert(bulkInsertStatement, i, batch[i]);
+            }
+            briteDatabase.executeInsert(MeasurementTable.TABLE_NAME, bulkInsertStatement);
+        }
+    }
+
+    /**
+     * Inserts a single measurement row by means of a reused compiled statement.
+     *
+     * @param measurement the measurement to insert.
+     * @return the row id of the inserted measurement.
+     */
+    private long insertMeasurementRow(Measurement measurement) {
+        synchronized (insertLock) {
+            if (insertMeasurementStatement == null) {
+                insertMeasurementStatement = briteDatabase.getWritableDatabase()
+                        .compileStatement(MeasurementTable.INSERT);
+            }
+            MeasurementTable.bindInsert(insertMeasurementStatement, measurement);
+            return briteDatabase.executeInsert(MeasurementTable.TABLE_NAME, insertMeasurementStatement);
+        }
     }
 
     @Override
@@ -321,17 +515,172 @@ public class EnviroCarDBImpl implements EnviroCarDB {
     public Observable<Track> getActiveTrackObservable(boolean lazy) {
         return fetchTrackObservable(
                 "SELECT * FROM " + TrackTable.TABLE_TRACK +
-                        " WHERE " + TrackTable.KEY_TRACK_STATE + "='" +
-                        Track.TrackStatus.ONGOING + "'" +
+                        " WHERE " + TrackTable.KEY_TRACK_STATE + "=?" +
                         " ORDER BY " + TrackTable.KEY_TRACK_ID + " DESC" +
-                        " LIMIT 1", lazy);
+                        " LIMIT 1", lazy, Track.TrackStatus.ONGOING.toString());
+    }
+
+    @Override
+    public Flowable<Measurement> getMeasurementsFlowable(Track.TrackId trackId) {
+        Flowable<Measurement> rows = streamMeasurements(
+                "SELECT * FROM " + MeasurementTable.TABLE_NAME +
+                        " WHERE " + MeasurementTable.KEY_TRACK + "=?" +
+                        " ORDER BY " + MeasurementTable.KEY_TIME + " ASC",
+                trackId.getId());
+        // rows of an archived track have been written after it has been finished.
+        return Flowable.defer(() -> trackArchive.isArchived(trackId) ?
+                trackArchive.stream(trackId).concatWith(rows) : rows);
+    }
+
+    @Override
+    public Flowable<Measurement> getMeasurementsFlowable(Track.TrackId trackId, long startTime, long endTime) {
+        Flowable<Measurement> rows = streamMeasurements(
+                "SELECT * FROM " + MeasurementTable.TABLE_NAME +
+                        " WHERE " + MeasurementTable.KEY_TRACK + "=?" +
+                        " AND " + MeasurementTable.KEY_TIME + ">=?" +
+                        " AND " + MeasurementTable.KEY_TIME + "<?" +
+                        " ORDER BY " + MeasurementTable.KEY_TIME + " ASC",
+                trackId.getId(), startTime, endTime);
+        // rows of an archived track have been written after it has been finished.
+        return Flowable.defer(() -> trackArchive.isArchived(trackId) ?
+                trackArchive.stream(trackId, startTime, endTime).concatWith(rows) :
+                rows);
+    }
+
+    private Flowable<Measurement> streamMeasurements(String sql, Object... args) {
+        // the arguments are bound as numbers, since the time column has no type affinity and
+        // would never match a bound string.
+        // the cursor only holds one window of rows at a time and gets advanced per request.
+        return Flowable.generate(
+                () -> briteDatabase.query(sql, args),
+                (Cursor cursor, Emitter<Measurement> emitter) -> {
+                    if (cursor.moveToNext()) {
+                        emitter.onNext(MeasurementTable.fromCursor(cursor));
+                    } else {
+                        emitter.onComplete();
+                    }
+                },
+                Cursor::close);
+    }
+
+    @Override
+    public Observable<List<Measurement>> getMeasurementsForResolution(Track.TrackId trackId,
+                                                                      int maxMeasurements) {
+        return Observable.create(emitter -> {
+            emitter.onNext(loadMeasurementsForResolution(trackId, maxMeasurements));
+            emitter.onComplete();
+        });
+    }
+
+    @Override
+    public Observable<TrackColumns> getTrackColumnsForResolution(Track.TrackId trackId,
+                                                                 int maxMeasurements) {
+        return Observable.create(emitter -> {
+            emitter.onNext(loadTrackColumnsForResolution(trackId, maxMeasurements));
+            emitter.onComplete();
+        });
+    }
+
+    @Override
+    public Observable<TrackSummary> getTrackSummary(Track.TrackId trackId) {
+        return Observable.create(emitter -> {
+            TrackSummary summary = loadTrackSummary(trackId);
+            if (summary == null) {
+                summary = rebuildTrackSummary(trackId, isTrackFinished(trackId));
+            }
+            emitter.onNext(summary);
+            emitter.onComplete();
+        });
+    }
+
+    @Override
+    public Observable<List<TrackSummary>> getAllTrackSummaries() {
+        return Observable.create(emitter -> {
+            // create the summaries of tracks that have been recorded prior to the summary table.
+            Cursor missing = briteDatabase.query(
+                    "SELECT " + TrackTable.KEY_TRACK_ID + ", " + TrackTable.KEY_TRACK_STATE +
+                            " FROM " + TrackTable.TABLE_TRACK +
+                            " WHERE " + TrackTable.KEY_TRACK_ID + " NOT IN (SELECT " +
+                            TrackSummaryTable.KEY_TRACK +
+                            " FROM " + TrackSummaryTable.TABLE_NAME + ")");
+            try {
+                while (missing.moveToNext()) {
+                    rebuildTrackSummary(new Track.TrackId(missing.getLong(0)),
+                            Track.TrackStatus.FINISHED.toString().equals(missing.getString(1)));
+                }
+            } finally {
+                missing.close();
+            }
+
+            List<TrackSummary> summaries = new ArrayList<>();
+            Cursor cursor = briteDatabase.query("SELECT * FROM " + TrackSummaryTable.TABLE_NAME);
+            try {
+                while (cursor.moveToNext()) {
+                    summaries.add(TrackSummaryTable.fromCursor(cursor));
+                }
+            } finally {
+                cursor.close();
+            }
+
+            emitter.onNext(summaries);
+            emitter.onComplete();
+        });
+    }
+
+    private TrackSummary loadTrackSummary(Track.TrackId trackId) {
+        Cursor cursor = briteDatabase.query(
+                "SELECT * FROM " + TrackSummaryTable.TABLE_NAME +
+                        " WHERE " + TrackSummaryTable.KEY_TRACK + "=?",
+                trackId.getId());
+        try {
+            return cursor.moveToFirst() ? TrackSummaryTable.fromCursor(cursor) : null;
+        } finally {
+            cursor.close();
+        }
+    }
+
+    private TrackSummary loadOrCreateTrackSummary(Track.TrackId trackId) {
+        TrackSummary summary = loadTrackSummary(trackId);
+        if (summary == null) {
+            summary = rebuildTrackSummary(trackId, false);
+        }
+        return summary;
+    }
+
+    private TrackSummary rebuildTrackSummary(Track.TrackId trackId, boolean finished) {
+        TrackSummary summary = new TrackSummary(trackId);
+        getMeasurementsFlowable(trackId).blockingForEach(summary::accumulate);
+
+        summary.setFinished(finished);
+        storeTrackSummary(summary);
+        return summary;
+    }
+
+    private void storeTrackSummary(TrackSummary summary) {
+        briteDatabase.insert(TrackSummaryTable.TABLE_NAME, SQLiteDatabase.CONFLICT_REPLACE,
+                TrackSummaryTable.toContentValues(summary));
+    }
+
+    private boolean isTrackFinished(Track.TrackId trackId) {
+        Cursor cursor = briteDatabase.query(
+                "SELECT " + TrackTable.KEY_TRACK_STATE + " FROM " + TrackTable.TABLE_TRACK +
+                        " WHERE " + TrackTable.KEY_TRACK_ID + "=?",
+                trackId.getId());
+        try {
+            return cursor.moveToFirst() &&
+                    Track.TrackStatus.FINISHED.toString().equals(cursor.getString(0));
+        } finally {
+            cursor.close();
+        }
     }
 
     private void deleteMeasurementsOfTrack(Track.TrackId trackId) {
         BriteDatabase.Transaction transaction = briteDatabase.newTransaction();
         try {
             briteDatabase.delete(MeasurementTable.TABLE_NAME,
-                    MeasurementTable.KEY_TRACK + "='" + trackId + "'");
+                    MeasurementTable.KEY_TRACK + "=?", Long.toString(trackId.getId()));
+            trackArchive.delete(trackId);
+            trackLevels.delete(trackId);
             transaction.markSuccessful();
         } finally {
             transaction.end();
@@ -340,10 +689,25 @@ public class EnviroCarDBImpl implements EnviroCarDB {
 
     @Override
     public void automaticDeleteMeasurements(long time, Track.TrackId trackId) {
+        // remember the trim time in order to drop measurements that are still buffered by a
+        // recording sink and get written afterwards.
+        trimmedTracks.put(trackId.getId(), time);
         BriteDatabase.Transaction transaction = briteDatabase.newTransaction();
         try {
-            briteDatabase.delete(MeasurementTable.TABLE_NAME,
-                    MeasurementTable.KEY_TRACK + "='" + trackId + "' AND " + MeasurementTable.KEY_TIME + " >= " + time);
+            // the time column has no type affinity, hence the time has to be bound as a number.
+            synchronized (insertLock) {
+                if (trimMeasurementsStatement == null) {
+                    trimMeasurementsStatement = briteDatabase.getWritableDatabase()
+                            .compileStatement("DELETE FROM " + MeasurementTable.TABLE_NAME +
+                                    " WHERE " + MeasurementTable.KEY_TRACK + "=?" +
+                                    " AND " + MeasurementTable.KEY_TIME + ">=?");
+                }
+                trimMeasurementsStatement.bindLong(1, trackId.getId());
+                trimMeasurementsStatement.bindLong(2, time);
+                briteDatabase.executeUpdateDelete(MeasurementTable.TABLE_NAME,
+                        trimMeasurementsStatement);
+            }
+            rebuildTrackSummary(trackId, false);
             transaction.markSuccessful();
         } finally {
             transaction.end();
@@ -351,39 +715,137 @@ public class EnviroCarDBImpl implements EnviroCarDB {
     }
 
     private Observable<Track> fetchMeasurements(final Track track) {
-        return briteDatabase.createQuery(
-                MeasurementTable.TABLE_NAME,
-                "SELECT * FROM " + MeasurementTable.TABLE_NAME +
-                        " WHERE " + MeasurementTable.KEY_TRACK +
-                        "=\"" + track.getTrackID() + "\"" +
-                        " ORDER BY " + MeasurementTable.KEY_TIME + " ASC")
-                .mapToList(MeasurementTable.MAPPER)
-                .map(measurements -> {
-                    track.setMeasurements(measurements);
-                    track.setLazyMeasurements(false);
-                    return track;
-                });
+        return briteDatabase.createQuery(MEASUREMENT_TABLES, SELECT_TRACK_AGGREGATES,
+                track.getTrackID().getId(), track.getTrackID().getId())
+                .map(query -> fetchMeasurementsSilent(track));
     }
 
     private Observable<Track> fetchStartTime(final Track track) {
-        return briteDatabase.createQuery(
-                MeasurementTable.TABLE_NAME,
+        return briteDatabase.createQuery(MEASUREMENT_TABLES, SELECT_TRACK_AGGREGATES,
+                track.getTrackID().getId(), track.getTrackID().getId())
+                .mapToOne(cursor -> applyMeasurementAggregates(cursor, track));
+    }
+
+    /**
+     * Moves the measurement rows of a finished track into its archive and finalizes its summary.
+     * Rows that are written after the track has been archived, e.g. the last buffered
+     * measurements of a recording sink, get merged into the archive on the next call. Has to be
+     * called within a transaction.
+     *
+     * @param trackId the id of the finished track.
+     */
+    private void archiveTrack(Track.TrackId trackId) {
+        // the recording sink commits its buffered measurements before it finishes the track.
+        trimmedTracks.remove(trackId.getId());
+        boolean pendingRows = hasMeasurementRows(trackId);
+        if (pendingRows) {
+            List<Measurement> measurements = loadMeasurements(trackId);
+            trackArchive.delete(trackId);
+            trackArchive.write(trackId, measurements);
+            trackLevels.write(trackId, measurements);
+            briteDatabase.delete(MeasurementTable.TABLE_NAME,
+                    MeasurementTable.KEY_TRACK + "=?", Long.toString(trackId.getId()));
+        }
+
+        TrackSummary summary = loadTrackSummary(trackId);
+        if (pendingRows || summary == null || !summary.isFinished()) {
+            rebuildTrackSummary(trackId, true);
+        }
+    }
+
+    private boolean hasMeasurementRows(Track.TrackId trackId) {
+        Cursor cursor = briteDatabase.query(
+                "SELECT 1 FROM " + MeasurementTable.TABLE_NAME +
+                        " WHERE " + MeasurementTable.KEY_TRACK + "=?" +
+                        " LIMIT 1",
+                trackId.getId());
+        try {
+            return cursor.moveToFirst();
+        } finally {
+            cursor.close();
+        }
+    }
+
+    private List<Measurement> loadMeasurementsForResolution(Track.TrackId trackId,
+                                                            int maxMeasurements) {
+        TrackSummary summary = loadTrackSummary(trackId);
+        if (summary == null || summary.getNumberOfMeasurements() <= maxMeasurements) {
+            return loadMeasurements(trackId);
+        }
+
+        List<Measurement> level = trackLevels.read(trackId, maxMeasurements);
+        if (level == null && summary.isFinished()) {
+            // tracks finished before levels of detail were introduced get them on first access.
+            List<Measurement> measurements = loadMeasurements(trackId);
+            BriteDatabase.Transaction transaction = briteDatabase.newTransaction();
+            try {
+                trackLevels.write(trackId, measurements);
+                transaction.markSuccessful();
+            } finally {
+                transaction.end();
+            }
+            level = trackLevels.read(trackId, maxMeasurements);
+            if (level == null) {
+                return measurements;
+            }
+        }
+        return level != null ? level : loadMeasurements(trackId);
+    }
+
+    private TrackColumns loadTrackColumnsForResolution(Track.TrackId trackId,
+                                                       int maxMeasurements) {
+        TrackSummary summary = loadTrackSummary(trackId);
+        boolean allRows = summary == null || summary.getNumberOfMeasurements() <= maxMeasurements;
+        if (allRows && !trackArchive.isArchived(trackId)) {
+            Cursor cursor = queryMeasurementRows(trackId);
+            try {
+                return MeasurementTable.fromCursorToColumns(cursor);
+            } finally {
+                cursor.close();
+            }
+        } else if (allRows) {
+            // archived tracks are streamed chunk by chunk instead of being decoded into one list.
+            TrackColumns.Builder builder = new TrackColumns.Builder(
+                    summary != null ? summary.getNumberOfMeasurements() : 64);
+            getMeasurementsFlowable(trackId).blockingForEach(builder::addMeasurement);
+            return builder.build();
+        }
+        return TrackColumns.fromMeasurements(loadMeasurementsForResolution(trackId,
+                maxMeasurements));
+    }
+
+    private List<Measurement> loadMeasurements(Track.TrackId trackId) {
+        List<Measurement> rows;
+        Cursor cursor = queryMeasurementRows(trackId);
+        try {
+            rows = MeasurementTable.fromCursorToList(cursor);
+        } finally {
+            cursor.close();
+        }
+        if (!trackArchive.isArchived(trackId)) {
+            return rows;
+        }
+
+        // rows of an archived track have been written after it has been finished.
+        List<Measurement> measurements = trackArchive.read(trackId);
+        if (!rows.isEmpty()) {
+            measurements.addAll(rows);
+            Collections.sort(measurements, (m1, m2) -> Long.compare(m1.getTime(), m2.getTime()));
+        }
+        return measurements;
+    }
+
+    private Cursor queryMeasurementRows(Track.TrackId trackId) {
+        return briteDatabase.query(
                 "SELECT * FROM " + MeasurementTable.TABLE_NAME +
-                        " WHERE " + MeasurementTable.KEY_TRACK +
-                        "=\"" + track.getTrackID() + "\"" +
-                        " ORDER BY " + MeasurementTable.KEY_TIME + " ASC" +
-                        " LIMIT 1")
-                .mapToOne(MeasurementTable.MAPPER)
-                .map(measurement -> {
-                    track.setStartTime(measurement.getTime());
-                    track.setLazyMeasurements(true);
-                    return track;
-                });
+                        " WHERE " + MeasurementTable.KEY_TRACK + "=?" +
+                        " ORDER BY " + MeasurementTable.KEY_TIME + " ASC",
+                trackId.getId());
     }
 
-    private Observable<Track> fetchTrackObservable(String sql, boolean lazy) {
+    private Observable<Track> fetchTrackObservable(String sql, boolean lazy, Object... args) {
         return briteDatabase
-                .createQuery(TrackTable.TABLE_TRACK, sql)
+                .createQuery(TrackTable.TABLE_TRACK, sql, args)
                 .mapToOne(TrackTable.MAPPER)
                 .take(1)
                 .timeout(100, TimeUnit.MILLISECONDS)
@@ -400,71 +862,58 @@ public class EnviroCarDBImpl implements EnviroCarDB {
         });
     }
 
-    private Observable<List<Track>> fetchTracksObservable(String sql, boolean lazy) {
-        Observable<List<Track>> listObservable = Observable.create(emitter -> {
-            Cursor query = briteDatabase.getReadableDatabase().query(sql);
+    private Observable<List<Track>> fetchTracksObservable(String where, boolean lazy, Object... args) {
+        return Observable.create(emitter -> {
+            // lazy tracks get their start/end time and measurement count by a single aggregate
+            // over all tracks instead of probing the measurements of each track.
+            String sql = lazy ? SELECT_TRACKS_WITH_AGGREGATES : "SELECT * FROM " + TrackTable.TABLE_TRACK;
+            if (where != null) {
+                sql += " WHERE " + where;
+            }
 
             ArrayList<Track> tracks = new ArrayList<>();
-            for (query.moveToFirst(); !query.isAfterLast(); query.moveToNext()) {
-                tracks.add(TrackTable.MAPPER.apply(query));
+            Cursor query = briteDatabase.getReadableDatabase().query(sql, args);
+            try {
+                while (query.moveToNext()) {
+                    Track track = TrackTable.MAPPER.apply(query);
+                    tracks.add(lazy ? applyMeasurementAggregates(query, track) : fetchMeasurementsSilent(track));
+                }
+            } finally {
+                query.close();
             }
 
             emitter.onNext(tracks);
             emitter.onComplete();
         });
-        return listObservable.compose(fetchTracks(lazy));
-    }
-
-    private ObservableTransformer<List<Track>, List<Track>> fetchTracks(boolean lazy) {
-        return trackObservable -> trackObservable.map(tracks -> {
-            for (Track track : tracks) {
-                if (lazy) {
-                    fetchStartEndTimeSilent(track);
-                } else {
-                    fetchMeasurementsSilent(track);
-                }
-            }
-            return tracks;
-        });
     }
 
     private Track fetchMeasurementsSilent(final Track track) {
-        track.setMeasurements(MeasurementTable.fromCursorToList(briteDatabase.query(
-                "SELECT * FROM " + MeasurementTable.TABLE_NAME +
-                        " WHERE " + MeasurementTable.KEY_TRACK +
-                        "=\"" + track.getTrackID() + "\"" +
-                        " ORDER BY " + MeasurementTable.KEY_TIME + " ASC", (String[]) null)));
+        track.setMeasurements(loadMeasurements(track.getTrackID()));
         track.setLazyMeasurements(false);
         return track;
     }
 
     private Track fetchStartEndTimeSilent(final Track track) {
-        Cursor startTime = briteDatabase.query(
-                "SELECT " + MeasurementTable.KEY_TIME +
-                        " FROM " + MeasurementTable.TABLE_NAME +
-                        " WHERE " + MeasurementTable.KEY_TRACK +
-                        "=\"" + track.getTrackID() + "\"" +
-                        " ORDER BY " + MeasurementTable.KEY_TIME + " ASC LIMIT 1");
-
-        if (startTime.moveToFirst()) {
-            track.setStartTime(
-                    startTime.getLong(
-                            startTime.getColumnIndex(MeasurementTable.KEY_TIME)));
+        Cursor aggregates = briteDatabase.query(SELECT_TRACK_AGGREGATES,
+                track.getTrackID().getId(), track.getTrackID().getId());
+        try {
+            if (aggregates.moveToFirst()) {
+                applyMeasurementAggregates(aggregates, track);
+            }
+        } finally {
+            aggregates.close();
         }
+        return track;
+    }
 
-        Cursor endTime = briteDatabase.query(
-                "SELECT " + MeasurementTable.KEY_TIME +
-                        " FROM " + MeasurementTable.TABLE_NAME +
-                        " WHERE " + MeasurementTable.KEY_TRACK +
-                        "=\"" + track.getTrackID() + "\"" +
-                        " ORDER BY " + MeasurementTable.KEY_TIME + " DESC LIMIT 1");
-
-        if (endTime.moveToFirst()) {
-            track.setEndTime(
-                    endTime.getLong(
-                            startTime.getColumnIndex(MeasurementTable.KEY_TIME)));
+    private static Track applyMeasurementAggregates(Cursor c, Track track) {
+        int count = c.getInt(c.getColumnIndex(KEY_AGGREGATE_COUNT));
+        if (count > 0) {
+            track.setStartTime(c.getLong(c.getColumnIndex(KEY_AGGREGATE_START_TIME)));
+            track.setEndTime(c.getLong(c.getColumnIndex(KEY_AGGREGATE_END_TIME)));
         }
-
+        track.setNumberOfMeasurements(count);
+        track.setLazyMeasurements(true);
         return track;
     }
 
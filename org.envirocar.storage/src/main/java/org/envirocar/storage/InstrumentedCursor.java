@@ -0,0 +1,113 @@
+/**
+ * Copyright (C) 2013 - 2019 the enviroCar community
+ *
+ * This file is part of the enviroCar app.
+ *
+ * The enviroCar app is free software: you can redistribute it and/or
+ * modify it under the terms of the GNU General Public License as published
+ * by the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * The enviroCar app is distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU General
+ * Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License along
+ * with the enviroCar app. If not, see http://www.gnu.org/licenses/.
+ */
+package org.envirocar.storage;
+
+import android.database.Cursor;
+import android.database.CursorWrapper;
+
+/**
+ * Cursor recording the time spent in SQLite while moving through the result set as well as the
+ * number of visited rows. The metrics are recorded once the cursor gets closed.
+ */
+class InstrumentedCursor extends CursorWrapper {
+
+    private final DatabaseMetrics metrics;
+    private final String shape;
+    private long nanos;
+    private int rows;
+    private boolean recorded;
+
+    /**
+     * Constructor.
+     *
+     * @param cursor  the actual cursor.
+     * @param metrics the metrics to record to.
+     * @param shape   the query shape.
+     * @param nanos   the time spent to create the cursor.
+     */
+    InstrumentedCursor(Cursor cursor, DatabaseMetrics metrics, String shape, long nanos) {
+        super(cursor);
+        this.metrics = metrics;
+        this.shape = shape;
+        this.nanos = nanos;
+    }
+
+    @Override
+    public int getCount() {
+        long start = System.nanoTime();
+        try {
+            return super.getCount();
+        } finally {
+            nanos += System.nanoTime() - start;
+        }
+    }
+
+    @Override
+    public boolean move(int offset) {
+        long start = System.nanoTime();
+        return visited(super.move(offset), start);
+    }
+
+    @Override
+    public boolean moveToPosition(int position) {
+        long start = System.nanoTime();
+        return visited(super.moveToPosition(position), start);
+    }
+
+    @Override
+    public boolean moveToFirst() {
+        long start = System.nanoTime();
+        return visited(super.moveToFirst(), start);
+    }
+
+    @Override
+    public boolean moveToLast() {
+        long start = System.nanoTime();
+        return visited(super.moveToLast(), start);
+    }
+
+    @Override
+    public boolean moveToNext() {
+        long start = System.nanoTime();
+        return visited(super.moveToNext(), start);
+    }
+
+    @Override
+    public boolean moveToPrevious() {
+        long start = System.nanoTime();
+        return visited(super.moveToPrevious(), start);
+    }
+
+    @Override
+    public void close() {
+        super.close();
+        if (!recorded) {
+            recorded = true;
+            metrics.recordQuery(shape, nanos, rows);
+        }
+    }
+
+    private boolean visited(boolean moved, long start) {
+        nanos += System.nanoTime() - start;
+        if (moved) {
+            rows = Math.max(rows, getPosition() + 1);
+        }
+        return moved;
+    }
+}
@@ -0,0 +1,283 @@
+/**
+ * Copyright (C) 2013 - 2019 the enviroCar community
+ *
+ * This file is part of the enviroCar app.
+ *
+ * The enviroCar app is free software: you can redistribute it and/or
+ * modify it under the terms of the GNU General Public License as published
+ * by the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * The enviroCar app is distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU General
+ * Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License along
+ * with the enviroCar app. If not, see http://www.gnu.org/licenses/.
+ */
+package org.envirocar.storage;
+
+import android.content.ContentValues;
+import android.database.Cursor;
+import android.database.SQLException;
+import android.database.sqlite.SQLiteTransactionListener;
+import android.os.CancellationSignal;
+import android.util.Pair;
+
+import androidx.sqlite.db.SupportSQLiteDatabase;
+import androidx.sqlite.db.SupportSQLiteQuery;
+import androidx.sqlite.db.SupportSQLiteStatement;
+
+import java.io.IOException;
+import java.util.List;
+import java.util.Locale;
+
+/**
+ * Database delegating to the actual database while recording query timings, row counts and
+ * transaction durations in the {@link DatabaseMetrics}.
+ */
+class InstrumentedDatabase implements SupportSQLiteDatabase {
+
+    private final SupportSQLiteDatabase delegate;
+    private final DatabaseMetrics metrics;
+
+    /**
+     * Constructor.
+     *
+     * @param delegate the actual database.
+     * @param metrics  the metrics to record to.
+     */
+    InstrumentedDatabase(SupportSQLiteDatabase delegate, DatabaseMetrics metrics) {
+        this.delegate = delegate;
+        this.metrics = metrics;
+    }
+
+    @Override
+    public SupportSQLiteStatement compileStatement(String sql) {
+        return new InstrumentedStatement(delegate.compileStatement(sql), metrics, sql);
+    }
+
+    @Override
+    public void beginTransaction() {
+        delegate.beginTransaction();
+        metrics.onBeginTransaction();
+    }
+
+    @Override
+    public void beginTransactionNonExclusive() {
+        delegate.beginTransactionNonExclusive();
+        metrics.onBeginTransaction();
+    }
+
+    @Override
+    public void beginTransactionWithListener(SQLiteTransactionListener transactionListener) {
+        delegate.beginTransactionWithListener(transactionListener);
+        metrics.onBeginTransaction();
+    }
+
+    @Override
+    public void beginTransactionWithListenerNonExclusive(SQLiteTransactionListener transactionListener) {
+        delegate.beginTransactionWithListenerNonExclusive(transactionListener);
+        metrics.onBeginTransaction();
+    }
+
+    @Override
+    public void endTransaction() {
+        try {
+            delegate.endTransaction();
+        } finally {
+            metrics.onEndTransaction();
+        }
+    }
+
+    @Override
+    public void setTransactionSuccessful() {
+        delegate.setTransactionSuccessful();
+        metrics.onTransactionSuccessful();
+    }
+
+    @Override
+    public boolean inTransaction() {
+        return delegate.inTransaction();
+    }
+
+    @Override
+    public boolean isDbLockedByCurrentThread() {
+        return delegate.isDbLockedByCurrentThread();
+    }
+
+    @Override
+    public boolean yieldIfContendedSafely() {
+        return delegate.yieldIfContendedSafely();
+    }
+
+    @Override
+    public boolean yieldIfContendedSafely(long sleepAfterYieldDelay) {
+        return delegate.yieldIfContendedSafely(sleepAfterYieldDelay);
+    }
+
+    @Override
+    public int getVersion() {
+        return delegate.getVersion();
+    }
+
+    @Override
+    public void setVersion(int version) {
+        delegate.setVersion(version);
+    }
+
+    @Override
+    public long getMaximumSize() {
+        return delegate.getMaximumSize();
+    }
+
+    @Override
+    public long setMaximumSize(long numBytes) {
+        return delegate.setMaximumSize(numBytes);
+    }
+
+    @Override
+    public long getPageSize() {
+        return delegate.getPageSize();
+    }
+
+    @Override
+    public void setPageSize(long numBytes) {
+        delegate.setPageSize(numBytes);
+    }
+
+    @Override
+    public Cursor query(String query) {
+        long start = System.nanoTime();
+        Cursor cursor = delegate.query(query);
+        return new InstrumentedCursor(cursor, metrics, query, System.nanoTime() - start);
+    }
+
+    @Override
+    public Cursor query(String query, Object[] bindArgs) {
+        long start = System.nanoTime();
+        Cursor cursor = delegate.query(query, bindArgs);
+        return new InstrumentedCursor(cursor, metrics, query, System.nanoTime() - start);
+    }
+
+    @Override
+    public Cursor query(SupportSQLiteQuery query) {
+        long start = System.nanoTime();
+        Cursor cursor = delegate.query(query);
+        return new InstrumentedCursor(cursor, metrics, query.getSql(), System.nanoTime() - start);
+    }
+
+    @Override
+    public Cursor query(SupportSQLiteQuery query, CancellationSignal cancellationSignal) {
+        long start = System.nanoTime();
+        Cursor cursor = delegate.query(query, cancellationSignal);
+        return new InstrumentedCursor(cursor, metrics, query.getSql(), System.nanoTime() - start);
+    }
+
+    @Override
+    public long insert(String table, int conflictAlgorithm, ContentValues values) throws SQLException {
+        long start = System.nanoTime();
+        long rowId = delegate.insert(table, conflictAlgorithm, values);
+        metrics.recordQuery("INSERT INTO " + table, System.nanoTime() - start, rowId != -1 ? 1 : 0);
+        return rowId;
+    }
+
+    @Override
+    public int delete(String table, String whereClause, Object[] whereArgs) {
+        long start = System.nanoTime();
+        int rows = delegate.delete(table, whereClause, whereArgs);
+        metrics.recordQuery("DELETE FROM " + table + " WHERE " + whereClause,
+                System.nanoTime() - start, rows);
+        return rows;
+    }
+
+    @Override
+    public int update(String table, int conflictAlgorithm, ContentValues values,
+                      String whereClause, Object[] whereArgs) {
+        long start = System.nanoTime();
+        int rows = delegate.update(table, conflictAlgorithm, values, whereClause, whereArgs);
+        metrics.recordQuery("UPDATE " + table + " WHERE " + whereClause,
+                System.nanoTime() - start, rows);
+        return rows;
+    }
+
+    @Override
+    public void execSQL(String sql) throws SQLException {
+        long start = System.nanoTime();
+        delegate.execSQL(sql);
+        metrics.recordQuery(sql, System.nanoTime() - start, 0);
+    }
+
+    @Override
+    public void execSQL(String sql, Object[] bindArgs) throws SQLException {
+        long start = System.nanoTime();
+        delegate.execSQL(sql, bindArgs);
+        metrics.recordQuery(sql, System.nanoTime() - start, 0);
+    }
+
+    @Override
+    public boolean isReadOnly() {
+        return delegate.isReadOnly();
+    }
+
+    @Override
+    public boolean isOpen() {
+        return delegate.isOpen();
+    }
+
+    @Override
+    public boolean needUpgrade(int newVersion) {
+        return delegate.needUpgrade(newVersion);
+    }
+
+    @Override
+    public String getPath() {
+        return delegate.getPath();
+    }
+
+    @Override
+    public void setLocale(Locale locale) {
+        delegate.setLocale(locale);
+    }
+
+    @Override
+    public void setMaxSqlCacheSize(int cacheSize) {
+        delegate.setMaxSqlCacheSize(cacheSize);
+    }
+
+    @Override
+    public void setForeignKeyConstraintsEnabled(boolean enable) {
+        delegate.setForeignKeyConstraintsEnabled(enable);
+    }
+
+    @Override
+    public boolean enableWriteAheadLogging() {
+        return delegate.enableWriteAheadLogging();
+    }
+
+    @Override
+    public void disableWriteAheadLogging() {
+        delegate.disableWriteAheadLogging();
+    }
+
+    @Override
+    public boolean isWriteAheadLoggingEnabled() {
+        return delegate.isWriteAheadLoggingEnabled();
+    }
+
+    @Override
+    public List<Pair<String, String>> getAttachedDbs() {
+        return delegate.getAttachedDbs();
+    }
+
+    @Override
+    public boolean isDatabaseIntegrityOk() {
+        return delegate.isDatabaseIntegrityOk();
+    }
+
+    @Override
+    public void close() throws IOException {
+        delegate.close();
+    }
+}
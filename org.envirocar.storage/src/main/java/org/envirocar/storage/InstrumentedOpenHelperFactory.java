@@ -0,0 +1,93 @@
+/**
+ * Copyright (C) 2013 - 2019 the enviroCar community
+ *
+ * This file is part of the enviroCar app.
+ *
+ * The enviroCar app is free software: you can redistribute it and/or
+ * modify it under the terms of the GNU General Public License as published
+ * by the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * The enviroCar app is distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU General
+ * Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License along
+ * with the enviroCar app. If not, see http://www.gnu.org/licenses/.
+ */
+package org.envirocar.storage;
+
+import androidx.sqlite.db.SupportSQLiteDatabase;
+import androidx.sqlite.db.SupportSQLiteOpenHelper;
+
+/**
+ * Factory wrapping the databases of another factory in order to record {@link DatabaseMetrics}.
+ */
+class InstrumentedOpenHelperFactory implements SupportSQLiteOpenHelper.Factory {
+
+    private final SupportSQLiteOpenHelper.Factory delegate;
+    private final DatabaseMetrics metrics;
+
+    /**
+     * Constructor.
+     *
+     * @param delegate the factory creating the actual helpers.
+     * @param metrics  the metrics to record to.
+     */
+    InstrumentedOpenHelperFactory(SupportSQLiteOpenHelper.Factory delegate, DatabaseMetrics metrics) {
+        this.delegate = delegate;
+        this.metrics = metrics;
+    }
+
+    @Override
+    public SupportSQLiteOpenHelper create(SupportSQLiteOpenHelper.Configuration configuration) {
+        return new InstrumentedOpenHelper(delegate.create(configuration), metrics);
+    }
+
+    private static final class InstrumentedOpenHelper implements SupportSQLiteOpenHelper {
+        private final SupportSQLiteOpenHelper delegate;
+        private final DatabaseMetrics metrics;
+        private SupportSQLiteDatabase database;
+        private InstrumentedDatabase instrumented;
+
+        private InstrumentedOpenHelper(SupportSQLiteOpenHelper delegate, DatabaseMetrics metrics) {
+            this.delegate = delegate;
+            this.metrics = metrics;
+        }
+
+        @Override
+        public String getDatabaseName() {
+            return delegate.getDatabaseName();
+        }
+
+        @Override
+        public void setWriteAheadLoggingEnabled(boolean enabled) {
+            delegate.setWriteAheadLoggingEnabled(enabled);
+        }
+
+        @Override
+        public SupportSQLiteDatabase getWritableDatabase() {
+            return wrap(delegate.getWritableDatabase());
+        }
+
+        @Override
+        public SupportSQLiteDatabase getReadableDatabase() {
+            return wrap(delegate.getReadableDatabase());
+        }
+
+        @Override
+        public void close() {
+            delegate.close();
+        }
+
+        private synchronized SupportSQLiteDatabase wrap(SupportSQLiteDatabase db) {
+            // the helper hands out the same database instance as long as it is open.
+            if (db != database) {
+                database = db;
+                instrumented = new InstrumentedDatabase(db, metrics);
+            }
+            return instrumented;
+        }
+    }
+}
@@ -0,0 +1,120 @@
+/**
+ * Copyright (C) 2013 - 2019 the enviroCar community
+ *
+ * This file is part of the enviroCar app.
+ *
+ * The enviroCar app is free software: you can redistribute it and/or
+ * modify it under the terms of the GNU General Public License as published
+ * by the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * The enviroCar app is distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU General
+ * Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License along
+ * with the enviroCar app. If not, see http://www.gnu.org/licenses/.
+ */
+package org.envirocar.storage;
+
+import androidx.sqlite.db.SupportSQLiteStatement;
+
+import java.io.IOException;
+
+/**
+ * Compiled statement recording the duration of its executions in the {@link DatabaseMetrics}.
+ */
+class InstrumentedStatement implements SupportSQLiteStatement {
+
+    private final SupportSQLiteStatement delegate;
+    private final DatabaseMetrics metrics;
+    private final String sql;
+
+    /**
+     * Constructor.
+     *
+     * @param delegate the actual statement.
+     * @param metrics  the metrics to record to.
+     * @param sql      the sql of the statement.
+     */
+    InstrumentedStatement(SupportSQLiteStatement delegate, DatabaseMetrics metrics, String sql) {
+        this.delegate = delegate;
+        this.metrics = metrics;
+        this.sql = sql;
+    }
+
+    @Override
+    public void execute() {
+        long start = System.nanoTime();
+        delegate.execute();
+        metrics.recordQuery(sql, System.nanoTime() - start, 0);
+    }
+
+    @Override
+    public int executeUpdateDelete() {
+        long start = System.nanoTime();
+        int rows = delegate.executeUpdateDelete();
+        metrics.recordQuery(sql, System.nanoTime() - start, rows);
+        return rows;
+    }
+
+    @Override
+    public long executeInsert() {
+        long start = System.nanoTime();
+        long rowId = delegate.executeInsert();
+        metrics.recordQuery(sql, System.nanoTime() - start, rowId != -1 ? 1 : 0);
+        return rowId;
+    }
+
+    @Override
+    public long simpleQueryForLong() {
+        long start = System.nanoTime();
+        long result = delegate.simpleQueryForLong();
+        metrics.recordQuery(sql, System.nanoTime() - start, 1);
+        return result;
+    }
+
+    @Override
+    public String simpleQueryForString() {
+        long start = System.nanoTime();
+        String result = delegate.simpleQueryForString();
+        metrics.recordQuery(sql, System.nanoTime() - start, 1);
+        return result;
+    }
+
+    @Override
+    public void bindNull(int index) {
+        delegate.bindNull(index);
+    }
+
+    @Override
+    public void bindLong(int index, long value) {
+        delegate.bindLong(index, value);
+    }
+
+    @Override
+    public void bindDouble(int index, double value) {
+        delegate.bindDouble(index, value);
+    }
+
+    @Override
+    public void bindString(int index, String value) {
+        delegate.bindString(index, value);
+    }
+
+    @Override
+    public void bindBlob(int index, byte[] value) {
+        delegate.bindBlob(index, value);
+    }
+
+    @Override
+    public void clearBindings() {
+        delegate.clearBindings();
+    }
+
+    @Override
+    public void close() throws IOException {
+        delegate.close();
+    }
+}
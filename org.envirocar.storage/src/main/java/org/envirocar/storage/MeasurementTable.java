@@ -21,15 +21,20 @@ package org.envirocar.storage;
 import android.content.ContentValues;
 import android.database.Cursor;
 
+import androidx.sqlite.db.SupportSQLiteDatabase;
+import androidx.sqlite.db.SupportSQLiteStatement;
+
+import org.envirocar.core.entity.CompactMeasurement;
 import org.envirocar.core.entity.Measurement;
-import org.envirocar.core.entity.MeasurementImpl;
 import org.envirocar.core.entity.Track;
+import org.envirocar.core.entity.TrackColumns;
 import org.envirocar.core.logging.Logger;
 import org.json.JSONArray;
 import org.json.JSONException;
 import org.json.JSONObject;
 
 import java.util.ArrayList;
+import java.util.EnumMap;
 import java.util.List;
 import java.util.Map;
 
@@ -60,69 +65,315 @@ class MeasurementTable {
                     KEY_PROPERTIES + " BLOB, " +
                     KEY_TRACK + " INTEGER);";
 
+    protected static final String CREATE_INDEX_TRACK_TIME =
+            "CREATE INDEX IF NOT EXISTS " + TABLE_NAME + "_track_time ON " + TABLE_NAME +
+                    " (" + KEY_TRACK + ", " + KEY_TIME + ");";
+
     protected static final String DELETE =
             "DROP TABLE IF EXISTS " + TABLE_NAME;
 
+    private static final int INSERT_COLUMNS = 5;
+
+    protected static final String INSERT =
+            "INSERT OR FAIL INTO " + TABLE_NAME + " (" +
+                    KEY_LATITUDE + ", " +
+                    KEY_LONGITUDE + ", " +
+                    KEY_TIME + ", " +
+                    KEY_TRACK + ", " +
+                    KEY_PROPERTIES + ") VALUES (?, ?, ?, ?, ?)";
+
     protected static final Function<Cursor, Measurement> MAPPER = cursor -> fromCursor(cursor);
 
+    private static final Measurement.PropertyKey[] PROPERTY_KEYS = Measurement.PropertyKey.values();
+
     public static ContentValues toContentValues(Measurement measurement) {
         ContentValues values = new ContentValues();
         values.put(KEY_LATITUDE, measurement.getLatitude());
         values.put(KEY_LONGITUDE, measurement.getLongitude());
         values.put(KEY_TIME, measurement.getTime());
         values.put(KEY_TRACK, measurement.getTrackId().getId());
-        values.put(KEY_PROPERTIES, createPropertiesString(measurement));
+        values.put(KEY_PROPERTIES, encodeProperties(measurement.getAllProperties()));
         return values;
     }
 
-    private static String createPropertiesString(Measurement measurement) {
-        JSONObject result = new JSONObject();
-        Map<Measurement.PropertyKey, Double> properties = measurement.getAllProperties();
-        for (Measurement.PropertyKey key : properties.keySet()) {
-            try {
-                result.put(key.name(), properties.get(key));
-            } catch (JSONException e) {
-                LOG.warn("Error while parsing measurement property " + key.name() + "=" + properties.get(key) + "; " + e.getMessage());
+    /**
+     * Binds the values of a measurement to a statement compiled from {@link #INSERT}.
+     *
+     * @param statement   the compiled insert statement.
+     * @param measurement the measurement to bind.
+     */
+    public static void bindInsert(SupportSQLiteStatement statement, Measurement measurement) {
+        bindInsert(statement, 0, measurement);
+    }
+
+    /**
+     * Binds the values of a measurement to the given row of a statement compiled from
+     * {@link #createBulkInsert(int)}.
+     *
+     * @param statement   the compiled insert statement.
+     * @param row         the row index within the statement.
+     * @param measurement the measurement to bind.
+     */
+    public static void bindInsert(SupportSQLiteStatement statement, int row, Measurement measurement) {
+        int offset = row * INSERT_COLUMNS;
+        Double latitude = measurement.getLatitude();
+        Double longitude = measurement.getLongitude();
+        if (latitude != null) {
+            statement.bindDouble(offset + 1, latitude);
+        } else {
+            statement.bindNull(offset + 1);
+        }
+        if (longitude != null) {
+            statement.bindDouble(offset + 2, longitude);
+        } else {
+            statement.bindNull(offset + 2);
+        }
+        statement.bindLong(offset + 3, measurement.getTime());
+        statement.bindLong(offset + 4, measurement.getTrackId().getId());
+        statement.bindBlob(offset + 5, encodeProperties(measurement.getAllProperties()));
+    }
+
+    /**
+     * Creates a multi-row insert statement, i.e. INSERT ... VALUES (...), (...).
+     *
+     * @param rows the number of rows to insert with one statement.
+     * @return the SQL of the statement.
+     */
+    static String createBulkInsert(int rows) {
+        StringBuilder sql = new StringBuilder(INSERT);
+        for (int i = 1; i < rows; i++) {
+            sql.append(", (?, ?, ?, ?, ?)");
+        }
+        return sql.toString();
+    }
+
+    /**
+     * Checks whether a property value gets persisted. Missing and non-finite values are skipped
+     * by all encodings of measurement properties.
+     *
+     * @param value the property value.
+     * @return true if the value is stored.
+     */
+    static boolean isStorable(Double value) {
+        return value != null && !value.isNaN() && !value.isInfinite();
+    }
+
+    /**
+     * Encodes the properties of a measurement into the compact binary format stored in the
+     * properties column: a bitmask over the {@link Measurement.PropertyKey} ordinals (8 bytes,
+     * big endian) followed by the raw bits of each present value in ordinal order. Non-finite
+     * values are skipped. New property keys therefore must be appended to the enum.
+     *
+     * @param properties the properties to encode.
+     * @return the encoded properties.
+     */
+    static byte[] encodeProperties(Map<Measurement.PropertyKey, Double> properties) {
+        long mask = 0L;
+        int count = 0;
+        for (Map.Entry<Measurement.PropertyKey, Double> entry : properties.entrySet()) {
+            Double value = entry.getValue();
+            if (isStorable(value)) {
+                mask |= 1L << entry.getKey().ordinal();
+                count++;
+            }
+        }
+
+        byte[] result = new byte[8 + count * 8];
+        writeLong(result, 0, mask);
+        int offset = 8;
+        for (Measurement.PropertyKey key : PROPERTY_KEYS) {
+            if ((mask & (1L << key.ordinal())) != 0) {
+                writeLong(result, offset, Double.doubleToRawLongBits(properties.get(key)));
+                offset += 8;
             }
         }
-        return result.toString();
+        return result;
+    }
+
+    /**
+     * Decodes properties that have been encoded by {@link #encodeProperties(Map)} directly into
+     * the given measurement.
+     *
+     * @param data        the encoded properties.
+     * @param measurement the measurement to set the properties for.
+     */
+    static void decodeProperties(byte[] data, Measurement measurement) {
+        if (data == null || data.length < 8)
+            return;
+
+        long mask = readLong(data, 0);
+        int offset = 8;
+        while (mask != 0 && offset + 8 <= data.length) {
+            int ordinal = Long.numberOfTrailingZeros(mask);
+            mask &= mask - 1;
+            if (ordinal >= PROPERTY_KEYS.length) {
+                LOG.warn("Unknown measurement property ordinal " + ordinal);
+                break;
+            }
+            measurement.setProperty(PROPERTY_KEYS[ordinal],
+                    Double.longBitsToDouble(readLong(data, offset)));
+            offset += 8;
+        }
+    }
+
+    /**
+     * Decodes properties that have been encoded by {@link #encodeProperties(Map)} directly into
+     * the current row of the given columns.
+     *
+     * @param data    the encoded properties.
+     * @param builder the columns to set the properties for.
+     */
+    static void decodeProperties(byte[] data, TrackColumns.Builder builder) {
+        if (data == null || data.length < 8)
+            return;
+
+        long mask = readLong(data, 0);
+        int offset = 8;
+        while (mask != 0 && offset + 8 <= data.length) {
+            int ordinal = Long.numberOfTrailingZeros(mask);
+            mask &= mask - 1;
+            if (ordinal >= PROPERTY_KEYS.length) {
+                LOG.warn("Unknown measurement property ordinal " + ordinal);
+                break;
+            }
+            builder.setValue(PROPERTY_KEYS[ordinal],
+                    Double.longBitsToDouble(readLong(data, offset)));
+            offset += 8;
+        }
+    }
+
+    /**
+     * Decodes properties in the legacy JSON format, i.e. prior to database version 12.
+     *
+     * @param rawData the JSON string.
+     * @return the decoded properties.
+     */
+    static Map<Measurement.PropertyKey, Double> decodeLegacyProperties(String rawData) {
+        Map<Measurement.PropertyKey, Double> result = new EnumMap<>(Measurement.PropertyKey.class);
+        try {
+            JSONObject json = new JSONObject(rawData);
+            JSONArray names = json.names();
+            if (names != null) {
+                for (int j = 0; j < names.length(); j++) {
+                    String key = names.getString(j);
+                    result.put(Measurement.PropertyKey.valueOf(key), json.getDouble(key));
+                }
+            }
+        } catch (JSONException | IllegalArgumentException e) {
+            LOG.severe("could not load properties", e);
+        }
+        return result;
+    }
+
+    /**
+     * Converts all measurement properties stored as JSON into the binary format.
+     *
+     * @param db the database to migrate.
+     */
+    static void migrateToBinaryProperties(SupportSQLiteDatabase db) {
+        LOG.info("Migrating measurement properties to the binary format");
+        SupportSQLiteStatement update = db.compileStatement(
+                "UPDATE " + TABLE_NAME + " SET " + KEY_PROPERTIES + "=? WHERE " + KEY_ROWID + "=?");
+
+        Cursor c = db.query("SELECT " + KEY_ROWID + ", " + KEY_PROPERTIES + " FROM " + TABLE_NAME);
+        try {
+            while (c.moveToNext()) {
+                String rawData = c.isNull(1) ? "{}" : c.getString(1);
+                update.bindBlob(1, encodeProperties(decodeLegacyProperties(rawData)));
+                update.bindLong(2, c.getLong(0));
+                update.executeUpdateDelete();
+                update.clearBindings();
+            }
+        } finally {
+            c.close();
+        }
     }
 
     public static List<Measurement> fromCursorToList(Cursor c) {
-        List<Measurement> res = new ArrayList<>();
+        List<Measurement> res = new ArrayList<>(c.getCount());
+
+        int latitudeIndex = c.getColumnIndex(KEY_LATITUDE);
+        int longitudeIndex = c.getColumnIndex(KEY_LONGITUDE);
+        int timeIndex = c.getColumnIndex(KEY_TIME);
+        int trackIndex = c.getColumnIndex(KEY_TRACK);
+        int propertiesIndex = c.getColumnIndex(KEY_PROPERTIES);
 
-        c.moveToFirst();
-        for (int i = 1; c.moveToNext(); i++) {
-            res.add(fromCursor(c));
+        Track.TrackId trackId = null;
+        c.moveToPosition(-1);
+        while (c.moveToNext()) {
+            long track = c.getLong(trackIndex);
+            if (trackId == null || trackId.getId() != track) {
+                trackId = new Track.TrackId(track);
+            }
+            res.add(fromCursor(c, latitudeIndex, longitudeIndex, timeIndex, trackId,
+                    propertiesIndex));
         }
 
         return res;
     }
 
-    public static Measurement fromCursor(Cursor c) {
-        Measurement measurement = new MeasurementImpl();
-        measurement.setLatitude(c.getDouble(c.getColumnIndex(KEY_LATITUDE)));
-        measurement.setLongitude(c.getDouble(c.getColumnIndex(KEY_LONGITUDE)));
-        measurement.setTime(c.getLong(c.getColumnIndex(KEY_TIME)));
-        measurement.setTrackId(new Track.TrackId(
-                c.getLong(c.getColumnIndex(KEY_TRACK))));
-
-        String rawData = c.getString(c.getColumnIndex(KEY_PROPERTIES));
-        if (rawData != null) {
-            try {
-                JSONObject json = new JSONObject(rawData);
-                JSONArray names = json.names();
-                if (names != null) {
-                    for (int j = 0; j < names.length(); j++) {
-                        String key = names.getString(j);
-                        measurement.setProperty(Measurement.PropertyKey.valueOf(key), json
-                                .getDouble(key));
-                    }
-                }
-            } catch (JSONException e) {
-                LOG.severe("could not load properties", e);
+    /**
+     * Reads the rows of the cursor into columns without creating a measurement per row.
+     *
+     * @param c the cursor over measurement rows ordered by time.
+     * @return the columns of the rows.
+     */
+    public static TrackColumns fromCursorToColumns(Cursor c) {
+        TrackColumns.Builder builder = new TrackColumns.Builder(c.getCount());
+
+        int latitudeIndex = c.getColumnIndex(KEY_LATITUDE);
+        int longitudeIndex = c.getColumnIndex(KEY_LONGITUDE);
+        int timeIndex = c.getColumnIndex(KEY_TIME);
+        int propertiesIndex = c.getColumnIndex(KEY_PROPERTIES);
+
+        c.moveToPosition(-1);
+        while (c.moveToNext()) {
+            builder.addRow(c.getLong(timeIndex));
+            builder.setPosition(c.getDouble(latitudeIndex), c.getDouble(longitudeIndex));
+            if (!c.isNull(propertiesIndex)) {
+                decodeProperties(c.getBlob(propertiesIndex), builder);
             }
         }
+
+        return builder.build();
+    }
+
+    public static Measurement fromCursor(Cursor c) {
+        return fromCursor(c,
+                c.getColumnIndex(KEY_LATITUDE),
+                c.getColumnIndex(KEY_LONGITUDE),
+                c.getColumnIndex(KEY_TIME),
+                new Track.TrackId(c.getLong(c.getColumnIndex(KEY_TRACK))),
+                c.getColumnIndex(KEY_PROPERTIES));
+    }
+
+    private static Measurement fromCursor(Cursor c, int latitudeIndex, int longitudeIndex,
+                                          int timeIndex, Track.TrackId trackId,
+                                          int propertiesIndex) {
+        Measurement measurement = new CompactMeasurement();
+        measurement.setLatitude(c.getDouble(latitudeIndex));
+        measurement.setLongitude(c.getDouble(longitudeIndex));
+        measurement.setTime(c.getLong(timeIndex));
+        measurement.setTrackId(trackId);
+
+        if (!c.isNull(propertiesIndex)) {
+            decodeProperties(c.getBlob(propertiesIndex), measurement);
+        }
         return measurement;
     }
+
+    private static void writeLong(byte[] target, int offset, long value) {
+        for (int i = 7; i >= 0; i--) {
+            target[offset + i] = (byte) value;
+            value >>>= 8;
+        }
+    }
+
+    private static long readLong(byte[] source, int offset) {
+        long value = 0L;
+        for (int i = 0; i < 8; i++) {
+            value = (value << 8) | (source[offset + i] & 0xFF);
+        }
+        return value;
+    }
 }
@@ -0,0 +1,184 @@
+/**
+ * Copyright (C) 2013 - 2019 the enviroCar community
+ *
+ * This file is part of the enviroCar app.
+ *
+ * The enviroCar app is free software: you can redistribute it and/or
+ * modify it under the terms of the GNU General Public License as published
+ * by the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * The enviroCar app is distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU General
+ * Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License along
+ * with the enviroCar app. If not, see http://www.gnu.org/licenses/.
+ */
+package org.envirocar.storage;
+
+import android.database.Cursor;
+import android.database.sqlite.SQLiteDatabase;
+
+import com.squareup.sqlbrite3.BriteDatabase;
+
+import org.envirocar.core.entity.Measurement;
+import org.envirocar.core.entity.Track;
+import org.envirocar.core.logging.Logger;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.Callable;
+
+import io.reactivex.Emitter;
+import io.reactivex.Flowable;
+
+/**
+ * Reads and writes the archived measurements of finished tracks, see {@link TrackArchiveTable}.
+ */
+class TrackArchive {
+    private static final Logger LOG = Logger.getLogger(TrackArchive.class);
+
+    private final BriteDatabase briteDatabase;
+
+    /**
+     * Constructor.
+     *
+     * @param briteDatabase the database instance.
+     */
+    TrackArchive(BriteDatabase briteDatabase) {
+        this.briteDatabase = briteDatabase;
+    }
+
+    boolean isArchived(Track.TrackId trackId) {
+        Cursor cursor = briteDatabase.query(
+                "SELECT COUNT(*) FROM " + TrackArchiveTable.TABLE_NAME +
+                        " WHERE " + TrackArchiveTable.KEY_TRACK + "=?",
+                trackId.getId());
+        try {
+            return cursor.moveToFirst() && cursor.getInt(0) > 0;
+        } finally {
+            cursor.close();
+        }
+    }
+
+    /**
+     * Writes the given measurements as archive chunks. Has to be called within a transaction.
+     *
+     * @param trackId      the id of the track.
+     * @param measurements the measurements of the track ordered by time.
+     */
+    void write(Track.TrackId trackId, List<Measurement> measurements) {
+        int chunk = 0;
+        for (int from = 0; from < measurements.size(); from += TrackArchiveTable.CHUNK_SIZE) {
+            int to = Math.min(from + TrackArchiveTable.CHUNK_SIZE, measurements.size());
+            byte[] data = TrackArchiveCodec.encode(measurements, from, to);
+            briteDatabase.insert(TrackArchiveTable.TABLE_NAME, SQLiteDatabase.CONFLICT_REPLACE,
+                    TrackArchiveTable.toContentValues(trackId.getId(), chunk++,
+                            measurements.get(from).getTime(), measurements.get(to - 1).getTime(),
+                            to - from, data));
+        }
+        LOG.info(String.format("Archived %s measurements of track %s in %s chunks",
+                measurements.size(), trackId, chunk));
+    }
+
+    /**
+     * Decodes all archived measurements of a track.
+     *
+     * @param trackId the id of the track.
+     * @return the measurements ordered by time.
+     */
+    List<Measurement> read(Track.TrackId trackId) {
+        List<Measurement> result = new ArrayList<>();
+        Cursor cursor = queryChunks(trackId);
+        try {
+            while (cursor.moveToNext()) {
+                result.addAll(decodeChunk(cursor, trackId));
+            }
+        } finally {
+            cursor.close();
+        }
+        return result;
+    }
+
+    /**
+     * Streams the archived measurements of a track, decoding one chunk at a time.
+     *
+     * @param trackId the id of the track.
+     * @return the measurements ordered by time.
+     */
+    Flowable<Measurement> stream(Track.TrackId trackId) {
+        return streamChunks(() -> queryChunks(trackId), trackId);
+    }
+
+    /**
+     * Streams the archived measurements of a track within a time window. Only the chunks
+     * overlapping the window are read and decoded.
+     *
+     * @param trackId   the id of the track.
+     * @param startTime the inclusive start of the window.
+     * @param endTime   the exclusive end of the window.
+     * @return the measurements within the window ordered by time.
+     */
+    Flowable<Measurement> stream(Track.TrackId trackId, long startTime, long endTime) {
+        return streamChunks(() -> queryChunks(trackId, startTime, endTime), trackId)
+                // the first and the last chunk may exceed the window
+                .skipWhile(measurement -> measurement.getTime() < startTime)
+                .takeWhile(measurement -> measurement.getTime() < endTime);
+    }
+
+    private Flowable<Measurement> streamChunks(Callable<Cursor> query, Track.TrackId trackId) {
+        return Flowable.generate(
+                query,
+                (Cursor cursor, Emitter<List<Measurement>> emitter) -> {
+                    if (cursor.moveToNext()) {
+                        emitter.onNext(decodeChunk(cursor, trackId));
+                    } else {
+                        emitter.onComplete();
+                    }
+                },
+                Cursor::close)
+                .concatMapIterable(measurements -> measurements, 1);
+    }
+
+    void delete(Track.TrackId trackId) {
+        briteDatabase.delete(TrackArchiveTable.TABLE_NAME,
+                TrackArchiveTable.KEY_TRACK + "=?", Long.toString(trackId.getId()));
+    }
+
+    private Cursor queryChunks(Track.TrackId trackId) {
+        return briteDatabase.query(
+                "SELECT " + TrackArchiveTable.KEY_DATA +
+                        " FROM " + TrackArchiveTable.TABLE_NAME +
+                        " WHERE " + TrackArchiveTable.KEY_TRACK + "=?" +
+                        " ORDER BY " + TrackArchiveTable.KEY_CHUNK + " ASC",
+                trackId.getId());
+    }
+
+    /**
+     * @return the chunks of the track overlapping the window, ordered by time.
+     */
+    Cursor queryChunks(Track.TrackId trackId, long startTime, long endTime) {
+        // the times are bound as numbers, like the times of the measurement rows
+        return briteDatabase.query(
+                "SELECT " + TrackArchiveTable.KEY_DATA +
+                        " FROM " + TrackArchiveTable.TABLE_NAME +
+                        " WHERE " + TrackArchiveTable.KEY_TRACK + "=?" +
+                        " AND " + TrackArchiveTable.KEY_END_TIME + ">=?" +
+                        " AND " + TrackArchiveTable.KEY_START_TIME + "<?" +
+                        " ORDER BY " + TrackArchiveTable.KEY_CHUNK + " ASC",
+                trackId.getId(), startTime, endTime);
+    }
+
+    private List<Measurement> decodeChunk(Cursor cursor, Track.TrackId trackId) {
+        try {
+            return TrackArchiveCodec.decode(cursor.getBlob(0), trackId);
+        } catch (IOException e) {
+            LOG.error(String.format("Unable to decode archived measurements of track %s", trackId), e);
+            return Collections.emptyList();
+        }
+    }
+}
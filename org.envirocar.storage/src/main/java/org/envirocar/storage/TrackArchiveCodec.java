@@ -0,0 +1,215 @@
+/**
+ * Copyright (C) 2013 - 2019 the enviroCar community
+ *
+ * This file is part of the enviroCar app.
+ *
+ * The enviroCar app is free software: you can redistribute it and/or
+ * modify it under the terms of the GNU General Public License as published
+ * by the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * The enviroCar app is distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU General
+ * Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License along
+ * with the enviroCar app. If not, see http://www.gnu.org/licenses/.
+ */
+package org.envirocar.storage;
+
+import org.envirocar.core.entity.CompactMeasurement;
+import org.envirocar.core.entity.Measurement;
+import org.envirocar.core.entity.Track;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.zip.DeflaterOutputStream;
+import java.util.zip.InflaterInputStream;
+
+/**
+ * Codec for the archive format of finished tracks. A chunk of measurements is encoded as
+ * <ul>
+ * <li>a format version byte and the number of measurements,</li>
+ * <li>per measurement the zigzag varint coded time delta to the previous measurement, a varint
+ * property mask (bit 63 indicating a position), fixed-point (1e-7 degree) latitude/longitude
+ * deltas and per property the varint coded XOR of the value bits with the previous value of the
+ * same property (bit-reversed, so that similar values result in short varints).</li>
+ * </ul>
+ * Like the properties column of the {@link MeasurementTable}, non-finite values are skipped.
+ * The result is deflated as a whole.
+ */
+final class TrackArchiveCodec {
+    private static final int VERSION = 1;
+    private static final double COORDINATE_SCALE = 1e7;
+    private static final long POSITION_FLAG = 1L << 63;
+    private static final Measurement.PropertyKey[] PROPERTY_KEYS = Measurement.PropertyKey.values();
+
+    private TrackArchiveCodec() {
+        // no instance required.
+    }
+
+    /**
+     * Encodes the measurements within [from, to) of the given list.
+     *
+     * @param measurements the measurements ordered by time.
+     * @param from         the index of the first measurement to encode.
+     * @param to           the index after the last measurement to encode.
+     * @return the compressed chunk.
+     */
+    static byte[] encode(List<Measurement> measurements, int from, int to) {
+        try {
+            ByteArrayOutputStream out = new ByteArrayOutputStream();
+            out.write(VERSION);
+            writeVarLong(out, to - from);
+
+            long previousTime = 0;
+            long previousLatitude = 0;
+            long previousLongitude = 0;
+            long[] previousValues = new long[PROPERTY_KEYS.length];
+
+            for (int i = from; i < to; i++) {
+                Measurement measurement = measurements.get(i);
+                writeVarLong(out, zigzag(measurement.getTime() - previousTime));
+                previousTime = measurement.getTime();
+
+                Map<Measurement.PropertyKey, Double> properties = measurement.getAllProperties();
+                long mask = 0L;
+                for (Map.Entry<Measurement.PropertyKey, Double> entry : properties.entrySet()) {
+                    if (MeasurementTable.isStorable(entry.getValue())) {
+                        mask |= 1L << entry.getKey().ordinal();
+                    }
+                }
+                boolean hasPosition = measurement.getLatitude() != null && measurement.getLongitude() != null;
+                writeVarLong(out, hasPosition ? mask | POSITION_FLAG : mask);
+
+                if (hasPosition) {
+                    long latitude = Math.round(measurement.getLatitude() * COORDINATE_SCALE);
+                    long longitude = Math.round(measurement.getLongitude() * COORDINATE_SCALE);
+                    writeVarLong(out, zigzag(latitude - previousLatitude));
+                    writeVarLong(out, zigzag(longitude - previousLongitude));
+                    previousLatitude = latitude;
+                    previousLongitude = longitude;
+                }
+
+                while (mask != 0) {
+                    int ordinal = Long.numberOfTrailingZeros(mask);
+                    mask &= mask - 1;
+                    long bits = Double.doubleToRawLongBits(properties.get(PROPERTY_KEYS[ordinal]));
+                    writeVarLong(out, Long.reverse(bits ^ previousValues[ordinal]));
+                    previousValues[ordinal] = bits;
+                }
+            }
+
+            ByteArrayOutputStream compressed = new ByteArrayOutputStream();
+            DeflaterOutputStream deflater = new DeflaterOutputStream(compressed);
+            out.writeTo(deflater);
+            deflater.close();
+            return compressed.toByteArray();
+        } catch (IOException e) {
+            // cannot happen on in-memory streams.
+            throw new IllegalStateException(e);
+        }
+    }
+
+    /**
+     * Decodes a chunk that has been encoded by {@link #encode(List, int, int)}.
+     *
+     * @param data    the compressed chunk.
+     * @param trackId the id of the track the measurements belong to.
+     * @return the decoded measurements.
+     * @throws IOException if the chunk is corrupt.
+     */
+    static List<Measurement> decode(byte[] data, Track.TrackId trackId) throws IOException {
+        ByteArrayOutputStream inflated = new ByteArrayOutputStream(data.length * 4);
+        InputStream inflater = new InflaterInputStream(new ByteArrayInputStream(data));
+        try {
+            byte[] buffer = new byte[4096];
+            for (int read; (read = inflater.read(buffer)) > 0; ) {
+                inflated.write(buffer, 0, read);
+            }
+        } finally {
+            inflater.close();
+        }
+
+        InputStream in = new ByteArrayInputStream(inflated.toByteArray());
+        int version = in.read();
+        if (version != VERSION) {
+            throw new IOException("Unsupported track archive version " + version);
+        }
+
+        int count = (int) readVarLong(in);
+        List<Measurement> result = new ArrayList<>(count);
+
+        long time = 0;
+        long latitude = 0;
+        long longitude = 0;
+        long[] values = new long[PROPERTY_KEYS.length];
+
+        for (int i = 0; i < count; i++) {
+            Measurement measurement = new CompactMeasurement();
+            measurement.setTrackId(trackId);
+            time += unzigzag(readVarLong(in));
+            measurement.setTime(time);
+
+            long mask = readVarLong(in);
+            if ((mask & POSITION_FLAG) != 0) {
+                latitude += unzigzag(readVarLong(in));
+                longitude += unzigzag(readVarLong(in));
+                measurement.setLatitude(latitude / COORDINATE_SCALE);
+                measurement.setLongitude(longitude / COORDINATE_SCALE);
+                mask &= ~POSITION_FLAG;
+            }
+
+            while (mask != 0) {
+                int ordinal = Long.numberOfTrailingZeros(mask);
+                mask &= mask - 1;
+                if (ordinal >= PROPERTY_KEYS.length) {
+                    throw new IOException("Unknown measurement property ordinal " + ordinal);
+                }
+                values[ordinal] ^= Long.reverse(readVarLong(in));
+                measurement.setProperty(PROPERTY_KEYS[ordinal], Double.longBitsToDouble(values[ordinal]));
+            }
+            result.add(measurement);
+        }
+        return result;
+    }
+
+    private static long zigzag(long value) {
+        return (value << 1) ^ (value >> 63);
+    }
+
+    private static long unzigzag(long value) {
+        return (value >>> 1) ^ -(value & 1);
+    }
+
+    private static void writeVarLong(OutputStream out, long value) throws IOException {
+        while ((value & ~0x7FL) != 0) {
+            out.write((int) ((value & 0x7F) | 0x80));
+            value >>>= 7;
+        }
+        out.write((int) value);
+    }
+
+    private static long readVarLong(InputStream in) throws IOException {
+        long result = 0;
+        for (int shift = 0; shift < 64; shift += 7) {
+            int b = in.read();
+            if (b < 0) {
+                throw new EOFException("Unexpected end of track archive");
+            }
+            result |= (long) (b & 0x7F) << shift;
+            if ((b & 0x80) == 0) {
+                return result;
+            }
+        }
+        throw new IOException("Malformed varint in track archive");
+    }
+}
@@ -0,0 +1,65 @@
+/**
+ * Copyright (C) 2013 - 2019 the enviroCar community
+ *
+ * This file is part of the enviroCar app.
+ *
+ * The enviroCar app is free software: you can redistribute it and/or
+ * modify it under the terms of the GNU General Public License as published
+ * by the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * The enviroCar app is distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU General
+ * Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License along
+ * with the enviroCar app. If not, see http://www.gnu.org/licenses/.
+ */
+package org.envirocar.storage;
+
+import android.content.ContentValues;
+
+/**
+ * Table holding the measurements of finished tracks in the compressed archive format of
+ * {@link TrackArchiveCodec}, one row per chunk of measurements.
+ */
+class TrackArchiveTable {
+
+    public static final String TABLE_NAME = "track_archive";
+    public static final String KEY_TRACK = "track";
+    public static final String KEY_CHUNK = "chunk";
+    public static final String KEY_START_TIME = "start_time";
+    public static final String KEY_END_TIME = "end_time";
+    public static final String KEY_COUNT = "count";
+    public static final String KEY_DATA = "data";
+
+    /**
+     * Number of measurements per chunk, which keeps a chunk far below the cursor window size.
+     */
+    public static final int CHUNK_SIZE = 4096;
+
+    protected static final String CREATE =
+            "create table " + TABLE_NAME + " (" +
+                    KEY_TRACK + " INTEGER, " +
+                    KEY_CHUNK + " INTEGER, " +
+                    KEY_START_TIME + " INTEGER, " +
+                    KEY_END_TIME + " INTEGER, " +
+                    KEY_COUNT + " INTEGER, " +
+                    KEY_DATA + " BLOB, " +
+                    "PRIMARY KEY (" + KEY_TRACK + ", " + KEY_CHUNK + "));";
+
+    protected static final String DELETE = "DROP TABLE IF EXISTS " + TABLE_NAME;
+
+    public static ContentValues toContentValues(long trackId, int chunk, long startTime,
+                                                long endTime, int count, byte[] data) {
+        ContentValues values = new ContentValues();
+        values.put(KEY_TRACK, trackId);
+        values.put(KEY_CHUNK, chunk);
+        values.put(KEY_START_TIME, startTime);
+        values.put(KEY_END_TIME, endTime);
+        values.put(KEY_COUNT, count);
+        values.put(KEY_DATA, data);
+        return values;
+    }
+}
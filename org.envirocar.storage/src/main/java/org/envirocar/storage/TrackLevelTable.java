@@ -0,0 +1,53 @@
+/**
+ * Copyright (C) 2013 - 2019 the enviroCar community
+ *
+ * This file is part of the enviroCar app.
+ *
+ * The enviroCar app is free software: you can redistribute it and/or
+ * modify it under the terms of the GNU General Public License as published
+ * by the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * The enviroCar app is distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU General
+ * Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License along
+ * with the enviroCar app. If not, see http://www.gnu.org/licenses/.
+ */
+package org.envirocar.storage;
+
+import android.content.ContentValues;
+
+/**
+ * Table holding the downsampled levels of detail of finished tracks. Each level is stored in the
+ * format of {@link TrackArchiveCodec}.
+ */
+class TrackLevelTable {
+
+    public static final String TABLE_NAME = "track_levels";
+    public static final String KEY_TRACK = "track";
+    public static final String KEY_LEVEL = "level";
+    public static final String KEY_COUNT = "count";
+    public static final String KEY_DATA = "data";
+
+    protected static final String CREATE =
+            "create table " + TABLE_NAME + " (" +
+                    KEY_TRACK + " INTEGER, " +
+                    KEY_LEVEL + " INTEGER, " +
+                    KEY_COUNT + " INTEGER, " +
+                    KEY_DATA + " BLOB, " +
+                    "PRIMARY KEY (" + KEY_TRACK + ", " + KEY_LEVEL + "));";
+
+    protected static final String DELETE = "DROP TABLE IF EXISTS " + TABLE_NAME;
+
+    public static ContentValues toContentValues(long trackId, int level, int count, byte[] data) {
+        ContentValues values = new ContentValues();
+        values.put(KEY_TRACK, trackId);
+        values.put(KEY_LEVEL, level);
+        values.put(KEY_COUNT, count);
+        values.put(KEY_DATA, data);
+        return values;
+    }
+}
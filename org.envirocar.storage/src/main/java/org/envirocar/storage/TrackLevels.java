@@ -0,0 +1,231 @@
+/**
+ * Copyright (C) 2013 - 2019 the enviroCar community
+ *
+ * This file is part of the enviroCar app.
+ *
+ * The enviroCar app is free software: you can redistribute it and/or
+ * modify it under the terms of the GNU General Public License as published
+ * by the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * The enviroCar app is distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU General
+ * Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License along
+ * with the enviroCar app. If not, see http://www.gnu.org/licenses/.
+ */
+package org.envirocar.storage;
+
+import android.database.Cursor;
+import android.database.sqlite.SQLiteDatabase;
+
+import com.squareup.sqlbrite3.BriteDatabase;
+
+import org.envirocar.core.entity.Measurement;
+import org.envirocar.core.entity.Track;
+import org.envirocar.core.logging.Logger;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Builds and reads the levels of detail of finished tracks, see {@link TrackLevelTable}. Every
+ * level reduces the number of measurements of the previous level by {@link #LEVEL_FACTOR}:
+ * <ul>
+ * <li>the coordinates are simplified by selecting the measurement of each bucket that spans the
+ * largest triangle with its neighbours (largest-triangle-three-buckets), which preserves the
+ * shape of the track,</li>
+ * <li>the property values of two consecutive buckets are replaced by their minimum and maximum,
+ * in the order of their occurrence, such that peaks remain visible in charts.</li>
+ * </ul>
+ */
+class TrackLevels {
+    private static final Logger LOG = Logger.getLogger(TrackLevels.class);
+
+    static final int LEVEL_FACTOR = 4;
+    static final int MAX_LEVELS = 3;
+    static final int MIN_LEVEL_SIZE = 64;
+
+    private static final Measurement.PropertyKey[] PROPERTY_KEYS = Measurement.PropertyKey.values();
+
+    private final BriteDatabase briteDatabase;
+
+    /**
+     * Constructor.
+     *
+     * @param briteDatabase the database instance.
+     */
+    TrackLevels(BriteDatabase briteDatabase) {
+        this.briteDatabase = briteDatabase;
+    }
+
+    /**
+     * Builds and writes the levels of a track, i.e. 1/4, 1/16 and 1/64 of the measurements as
+     * long as a level holds at least {@link #MIN_LEVEL_SIZE} measurements. Has to be called
+     * within a transaction.
+     *
+     * @param trackId      the id of the track.
+     * @param measurements the measurements of the track ordered by time.
+     */
+    void write(Track.TrackId trackId, List<Measurement> measurements) {
+        delete(trackId);
+
+        List<Measurement> source = measurements;
+        int level = 1;
+        for (; level <= MAX_LEVELS && source.size() / LEVEL_FACTOR >= MIN_LEVEL_SIZE; level++) {
+            source = downsample(source, LEVEL_FACTOR);
+            briteDatabase.insert(TrackLevelTable.TABLE_NAME, SQLiteDatabase.CONFLICT_REPLACE,
+                    TrackLevelTable.toContentValues(trackId.getId(), level, source.size(),
+                            TrackArchiveCodec.encode(source, 0, source.size())));
+        }
+        LOG.info(String.format("Created %s levels of detail for track %s", level - 1, trackId));
+    }
+
+    /**
+     * Reads the finest level holding at most the given number of measurements, or the coarsest
+     * level if every level exceeds it.
+     *
+     * @param trackId         the id of the track.
+     * @param maxMeasurements the number of measurements the caller is able to display.
+     * @return the measurements of the level, or null if the track has no levels.
+     */
+    List<Measurement> read(Track.TrackId trackId, int maxMeasurements) {
+        Cursor cursor = briteDatabase.query(
+                "SELECT " + TrackLevelTable.KEY_DATA +
+                        " FROM " + TrackLevelTable.TABLE_NAME +
+                        " WHERE " + TrackLevelTable.KEY_TRACK + "=?" +
+                        " ORDER BY " + TrackLevelTable.KEY_COUNT + " > ? ASC," +
+                        " ABS(" + TrackLevelTable.KEY_COUNT + " - ?) ASC" +
+                        " LIMIT 1",
+                trackId.getId(), maxMeasurements, maxMeasurements);
+        try {
+            if (!cursor.moveToFirst()) {
+                return null;
+            }
+            return TrackArchiveCodec.decode(cursor.getBlob(0), trackId);
+        } catch (IOException e) {
+            LOG.error(String.format("Unable to decode level of detail of track %s", trackId), e);
+            return null;
+        } finally {
+            cursor.close();
+        }
+    }
+
+    void delete(Track.TrackId trackId) {
+        briteDatabase.delete(TrackLevelTable.TABLE_NAME,
+                TrackLevelTable.KEY_TRACK + "=?", Long.toString(trackId.getId()));
+    }
+
+    /**
+     * Reduces the given measurements by the given factor. The first and the last measurement
+     * are always kept.
+     *
+     * @param measurements the measurements ordered by time.
+     * @param factor       the reduction factor.
+     * @return copies of the selected measurements.
+     */
+    static List<Measurement> downsample(List<Measurement> measurements, int factor) {
+        int size = measurements.size();
+        List<Measurement> result = new ArrayList<>();
+        if (size <= 2 || factor <= 1) {
+            for (Measurement measurement : measurements) {
+                result.add(measurement.carbonCopy());
+            }
+            return result;
+        }
+
+        // select one measurement per bucket between the first and the last measurement.
+        int buckets = (size - 2 + factor - 1) / factor;
+        int[] selected = new int[buckets];
+        int previous = 0;
+        for (int bucket = 0; bucket < buckets; bucket++) {
+            int from = bucketStart(bucket, factor);
+            int to = bucketEnd(bucket, factor, size);
+
+            // the average of the next bucket is the third point of the triangle.
+            double nextLatitude = 0;
+            double nextLongitude = 0;
+            int nextTo = bucket + 1 < buckets ? bucketEnd(bucket + 1, factor, size) : size;
+            for (int i = to; i < nextTo; i++) {
+                nextLatitude += latitude(measurements.get(i));
+                nextLongitude += longitude(measurements.get(i));
+            }
+            nextLatitude /= nextTo - to;
+            nextLongitude /= nextTo - to;
+
+            double previousLatitude = latitude(measurements.get(previous));
+            double previousLongitude = longitude(measurements.get(previous));
+            double maxArea = -1;
+            for (int i = from; i < to; i++) {
+                Measurement measurement = measurements.get(i);
+                double area = Math.abs(
+                        (previousLatitude - nextLatitude) * (longitude(measurement) - previousLongitude) -
+                                (previousLatitude - latitude(measurement)) * (nextLongitude - previousLongitude));
+                if (area > maxArea) {
+                    maxArea = area;
+                    selected[bucket] = i;
+                }
+            }
+            previous = selected[bucket];
+        }
+
+        result.add(measurements.get(0).carbonCopy());
+        for (int bucket = 0; bucket < buckets; bucket += 2) {
+            Measurement first = measurements.get(selected[bucket]).carbonCopy();
+            result.add(first);
+            if (bucket + 1 == buckets) {
+                break;
+            }
+            Measurement second = measurements.get(selected[bucket + 1]).carbonCopy();
+            result.add(second);
+
+            // keep the extremes of both buckets in the order of their occurrence.
+            int from = bucketStart(bucket, factor);
+            int to = bucketEnd(bucket + 1, factor, size);
+            for (Measurement.PropertyKey key : PROPERTY_KEYS) {
+                int min = -1;
+                int max = -1;
+                for (int i = from; i < to; i++) {
+                    Measurement measurement = measurements.get(i);
+                    if (!measurement.hasProperty(key)) {
+                        continue;
+                    }
+                    double value = measurement.getProperty(key);
+                    if (min < 0 || value < measurements.get(min).getProperty(key)) {
+                        min = i;
+                    }
+                    if (max < 0 || value > measurements.get(max).getProperty(key)) {
+                        max = i;
+                    }
+                }
+                if (min >= 0) {
+                    first.setProperty(key, measurements.get(Math.min(min, max)).getProperty(key));
+                    second.setProperty(key, measurements.get(Math.max(min, max)).getProperty(key));
+                }
+            }
+        }
+        result.add(measurements.get(size - 1).carbonCopy());
+        return result;
+    }
+
+    private static int bucketStart(int bucket, int factor) {
+        return 1 + bucket * factor;
+    }
+
+    private static int bucketEnd(int bucket, int factor, int size) {
+        return Math.min(bucketStart(bucket + 1, factor), size - 1);
+    }
+
+    private static double latitude(Measurement measurement) {
+        Double latitude = measurement.getLatitude();
+        return latitude != null ? latitude : 0.0;
+    }
+
+    private static double longitude(Measurement measurement) {
+        Double longitude = measurement.getLongitude();
+        return longitude != null ? longitude : 0.0;
+    }
+}
@@ -0,0 +1,138 @@
+/**
+ * Copyright (C) 2013 - 2019 the enviroCar community
+ *
+ * This file is part of the enviroCar app.
+ *
+ * The enviroCar app is free software: you can redistribute it and/or
+ * modify it under the terms of the GNU General Public License as published
+ * by the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * The enviroCar app is distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU General
+ * Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License along
+ * with the enviroCar app. If not, see http://www.gnu.org/licenses/.
+ */
+package org.envirocar.storage;
+
+import android.content.ContentValues;
+import android.database.Cursor;
+
+import org.envirocar.core.entity.Track;
+import org.envirocar.core.entity.internal.TrackSummary;
+
+import io.reactivex.functions.Function;
+
+/**
+ * Table holding one incrementally maintained {@link TrackSummary} per track.
+ */
+class TrackSummaryTable {
+
+    public static final String TABLE_NAME = "track_summary";
+    public static final String KEY_TRACK = "track";
+    public static final String KEY_START_TIME = "start_time";
+    public static final String KEY_END_TIME = "end_time";
+    public static final String KEY_NUM_MEASUREMENTS = "num_measurements";
+    public static final String KEY_DISTANCE = "distance";
+    public static final String KEY_SPEED_SUM = "speed_sum";
+    public static final String KEY_SPEED_COUNT = "speed_count";
+    public static final String KEY_CONSUMPTION_SUM = "consumption_sum";
+    public static final String KEY_CONSUMPTION_COUNT = "consumption_count";
+    public static final String KEY_CO2_SUM = "co2_sum";
+    public static final String KEY_CO2_COUNT = "co2_count";
+    public static final String KEY_MIN_LATITUDE = "min_latitude";
+    public static final String KEY_MAX_LATITUDE = "max_latitude";
+    public static final String KEY_MIN_LONGITUDE = "min_longitude";
+    public static final String KEY_MAX_LONGITUDE = "max_longitude";
+    public static final String KEY_LAST_LATITUDE = "last_latitude";
+    public static final String KEY_LAST_LONGITUDE = "last_longitude";
+    public static final String KEY_SUPPORTED_PROPERTIES = "supported_properties";
+    public static final String KEY_FINISHED = "finished";
+
+    protected static final String CREATE =
+            "create table " + TABLE_NAME + " (" +
+                    KEY_TRACK + " INTEGER primary key, " +
+                    KEY_START_TIME + " INTEGER, " +
+                    KEY_END_TIME + " INTEGER, " +
+                    KEY_NUM_MEASUREMENTS + " INTEGER, " +
+                    KEY_DISTANCE + " REAL, " +
+                    KEY_SPEED_SUM + " REAL, " +
+                    KEY_SPEED_COUNT + " INTEGER, " +
+                    KEY_CONSUMPTION_SUM + " REAL, " +
+                    KEY_CONSUMPTION_COUNT + " INTEGER, " +
+                    KEY_CO2_SUM + " REAL, " +
+                    KEY_CO2_COUNT + " INTEGER, " +
+                    KEY_MIN_LATITUDE + " REAL, " +
+                    KEY_MAX_LATITUDE + " REAL, " +
+                    KEY_MIN_LONGITUDE + " REAL, " +
+                    KEY_MAX_LONGITUDE + " REAL, " +
+                    KEY_LAST_LATITUDE + " REAL, " +
+                    KEY_LAST_LONGITUDE + " REAL, " +
+                    KEY_SUPPORTED_PROPERTIES + " INTEGER, " +
+                    KEY_FINISHED + " INTEGER);";
+
+    protected static final String DELETE = "DROP TABLE IF EXISTS " + TABLE_NAME;
+
+    protected static final Function<Cursor, TrackSummary> MAPPER = cursor -> fromCursor(cursor);
+
+    public static ContentValues toContentValues(TrackSummary summary) {
+        ContentValues values = new ContentValues();
+        values.put(KEY_TRACK, summary.getTrackId().getId());
+        values.put(KEY_START_TIME, summary.getStartTime());
+        values.put(KEY_END_TIME, summary.getEndTime());
+        values.put(KEY_NUM_MEASUREMENTS, summary.getNumberOfMeasurements());
+        values.put(KEY_DISTANCE, summary.getDistance());
+        values.put(KEY_SPEED_SUM, summary.getSpeedSum());
+        values.put(KEY_SPEED_COUNT, summary.getSpeedCount());
+        values.put(KEY_CONSUMPTION_SUM, summary.getConsumptionSum());
+        values.put(KEY_CONSUMPTION_COUNT, summary.getConsumptionCount());
+        values.put(KEY_CO2_SUM, summary.getCO2Sum());
+        values.put(KEY_CO2_COUNT, summary.getCO2Count());
+        values.put(KEY_MIN_LATITUDE, summary.getMinLatitude());
+        values.put(KEY_MAX_LATITUDE, summary.getMaxLatitude());
+        values.put(KEY_MIN_LONGITUDE, summary.getMinLongitude());
+        values.put(KEY_MAX_LONGITUDE, summary.getMaxLongitude());
+        values.put(KEY_LAST_LATITUDE, summary.getLastLatitude());
+        values.put(KEY_LAST_LONGITUDE, summary.getLastLongitude());
+        values.put(KEY_SUPPORTED_PROPERTIES, summary.getSupportedPropertiesMask());
+        values.put(KEY_FINISHED, summary.isFinished() ? 1 : 0);
+        return values;
+    }
+
+    public static TrackSummary fromCursor(Cursor c) {
+        TrackSummary summary = new TrackSummary(
+                new Track.TrackId(c.getLong(c.getColumnIndex(KEY_TRACK))));
+        summary.setTimes(
+                c.getLong(c.getColumnIndex(KEY_START_TIME)),
+                c.getLong(c.getColumnIndex(KEY_END_TIME)),
+                c.getInt(c.getColumnIndex(KEY_NUM_MEASUREMENTS)));
+        summary.setDistance(c.getDouble(c.getColumnIndex(KEY_DISTANCE)));
+        summary.setSpeed(
+                c.getDouble(c.getColumnIndex(KEY_SPEED_SUM)),
+                c.getInt(c.getColumnIndex(KEY_SPEED_COUNT)));
+        summary.setConsumption(
+                c.getDouble(c.getColumnIndex(KEY_CONSUMPTION_SUM)),
+                c.getInt(c.getColumnIndex(KEY_CONSUMPTION_COUNT)));
+        summary.setCO2(
+                c.getDouble(c.getColumnIndex(KEY_CO2_SUM)),
+                c.getInt(c.getColumnIndex(KEY_CO2_COUNT)));
+        summary.setBoundingBox(
+                c.getDouble(c.getColumnIndex(KEY_MIN_LATITUDE)),
+                c.getDouble(c.getColumnIndex(KEY_MAX_LATITUDE)),
+                c.getDouble(c.getColumnIndex(KEY_MIN_LONGITUDE)),
+                c.getDouble(c.getColumnIndex(KEY_MAX_LONGITUDE)));
+
+        int lastLatitudeIndex = c.getColumnIndex(KEY_LAST_LATITUDE);
+        int lastLongitudeIndex = c.getColumnIndex(KEY_LAST_LONGITUDE);
+        if (!c.isNull(lastLatitudeIndex) && !c.isNull(lastLongitudeIndex)) {
+            summary.setLastPosition(c.getDouble(lastLatitudeIndex), c.getDouble(lastLongitudeIndex));
+        }
+
+        summary.setSupportedPropertiesMask(c.getLong(c.getColumnIndex(KEY_SUPPORTED_PROPERTIES)));
+        summary.setFinished(c.getInt(c.getColumnIndex(KEY_FINISHED)) != 0);
+        return summary;
+    }
+}
@@ -20,6 +20,7 @@ package org.envirocar.storage.dao;
 
 import org.envirocar.core.dao.TrackDAO;
 import org.envirocar.core.entity.Track;
+import org.envirocar.core.entity.TrackColumns;
 import org.envirocar.core.EnviroCarDB;
 
 import java.util.List;
@@ -61,6 +62,11 @@ public class LocalTrackDAO implements TrackDAO {
                 .take(1);
     }
 
+    @Override
+    public TrackColumns getTrackColumnsById(String id, Track track) {
+        return null;
+    }
+
     @Override
     public List<Track> getTrackIds() {
         return null;